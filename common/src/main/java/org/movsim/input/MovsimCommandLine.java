@@ -71,6 +71,8 @@ public class MovsimCommandLine {
         options = new Options();
         options.addOption("h", "help", false, "prints this message");
         options.addOption("v", "validate", false, "parses xml input file for validation (without simulation)");
+        options.addOption("n", "no_validation", false,
+                "skips the xml schema validation of the input files (for pre-validated input)");
         options.addOption("w", "write_xsd", false,
                 "writes xsd file to output (for convenience/lookup schema definitions)");
         options.addOption("l", "log", false,
@@ -78,6 +80,8 @@ public class MovsimCommandLine {
         options.addOption("d", "write_dot", false, "writes a 'dot' network file for further analysis of the xodr");
         options.addOption("s", "simulation scanning mode", false,
                 "invokes the simulator repeatedly in a loop (needs to be programmed by user)");
+        options.addOption("a", "assignment", false,
+                "iterative dynamic traffic assignment of the route shares at the decision points, see TrafficAssignment element");
 
         options.addOption(Option.builder("f").longOpt("file").hasArg()
                 .desc("movsim main configuration file (ending \"" + ProjectMetaData.getMovsimConfigFileEnding()
@@ -99,6 +103,9 @@ public class MovsimCommandLine {
         if (cmdline.hasOption("v")) {
             optionValidation();
         }
+        if (cmdline.hasOption("n")) {
+            InputLoader.setSchemaValidation(false);
+        }
         if (cmdline.hasOption("w")) {
             optionWriteXsd();
         }
@@ -111,6 +118,9 @@ public class MovsimCommandLine {
         if (cmdline.hasOption("s")) {
             ProjectMetaData.getInstance().setScanMode(true);
         }
+        if (cmdline.hasOption("a")) {
+            ProjectMetaData.getInstance().setAssignmentMode(true);
+        }
         requiredOptionOutputPath(cmdline);
         requiredOptionSimulation(cmdline);
     }
@@ -53,6 +53,8 @@ public final class ProjectMetaData {
 
     private boolean scanMode = false;
 
+    private boolean assignmentMode = false;
+
     private long timeOffsetMillis = 0;
 
     /**
@@ -312,4 +314,12 @@ public final class ProjectMetaData {
     public boolean isScanMode() {
         return scanMode;
     }
+
+    public void setAssignmentMode(boolean assignmentMode) {
+        this.assignmentMode = assignmentMode;
+    }
+
+    public boolean isAssignmentMode() {
+        return assignmentMode;
+    }
 }
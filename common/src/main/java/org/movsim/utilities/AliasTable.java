@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden <movsim.org@gmail.com>
+ * ----------------------------------------------------------------------------------------- This file is part of MovSim - the
+ * multi-model open-source vehicular-traffic simulator. MovSim is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version. MovSim is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public License along with MovSim. If not, see
+ * <http://www.gnu.org/licenses/> or <http://www.movsim.org>.
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.utilities;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Alias table for sampling from a discrete distribution in constant time (Walker's alias method in the numerically stable
+ * variant of Vose). Each outcome i is split into the probability to keep i and an alias which takes the remaining
+ * probability of its column, so one uniform random number suffices for a draw.
+ */
+public final class AliasTable {
+
+    private final double[] probabilities;
+
+    private final int[] aliases;
+
+    /**
+     * Creates the table for the distribution proportional to the given weights.
+     *
+     * @param weights
+     *            non-negative weights, at least one must be positive
+     * @throws IllegalArgumentException
+     */
+    public AliasTable(double[] weights) {
+        final int n = weights.length;
+        Preconditions.checkArgument(n > 0, "at least one weight required");
+        double sum = 0;
+        for (double weight : weights) {
+            Preconditions.checkArgument(weight >= 0 && !Double.isInfinite(weight), "invalid weight=" + weight);
+            sum += weight;
+        }
+        Preconditions.checkArgument(sum > 0, "sum of weights must be positive");
+
+        probabilities = new double[n];
+        aliases = new int[n];
+        final double[] scaled = new double[n];
+        final int[] small = new int[n];
+        final int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            final int less = small[--smallCount];
+            final int more = large[--largeCount];
+            probabilities[less] = scaled[less];
+            aliases[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // remaining columns are full up to rounding errors
+        while (largeCount > 0) {
+            final int i = large[--largeCount];
+            probabilities[i] = 1;
+            aliases[i] = i;
+        }
+        while (smallCount > 0) {
+            final int i = small[--smallCount];
+            probabilities[i] = 1;
+            aliases[i] = i;
+        }
+    }
+
+    /**
+     * @return the number of outcomes
+     */
+    public int size() {
+        return probabilities.length;
+    }
+
+    /**
+     * Draws an outcome.
+     *
+     * @param random
+     *            uniformly distributed random number within [0,1)
+     * @return the index of the outcome
+     */
+    public int sample(double random) {
+        final double u = random * probabilities.length;
+        final int column = Math.min((int) u, probabilities.length - 1);
+        return u - column < probabilities[column] ? column : aliases[column];
+    }
+
+    /**
+     * Draws an outcome with the common random number generator.
+     *
+     * @return the index of the outcome
+     */
+    public int sample() {
+        return sample(MyRandom.nextDouble());
+    }
+
+    @Override
+    public String toString() {
+        return "AliasTable [probabilities=" + Arrays.toString(probabilities) + ", aliases=" + Arrays.toString(aliases)
+                + "]";
+    }
+}
@@ -15,7 +15,10 @@ import com.google.common.base.Preconditions;
  * 
  * <p>
  * In case of only one data point no splineFunction is created.
+ * 
+ * @deprecated use {@link PiecewiseLinearFunction} which neither allocates nor searches for monotone arguments
  */
+@Deprecated
 public class LinearInterpolatedFunction {
     
     /** The Constant LOG. */
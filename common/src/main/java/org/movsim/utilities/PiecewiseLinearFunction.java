@@ -0,0 +1,168 @@
+package org.movsim.utilities;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Linearly interpolated univariate function of non-equidistant pairs of (x,y) data on primitive arrays. The function is
+ * extrapolated with constant values at the boundaries.
+ * 
+ * <p>
+ * {@link #value(double)} finds the interval by binary search and does not change any state, so it can be used for arbitrary
+ * arguments and from several threads. A {@link Cursor} keeps the interval of its last query and moves from there; for
+ * monotone arguments such as the simulation time or positions along a road, a query takes amortised constant time.
+ * Neither allocates. The values equal those of {@link LinearInterpolatedFunction}.
+ */
+public final class PiecewiseLinearFunction {
+
+    private final double[] x;
+
+    private final double[] y;
+
+    /** slopes indexed by interval */
+    private final double[] slopes;
+
+    /**
+     * @param x
+     *            strictly increasing data points
+     * @param y
+     *            values at the data points
+     * @throws IllegalArgumentException
+     */
+    public PiecewiseLinearFunction(double[] x, double[] y) {
+        Preconditions.checkArgument(x.length == y.length, "dimensions mismatch");
+        Preconditions.checkArgument(x.length != 0, "dimension zero");
+        this.x = x.clone();
+        this.y = y.clone();
+        slopes = new double[Math.max(0, x.length - 1)];
+        for (int i = 0; i < slopes.length; i++) {
+            Preconditions.checkArgument(x[i + 1] > x[i], "data points not strictly increasing at index=" + (i + 1));
+            slopes[i] = (y[i + 1] - y[i]) / (x[i + 1] - x[i]);
+        }
+    }
+
+    public int getNumberOfDataPoints() {
+        return x.length;
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public double value(double x0) {
+        final int last = x.length - 1;
+        if (last == 0 || x0 < x[0]) {
+            return y[0];
+        }
+        if (x0 > x[last]) {
+            return y[last];
+        }
+        int i = Arrays.binarySearch(x, x0);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        return interpolate(Math.min(i, last - 1), x0);
+    }
+
+    private double interpolate(int i, double x0) {
+        return y[i] + (x0 - x[i]) * slopes[i];
+    }
+
+    /**
+     * @return a new cursor starting at the first interval
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Stateful evaluation of the function for monotone arguments. A cursor must not be shared between threads.
+     */
+    public final class Cursor {
+
+        private int index;
+
+        private Cursor() {
+        }
+
+        public double value(double x0) {
+            final int last = x.length - 1;
+            if (last == 0 || x0 < x[0]) {
+                return y[0];
+            }
+            if (x0 > x[last]) {
+                return y[last];
+            }
+            seek(x0);
+            return interpolate(index, x0);
+        }
+
+        /**
+         * Inverts the integral of a non-negative function: finds the upper bound x1 of the integral from x0 to x1 that
+         * equals the given area, e.g. the time at which a flow has delivered a number of vehicles.
+         *
+         * @param x0
+         *            lower bound of the integral
+         * @param area
+         *            non-negative value of the integral
+         * @return the smallest x1 &gt;= x0 with the given integral, or {@link Double#POSITIVE_INFINITY} if the area is
+         *         never reached
+         */
+        public double inverseIntegral(double x0, double area) {
+            Preconditions.checkArgument(area >= 0, "negative area=" + area);
+            final int last = x.length - 1;
+            double from = x0;
+            double remaining = area;
+            if (remaining == 0) {
+                return from;
+            }
+            if (last > 0 && from < x[0]) {
+                // constant extrapolation before the first data point
+                final double segment = y[0] * (x[0] - from);
+                if (segment >= remaining) {
+                    return from + remaining / y[0];
+                }
+                remaining -= segment;
+                from = x[0];
+            }
+            if (last > 0 && from < x[last]) {
+                seek(from);
+                while (index < last) {
+                    final double yFrom = interpolate(index, from);
+                    final double segment = 0.5 * (yFrom + y[index + 1]) * (x[index + 1] - from);
+                    if (segment >= remaining) {
+                        // solve yFrom*dx + slope*dx^2/2 = remaining in the numerically stable form
+                        final double discriminant = Math.max(0, yFrom * yFrom + 2 * slopes[index] * remaining);
+                        return from + 2 * remaining / (yFrom + Math.sqrt(discriminant));
+                    }
+                    remaining -= segment;
+                    from = x[index + 1];
+                    if (index == last - 1) {
+                        break;
+                    }
+                    ++index;
+                }
+            }
+            // constant extrapolation after the last data point
+            return y[last] > 0 ? from + remaining / y[last] : Double.POSITIVE_INFINITY;
+        }
+
+        private void seek(double x0) {
+            while (index > 0 && x0 < x[index]) {
+                --index;
+            }
+            while (index < x.length - 2 && x0 >= x[index + 1]) {
+                ++index;
+            }
+        }
+
+        public PiecewiseLinearFunction function() {
+            return PiecewiseLinearFunction.this;
+        }
+    }
+}
@@ -3,12 +3,9 @@ package org.movsim.xml;
 import java.io.File;
 import java.net.URL;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,21 +17,18 @@ public final class FileUnmarshaller<T> {
     
     private static final Logger LOG = LoggerFactory.getLogger(FileUnmarshaller.class);
 
-    private static final String W3C_XML_SCHEMA_NS_URI = "http://www.w3.org/2001/XMLSchema";
-
-    /** Assure that only one loading/jaxb operation is active. */
-    private static final Object SYNC_OBJECT = new Object();
-
+    /**
+     * Unmarshals the source. The JAXB context and the compiled schema are cached, only the unmarshaller is created per call,
+     * so several files can be loaded concurrently.
+     * 
+     * @param xsdFile
+     *            the schema to validate against, or null to skip the validation of pre-validated input
+     */
     public final T load(StreamSource source, Class<T> clazz, Class<?> factory, URL xsdFile) throws JAXBException,
             SAXException {
-        T result;
-        synchronized (SYNC_OBJECT) {
-            // TODO creating a JaxbContext is expensive, consider pooling.
-            Unmarshaller unmarshaller = createUnmarshaller(factory, xsdFile);
-            unmarshaller.setEventHandler(new XmlValidationEventHandler());
-            result = unmarshaller.unmarshal(source, clazz).getValue();
-        }
-        return result;
+        Unmarshaller unmarshaller = createUnmarshaller(factory, xsdFile);
+        unmarshaller.setEventHandler(new XmlValidationEventHandler());
+        return unmarshaller.unmarshal(source, clazz).getValue();
     }
     
 //    public final T load(InputSource source, Class<T> clazz, Class<?> factory, URL xsdFile) throws JAXBException,
@@ -58,9 +52,13 @@ public final class FileUnmarshaller<T> {
         return load(new StreamSource(file), clazz, factory, xsdFile);
     }
 
+    /**
+     * @param xsdFile
+     *            the schema to validate against, or null to skip the validation of pre-validated input
+     * @throws IllegalStateException
+     */
     public final T load(File file, Class<T> clazz, Class<?> factory, URL xsdFile) {
-        Preconditions.checkNotNull(xsdFile);
-        LOG.info("try to open file={}", xsdFile);
+        LOG.info("try to open file={} with schema={}", file, xsdFile);
         T data = null;
         try {
             data =  load(new StreamSource(file), clazz, factory, xsdFile);
@@ -78,18 +76,14 @@ public final class FileUnmarshaller<T> {
     
     private final Unmarshaller createUnmarshaller(final Class<?> objectFactoryClass, final URL xsdFile)
             throws JAXBException, SAXException {
-        JAXBContext context = JAXBContext.newInstance(objectFactoryClass);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
+        Unmarshaller unmarshaller = JaxbCache.context(objectFactoryClass).createUnmarshaller();
         if (unmarshaller == null) {
             throw new JAXBException("Created unmarshaller is null.");
         }
-        unmarshaller.setSchema(getSchema(xsdFile));
+        if (xsdFile != null) {
+            unmarshaller.setSchema(JaxbCache.schema(xsdFile));
+        }
         return unmarshaller;
     }
 
-    private static Schema getSchema(final URL xsdFile) throws SAXException {
-        SchemaFactory sf = SchemaFactory.newInstance(W3C_XML_SCHEMA_NS_URI);
-        return sf.newSchema(xsdFile);
-    }
-
 }
@@ -15,6 +15,9 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Validator;
+
 import org.movsim.autogen.Movsim;
 import org.movsim.network.autogen.opendrive.OpenDRIVE;
 import org.movsim.scenario.boundary.autogen.MovsimMicroscopicBoundaryConditions;
@@ -23,6 +26,7 @@ import org.movsim.scenario.vehicle.autogen.MovsimExternalVehicleControl;
 import org.movsim.utilities.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
 
 public final class InputLoader {
 
@@ -52,6 +56,32 @@ public final class InputLoader {
             return XmlInput.class.getResource(xmlSchema);
         }
 
+        /**
+         * @return the schema to validate against or null if the schema validation is switched off
+         */
+        private URL validationUrl() {
+            return schemaValidation ? getUrl() : null;
+        }
+
+    }
+
+    private static volatile boolean schemaValidation = true;
+
+    private InputLoader() {
+        throw new IllegalStateException("do not instanciate");
+    }
+
+    /**
+     * Switches the xml schema validation of all input files on or off. Pre-validated input, e.g. of repeated runs of the
+     * same scenario, can be loaded without validation. The default is on.
+     */
+    public static void setSchemaValidation(boolean schemaValidation) {
+        InputLoader.schemaValidation = schemaValidation;
+        LOG.info("xml schema validation={}", schemaValidation);
+    }
+
+    public static boolean isSchemaValidation() {
+        return schemaValidation;
     }
 
     /**
@@ -60,7 +90,7 @@ public final class InputLoader {
     public static Movsim unmarshallMovsim(File xmlFile) {
         FileUnmarshaller<Movsim> fileUnmarshaller = new FileUnmarshaller<>();
         XmlInput xsdResourcen = XmlInput.MOVSIM_XPRJ;
-        return fileUnmarshaller.load(xmlFile, Movsim.class, xsdResourcen.factory, xsdResourcen.getUrl());
+        return fileUnmarshaller.load(xmlFile, Movsim.class, xsdResourcen.factory, xsdResourcen.validationUrl());
     }
 
     /**
@@ -70,7 +100,7 @@ public final class InputLoader {
         FileUnmarshaller<MovsimInitialConditions> fileUnmarshaller = new FileUnmarshaller<>();
         XmlInput xsdResourcen = XmlInput.INITIAL_CONDITIONS;
         return fileUnmarshaller.load(xmlFile, MovsimInitialConditions.class, xsdResourcen.factory,
-                xsdResourcen.getUrl());
+                xsdResourcen.validationUrl());
     }
 
     /**
@@ -80,7 +110,26 @@ public final class InputLoader {
         FileUnmarshaller<MovsimMicroscopicBoundaryConditions> fileUnmarshaller = new FileUnmarshaller<>();
         XmlInput xsdResourcen = XmlInput.MICRO_BOUNDARY_CONDITIONS;
         return fileUnmarshaller.load(xmlFile, MovsimMicroscopicBoundaryConditions.class, xsdResourcen.factory,
-                xsdResourcen.getUrl());
+                xsdResourcen.validationUrl());
+    }
+
+    /**
+     * Validates the file against the schema of the given input type without unmarshalling it. The file is streamed, so
+     * large files can be validated in constant memory. Does nothing if the schema validation is switched off.
+     *
+     * @throws IllegalStateException
+     */
+    public static void validate(File xmlFile, XmlInput xmlInput) {
+        if (!schemaValidation) {
+            LOG.info("skip schema validation of file={}", xmlFile);
+            return;
+        }
+        try {
+            Validator validator = JaxbCache.schema(xmlInput.getUrl()).newValidator();
+            validator.validate(new StreamSource(xmlFile));
+        } catch (SAXException | IOException e) {
+            throw new IllegalStateException("xml input " + xmlFile + " not valid: " + e.getMessage(), e);
+        }
     }
 
     /**
@@ -90,7 +139,7 @@ public final class InputLoader {
         FileUnmarshaller<MovsimExternalVehicleControl> fileUnmarshaller = new FileUnmarshaller<>();
         XmlInput xsdResourcen = XmlInput.EXTERNAL_VEHICLE_CONTROL;
         return fileUnmarshaller.load(xmlFile, MovsimExternalVehicleControl.class, xsdResourcen.factory,
-                xsdResourcen.getUrl());
+                xsdResourcen.validationUrl());
     }
 
     /**
@@ -100,7 +149,7 @@ public final class InputLoader {
         FileUnmarshaller<org.movsim.network.autogen.opendrive.OpenDRIVE> fileUnmarshaller = new FileUnmarshaller<>();
         XmlInput xsdResourcen = XmlInput.XODR_ROADNETWORK;
         return fileUnmarshaller.load(xmlFile, org.movsim.network.autogen.opendrive.OpenDRIVE.class,
-                xsdResourcen.factory, xsdResourcen.getUrl());
+                xsdResourcen.factory, xsdResourcen.validationUrl());
     }
 
     /**
@@ -0,0 +1,67 @@
+package org.movsim.xml;
+
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * JVM-wide cache of the JAXB contexts and compiled xml schemas. Creating a context reflects over all autogen classes and
+ * compiling a schema parses the whole xsd, which is expensive for large schemas like the OpenDRIVE one. Both are
+ * thread-safe and are created once per object factory and schema respectively; the unmarshallers and validators derived
+ * from them are not thread-safe and are created per use.
+ */
+final class JaxbCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JaxbCache.class);
+
+    private static final ConcurrentMap<Class<?>, JAXBContext> CONTEXTS = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, Schema> SCHEMAS = new ConcurrentHashMap<>();
+
+    private JaxbCache() {
+        throw new IllegalStateException("do not instanciate");
+    }
+
+    static JAXBContext context(Class<?> factory) throws JAXBException {
+        JAXBContext context = CONTEXTS.get(factory);
+        if (context == null) {
+            synchronized (CONTEXTS) {
+                context = CONTEXTS.get(factory);
+                if (context == null) {
+                    LOG.debug("create jaxb context for factory={}", factory.getName());
+                    context = JAXBContext.newInstance(factory);
+                    CONTEXTS.put(factory, context);
+                }
+            }
+        }
+        return context;
+    }
+
+    static Schema schema(URL xsdFile) throws SAXException {
+        // the url itself is not used as key since its equals resolves host names
+        final String key = xsdFile.toExternalForm();
+        Schema schema = SCHEMAS.get(key);
+        if (schema == null) {
+            synchronized (SCHEMAS) {
+                schema = SCHEMAS.get(key);
+                if (schema == null) {
+                    LOG.debug("compile schema={}", key);
+                    schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(xsdFile);
+                    SCHEMAS.put(key, schema);
+                }
+            }
+        }
+        return schema;
+    }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden <movsim.org@gmail.com>
+ * ----------------------------------------------------------------------------------------- This file is part of MovSim - the
+ * multi-model open-source vehicular-traffic simulator. MovSim is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version. MovSim is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public License along with MovSim. If not, see
+ * <http://www.gnu.org/licenses/> or <http://www.movsim.org>.
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.xml;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Streaming reader of the repeated record elements of a large xml input file. The file is parsed with StAX and only the
+ * record at hand is unmarshalled with JAXB, so the memory does not grow with the number of records.
+ * </p>
+ * <p>
+ * The records are returned in document order, optionally restricted to a section of the document, see
+ * {@link #moveToSection(String, String, String)}. The file is not validated, see {@link InputLoader#validate}. The reader is
+ * closed when the last record has been read.
+ * </p>
+ *
+ * @param <T>
+ *            type of the record elements
+ */
+public final class XmlRecordReader<T> implements Iterator<T>, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(XmlRecordReader.class);
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private final File file;
+    private final Class<T> recordClass;
+    private final String recordElement;
+    private final InputStream input;
+    private final XMLStreamReader reader;
+    private final Unmarshaller unmarshaller;
+    private final Map<String, String> rootAttributes = new HashMap<>();
+
+    /** element enclosing the records to read or null for the whole document */
+    private String sectionElement;
+
+    /** if true, only direct children of the root or section element are read as records */
+    private boolean childrenOnly;
+
+    /** number of open elements enclosing the current event */
+    private int depth;
+
+    /** number of open elements enclosing the direct children of the root or section element */
+    private int parentDepth = 1;
+
+    private T next;
+    private boolean started;
+    private boolean closed;
+
+    /**
+     * @param file
+     *            the xml input file
+     * @param factory
+     *            the JAXB object factory of the input
+     * @param recordClass
+     *            the class of the records
+     * @param recordElement
+     *            the local name of the record elements
+     * @throws IllegalStateException
+     *             if the file cannot be read
+     */
+    public XmlRecordReader(File file, Class<?> factory, Class<T> recordClass, String recordElement) {
+        this.file = Preconditions.checkNotNull(file);
+        this.recordClass = Preconditions.checkNotNull(recordClass);
+        this.recordElement = Preconditions.checkNotNull(recordElement);
+        try {
+            unmarshaller = JaxbCache.context(factory).createUnmarshaller();
+            input = new BufferedInputStream(new FileInputStream(file));
+            synchronized (INPUT_FACTORY) {
+                reader = INPUT_FACTORY.createXMLStreamReader(input);
+            }
+            // read the attributes of the root element
+            while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+                // skip prolog
+            }
+            for (int i = 0, n = reader.getAttributeCount(); i < n; i++) {
+                rootAttributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            }
+        } catch (IOException | XMLStreamException | JAXBException e) {
+            throw new IllegalStateException("cannot read xml input file=" + file, e);
+        }
+    }
+
+    /**
+     * Returns the value of an attribute of the root element.
+     *
+     * @return the value or null if the attribute is not set
+     */
+    public String getRootAttribute(String name) {
+        return rootAttributes.get(name);
+    }
+
+    /**
+     * Restricts the records to the first section element with the given attribute value. Must be called before the first
+     * record is read.
+     *
+     * @return false if there is no such section, the reader is closed then
+     * @throws IllegalStateException
+     *             if the file cannot be read or records have already been read
+     */
+    public boolean moveToSection(String element, String attribute, String value) {
+        Preconditions.checkState(!started, "records already read");
+        try {
+            int event = reader.getEventType();
+            while (true) {
+                if (event == XMLStreamConstants.START_ELEMENT && element.equals(reader.getLocalName())
+                        && value.equals(reader.getAttributeValue(null, attribute))) {
+                    sectionElement = element;
+                    parentDepth = depth + 1;
+                    return true;
+                }
+                if (!reader.hasNext()) {
+                    break;
+                }
+                track(event);
+                event = reader.next();
+            }
+            close();
+            return false;
+        } catch (IOException | XMLStreamException e) {
+            throw new IllegalStateException("cannot read xml input file=" + file, e);
+        }
+    }
+
+    /**
+     * Restricts the records to the direct children of the root element or of the section element, elements of the same
+     * name nested deeper in the document are skipped. Must be called before the first record is read.
+     *
+     * @throws IllegalStateException
+     *             if records have already been read
+     */
+    public void restrictToChildren() {
+        Preconditions.checkState(!started, "records already read");
+        childrenOnly = true;
+    }
+
+    private void track(int event) {
+        if (event == XMLStreamConstants.START_ELEMENT) {
+            ++depth;
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+            --depth;
+        }
+    }
+
+    /**
+     * Returns the next record or null if there are no more records.
+     */
+    private T readNext() throws XMLStreamException, JAXBException, IOException {
+        int event = reader.getEventType();
+        while (!closed) {
+            if (event == XMLStreamConstants.START_ELEMENT && recordElement.equals(reader.getLocalName())
+                    && (!childrenOnly || depth == parentDepth)) {
+                // leaves the reader at the event following the record
+                return unmarshaller.unmarshal(reader, recordClass).getValue();
+            }
+            if ((event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals(sectionElement))
+                    || !reader.hasNext()) {
+                break;
+            }
+            track(event);
+            event = reader.next();
+        }
+        close();
+        return null;
+    }
+
+    private void start() {
+        if (!started) {
+            started = true;
+            try {
+                next = readNext();
+            } catch (IOException | XMLStreamException | JAXBException e) {
+                throw new IllegalStateException("cannot read xml input file=" + file, e);
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalStateException
+     *             if the file cannot be read
+     */
+    @Override
+    public boolean hasNext() {
+        start();
+        return next != null;
+    }
+
+    /**
+     * @throws IllegalStateException
+     *             if the file cannot be read
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final T record = next;
+        try {
+            // the reader is positioned behind the record
+            next = readNext();
+        } catch (IOException | XMLStreamException | JAXBException e) {
+            throw new IllegalStateException("cannot read xml input file=" + file, e);
+        }
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        next = null;
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            LOG.warn("cannot close reader of file={}", file);
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.movsim.utilities;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AliasTableTest {
+
+    private static final double DELTA = 0.00001;
+
+    @Test
+    public void testSamplesReproduceDistribution() {
+        final double[] weights = { 1, 0, 3, 4 };
+        final AliasTable table = new AliasTable(weights);
+        assertEquals(4, table.size());
+        // evaluating all outcomes on an equidistant grid of random numbers yields the exact probabilities
+        final int n = 80000;
+        final int[] counts = new int[weights.length];
+        for (int i = 0; i < n; i++) {
+            ++counts[table.sample((i + 0.5) / n)];
+        }
+        assertEquals(0.125, counts[0] / (double) n, DELTA);
+        assertEquals(0, counts[1]);
+        assertEquals(0.375, counts[2] / (double) n, DELTA);
+        assertEquals(0.5, counts[3] / (double) n, DELTA);
+    }
+
+    @Test
+    public void testSingleOutcome() {
+        final AliasTable table = new AliasTable(new double[] { 2.5 });
+        assertEquals(0, table.sample(0));
+        assertEquals(0, table.sample(0.999999));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroWeights() {
+        new AliasTable(new double[] { 0, 0 });
+    }
+}
@@ -0,0 +1,72 @@
+package org.movsim.utilities;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PiecewiseLinearFunctionTest {
+
+    @Test
+    public void testConstant() {
+        PiecewiseLinearFunction fct = new PiecewiseLinearFunction(new double[] { 1 }, new double[] { 2 });
+        assertEquals(2, fct.value(0), 0);
+        assertEquals(2, fct.value(1), 0);
+        assertEquals(2, fct.cursor().value(100), 0);
+    }
+
+    @Test
+    public void testAsLinearInterpolatedFunction() {
+        Random random = new Random(3);
+        double[] x = new double[20];
+        double[] y = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = (i == 0 ? 0 : x[i - 1]) + 0.1 + random.nextDouble();
+            y[i] = 30 * random.nextDouble();
+        }
+        LinearInterpolatedFunction expected = new LinearInterpolatedFunction(x, y);
+        PiecewiseLinearFunction fct = new PiecewiseLinearFunction(x, y);
+        PiecewiseLinearFunction.Cursor cursor = fct.cursor();
+        for (double x0 = -1; x0 < x[x.length - 1] + 1; x0 += 0.01) {
+            assertEquals(expected.value(x0), fct.value(x0), 0);
+            assertEquals(expected.value(x0), cursor.value(x0), 0);
+        }
+        for (double x0 : x) {
+            assertEquals(expected.value(x0), fct.value(x0), 0);
+        }
+        // the cursor also moves backwards
+        for (int i = 0; i < 100; i++) {
+            double x0 = -1 + (x[x.length - 1] + 2) * random.nextDouble();
+            assertEquals(expected.value(x0), cursor.value(x0), 0);
+        }
+    }
+
+    @Test
+    public void testInverseIntegral() {
+        // ramp from 0 to 2 between x=1 and x=3, constant 2 afterwards
+        PiecewiseLinearFunction.Cursor cursor = new PiecewiseLinearFunction(new double[] { 1, 3 },
+                new double[] { 0, 2 }).cursor();
+        assertEquals(0.5, cursor.inverseIntegral(0.5, 0), 0);
+        assertEquals(3, cursor.inverseIntegral(0, 2), 1e-12);
+        assertEquals(1 + Math.sqrt(2), cursor.inverseIntegral(1, 1), 1e-12);
+        assertEquals(4, cursor.inverseIntegral(1, 4), 1e-12);
+        assertEquals(5.5, cursor.inverseIntegral(4, 3), 1e-12);
+        // the cursor also moves backwards
+        assertEquals(2, cursor.inverseIntegral(1, 0.5), 1e-12);
+
+        // decreasing to zero, the area of the triangle is never exceeded
+        cursor = new PiecewiseLinearFunction(new double[] { 0, 2 }, new double[] { 2, 0 }).cursor();
+        assertEquals(2 - Math.sqrt(2), cursor.inverseIntegral(0, 1), 1e-12);
+        assertEquals(2, cursor.inverseIntegral(0, 2), 1e-12);
+        assertEquals(Double.POSITIVE_INFINITY, cursor.inverseIntegral(0, 2.5), 0);
+
+        cursor = new PiecewiseLinearFunction(new double[] { 1 }, new double[] { 4 }).cursor();
+        assertEquals(0.5, cursor.inverseIntegral(0, 2), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotIncreasing() {
+        new PiecewiseLinearFunction(new double[] { 0, 1, 1 }, new double[] { 0, 1, 2 });
+    }
+}
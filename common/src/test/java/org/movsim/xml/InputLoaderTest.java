@@ -0,0 +1,63 @@
+package org.movsim.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Test;
+import org.movsim.scenario.initial.autogen.MovsimInitialConditions;
+import org.movsim.xml.InputLoader.XmlInput;
+
+public class InputLoaderTest {
+
+    /** the required id attribute of the road is missing */
+    private static final String INVALID_INITIAL_CONDITIONS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<MovsimInitialConditions><RoadInitialConditions><MacroscopicInitialConditions>"
+            + "<MacroCondition position=\"0\" density_per_km=\"10\"/>"
+            + "</MacroscopicInitialConditions></RoadInitialConditions></MovsimInitialConditions>\n";
+
+    @After
+    public void tearDown() {
+        InputLoader.setSchemaValidation(true);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testValidation() throws IOException {
+        InputLoader.unmarshallInitialConditions(createFile(INVALID_INITIAL_CONDITIONS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStreamingValidation() throws IOException {
+        InputLoader.validate(createFile(INVALID_INITIAL_CONDITIONS), XmlInput.INITIAL_CONDITIONS);
+    }
+
+    @Test
+    public void testWithoutValidation() throws IOException {
+        InputLoader.setSchemaValidation(false);
+        File file = createFile(INVALID_INITIAL_CONDITIONS);
+        InputLoader.validate(file, XmlInput.INITIAL_CONDITIONS);
+        MovsimInitialConditions initialConditions = InputLoader.unmarshallInitialConditions(file);
+        assertEquals(1, initialConditions.getRoadInitialConditions().size());
+        assertNull(initialConditions.getRoadInitialConditions().get(0).getId());
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        assertSame(JaxbCache.context(MovsimInitialConditions.class), JaxbCache.context(MovsimInitialConditions.class));
+        assertSame(JaxbCache.schema(XmlInput.INITIAL_CONDITIONS.getUrl()),
+                JaxbCache.schema(XmlInput.INITIAL_CONDITIONS.getUrl()));
+    }
+
+    private static File createFile(String content) throws IOException {
+        File file = File.createTempFile("initialConditions", ".xml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
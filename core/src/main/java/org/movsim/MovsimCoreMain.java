@@ -70,6 +70,9 @@ public class MovsimCoreMain {
         if (projectMetaData.isScanMode()) {
             LOG.info("scanning mode");
             SimulationScan.invokeSimulationScan(movsimInput);
+        } else if (projectMetaData.isAssignmentMode()) {
+            LOG.info("traffic assignment mode");
+            TrafficAssignment.invokeTrafficAssignment(movsimInput);
         } else {
             invokeSingleSimulation(movsimInput);
         }
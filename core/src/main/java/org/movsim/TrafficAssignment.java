@@ -0,0 +1,454 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ *
+ * This file is part of
+ *
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ *
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ *
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+
+import org.movsim.autogen.Movsim;
+import org.movsim.autogen.OutputConfiguration;
+import org.movsim.autogen.Road;
+import org.movsim.autogen.ServiceProviderType;
+import org.movsim.autogen.Simulation;
+import org.movsim.autogen.TrafficAssignmentMethodEnum;
+import org.movsim.autogen.TrafficAssignmentType;
+import org.movsim.input.ProjectMetaData;
+import org.movsim.network.autogen.opendrive.OpenDRIVE;
+import org.movsim.simulator.Simulator;
+import org.movsim.simulator.observer.DecisionPoint;
+import org.movsim.simulator.observer.RouteAlternative;
+import org.movsim.simulator.observer.RouteShares;
+import org.movsim.simulator.observer.ServiceProvider;
+import org.movsim.simulator.roadnetwork.TravelTimeProfiles;
+import org.movsim.simulator.roadnetwork.routing.Route;
+import org.movsim.utilities.FileUtils;
+import org.movsim.utilities.MyRandom;
+import org.movsim.xml.InputLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Iterables;
+
+/**
+ * <p>
+ * Iterative dynamic traffic assignment of the route shares at the decision points of the service providers.
+ * </p>
+ * <p>
+ * Each iteration runs the scenario with the current route shares per departure interval. The travel times of the road
+ * segments are sampled during the runs and averaged over the replications, which run concurrently. The route travel times
+ * for each departure interval are derived from these time-dependent travel times, and the shares are moved towards the
+ * fastest routes, either by the method of successive averages or proportional to the relative travel time differences
+ * (gap-based). The iteration stops when the relative gap falls below the configured threshold. A final run with the
+ * assigned shares writes the configured output.
+ * </p>
+ * <p>
+ * The scenario input and the road network are parsed once and shared by all runs. File output is disabled for the
+ * iteration runs.
+ * </p>
+ */
+public final class TrafficAssignment {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrafficAssignment.class);
+
+    static final String OUTPUT_NAME = ".assignment.csv";
+
+    /** grid length for sampling the travel times, as used by the service providers */
+    private static final double GRID_LENGTH = 100;
+
+    private final Movsim inputData;
+
+    private final TrafficAssignmentType configuration;
+
+    private final OpenDRIVE openDriveNetwork;
+
+    private final int intervalCount;
+
+    private final long seed;
+
+    /** route shares keyed by service provider label and decision point road id */
+    private final Map<String, RouteShares> routeShares = new LinkedHashMap<>();
+
+    private double relativeGap = Double.POSITIVE_INFINITY;
+
+    public TrafficAssignment(Movsim inputData) {
+        this(inputData, null);
+    }
+
+    /**
+     * @param openDriveNetwork the road network, or null for loading the network file of the scenario
+     */
+    public TrafficAssignment(Movsim inputData, @Nullable OpenDRIVE openDriveNetwork) {
+        this.inputData = Preconditions.checkNotNull(inputData);
+        this.configuration = inputData.isSetTrafficAssignment() ? inputData.getTrafficAssignment()
+                : new TrafficAssignmentType();
+        Preconditions.checkArgument(inputData.isSetServiceProviders(),
+                "traffic assignment needs decision points of service providers");
+        final Simulation simulation = inputData.getScenario().getSimulation();
+        Preconditions.checkArgument(simulation.isSetDuration() && simulation.getDuration() > 0,
+                "traffic assignment needs a finite simulation duration");
+        intervalCount = (int) Math.ceil(simulation.getDuration() / configuration.getDepartureInterval());
+        seed = simulation.isWithSeed() ? simulation.getSeed() : new Random().nextLong();
+        if (openDriveNetwork != null) {
+            this.openDriveNetwork = openDriveNetwork;
+        } else {
+            final ProjectMetaData projectMetaData = ProjectMetaData.getInstance();
+            final File networkFile = projectMetaData.getFile(inputData.getScenario().getNetworkFilename());
+            this.openDriveNetwork = InputLoader.unmarshallOpenDriveNetwork(networkFile);
+        }
+    }
+
+    public static void invokeTrafficAssignment(Movsim inputData) {
+        new TrafficAssignment(inputData).run();
+    }
+
+    /**
+     * Iterates the assignment until convergence or the maximum number of iterations and runs the scenario with the
+     * assigned route shares.
+     *
+     * @return the simulator of the final run
+     */
+    public Simulator run() {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final String filename = ProjectMetaData.getInstance().getOutputPath() + File.separator
+                + ProjectMetaData.getInstance().getProjectName() + OUTPUT_NAME;
+        final PrintWriter writer = FileUtils.getWriter(filename);
+        writer.println("# iteration, relative gap, mean total travel time (s)");
+        try {
+            for (int iteration = 1; iteration <= configuration.getMaxIterations(); iteration++) {
+                final double totalTravelTime = iterate(iteration);
+                writer.println(String.format("%d, %.6f, %.3f", iteration, relativeGap, totalTravelTime));
+                writer.flush();
+                LOG.info("### assignment iteration={}: relative gap={}", iteration, relativeGap);
+                if (relativeGap <= configuration.getRelativeGap()) {
+                    LOG.info("assignment converged after {} iterations", iteration);
+                    break;
+                }
+            }
+            writeShares(writer);
+        } finally {
+            writer.close();
+        }
+        LOG.info("finished assignment in {}, relative gap={}", stopwatch, relativeGap);
+
+        final Simulator simulator = createSimulator();
+        simulator.runToCompletion();
+        return simulator;
+    }
+
+    public double getRelativeGap() {
+        return relativeGap;
+    }
+
+    /**
+     * @return the route shares keyed by service provider label and decision point road id
+     */
+    public Map<String, RouteShares> getRouteShares() {
+        return routeShares;
+    }
+
+    /**
+     * Runs all replications with the current route shares and updates the shares.
+     *
+     * @return the total travel time averaged over the replications
+     */
+    private double iterate(int iteration) {
+        final int replications = configuration.getReplications();
+        final List<Simulator> simulators = new ArrayList<>(replications);
+        final List<TravelTimeProfiles> profiles = new ArrayList<>(replications);
+        final FileOutputSwitch fileOutput = new FileOutputSwitch(inputData);
+        try {
+            // the initialization modifies global state, so the simulators are created one after the other
+            for (int replication = 0; replication < replications; replication++) {
+                final Simulator simulator = createSimulator();
+                final TravelTimeProfiles profile = new TravelTimeProfiles(simulator.getRoadNetwork(),
+                        configuration.getDepartureInterval(), intervalCount, configuration.getSampleInterval(),
+                        GRID_LENGTH);
+                simulator.getSimulationRunnable().addUpdateStatusCallback(profile);
+                simulators.add(simulator);
+                profiles.add(profile);
+            }
+        } finally {
+            fileOutput.restore();
+        }
+
+        runInParallel(simulators, iteration);
+
+        double totalTravelTime = 0;
+        for (int replication = 0; replication < replications; replication++) {
+            totalTravelTime += simulators.get(replication).getRoadNetwork().totalVehicleTravelTime();
+            if (replication > 0) {
+                profiles.get(0).add(profiles.get(replication));
+            }
+        }
+        update(simulators.get(0), profiles.get(0), iteration);
+        return totalTravelTime / replications;
+    }
+
+    private void runInParallel(List<Simulator> simulators, int iteration) {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(configuration.getThreads(),
+                simulators.size()));
+        try {
+            final List<Future<?>> futures = new ArrayList<>(simulators.size());
+            for (int replication = 0; replication < simulators.size(); replication++) {
+                final Simulator simulator = simulators.get(replication);
+                final long runSeed = seed + (long) iteration * simulators.size() + replication;
+                futures.add(executor.submit(() -> {
+                    // reproducible random numbers for each replication independent of the thread scheduling
+                    MyRandom.initializeForThread(runSeed);
+                    try {
+                        simulator.runToCompletion();
+                    } finally {
+                        MyRandom.clearForThread();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("traffic assignment interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("simulation run of traffic assignment failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Simulator createSimulator() {
+        final Simulator simulator = new Simulator(inputData, openDriveNetwork);
+        simulator.initialize();
+        for (ServiceProvider serviceProvider : simulator.getServiceProviders()) {
+            for (DecisionPoint decisionPoint : serviceProvider.getDecisionPoints()) {
+                final String key = key(serviceProvider, decisionPoint);
+                RouteShares shares = routeShares.get(key);
+                if (shares == null) {
+                    shares = RouteShares.uniform(configuration.getDepartureInterval(), intervalCount,
+                            Iterables.size(decisionPoint));
+                    routeShares.put(key, shares);
+                }
+                decisionPoint.setRouteShares(shares);
+            }
+        }
+        return simulator;
+    }
+
+    private void update(Simulator simulator, TravelTimeProfiles profiles, int iteration) {
+        double experienced = 0;
+        double shortest = 0;
+        for (ServiceProvider serviceProvider : simulator.getServiceProviders()) {
+            for (DecisionPoint decisionPoint : serviceProvider.getDecisionPoints()) {
+                final String key = key(serviceProvider, decisionPoint);
+                final RouteShares shares = routeShares.get(key);
+                final double[][] travelTimes = routeTravelTimes(decisionPoint, shares, profiles);
+                for (int interval = 0; interval < intervalCount; interval++) {
+                    final double[] times = travelTimes[interval];
+                    shortest += times[indexOfMinimum(times)];
+                    for (int alternative = 0; alternative < times.length; alternative++) {
+                        experienced += shares.getShare(interval, alternative) * times[alternative];
+                    }
+                }
+                routeShares.put(key, update(shares, travelTimes, configuration.getMethod(), iteration));
+            }
+        }
+        relativeGap = shortest > 0 ? experienced / shortest - 1 : 0;
+    }
+
+    /**
+     * Returns the travel times of the route alternatives for a departure in the middle of each interval.
+     */
+    private static double[][] routeTravelTimes(DecisionPoint decisionPoint, RouteShares shares,
+            TravelTimeProfiles profiles) {
+        final double[][] travelTimes = new double[shares.intervalCount()][shares.alternativeCount()];
+        for (int interval = 0; interval < shares.intervalCount(); interval++) {
+            final double departureTime = (interval + 0.5) * shares.getDepartureInterval();
+            int alternative = 0;
+            for (RouteAlternative routeAlternative : decisionPoint) {
+                final Route route = routeAlternative.getRoute();
+                travelTimes[interval][alternative++] = profiles.travelTime(route, departureTime);
+            }
+        }
+        return travelTimes;
+    }
+
+    /**
+     * Moves the route shares towards the fastest alternative of each interval.
+     *
+     * @param shares      the current shares
+     * @param travelTimes the route travel times indexed by interval and alternative
+     * @param method      msa: averages the shares with the all-or-nothing assignment with weight 1/(iteration+1); gap:
+     *                    shifts the share of each slower alternative in proportion to its relative travel time excess
+     *                    with step size 1/iteration
+     * @param iteration   the iteration, starting with 1
+     * @return the new shares
+     */
+    static RouteShares update(RouteShares shares, double[][] travelTimes, TrafficAssignmentMethodEnum method,
+            int iteration) {
+        Preconditions.checkArgument(iteration > 0, "iteration must be > 0");
+        final double[][] newShares = shares.toArray();
+        for (int interval = 0; interval < newShares.length; interval++) {
+            final double[] times = travelTimes[interval];
+            final double[] row = newShares[interval];
+            final int best = indexOfMinimum(times);
+            if (method == TrafficAssignmentMethodEnum.MSA) {
+                final double step = 1.0 / (iteration + 1);
+                for (int alternative = 0; alternative < row.length; alternative++) {
+                    row[alternative] = (1 - step) * row[alternative] + (alternative == best ? step : 0);
+                }
+            } else {
+                final double step = 1.0 / iteration;
+                double shifted = 0;
+                for (int alternative = 0; alternative < row.length; alternative++) {
+                    if (alternative != best && times[alternative] > 0) {
+                        final double shift = step * row[alternative] * (times[alternative] - times[best])
+                                / times[alternative];
+                        row[alternative] -= shift;
+                        shifted += shift;
+                    }
+                }
+                row[best] += shifted;
+            }
+        }
+        return new RouteShares(shares.getDepartureInterval(), newShares);
+    }
+
+    private static int indexOfMinimum(double[] values) {
+        int index = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] < values[index]) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    private static String key(ServiceProvider serviceProvider, DecisionPoint decisionPoint) {
+        return serviceProvider.getLabel() + "/" + decisionPoint.getRoadId();
+    }
+
+    private void writeShares(PrintWriter writer) {
+        writer.println("# decision point, departure time (s), route shares");
+        for (Map.Entry<String, RouteShares> entry : routeShares.entrySet()) {
+            final RouteShares shares = entry.getValue();
+            for (int interval = 0; interval < shares.intervalCount(); interval++) {
+                final StringBuilder sb = new StringBuilder();
+                sb.append(entry.getKey()).append(", ").append(interval * shares.getDepartureInterval());
+                for (int alternative = 0; alternative < shares.alternativeCount(); alternative++) {
+                    sb.append(", ").append(String.format("%.4f", shares.getShare(interval, alternative)));
+                }
+                writer.println(sb.toString());
+            }
+        }
+    }
+
+    /**
+     * Disables the file output of the scenario for the iteration runs and restores the configuration afterwards.
+     */
+    private static final class FileOutputSwitch {
+
+        private final Movsim inputData;
+
+        private final OutputConfiguration outputConfiguration;
+
+        private final boolean writeFundamentalDiagrams;
+
+        private final List<Boolean> logging = new ArrayList<>();
+
+        FileOutputSwitch(Movsim inputData) {
+            this.inputData = inputData;
+            outputConfiguration = inputData.getScenario().getOutputConfiguration();
+            inputData.getScenario().setOutputConfiguration(null);
+            writeFundamentalDiagrams = inputData.isSetVehiclePrototypes()
+                    && inputData.getVehiclePrototypes().isWriteFundDiagrams();
+            if (inputData.isSetVehiclePrototypes()) {
+                inputData.getVehiclePrototypes().setWriteFundDiagrams(false);
+            }
+            for (ServiceProviderType serviceProvider : inputData.getServiceProviders().getServiceProvider()) {
+                logging.add(serviceProvider.isLogging());
+                serviceProvider.setLogging(false);
+            }
+            for (Road road : inputData.getScenario().getSimulation().getRoad()) {
+                if (road.isSetTrafficSource()) {
+                    logging.add(road.getTrafficSource().isLogging());
+                    road.getTrafficSource().setLogging(false);
+                }
+                if (road.isSetTrafficSink()) {
+                    logging.add(road.getTrafficSink().isLogging());
+                    road.getTrafficSink().setLogging(false);
+                }
+                if (road.isSetSimpleRamp()) {
+                    logging.add(road.getSimpleRamp().isLogging());
+                    road.getSimpleRamp().setLogging(false);
+                }
+                if (road.isSetDetectors()) {
+                    logging.add(road.getDetectors().isLogging());
+                    road.getDetectors().setLogging(false);
+                    logging.add(road.getDetectors().isLoggingLanes());
+                    road.getDetectors().setLoggingLanes(false);
+                }
+            }
+        }
+
+        void restore() {
+            inputData.getScenario().setOutputConfiguration(outputConfiguration);
+            if (inputData.isSetVehiclePrototypes()) {
+                inputData.getVehiclePrototypes().setWriteFundDiagrams(writeFundamentalDiagrams);
+            }
+            int i = 0;
+            for (ServiceProviderType serviceProvider : inputData.getServiceProviders().getServiceProvider()) {
+                serviceProvider.setLogging(logging.get(i++));
+            }
+            for (Road road : inputData.getScenario().getSimulation().getRoad()) {
+                if (road.isSetTrafficSource()) {
+                    road.getTrafficSource().setLogging(logging.get(i++));
+                }
+                if (road.isSetTrafficSink()) {
+                    road.getTrafficSink().setLogging(logging.get(i++));
+                }
+                if (road.isSetSimpleRamp()) {
+                    road.getSimpleRamp().setLogging(logging.get(i++));
+                }
+                if (road.isSetDetectors()) {
+                    road.getDetectors().setLogging(logging.get(i++));
+                    road.getDetectors().setLoggingLanes(logging.get(i++));
+                }
+            }
+        }
+    }
+}
@@ -24,15 +24,30 @@ import org.movsim.simulator.roadnetwork.controller.SpeedLimit;
 import org.movsim.simulator.roadnetwork.controller.TrafficLight;
 import org.movsim.simulator.vehicles.Vehicle;
 import org.movsim.xml.InputLoader;
+import org.movsim.xml.InputLoader.XmlInput;
+import org.movsim.xml.XmlRecordReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 public class OpenDriveHandler {
     private static final Logger LOG = LoggerFactory.getLogger(OpenDriveHandler.class);
 
+    /**
+     * Minimum number of roads for creating the road mappings concurrently.
+     */
+    static final int PARALLEL_THRESHOLD = 64;
+
+    /**
+     * Number of streamed roads whose road segments are created together.
+     */
+    private static final int BATCH_SIZE = 1024;
+
     /**
      * Mapping of signal-ids of single trafficlights to controller.
      */
@@ -44,64 +59,145 @@ public class OpenDriveHandler {
     private final Set<String> uniqueTrafficLightIdsInRoads = new HashSet<>();
 
     /**
-     * Reads an OpenDrive format file, creating a road network.
+     * Reads an OpenDrive format file, creating a road network. The file is streamed: the controllers, roads and junctions
+     * are unmarshalled and processed one by one, only the links of the roads are kept for joining them at the end. So the
+     * memory does not grow with the geometry and road objects of very large networks.
      *
      * @return true if the road network file exists and was successfully parsed, false otherwise.
      */
     public static boolean loadRoadNetwork(RoadNetwork roadNetwork, File file) {
-        OpenDRIVE openDriveNetwork = InputLoader.unmarshallOpenDriveNetwork(file);
+        Preconditions.checkArgument(roadNetwork.size() == 0, "parse controllers first");
+        InputLoader.validate(file, XmlInput.XODR_ROADNETWORK);
+        final OpenDriveHandler openDriveHandler = new OpenDriveHandler();
+        // the controllers follow the roads in the document but are referenced by the traffic lights of the roads
+        forEachElement(file, Controller.class, "controller", openDriveHandler::addController);
+        LOG.info("registered {} traffic light signals in road network.", openDriveHandler.signalIdsToController.size());
+        final List<Road> roads = new ArrayList<>();
+        final List<Road> batch = new ArrayList<>(BATCH_SIZE);
+        forEachElement(file, Road.class, "road", road -> {
+            batch.add(road);
+            if (batch.size() == BATCH_SIZE) {
+                openDriveHandler.createRoadSegments(batch, roadNetwork);
+                retainLinks(batch, roads);
+            }
+        });
+        openDriveHandler.createRoadSegments(batch, roadNetwork);
+        retainLinks(batch, roads);
+        LOG.info("created {} roadSegments.", roadNetwork.size());
+        final List<Junction> junctions = new ArrayList<>();
+        forEachElement(file, Junction.class, "junction", junctions::add);
+        join(roads, junctions, roadNetwork);
+        return true;
+    }
+
+    public static boolean loadRoadNetwork(RoadNetwork roadNetwork, OpenDRIVE openDriveNetwork) {
         OpenDriveHandler openDriveHandlerJaxb = new OpenDriveHandler();
         return openDriveHandlerJaxb.create(openDriveNetwork, roadNetwork);
     }
 
     private boolean create(OpenDRIVE openDriveNetwork, RoadNetwork roadNetwork) {
-        createControllerMapping(openDriveNetwork, roadNetwork);
-        createRoadSegments(openDriveNetwork, roadNetwork);
-        joinRoads(openDriveNetwork, roadNetwork);
-        handleJunctions(openDriveNetwork, roadNetwork);
+        Preconditions.checkArgument(roadNetwork.size() == 0, "parse controllers first");
+        for (Controller controller : openDriveNetwork.getController()) {
+            addController(controller);
+        }
+        LOG.info("registered {} traffic light signals in road network.", signalIdsToController.size());
+        createRoadSegments(openDriveNetwork.getRoad(), roadNetwork);
+        LOG.info("created {} roadSegments.", roadNetwork.size());
+        join(openDriveNetwork.getRoad(), openDriveNetwork.getJunction(), roadNetwork);
+        return true;
+    }
+
+    private static void join(List<Road> roads, List<Junction> junctions, RoadNetwork roadNetwork) {
+        joinRoads(roads, roadNetwork);
+        handleJunctions(roads, junctions, roadNetwork);
         addDefaultSinksToUnconnectedRoad(roadNetwork);
         checkIfAllLanesAreConnected(roadNetwork);
-        return true;
     }
 
-    private void createControllerMapping(OpenDRIVE openDriveNetwork, RoadNetwork roadNetwork) {
-        Preconditions.checkArgument(roadNetwork.size() == 0, "parse controllers first");
-        for (Controller controller : openDriveNetwork.getController()) {
-            for (Control control : controller.getControl()) {
-                if (signalIdsToController.put(control.getSignalId(), controller) != null) {
-                    throw new IllegalArgumentException("trafficlight id=" + control.getSignalId()
-                            + " is referenced more than once in xodr <controller> definitions.");
-                }
+    private static <T> void forEachElement(File file, Class<T> elementClass, String element, Consumer<T> consumer) {
+        try (XmlRecordReader<T> elements = new XmlRecordReader<>(file, OpenDRIVE.class, elementClass, element)) {
+            // e.g. a <junction> contains <controller> elements as well
+            elements.restrictToChildren();
+            while (elements.hasNext()) {
+                consumer.accept(elements.next());
             }
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot read xodr file=" + file, e);
         }
-        LOG.info("registered {} traffic light signals in road network.", signalIdsToController.size());
     }
 
-    private void createRoadSegments(OpenDRIVE openDriveNetwork, RoadNetwork roadNetwork) {
-        for (Road road : openDriveNetwork.getRoad()) {
-            boolean hasPeer = hasPeer(road);
-            if (hasPeer) {
-                LOG.info("road={} consists of peers", road.getId());
+    /**
+     * Moves the roads of the batch to the retained roads.
+     */
+    private static void retainLinks(List<Road> batch, List<Road> roads) {
+        for (Road road : batch) {
+            roads.add(retainLinks(road));
+        }
+        batch.clear();
+    }
+
+    /**
+     * Releases everything but the links and lanes of a road whose road segments have been created.
+     */
+    private static Road retainLinks(Road road) {
+        road.setPlanView(null);
+        road.setElevationProfile(null);
+        road.setLateralProfile(null);
+        road.setObjects(null);
+        road.setSignals(null);
+        road.setSurface(null);
+        road.getType().clear();
+        road.getUserData().clear();
+        road.getInclude().clear();
+        return road;
+    }
+
+    private void addController(Controller controller) {
+        for (Control control : controller.getControl()) {
+            if (signalIdsToController.put(control.getSignalId(), controller) != null) {
+                throw new IllegalArgumentException("trafficlight id=" + control.getSignalId()
+                        + " is referenced more than once in xodr <controller> definitions.");
             }
-            final RoadMapping roadMapping = createRoadMappings(road);
-            for (LaneSectionType laneType : Lanes.LaneSectionType.values()) {
-                if (hasLaneSectionType(road, laneType)) {
-                    RoadSegment roadSegment = createRoadSegment(laneType, road, hasPeer, roadMapping);
-                    if (roadSegment == null) {
-                        throw new IllegalStateException("could not create roadSegment for road=" + road.getId());
-                    }
-                    roadNetwork.add(roadSegment);
-                    LOG.info("created roadSegment={} with laneCount={}", roadSegment.userId(), roadSegment.laneCount());
+        }
+    }
+
+    /**
+     * Creates the road segments of the roads. The road mappings are independent per road and created concurrently, the road
+     * segments are created and added in document order, so their ids do not depend on the scheduling.
+     */
+    private void createRoadSegments(List<Road> roads, RoadNetwork roadNetwork) {
+        final RoadMapping[] roadMappings = new RoadMapping[roads.size()];
+        IntStream indices = IntStream.range(0, roads.size());
+        if (roads.size() >= PARALLEL_THRESHOLD) {
+            indices = indices.parallel();
+        }
+        indices.forEach(i -> roadMappings[i] = createRoadMappings(roads.get(i)));
+        for (int i = 0, size = roads.size(); i < size; i++) {
+            createRoadSegments(roads.get(i), roadMappings[i], roadNetwork);
+        }
+    }
+
+    private void createRoadSegments(Road road, RoadMapping roadMapping, RoadNetwork roadNetwork) {
+        boolean hasPeer = hasPeer(road);
+        if (hasPeer) {
+            LOG.info("road={} consists of peers", road.getId());
+        }
+        for (LaneSectionType laneType : Lanes.LaneSectionType.values()) {
+            if (hasLaneSectionType(road, laneType)) {
+                RoadSegment roadSegment = createRoadSegment(laneType, road, hasPeer, roadMapping);
+                if (roadSegment == null) {
+                    throw new IllegalStateException("could not create roadSegment for road=" + road.getId());
                 }
-            }
-            if (hasPeer) {
-                RoadSegment roadSegmentRight = getRoadSegment(roadNetwork, road.getId(), LaneSectionType.RIGHT);
-                RoadSegment roadSegmentLeft = getRoadSegment(roadNetwork, road.getId(), LaneSectionType.LEFT);
-                roadSegmentLeft.setPeerRoadSegment(roadSegmentRight);
-                roadSegmentRight.setPeerRoadSegment(roadSegmentLeft);
+                roadNetwork.add(roadSegment);
+                LOG.info("created roadSegment={} with laneCount={}", roadSegment.userId(), roadSegment.laneCount());
             }
         }
-        LOG.info("created {} roadSegments.", roadNetwork.size());
+        if (hasPeer) {
+            RoadSegment roadSegmentRight = getRoadSegment(roadNetwork, road.getId(), LaneSectionType.RIGHT);
+            RoadSegment roadSegmentLeft = getRoadSegment(roadNetwork, road.getId(), LaneSectionType.LEFT);
+            roadSegmentLeft.setPeerRoadSegment(roadSegmentRight);
+            roadSegmentRight.setPeerRoadSegment(roadSegmentLeft);
+        }
     }
 
     private static boolean hasPeer(Road road) {
@@ -283,6 +379,7 @@ public class OpenDriveHandler {
     }
 
     private static RoadMapping createRoadMappings(Road road) {
+        Preconditions.checkArgument(road.isSetLanes(), "road=" + road.getId() + " defined without lanes.");
         Preconditions.checkArgument(road.getLanes().getLaneSection().size() == 1,
                 "cannot handle more than one laneSection in roadId=" + road.getId());
         LaneSection firstLaneSection = road.getLanes().getLaneSection().get(0);
@@ -411,12 +508,12 @@ public class OpenDriveHandler {
     /**
      * Iterates through all the roads joining them up according to the links
      *
-     * @param openDriveNetwork
+     * @param roads
      * @param roadNetwork
      */
-    private static void joinRoads(OpenDRIVE openDriveNetwork, RoadNetwork roadNetwork) {
+    private static void joinRoads(List<Road> roads, RoadNetwork roadNetwork) {
         Preconditions.checkArgument(roadNetwork.size() > 0, "no roads defined in roadNetwork");
-        for (Road road : openDriveNetwork.getRoad()) {
+        for (Road road : roads) {
             if (!road.isSetLink()) {
                 LOG.info("road={} without links to other roads", road.getId());
                 // addDefaultSinks(roadNetwork, road);
@@ -503,12 +600,12 @@ public class OpenDriveHandler {
                 .equals(RoadLinkElementType.ROAD.xodrIdentifier());
     }
 
-    private static void handleJunctions(OpenDRIVE openDriveNetwork, RoadNetwork roadNetwork) {
-        Map<String, Road> roadById = createLookupMap(openDriveNetwork.getRoad());
-        for (Junction junction : openDriveNetwork.getJunction()) {
+    private static void handleJunctions(List<Road> roads, List<Junction> junctions, RoadNetwork roadNetwork) {
+        Map<String, Road> roadById = createLookupMap(roads);
+        for (Junction junction : junctions) {
             for (Connection connection : junction.getConnection()) {
+                Road road = roadById.get(connection.getConnectingRoad());
                 for (LaneLink laneLink : connection.getLaneLink()) {
-                    Road road = roadById.get(connection.getConnectingRoad());
                     RoadSegment incomingRoadSegment = getRoadSegment(roadNetwork, connection.getIncomingRoad(),
                             laneLink.getFrom());
                     RoadSegment connectingRoadSegment = getRoadSegment(roadNetwork, connection.getConnectingRoad(),
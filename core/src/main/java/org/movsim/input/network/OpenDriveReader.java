@@ -1,5 +1,6 @@
 package org.movsim.input.network;
 
+import org.movsim.network.autogen.opendrive.OpenDRIVE;
 import org.movsim.simulator.roadnetwork.RoadNetwork;
 
 import java.io.File;
@@ -14,4 +15,11 @@ public final class OpenDriveReader {
         return OpenDriveHandler.loadRoadNetwork(roadNetwork, xodrFile);
     }
 
+    /**
+     * Creates the road network from an already unmarshalled OpenDrive network, which is not modified and can be reused.
+     */
+    public static boolean loadRoadNetwork(RoadNetwork roadNetwork, OpenDRIVE openDriveNetwork) {
+        return OpenDriveHandler.loadRoadNetwork(roadNetwork, openDriveNetwork);
+    }
+
 }
@@ -30,15 +30,12 @@ import org.movsim.autogen.*;
 import org.movsim.output.floatingcars.FloatingCars;
 import org.movsim.output.route.*;
 import org.movsim.simulator.SimulationTimeStep;
-import org.movsim.simulator.observer.ServiceProvider;
-import org.movsim.simulator.observer.ServiceProviders;
 import org.movsim.simulator.roadnetwork.RoadNetwork;
 import org.movsim.simulator.roadnetwork.routing.Route;
 import org.movsim.simulator.roadnetwork.routing.Routing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -52,27 +49,25 @@ public class SimulationOutput implements SimulationTimeStep {
 
     private final List<SpatioTemporal> spatioTemporals = new ArrayList<>();
 
-    private final Map<Route, FileTrajectories> filesTrajectories = new HashMap<>();
+    /** outputs by route name, routes with the same road segments are equal */
+    private final Map<String, FileTrajectories> filesTrajectories = new HashMap<>();
 
-    private final Map<Route, ConsumptionOnRoute> consumptionOnRoutes = new HashMap<>();
+    private final Map<String, ConsumptionOnRoute> consumptionOnRoutes = new HashMap<>();
 
-    private final Map<Route, TravelTimeOnRoute> travelTimeOnRoutes = new HashMap<>();
+    private final Map<String, TravelTimeOnRoute> travelTimeOnRoutes = new HashMap<>();
 
-    private final Map<Route, IndividualTravelTimesOnRoute> individualTravelTimeOnRoutes = new HashMap<>();
-
-    private final ServiceProviders serviceProviders;
+    private final Map<String, IndividualTravelTimesOnRoute> individualTravelTimeOnRoutes = new HashMap<>();
 
     private final RoadNetwork roadNetwork;
 
     private final Routing routing;
 
     public SimulationOutput(double simulationTimestep, boolean writeOutput, OutputConfiguration outputConfiguration,
-            RoadNetwork roadNetwork, Routing routing, @Nullable ServiceProviders serviceProviders) {
+            RoadNetwork roadNetwork, Routing routing) {
 
         Preconditions.checkNotNull(outputConfiguration);
         this.roadNetwork = Preconditions.checkNotNull(roadNetwork);
         this.routing = Preconditions.checkNotNull(routing);
-        this.serviceProviders = serviceProviders;
 
         initFloatingCars(writeOutput, outputConfiguration);
         initConsumption(writeOutput, simulationTimestep, outputConfiguration);
@@ -93,7 +88,7 @@ public class SimulationOutput implements SimulationTimeStep {
             final Route route = getCheckedRoute(fuelRouteInput.getRoute());
             final ConsumptionOnRoute consumption = new ConsumptionOnRoute(simulationTimestep, fuelRouteInput,
                     roadNetwork, route, writeOutput);
-            consumptionOnRoutes.put(route, consumption);
+            consumptionOnRoutes.put(route.getName(), consumption);
         }
     }
 
@@ -103,7 +98,7 @@ public class SimulationOutput implements SimulationTimeStep {
             final Route route = getCheckedRoute(travelTimeInput.getRoute());
             final TravelTimeOnRoute travelTime = new TravelTimeOnRoute(simulationTimestep, travelTimeInput, roadNetwork,
                     route, writeOutput);
-            travelTimeOnRoutes.put(route, travelTime);
+            travelTimeOnRoutes.put(route.getName(), travelTime);
         }
     }
 
@@ -112,7 +107,7 @@ public class SimulationOutput implements SimulationTimeStep {
             Route route = getCheckedRoute(input.getRoute());
             IndividualTravelTimesOnRoute travelTimes = new IndividualTravelTimesOnRoute(roadNetwork, route,
                     writeOutput);
-            individualTravelTimeOnRoutes.put(route, travelTimes);
+            individualTravelTimeOnRoutes.put(route.getName(), travelTimes);
         }
     }
 
@@ -120,11 +115,11 @@ public class SimulationOutput implements SimulationTimeStep {
         if (writeOutput) {
             for (final Trajectories traj : outputConfiguration.getTrajectories()) {
                 final Route route = getCheckedRoute(traj.getRoute());
-                if (filesTrajectories.containsKey(route)) {
+                if (filesTrajectories.containsKey(route.getName())) {
                     LOG.warn("trajectory output for route \"{}\" already defined!", route.getName());
                     continue;
                 }
-                filesTrajectories.put(route, new FileTrajectories(traj, route));
+                filesTrajectories.put(route.getName(), new FileTrajectories(traj, route));
             }
         }
     }
@@ -173,12 +168,6 @@ public class SimulationOutput implements SimulationTimeStep {
             consumption.timeStep(dt, simulationTime, iterationCount);
         }
 
-        if (serviceProviders != null) {
-            for (final ServiceProvider serviceProvider : serviceProviders) {
-                serviceProvider.timeStep(dt, simulationTime, iterationCount);
-            }
-        }
-
     }
 
 }
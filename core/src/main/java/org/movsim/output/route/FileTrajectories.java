@@ -101,8 +101,9 @@ public class FileTrajectories extends FileOutputBase implements SimulationTimeSt
     }
 
     private void writeTrajectories(String formattedTime) {
-        double positionOnRoute = 0.0;
-        for (final RoadSegment roadSegment : route) {
+        for (int index = 0, size = route.size(); index < size; index++) {
+            final RoadSegment roadSegment = route.get(index);
+            final double positionOnRoute = route.getStartPosition(index);
             for (LaneSegment laneSegment : roadSegment.laneSegments()) {
                 for (final Vehicle vehicle : laneSegment) {
                     if (vehicle.type() == Vehicle.Type.OBSTACLE) {
@@ -117,7 +118,6 @@ public class FileTrajectories extends FileOutputBase implements SimulationTimeSt
                     }
                 }
             }
-            positionOnRoute += roadSegment.roadLength();
         }
     }
 
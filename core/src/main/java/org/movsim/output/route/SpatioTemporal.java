@@ -26,11 +26,10 @@
 package org.movsim.output.route;
 
 import org.movsim.simulator.roadnetwork.RoadNetwork;
-import org.movsim.simulator.roadnetwork.RoadSegment;
 import org.movsim.simulator.roadnetwork.routing.Route;
 import org.movsim.simulator.vehicles.Vehicle;
 import org.movsim.simulator.vehicles.Vehicle.Type;
-import org.movsim.utilities.LinearInterpolatedFunction;
+import org.movsim.utilities.PiecewiseLinearFunction;
 
 import java.util.Comparator;
 import java.util.TreeSet;
@@ -92,8 +91,9 @@ public class SpatioTemporal extends OutputOnRouteBase {
             ++j;
         }
 
-        LinearInterpolatedFunction speeds = new LinearInterpolatedFunction(xMicro, vMicro);
-        LinearInterpolatedFunction accelerations = new LinearInterpolatedFunction(xMicro, aMicro);
+        // the grid positions increase, so the cursors sweep the data points once
+        final PiecewiseLinearFunction.Cursor speeds = new PiecewiseLinearFunction(xMicro, vMicro).cursor();
+        final PiecewiseLinearFunction.Cursor accelerations = new PiecewiseLinearFunction(xMicro, aMicro).cursor();
 
         for (int i = 0; i < macroSpeed.length; ++i) {
             final double x = i * dxOutput;
@@ -113,16 +113,15 @@ public class SpatioTemporal extends OutputOnRouteBase {
             }
         });
 
-        double positionOnRoute = 0;
-        for (final RoadSegment roadSegment : route) {
-            for (Vehicle veh : roadSegment) {
+        for (int index = 0, size = route.size(); index < size; index++) {
+            final double positionOnRoute = route.getStartPosition(index);
+            for (Vehicle veh : route.get(index)) {
                 if (veh.type() == Type.OBSTACLE) {
                     continue;
                 }
                 double position = positionOnRoute + veh.getFrontPosition();
                 dataPoints.add(new SpatialTemporal(position, veh.getSpeed(), veh.getLength(), veh.getAcc()));
             }
-            positionOnRoute += roadSegment.roadLength();
         }
         return dataPoints;
     }
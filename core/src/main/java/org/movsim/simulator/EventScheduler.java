@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ * 
+ * This file is part of
+ * 
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ * 
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ * 
+ * -----------------------------------------------------------------------------------------
+ */
+
+package org.movsim.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Priority queue of events keyed by simulation time. Instead of polling in every timestep whether an action is due, the
+ * action is scheduled for the time it is due and fired with the first timestep reaching this time.
+ * </p>
+ * <p>
+ * Events are fired in the order of their times, events with the same time in the order they have been scheduled. Events
+ * scheduled while firing are not fired before the next call of {@link #fireDueEvents(double)}, so an event that
+ * reschedules itself with a vanishing interval is fired once per timestep.
+ * </p>
+ */
+public final class EventScheduler {
+
+    /**
+     * Tolerance for comparing event times with the simulation time which accumulates rounding errors of the timestep.
+     */
+    static final double TIME_TOLERANCE = 1e-6;
+
+    /**
+     * Action to be performed at a given simulation time.
+     */
+    public interface Event {
+
+        /**
+         * Performs the action of the event.
+         *
+         * @param simulationTime the current simulation time, seconds, not earlier than the scheduled time
+         */
+        void fire(double simulationTime);
+    }
+
+    private static final class ScheduledEvent implements Comparable<ScheduledEvent> {
+        final double time;
+        final long sequence;
+        final Event event;
+
+        ScheduledEvent(double time, long sequence, Event event) {
+            this.time = time;
+            this.sequence = sequence;
+            this.event = event;
+        }
+
+        @Override
+        public int compareTo(ScheduledEvent other) {
+            final int compare = Double.compare(time, other.time);
+            return compare != 0 ? compare : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final PriorityQueue<ScheduledEvent> queue = new PriorityQueue<>();
+
+    /** due events scheduled while firing, they are kept for the next timestep */
+    private final List<ScheduledEvent> deferred = new ArrayList<>();
+
+    private long sequence;
+
+    private double currentTime;
+
+    private long clearCount;
+
+    /**
+     * Schedules an event.
+     *
+     * @param time
+     *            the simulation time when the event is due, seconds. Events scheduled in the past are fired with the next
+     *            timestep.
+     * @param event
+     */
+    public void schedule(double time, Event event) {
+        Preconditions.checkArgument(!Double.isNaN(time), "time must be a number");
+        queue.add(new ScheduledEvent(time, sequence++, Preconditions.checkNotNull(event)));
+    }
+
+    /**
+     * Schedules an event to be fired with the next timestep.
+     *
+     * @param event
+     */
+    public void scheduleNext(Event event) {
+        schedule(currentTime, event);
+    }
+
+    /**
+     * Fires all events which are due at the given simulation time.
+     *
+     * @param simulationTime
+     *            current simulation time, seconds
+     */
+    public void fireDueEvents(double simulationTime) {
+        currentTime = simulationTime;
+        final long scheduledBefore = sequence;
+        while (!queue.isEmpty() && queue.peek().time <= simulationTime + TIME_TOLERANCE) {
+            final ScheduledEvent scheduledEvent = queue.poll();
+            if (scheduledEvent.sequence < scheduledBefore) {
+                scheduledEvent.event.fire(simulationTime);
+            } else {
+                deferred.add(scheduledEvent);
+            }
+        }
+        if (!deferred.isEmpty()) {
+            queue.addAll(deferred);
+            deferred.clear();
+        }
+    }
+
+    /**
+     * @return the simulation time of the last call of {@link #fireDueEvents(double)}
+     */
+    public double currentTime() {
+        return currentTime;
+    }
+
+    /**
+     * @return the time of the next event or {@link Double#POSITIVE_INFINITY} if no event is scheduled
+     */
+    public double nextEventTime() {
+        return queue.isEmpty() ? Double.POSITIVE_INFINITY : queue.peek().time;
+    }
+
+    /**
+     * @return the number of scheduled events
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of calls of {@link #clear()}, owners of periodic events compare it with the value at scheduling
+     *         time to schedule their events again after a clear
+     */
+    public long clearCount() {
+        return clearCount;
+    }
+
+    /**
+     * Removes all scheduled events.
+     */
+    public void clear() {
+        queue.clear();
+        ++clearCount;
+    }
+}
@@ -9,16 +9,22 @@ import org.movsim.simulator.roadnetwork.RoadSegment;
 import org.movsim.simulator.vehicles.TestVehicle;
 import org.movsim.simulator.vehicles.TrafficCompositionGenerator;
 import org.movsim.simulator.vehicles.Vehicle;
-import org.movsim.utilities.LinearInterpolatedFunction;
+import org.movsim.utilities.MyRandom;
+import org.movsim.utilities.PiecewiseLinearFunction;
 import org.movsim.utilities.Units;
 import org.movsim.xml.InputLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class InitialConditions {
 
@@ -43,7 +49,13 @@ public class InitialConditions {
     }
 
     public void setInitialConditions(RoadNetwork roadNetwork, TrafficCompositionGenerator defaultComposition) {
-        for (RoadInitialConditionsType roadIC : movsimInitialConditions.getRoadInitialConditions()) {
+        final List<RoadInitialConditionsType> roadICs = movsimInitialConditions.getRoadInitialConditions();
+        final int roadCount = roadICs.size();
+        final RoadSegment[] roadSegments = new RoadSegment[roadCount];
+        final TrafficCompositionGenerator[] trafficCompositions = new TrafficCompositionGenerator[roadCount];
+        final SplittableRandom[] randomStreams = new SplittableRandom[roadCount];
+        for (int i = 0; i < roadCount; i++) {
+            final RoadInitialConditionsType roadIC = roadICs.get(i);
             String roadId = roadIC.getId();
             RoadSegment roadSegment = roadNetwork.findByUserId(roadId);
 
@@ -60,18 +72,34 @@ public class InitialConditions {
 
             alreadyHandled.add(roadId);
 
-            TrafficCompositionGenerator trafficComposition = roadSegment.hasTrafficComposition() ?
+            roadSegments[i] = roadSegment;
+            trafficCompositions[i] = roadSegment.hasTrafficComposition() ?
                     roadSegment.getTrafficComposition() :
                     defaultComposition;
+            if (roadIC.isSetMacroscopicInitialConditions()) {
+                // drawn in input order so that the generated traffic is reproducible with a given seed
+                randomStreams[i] = MyRandom.createStream();
+            }
+        }
 
+        // the vehicle positions of the macroscopic initial conditions are determined concurrently per road segment
+        final List<List<VehiclePlacement>> placements = IntStream.range(0, roadCount).parallel()
+                .mapToObj(i -> roadICs.get(i).isSetMacroscopicInitialConditions() ?
+                        placeVehicles(roadSegments[i], roadICs.get(i).getMacroscopicInitialConditions(),
+                                trafficCompositions[i], randomStreams[i]) :
+                        Collections.<VehiclePlacement>emptyList())
+                .collect(Collectors.toList());
+
+        // vehicles are created sequentially in input order to keep vehicle ids and their random draws deterministic
+        for (int i = 0; i < roadCount; i++) {
+            final RoadInitialConditionsType roadIC = roadICs.get(i);
             if (roadIC.isSetMacroscopicInitialConditions()) {
-                setMacroscopicInitialConditions(roadSegment, roadIC.getMacroscopicInitialConditions(),
-                        trafficComposition);
+                setMacroscopicInitialConditions(roadSegments[i], placements.get(i), trafficCompositions[i]);
             } else if (roadIC.isSetMicroscopicInitialConditions()) {
-                setMicroscopicInitialConditions(roadSegment, roadIC.getMicroscopicInitialConditions(),
-                        trafficComposition);
+                setMicroscopicInitialConditions(roadSegments[i], roadIC.getMicroscopicInitialConditions(),
+                        trafficCompositions[i]);
             } else {
-                LOG.warn("no initial conditions defined for roadSegment={}", roadSegment.userId());
+                LOG.warn("no initial conditions defined for roadSegment={}", roadSegments[i].userId());
             }
         }
     }
@@ -80,16 +108,23 @@ public class InitialConditions {
      * Determine vehicle positions on all relevant lanes while considering minimum gaps to avoid accidents. Gaps are left at the
      * beginning and the end of the road segment on purpose. However, the consistency check is not complete and other segments
      * are not considered.
+     * <p>
+     * Only reads the road segment and draws the vehicle types from the given random stream, so that it can run concurrently
+     * for different road segments.
      *
      * @param roadSegment
      * @param macroInitialConditions
      * @param trafficComposition
+     * @param random
+     * @return the vehicle placements ordered by lane and decreasing position
      */
-    private void setMacroscopicInitialConditions(RoadSegment roadSegment,
-            MacroscopicInitialConditionsType macroInitialConditions, TrafficCompositionGenerator trafficComposition) {
+    private static List<VehiclePlacement> placeVehicles(RoadSegment roadSegment,
+            MacroscopicInitialConditionsType macroInitialConditions, TrafficCompositionGenerator trafficComposition,
+            SplittableRandom random) {
 
         LOG.info("set macro initial conditions: generate vehicles from macro-localDensity ");
         final InitialConditionsMacro icMacro = new InitialConditionsMacro(macroInitialConditions.getMacroCondition());
+        final List<VehiclePlacement> placements = new ArrayList<>();
 
         for (LaneSegment laneSegment : roadSegment.laneSegments()) {
             if (laneSegment.type() != Lanes.Type.TRAFFIC) {
@@ -97,9 +132,11 @@ public class InitialConditions {
                 continue;
             }
 
+            final Vehicle rearVehicle = laneSegment.rearVehicle();
+            double leaderRearPosition = (rearVehicle == null) ? Double.NaN : rearVehicle.getRearPosition();
             double position = roadSegment.roadLength(); // start at end of segment
             while (position > 0) {
-                final TestVehicle testVehicle = trafficComposition.getTestVehicle();
+                final TestVehicle testVehicle = trafficComposition.getTestVehicle(random);
 
                 final double rhoLocal = icMacro.rho(position);
                 double speedInit = icMacro.hasUserDefinedSpeeds() ?
@@ -121,12 +158,11 @@ public class InitialConditions {
                     continue;
                 }
 
-                final Vehicle veh = trafficComposition.createVehicle(testVehicle);
                 final double meanDistanceInLane = 1. / (rhoLocal + MovsimConstants.SMALL_VALUE);
                 // TODO icMacro for ca
                 // final double minimumGap = veh.getLongitudinalModel().isCA() ? veh.getLength() : veh.getLength() +
                 // veh.getLongitudinalModel().getS0();
-                final double minimumGap = veh.getLength() + veh.getLongitudinalModel().getMinimumGap();
+                final double minimumGap = testVehicle.length() + testVehicle.getLongitudinalModel().getMinimumGap();
                 final double posDecrement = Math.max(meanDistanceInLane, minimumGap);
                 position -= posDecrement;
 
@@ -134,10 +170,9 @@ public class InitialConditions {
                     LOG.debug("leave minimum gap at origin of road segment and start with next lane, pos={}", position);
                     break;
                 }
-                final Vehicle leader = laneSegment.rearVehicle();
-                final double gapToLeader = (leader == null) ?
+                final double gapToLeader = Double.isNaN(leaderRearPosition) ?
                         MovsimConstants.GAP_INFINITY :
-                        leader.getRearPosition() - position;
+                        leaderRearPosition - position;
 
                 if (LOG.isDebugEnabled()) {
                     LOG.debug(String.format("meanDistance=%.3f, minimumGap=%.2f, posDecrement=%.3f, gapToLeader=%.3f%n",
@@ -145,12 +180,10 @@ public class InitialConditions {
                 }
 
                 if (gapToLeader > 0) {
-                    veh.setFrontPosition(position);
-                    veh.setSpeed(speedInit);
-                    veh.setLane(laneSegment.lane());
                     LOG.debug("add vehicle from macroscopic initial conditions at pos={} with speed={}.", position,
                             speedInit);
-                    roadSegment.addVehicle(veh);
+                    placements.add(new VehiclePlacement(testVehicle, laneSegment.lane(), position, speedInit));
+                    leaderRearPosition = position - testVehicle.length();
                 } else {
                     LOG.debug("cannot add vehicle due to gap constraints at pos={} with speed={}.", position,
                             speedInit);
@@ -158,12 +191,29 @@ public class InitialConditions {
 
             }
         }
+        return placements;
+    }
+
+    private static void setMacroscopicInitialConditions(RoadSegment roadSegment, List<VehiclePlacement> placements,
+            TrafficCompositionGenerator trafficComposition) {
+        final List<Vehicle> vehicles = new ArrayList<>(placements.size());
+        for (final VehiclePlacement placement : placements) {
+            final Vehicle veh = trafficComposition.createVehicle(placement.testVehicle);
+            veh.setFrontPosition(placement.position);
+            veh.setSpeed(placement.speed);
+            veh.setLane(placement.lane);
+            vehicles.add(veh);
+        }
+        roadSegment.addVehicles(vehicles);
+        LOG.info("added {} vehicles from macroscopic initial conditions to roadSegment={}", vehicles.size(),
+                roadSegment.userId());
     }
 
     private void setMicroscopicInitialConditions(RoadSegment roadSegment,
             MicroscopicInitialConditionsType initialMicroConditions, TrafficCompositionGenerator trafficComposition) {
         LOG.debug(("set microscopic initial conditions"));
 
+        final List<Vehicle> vehicles = new ArrayList<>(initialMicroConditions.getVehicleInitialCondition().size());
         int vehicleNumber = 1;
         for (final VehicleInitialConditionType ic : initialMicroConditions.getVehicleInitialCondition()) {
             // TODO counter
@@ -181,7 +231,7 @@ public class InitialConditions {
                                 + " which has a laneCount of " + roadSegment.laneCount());
             }
             veh.setLane(lane);
-            roadSegment.addVehicle(veh);
+            vehicles.add(veh);
             if (LOG.isInfoEnabled()) {
                 LOG.info(String.format("set vehicle with label = %s on lane=%d with front at x=%.2f, speed=%.2f",
                         veh.getLabel(), veh.lane(), veh.getFrontPosition(), veh.getSpeed()));
@@ -192,6 +242,25 @@ public class InitialConditions {
                 }
             }
         }
+        roadSegment.addVehicles(vehicles);
+    }
+
+    /**
+     * Position and speed of a vehicle to be created from the macroscopic initial conditions.
+     */
+    private static final class VehiclePlacement {
+
+        final TestVehicle testVehicle;
+        final int lane;
+        final double position;
+        final double speed;
+
+        VehiclePlacement(TestVehicle testVehicle, int lane, double position, double speed) {
+            this.testVehicle = testVehicle;
+            this.lane = lane;
+            this.position = position;
+            this.speed = speed;
+        }
     }
 
     private static class InitialConditionsMacro {
@@ -199,12 +268,12 @@ public class InitialConditions {
         /**
          * The density profile in 1/m
          */
-        private LinearInterpolatedFunction rhoFct;
+        private PiecewiseLinearFunction rhoFct;
 
         /**
          * the speeds along the road segment in m/s. Only initialized when initial speeds are provided.
          */
-        private LinearInterpolatedFunction speedFct;
+        private PiecewiseLinearFunction speedFct;
 
         /**
          * Instantiates a new initial conditions macro.
@@ -232,9 +301,9 @@ public class InitialConditions {
                 }
             }
 
-            rhoFct = new LinearInterpolatedFunction(positions, densities);
+            rhoFct = new PiecewiseLinearFunction(positions, densities);
             if (useUserDefinedSpeeds(macroConditions)) {
-                speedFct = new LinearInterpolatedFunction(positions, speeds);
+                speedFct = new PiecewiseLinearFunction(positions, speeds);
             }
         }
 
@@ -12,12 +12,15 @@
 package org.movsim.simulator;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDateTime;
@@ -30,11 +33,10 @@ import org.movsim.autogen.TrafficSinkType;
 import org.movsim.autogen.TrafficSourceType;
 import org.movsim.input.ProjectMetaData;
 import org.movsim.input.network.OpenDriveReader;
+import org.movsim.network.autogen.opendrive.OpenDRIVE;
 import org.movsim.output.FileTrafficSinkData;
 import org.movsim.output.FileTrafficSourceData;
 import org.movsim.output.SimulationOutput;
-import org.movsim.scenario.boundary.autogen.BoundaryConditionsType;
-import org.movsim.scenario.vehicle.autogen.MovsimExternalVehicleControl;
 import org.movsim.shutdown.ShutdownHooks;
 import org.movsim.simulator.observer.ServiceProviders;
 import org.movsim.simulator.roadnetwork.RoadNetwork;
@@ -44,9 +46,12 @@ import org.movsim.simulator.roadnetwork.boundaries.AbstractTrafficSource;
 import org.movsim.simulator.roadnetwork.boundaries.InflowTimeSeries;
 import org.movsim.simulator.roadnetwork.boundaries.MicroscopicBoundaryConditions;
 import org.movsim.simulator.roadnetwork.boundaries.MicroscopicBoundaryInputData;
+import org.movsim.simulator.roadnetwork.boundaries.ODDemand;
 import org.movsim.simulator.roadnetwork.boundaries.SimpleRamp;
 import org.movsim.simulator.roadnetwork.boundaries.TrafficSourceMacro;
+import org.movsim.simulator.roadnetwork.boundaries.TrafficSourceMacroEventDriven;
 import org.movsim.simulator.roadnetwork.boundaries.TrafficSourceMicro;
+import org.movsim.simulator.roadnetwork.boundaries.TrafficSourceOD;
 import org.movsim.simulator.roadnetwork.controller.FlowConservingBottleneck;
 import org.movsim.simulator.roadnetwork.controller.LoopDetector;
 import org.movsim.simulator.roadnetwork.controller.RoadObject;
@@ -100,12 +105,31 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
 
     private long timeOffsetMillis;
 
+    private ExternalVehiclesController externalVehicleController;
+
+    /** streams of the microscopic boundary conditions, closed when the simulation is complete */
+    private final List<MicroscopicBoundaryInputData> microBoundaryInputs = new ArrayList<>();
+
+    /** unmarshalled road network shared by several simulator instances, or null for loading the network file */
+    private final OpenDRIVE openDriveNetwork;
+
     /**
      * Constructor.
      *
      * @param inputData
      */
     public Simulator(Movsim inputData) {
+        this(inputData, null);
+    }
+
+    /**
+     * Constructor with an already unmarshalled road network, e.g. for repeated simulation runs.
+     *
+     * @param inputData
+     * @param openDriveNetwork the road network, or null for loading the network file of the scenario
+     */
+    public Simulator(Movsim inputData, @Nullable OpenDRIVE openDriveNetwork) {
+        this.openDriveNetwork = openDriveNetwork;
         this.projectMetaData = ProjectMetaData.getInstance();
         ShutdownHooks.INSTANCE.clear(); // TODO move to better place
         this.movsimInput = Preconditions.checkNotNull(inputData);
@@ -138,7 +162,11 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
 
         Simulation simulationInput = movsimInput.getScenario().getSimulation();
 
-        parseOpenDriveXml(roadNetwork, projectMetaData);
+        if (openDriveNetwork != null) {
+            OpenDriveReader.loadRoadNetwork(roadNetwork, openDriveNetwork);
+        } else {
+            parseOpenDriveXml(roadNetwork, projectMetaData);
+        }
         routing = new Routing(movsimInput.getScenario().getRoutes(), roadNetwork);
 
         if (movsimInput.isSetServiceProviders()) {
@@ -149,6 +177,7 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
                 movsimInput.getConsumption(), routing, serviceProviders);
 
         roadNetwork.setWithCrashExit(simulationInput.isCrashExit());
+        roadNetwork.setParallelLaneChangeDecisions(simulationInput.isParallelLaneChanges());
 
         simulationRunnable.setTimeStep(simulationInput.getTimestep());
 
@@ -168,7 +197,7 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
 
         regulators = new Regulators(movsimInput.getScenario().getRegulators(), roadNetwork);
 
-        ExternalVehiclesController externalVehicleController = createExternalVehicleController();
+        externalVehicleController = createExternalVehicleController();
         roadNetwork.setExternalVehicleController(externalVehicleController);
 
         checkTrafficLightBeingInitialized();
@@ -180,9 +209,16 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
             microBoundaryConditions = new MicroscopicBoundaryConditions(microBCFile);
         }
 
+        ODDemand odDemand = null;
+        if (movsimInput.getScenario().isSetOdDemandFilename()) {
+            String filename = movsimInput.getScenario().getOdDemandFilename();
+            odDemand = new ODDemand(projectMetaData.getFile(filename));
+            odDemand.precomputeRoutes(routing);
+        }
+
         // For each road in the MovSim XML input data, find the corresponding roadSegment and
         // set its input data accordingly
-        matchRoadSegmentsAndRoadInput(simulationInput.getRoad(), microBoundaryConditions);
+        matchRoadSegmentsAndRoadInput(simulationInput.getRoad(), microBoundaryConditions, odDemand);
 
         if (movsimInput.getScenario().isSetInitialConditionsFilename()) {
             String filename = movsimInput.getScenario().getInitialConditionsFilename();
@@ -200,10 +236,8 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
         if (movsimInput.getScenario().isSetExternalVehicleControlFilename()) {
             String filename = movsimInput.getScenario().getExternalVehicleControlFilename();
             File file = projectMetaData.getFile(filename);
-            Preconditions.checkArgument(file.exists(), "external vehicle control file " + file + " not found");
-            MovsimExternalVehicleControl input = InputLoader.unmarshallExternalVehicleControl(file);
-            LOG.info("loaded external vehicle control from file={}", file);
-            externalVehicleController.setInput(input);
+            externalVehicleController.setInput(file);
+            LOG.info("streaming external vehicle control from file={}", file);
         }
         return externalVehicleController;
     }
@@ -220,6 +254,11 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
         return ProjectMetaData.getInstance();
     }
 
+    @CheckForNull
+    public ServiceProviders getServiceProviders() {
+        return serviceProviders;
+    }
+
     public RoadNetwork getRoadNetwork() {
         return roadNetwork;
     }
@@ -229,12 +268,22 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
     }
 
     private void matchRoadSegmentsAndRoadInput(List<Road> roads,
-            MicroscopicBoundaryConditions microBoundaryConditions) {
+            MicroscopicBoundaryConditions microBoundaryConditions, @Nullable ODDemand odDemand) {
         for (Road roadInput : roads) {
             LOG.info("roadInput.getId()={}", roadInput.getId());
             RoadSegment roadSegment = Preconditions.checkNotNull(roadNetwork.findByUserId(roadInput.getId()),
                     "cannot find roadId=\"" + roadInput.getId() + "\" in road network.");
-            addInputToRoadSegment(roadSegment, roadInput, microBoundaryConditions);
+            addInputToRoadSegment(roadSegment, roadInput, microBoundaryConditions, odDemand);
+        }
+
+        if (odDemand != null) {
+            for (String origin : odDemand.getOrigins()) {
+                RoadSegment roadSegment = roadNetwork.findByUserId(origin);
+                if (roadSegment == null || !(roadSegment.trafficSource() instanceof TrafficSourceOD)) {
+                    throw new IllegalArgumentException("od demand origin=" + origin
+                            + " requires a road with a traffic source without inflow.");
+                }
+            }
         }
 
         createSignalPoints();
@@ -280,7 +329,7 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
      * @param roadInput
      */
     private void addInputToRoadSegment(RoadSegment roadSegment, Road roadInput,
-            MicroscopicBoundaryConditions microBoundaryConditions) {
+            MicroscopicBoundaryConditions microBoundaryConditions, @Nullable ODDemand odDemand) {
         // setup own vehicle generator for roadSegment: needed for trafficSource and initial conditions
         TrafficCompositionGenerator composition = defaultTrafficComposition;
 
@@ -297,15 +346,19 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
             if (trafficSourceData.isSetInflow()) {
                 // macroscopic boundary conditions
                 InflowTimeSeries inflowTimeSeries = new InflowTimeSeries(trafficSourceData.getInflow());
-                trafficSource = new TrafficSourceMacro(composition, roadSegment, inflowTimeSeries);
+                trafficSource = trafficSourceData.isEventDriven() ?
+                        new TrafficSourceMacroEventDriven(composition, roadSegment, inflowTimeSeries) :
+                        new TrafficSourceMacro(composition, roadSegment, inflowTimeSeries);
+            } else if (odDemand != null && odDemand.getOriginDemand(roadSegment.userId()) != null) {
+                // origin-destination demand
+                trafficSource = new TrafficSourceOD(composition, roadSegment,
+                        odDemand.getOriginDemand(roadSegment.userId()));
             } else if (microBoundaryConditions != null) {
                 // microscopic boundary conditions
-                BoundaryConditionsType boundaryConditions = microBoundaryConditions
-                        .getBoundaryConditions(roadSegment.userId());
-                MicroscopicBoundaryInputData inputData = new MicroscopicBoundaryInputData(boundaryConditions,
-                        microBoundaryConditions.getTimeFormat(), timeOffsetMillis, routing);
-                trafficSource = new TrafficSourceMicro(composition, roadSegment);
-                addVehiclesToSource((TrafficSourceMicro) trafficSource, inputData);
+                MicroscopicBoundaryInputData inputData = microBoundaryConditions
+                        .openBoundaryConditions(roadSegment.userId(), timeOffsetMillis, routing);
+                microBoundaryInputs.add(inputData);
+                trafficSource = new TrafficSourceMicro(composition, roadSegment, inputData);
             } else {
                 throw new IllegalStateException(
                         "no micro nor macro boundary condition data provided for traffic source on roadSegment="
@@ -365,13 +418,6 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
 
     }
 
-    private void addVehiclesToSource(TrafficSourceMicro trafficSource, MicroscopicBoundaryInputData inputData) {
-        Map<Long, Vehicle> vehicles = inputData.createVehicles((TrafficSourceMicro) trafficSource);
-        for (Entry<Long, Vehicle> veh : vehicles.entrySet()) {
-            trafficSource.addVehicleToQueue(veh.getKey(), veh.getValue());
-        }
-    }
-
     private static void configureTrafficSink(TrafficSinkType trafficSinkType, RoadSegment roadSegment) {
         if (!roadSegment.hasSink()) {
             throw new IllegalArgumentException("roadsegment=" + roadSegment.userId() + " does not have a TrafficSink.");
@@ -385,7 +431,7 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
         simulationRunnable.reset();
         if (movsimInput.getScenario().isSetOutputConfiguration()) {
             simOutput = new SimulationOutput(simulationRunnable.timeStep(), projectMetaData.isInstantaneousFileOutput(),
-                    movsimInput.getScenario().getOutputConfiguration(), roadNetwork, routing, serviceProviders);
+                    movsimInput.getScenario().getOutputConfiguration(), roadNetwork, routing);
         }
         obstacleCount = roadNetwork.obstacleCount();
     }
@@ -402,6 +448,22 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
         simulationRunnable.runToCompletion();
     }
 
+    private void closeInputs() {
+        try {
+            externalVehicleController.close();
+        } catch (IOException e) {
+            LOG.warn("cannot close external vehicle control", e);
+        }
+        for (MicroscopicBoundaryInputData inputData : microBoundaryInputs) {
+            try {
+                inputData.close();
+            } catch (IOException e) {
+                LOG.warn("cannot close micro boundary conditions", e);
+            }
+        }
+        microBoundaryInputs.clear();
+    }
+
     /**
      * Returns true if the simulation has finished.
      */
@@ -417,6 +479,7 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
         }
 
         regulators.simulationCompleted(simulationTime);
+        closeInputs();
 
         LOG.info("total traveltime={} seconds", (int) roadNetwork.totalVehicleTravelTime());
         LOG.info("total distance traveled={} meters", (int) roadNetwork.totalVehicleTravelDistance());
@@ -467,6 +530,10 @@ public class Simulator implements SimulationTimeStep, SimulationRun.CompletionCa
         if (simOutput != null) {
             simOutput.timeStep(dt, simulationTime, iterationCount);
         }
+
+        if (serviceProviders != null) {
+            serviceProviders.timeStep(dt, simulationTime, iterationCount);
+        }
     }
 
     public Regulators getRegulators() {
@@ -1,11 +1,11 @@
 package org.movsim.simulator.observer;
 
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import javax.annotation.CheckForNull;
+
 import org.movsim.autogen.DecisionPointType;
 import org.movsim.autogen.RouteAlternativeType;
 import org.movsim.simulator.roadnetwork.routing.Route;
@@ -20,6 +20,10 @@ public class DecisionPoint implements Iterable<RouteAlternative> {
     /** sorted according to routeLabel for assuring a consistent */
     private final SortedMap<String, RouteAlternative> routeAlternatives = new TreeMap<>();
 
+    private volatile RouteAlternativesSnapshot snapshot;
+
+    private volatile RouteShares routeShares;
+
     public DecisionPoint(DecisionPointType configuration, Routing routing) {
         Preconditions.checkNotNull(configuration);
         if (!configuration.isSetRouteAlternative() || configuration.getRouteAlternative().isEmpty()) {
@@ -45,12 +49,42 @@ public class DecisionPoint implements Iterable<RouteAlternative> {
         return routeAlternatives.values().iterator();
     }
 
-    public List<RouteAlternative> createRouteAlternatives() {
-        List<RouteAlternative> alternatives = new ArrayList<>(routeAlternatives.size());
-        for(RouteAlternative routeAlternative : routeAlternatives.values()){
-            alternatives.add(new RouteAlternative(routeAlternative));
+    /**
+     * @return the route alternatives published with the last server update
+     */
+    public RouteAlternativesSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @CheckForNull
+    public RouteShares getRouteShares() {
+        return routeShares;
+    }
+
+    /**
+     * Prescribes the shares of the route alternatives in the order of the iteration, the vehicles do not choose by the
+     * disutilities anymore. The shares are published immediately.
+     *
+     * @param routeShares the shares or null for the choice by the vehicles
+     */
+    public void setRouteShares(@CheckForNull RouteShares routeShares) {
+        Preconditions.checkArgument(routeShares == null || routeShares.alternativeCount() == routeAlternatives.size(),
+                "number of route shares and alternatives differ at decision point=" + roadId);
+        this.routeShares = routeShares;
+        if (routeShares != null) {
+            final long version = snapshot == null ? 0 : snapshot.getVersion();
+            snapshot = RouteAlternativesSnapshot.prescribed(version, routeAlternatives.values(), routeShares.shares(0));
+        }
+    }
+
+    void publishSnapshot(long version, double[] uncertainties, double simulationTime) {
+        final RouteShares shares = routeShares;
+        if (shares != null) {
+            snapshot = RouteAlternativesSnapshot.prescribed(version, routeAlternatives.values(),
+                    shares.shares(simulationTime));
+        } else {
+            snapshot = new RouteAlternativesSnapshot(version, routeAlternatives.values(), uncertainties);
         }
-        return alternatives;
     }
 
 }
@@ -13,24 +13,60 @@ class LogitRouteDecisionMaking {
 
     private static final int TOO_LARGE_EXPONENT = 100;
 
-    static RouteAlternative selectMostProbableAlternative(Iterable<RouteAlternative> alternatives, double random) {
+    static void calcProbabilities(Iterable<RouteAlternative> alternatives, double uncertainty) {
+        final double[] disutilities = new double[Iterables.size(alternatives)];
+        int i = 0;
+        for (RouteAlternative alternative : alternatives) {
+            disutilities[i++] = alternative.getDisutility();
+        }
+        final double[] probabilities = calcProbabilities(disutilities, uncertainty);
+        i = 0;
+        for (RouteAlternative alternative : alternatives) {
+            alternative.setProbability(probabilities[i++]);
+            LOG.debug("calculated prob: {}", alternative);
+        }
+    }
+
+    /**
+     * Calculates the choice probabilities of alternatives with the given disutilities.
+     *
+     * @param disutilities
+     * @param uncertainty
+     *            standard deviation of the perceived disutilities, the best alternative is chosen for 0
+     * @return the probabilities in the order of the disutilities
+     */
+    static double[] calcProbabilities(double[] disutilities, double uncertainty) {
+        Preconditions.checkArgument(disutilities.length > 0, "no alternatives");
+        final double[] probabilities = new double[disutilities.length];
+        if (uncertainty > 0) {
+            calcProbabilityIfStochastic(disutilities, uncertainty, probabilities);
+        } else {
+            calcProbabilityForDeterministic(disutilities, probabilities);
+        }
+        return probabilities;
+    }
+
+    /**
+     * Selects the alternative by comparing the random number with the cumulated probabilities.
+     *
+     * @return the index of the selected alternative
+     */
+    static int selectMostProbableAlternative(double[] probabilities, double random) {
         Preconditions.checkArgument(random >= 0 && random < 1);
         double sumProb = 0;
-        for (RouteAlternative alternative : alternatives) {
-            sumProb += alternative.getProbability();
-            LOG.debug("alternative={}, sumProb={}", alternative.toString(), sumProb);
+        for (int i = 0; i < probabilities.length; i++) {
+            sumProb += probabilities[i];
             if (random <= sumProb) {
-                return alternative;
+                return i;
             }
         }
-        Preconditions.checkState(false, "probabilities not summed correctly: random=" + random + ", sumProb=" + sumProb);
-        return null;
+        throw new IllegalStateException("probabilities not summed correctly: random=" + random + ", sumProb="
+                + sumProb);
     }
 
-    private static boolean hasTooLargeExponent(double beta, RouteAlternative alternative,
-            Iterable<RouteAlternative> alternatives) {
-        for (RouteAlternative otherAlternative : alternatives) {
-            double delta = Math.abs(alternative.getDisutility() - otherAlternative.getDisutility());
+    private static boolean hasTooLargeExponent(double beta, int alternative, double[] disutilities) {
+        for (double otherDisutility : disutilities) {
+            double delta = Math.abs(disutilities[alternative] - otherDisutility);
             if (beta * delta > TOO_LARGE_EXPONENT) {
                 return true;
             }
@@ -38,47 +74,36 @@ class LogitRouteDecisionMaking {
         return false;
     }
 
-    static void calcProbabilities(Iterable<RouteAlternative> alternatives, double uncertainty) {
-        if (uncertainty > 0) {
-            calcProbabilityIfStochastic(alternatives, uncertainty);
-        } else {
-            calcProbabilityForDeterministic(alternatives);
-        }
-    }
-
-    private static void calcProbabilityIfStochastic(Iterable<RouteAlternative> alternatives, double uncertainty) {
+    private static void calcProbabilityIfStochastic(double[] disutilities, double uncertainty,
+            double[] probabilities) {
         final double beta = -1 / uncertainty;
-        for (RouteAlternative alternative : alternatives) {
+        for (int i = 0; i < disutilities.length; i++) {
             // check first for large exponential
-            if (hasTooLargeExponent(beta, alternative, alternatives)) {
+            if (hasTooLargeExponent(beta, i, disutilities)) {
                 // probability of 0 as trivial result
-                alternative.setProbability(0);
+                probabilities[i] = 0;
             } else {
-                double probAlternative = calcProbability(beta, alternative, alternatives);
-                alternative.setProbability(probAlternative);
+                probabilities[i] = calcProbability(beta, i, disutilities);
             }
-            LOG.debug("calculated prob for stochastic case: {}", alternative);
         }
     }
 
-    private static double calcProbability(double beta, RouteAlternative alternative,
-            Iterable<RouteAlternative> alternatives) {
+    private static double calcProbability(double beta, int alternative, double[] disutilities) {
         double denom = 0;
-        for (RouteAlternative otherAlternative : alternatives) {
-            denom += Math.exp(beta * (otherAlternative.getDisutility() - alternative.getDisutility()));
+        for (double otherDisutility : disutilities) {
+            denom += Math.exp(beta * (otherDisutility - disutilities[alternative]));
         }
         return 1. / denom;
     }
 
-    private static void calcProbabilityForDeterministic(Iterable<RouteAlternative> alternatives) {
-        RouteAlternative bestAlternative = Iterables.getLast(alternatives);
-        for (RouteAlternative alternative : alternatives) {
-            alternative.setProbability(0);
-            if (alternative.getDisutility() < bestAlternative.getDisutility()) {
-                bestAlternative = alternative;
+    private static void calcProbabilityForDeterministic(double[] disutilities, double[] probabilities) {
+        int best = disutilities.length - 1;
+        for (int i = 0; i < disutilities.length; i++) {
+            if (disutilities[i] < disutilities[best]) {
+                best = i;
             }
         }
-        bestAlternative.setProbability(1);
+        probabilities[best] = 1;
     }
 
 }
@@ -22,13 +22,20 @@ public class Noise {
         isWienerProcess = (tau != 0) ? true : false;
     }
 
+    /**
+     * Advances the process by the time interval dt starting from the value xiTime. Mean and variance of the
+     * transition are exact for arbitrary intervals, so the process need not be updated every timestep.
+     * 
+     * @param dt
+     *            time interval, seconds
+     * @param xiTime
+     *            value of the process at the beginning of the interval
+     */
     public void update(double dt, double xiTime) {
-
-        final double randomMu0Sigma1 = getUniformlyDistributedRealization();
-
         if (isWienerProcess) {
             final double betaTime = Math.exp(-dt / tau);
-            this.xiTime = betaTime * xiTime + fluctStrength * Math.sqrt(2 * dt / tau) * randomMu0Sigma1;
+            final double randomMu0Sigma1 = getUniformlyDistributedRealization();
+            this.xiTime = betaTime * xiTime + fluctStrength * Math.sqrt(1 - betaTime * betaTime) * randomMu0Sigma1;
         }
     }
 
@@ -0,0 +1,141 @@
+package org.movsim.simulator.observer;
+
+import java.util.Arrays;
+
+import org.movsim.simulator.roadnetwork.routing.Route;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
+
+/**
+ * Immutable state of the route alternatives of a {@link DecisionPoint} as published by the {@link ServiceProvider} with
+ * each server update. It is shared by all vehicles asking for the decision point, the choice probabilities are precomputed
+ * for the uncertainty levels in use.
+ */
+public final class RouteAlternativesSnapshot {
+
+    private final long version;
+
+    private final Route[] routes;
+
+    private final double[] disutilities;
+
+    private final double[] uncertainties;
+
+    /** probabilities indexed by uncertainty level and alternative */
+    private final double[][] probabilities;
+
+    /** prescribed shares replacing the choice probabilities, or null */
+    private final double[] shares;
+
+    RouteAlternativesSnapshot(long version, Iterable<RouteAlternative> alternatives, double[] uncertainties) {
+        this(version, alternatives, uncertainties, null);
+    }
+
+    /**
+     * Creates a snapshot with prescribed shares of the alternatives which apply to all vehicles regardless of their
+     * uncertainty.
+     */
+    static RouteAlternativesSnapshot prescribed(long version, Iterable<RouteAlternative> alternatives, double[] shares) {
+        return new RouteAlternativesSnapshot(version, alternatives, new double[0], shares.clone());
+    }
+
+    private RouteAlternativesSnapshot(long version, Iterable<RouteAlternative> alternatives, double[] uncertainties,
+            double[] shares) {
+        this.version = version;
+        final int size = Iterables.size(alternatives);
+        Preconditions.checkArgument(size > 0, "at least one alternative must be defined.");
+        routes = new Route[size];
+        disutilities = new double[size];
+        int i = 0;
+        for (RouteAlternative alternative : alternatives) {
+            routes[i] = alternative.getRoute();
+            disutilities[i] = alternative.getDisutility();
+            ++i;
+        }
+        this.uncertainties = uncertainties.clone();
+        probabilities = new double[uncertainties.length][];
+        for (int level = 0; level < uncertainties.length; level++) {
+            probabilities[level] = LogitRouteDecisionMaking.calcProbabilities(disutilities, uncertainties[level]);
+        }
+        Preconditions.checkArgument(shares == null || shares.length == size, "number of shares and alternatives differ");
+        this.shares = shares;
+    }
+
+    /**
+     * @return the number of the server update this snapshot was published with
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return true if the shares of the alternatives are prescribed, e.g. by a traffic assignment, and not chosen by the
+     *         vehicles
+     */
+    public boolean isPrescribed() {
+        return shares != null;
+    }
+
+    public int size() {
+        return routes.length;
+    }
+
+    public Route getRoute(int index) {
+        return routes[index];
+    }
+
+    public double getDisutility(int index) {
+        return disutilities[index];
+    }
+
+    /**
+     * @return the index of the alternative with the given route or -1 if the route is not an alternative
+     */
+    public int indexOf(Route route) {
+        for (int i = 0; i < routes.length; i++) {
+            if (routes[i].equals(route)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public double getProbability(int index, double uncertainty) {
+        return probabilities(uncertainty)[index];
+    }
+
+    /**
+     * Selects an alternative according to the choice probabilities for the given uncertainty.
+     *
+     * @param uncertainty
+     * @param random
+     *            random number within [0,1)
+     * @return the index of the selected alternative
+     */
+    public int selectMostProbableAlternative(double uncertainty, double random) {
+        if (shares != null) {
+            return RouteShares.select(shares, random);
+        }
+        return LogitRouteDecisionMaking.selectMostProbableAlternative(probabilities(uncertainty), random);
+    }
+
+    private double[] probabilities(double uncertainty) {
+        if (shares != null) {
+            return shares;
+        }
+        for (int level = 0; level < uncertainties.length; level++) {
+            if (uncertainties[level] == uncertainty) {
+                return probabilities[level];
+            }
+        }
+        // uncertainty level not yet known when the snapshot was published
+        return LogitRouteDecisionMaking.calcProbabilities(disutilities, uncertainty);
+    }
+
+    @Override
+    public String toString() {
+        return "RouteAlternativesSnapshot [version=" + version + ", routes=" + Arrays.toString(routes)
+                + ", disutilities=" + Arrays.toString(disutilities) + "]";
+    }
+}
@@ -0,0 +1,123 @@
+package org.movsim.simulator.observer;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Immutable time-dependent shares of the route alternatives of a {@link DecisionPoint}, e.g. from a traffic assignment.
+ * The shares are given per departure interval, the last interval is continued until the end of the simulation.
+ */
+public final class RouteShares {
+
+    private static final double TOLERANCE = 1e-6;
+
+    private final double departureInterval;
+
+    /** shares indexed by interval and alternative */
+    private final double[][] shares;
+
+    /**
+     * Constructor.
+     *
+     * @param departureInterval length of the departure intervals, in seconds
+     * @param shares            the shares indexed by interval and alternative, the shares of each interval must sum up to 1
+     */
+    public RouteShares(double departureInterval, double[][] shares) {
+        Preconditions.checkArgument(departureInterval > 0, "departureInterval must be > 0");
+        Preconditions.checkArgument(shares.length > 0, "at least one interval must be defined");
+        this.departureInterval = departureInterval;
+        this.shares = new double[shares.length][];
+        for (int interval = 0; interval < shares.length; interval++) {
+            Preconditions.checkArgument(shares[interval].length == shares[0].length,
+                    "inconsistent number of alternatives in interval=" + interval);
+            double sum = 0;
+            for (double share : shares[interval]) {
+                Preconditions.checkArgument(share >= 0, "negative share in interval=" + interval);
+                sum += share;
+            }
+            Preconditions.checkArgument(Math.abs(sum - 1) < TOLERANCE,
+                    "shares in interval=" + interval + " sum up to " + sum);
+            this.shares[interval] = shares[interval].clone();
+        }
+    }
+
+    /**
+     * Creates equal shares of all alternatives.
+     */
+    public static RouteShares uniform(double departureInterval, int intervalCount, int alternativeCount) {
+        Preconditions.checkArgument(alternativeCount > 0, "at least one alternative must be defined");
+        final double[][] shares = new double[intervalCount][alternativeCount];
+        for (double[] row : shares) {
+            Arrays.fill(row, 1.0 / alternativeCount);
+        }
+        return new RouteShares(departureInterval, shares);
+    }
+
+    public double getDepartureInterval() {
+        return departureInterval;
+    }
+
+    public int intervalCount() {
+        return shares.length;
+    }
+
+    public int alternativeCount() {
+        return shares[0].length;
+    }
+
+    /**
+     * @return the index of the departure interval of the given time
+     */
+    public int interval(double time) {
+        return Math.max(0, Math.min(shares.length - 1, (int) (time / departureInterval)));
+    }
+
+    public double getShare(int interval, int alternative) {
+        return shares[interval][alternative];
+    }
+
+    /**
+     * @return a copy of the shares indexed by interval and alternative
+     */
+    public double[][] toArray() {
+        final double[][] copy = new double[shares.length][];
+        for (int interval = 0; interval < shares.length; interval++) {
+            copy[interval] = shares[interval].clone();
+        }
+        return copy;
+    }
+
+    double[] shares(double time) {
+        return shares[interval(time)];
+    }
+
+    /**
+     * Selects an alternative by comparing the random number with the cumulated shares. Other than for the probabilities of
+     * the route choice model rounding errors are tolerated, the last alternative with a positive share is chosen then.
+     *
+     * @param shares
+     * @param random random number within [0,1)
+     * @return the index of the selected alternative
+     */
+    static int select(double[] shares, double random) {
+        Preconditions.checkArgument(random >= 0 && random < 1);
+        double sum = 0;
+        int last = 0;
+        for (int i = 0; i < shares.length; i++) {
+            if (shares[i] > 0) {
+                sum += shares[i];
+                last = i;
+                if (random < sum) {
+                    return i;
+                }
+            }
+        }
+        return last;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteShares [departureInterval=" + departureInterval + ", shares=" + Arrays.deepToString(shares) + "]";
+    }
+}
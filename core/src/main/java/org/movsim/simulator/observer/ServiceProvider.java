@@ -1,19 +1,24 @@
 package org.movsim.simulator.observer;
 
-import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import javax.annotation.CheckForNull;
 
+import org.movsim.autogen.DecisionPointsType;
 import org.movsim.autogen.ServiceProviderType;
+import org.movsim.simulator.EventScheduler;
 import org.movsim.simulator.SimulationTimeStep;
 import org.movsim.simulator.roadnetwork.RoadNetwork;
 import org.movsim.simulator.roadnetwork.RoadNetworkUtils;
 import org.movsim.simulator.roadnetwork.RoadSegment;
+import org.movsim.simulator.roadnetwork.routing.DynamicRouting;
 import org.movsim.simulator.roadnetwork.routing.Routing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.primitives.Doubles;
 
 public class ServiceProvider implements SimulationTimeStep {
 
@@ -25,7 +30,17 @@ public class ServiceProvider implements SimulationTimeStep {
 
     private final double serverUpdateInterval;
 
-    private boolean serverUpdate = true;
+    private final EventScheduler eventScheduler;
+
+    private double lastServerUpdateTime;
+
+    /** time of the first server update since the updates have been scheduled */
+    private double firstServerUpdateTime;
+
+    private long serverUpdateCount;
+
+    /** clear count of the event scheduler when the server updates have been scheduled */
+    private long schedulerClearCount;
 
     private final double vehicleUpdateInterval;
 
@@ -33,16 +48,37 @@ public class ServiceProvider implements SimulationTimeStep {
 
     private final Noise noise;
 
+    @CheckForNull
+    private final DynamicRouting dynamicRouting;
+
     private final ServiceProviderLogging fileOutput;
 
+    /** uncertainty levels of the vehicles for which the route choice probabilities are precomputed */
+    private final SortedSet<Double> uncertainties = new TreeSet<>();
+
+    private double[] uncertaintyLevels = new double[0];
+
+    private long version;
+
+    /** reroutings of the vehicles at the decision points */
+    private long reroutingCount;
+
     public ServiceProvider(ServiceProviderType configuration, Routing routing, RoadNetwork roadNetwork) {
         Preconditions.checkNotNull(configuration);
         this.label = configuration.getLabel();
         this.serverUpdateInterval = configuration.getServerUpdateInterval();
         this.vehicleUpdateInterval = configuration.getVehicleUpdateInterval();
-        this.decisionPoints = new DecisionPoints(configuration.getDecisionPoints(), routing);
+        this.decisionPoints = new DecisionPoints(configuration.isSetDecisionPoints() ? configuration.getDecisionPoints()
+                : new DecisionPointsType(), routing);
+        this.dynamicRouting = configuration.isSetDynamicRouting()
+                ? new DynamicRouting(configuration.getDynamicRouting(), routing, GRID_LENGTH_TRAVELTIME_ESTIMATION)
+                : null;
         this.noise = new Noise(configuration.getTau(), configuration.getFluctStrength());
         this.fileOutput = configuration.isLogging() ? new ServiceProviderLogging(this) : null;
+        registerUncertainty(decisionPoints.getUncertainty());
+        publishSnapshots(0);
+        this.eventScheduler = roadNetwork.getEventScheduler();
+        scheduleServerUpdates(0);
     }
 
     public String getLabel() {
@@ -53,38 +89,83 @@ public class ServiceProvider implements SimulationTimeStep {
         return decisionPoints;
     }
 
+    /**
+     * @return the dynamic routing to the vehicles' destinations or null if not configured
+     */
+    @CheckForNull
+    public DynamicRouting getDynamicRouting() {
+        return dynamicRouting;
+    }
+
     public double getVehicleUpdateInterval() {
         return vehicleUpdateInterval;
     }
 
+    /**
+     * @return the scheduler of the server updates and the vehicles' routing updates
+     */
+    public EventScheduler getEventScheduler() {
+        return eventScheduler;
+    }
+
+    /**
+     * Counts a rerouting of a vehicle at a decision point.
+     *
+     * @return the number of reroutings so far
+     */
+    public long countRerouting() {
+        return ++reroutingCount;
+    }
+
+    /**
+     * @return the number of reroutings of the vehicles at the decision points so far
+     */
+    public long getReroutingCount() {
+        return reroutingCount;
+    }
+
     @Override
     public void timeStep(double dt, double simulationTime, long iterationCount) {
-        if (serverUpdateInterval != 0) {
-            serverUpdate = (iterationCount % (serverUpdateInterval / dt) == 0) ? true : false;
+        if (eventScheduler.clearCount() != schedulerClearCount) {
+            // the events have been removed with the road network, e.g. by a reset
+            LOG.debug("schedule server updates of service provider={} again at time={}", label, simulationTime);
+            scheduleServerUpdates(simulationTime);
+        }
+        if (dynamicRouting != null) {
+            dynamicRouting.processRequests(simulationTime);
         }
-        evaluateDecisionPoints(dt);
         if (fileOutput != null) {
             fileOutput.timeStep(dt, simulationTime, iterationCount);
         }
     }
 
-    /** calculate individual probabilities */
-    public static void updateRouteAlternatives(Iterable<RouteAlternative> alternatives, double uncertainty) {
-        LogitRouteDecisionMaking.calcProbabilities(alternatives, uncertainty);
-    }
-
-    public static RouteAlternative selectMostProbableAlternative(Iterable<RouteAlternative> alternatives,
-            double random) {
-        return LogitRouteDecisionMaking.selectMostProbableAlternative(alternatives, random);
+    /**
+     * Registers the uncertainty of a vehicle's route choice. The choice probabilities for all registered levels are
+     * precomputed with each server update.
+     *
+     * @param uncertainty
+     */
+    public void registerUncertainty(double uncertainty) {
+        Preconditions.checkArgument(uncertainty >= 0, "uncertainty must be >= 0");
+        if (uncertainties.add(uncertainty)) {
+            uncertaintyLevels = Doubles.toArray(uncertainties);
+        }
     }
 
+    /**
+     * Returns the route alternatives of the decision point on the given road segment as published with the last server
+     * update. The snapshot is shared and must not be modified.
+     *
+     * @param roadSegment
+     * @return the route alternatives or null if there is no decision point on the road segment
+     */
     @CheckForNull
-    public List<RouteAlternative> getAlternativesForDecisionPoint(RoadSegment roadSegment) {
+    public RouteAlternativesSnapshot getRouteAlternatives(RoadSegment roadSegment) {
         DecisionPoint decisionPoint = getDecisionPoint(roadSegment.userId());
         if (decisionPoint == null) {
             return null;
         }
-        return decisionPoint.createRouteAlternatives();
+        return decisionPoint.getSnapshot();
     }
 
     @CheckForNull
@@ -99,28 +180,59 @@ public class ServiceProvider implements SimulationTimeStep {
     // return new RouteAlternative(routeAlternative);
     // }
 
-    private void evaluateDecisionPoints(double dt) {
+    /**
+     * Server update scheduled every serverUpdateInterval, or every timestep if the interval is zero. The k-th update is
+     * due at (k-1)*serverUpdateInterval after the first one, so the update times do not drift with the timestep. If the
+     * events of the road network are cleared, the updates are scheduled again with the next timestep.
+     */
+    private void serverUpdate(double simulationTime) {
+        evaluateDecisionPoints(simulationTime - lastServerUpdateTime);
+        lastServerUpdateTime = simulationTime;
+        ++version;
+        ++serverUpdateCount;
+        publishSnapshots(simulationTime);
+        if (dynamicRouting != null) {
+            dynamicRouting.updateTravelTimes(simulationTime);
+        }
+        eventScheduler.schedule(serverUpdateInterval == 0 ? simulationTime
+                : firstServerUpdateTime + serverUpdateCount * serverUpdateInterval, this::serverUpdate);
+    }
+
+    private void scheduleServerUpdates(double time) {
+        schedulerClearCount = eventScheduler.clearCount();
+        firstServerUpdateTime = time;
+        lastServerUpdateTime = time;
+        serverUpdateCount = 0;
+        eventScheduler.schedule(time, this::serverUpdate);
+    }
+
+    private void evaluateDecisionPoints(double elapsedTime) {
         double uncertainty = decisionPoints.getUncertainty();
         // uncertainty as standard deviation must be >=0, already required by xsd
         for (DecisionPoint decisionPoint : decisionPoints) {
-            evaluateDecisionPoint(dt, uncertainty, decisionPoint);
+            evaluateDecisionPoint(elapsedTime, uncertainty, decisionPoint);
+        }
+    }
+
+    private void publishSnapshots(double simulationTime) {
+        for (DecisionPoint decisionPoint : decisionPoints) {
+            decisionPoint.publishSnapshot(version, uncertaintyLevels, simulationTime);
         }
     }
 
-    private void evaluateDecisionPoint(double dt, double uncertainty, DecisionPoint decisionPoint) {
+    private void evaluateDecisionPoint(double elapsedTime, double uncertainty, DecisionPoint decisionPoint) {
         for (RouteAlternative alternative : decisionPoint) {
             double traveltimeError = 0;
             if (noise != null) {
-                noise.update(dt, alternative.getTravelTimeError());
+                // the noise is advanced over the whole interval since the last server update
+                noise.update(elapsedTime, alternative.getTravelTimeError());
                 traveltimeError = noise.getTimeError();
             }
             // traveltime is the metric for disutility
             double traveltime = traveltimeError + RoadNetworkUtils.instantaneousTravelTimeOnGrid(alternative.getRoute(),
                     GRID_LENGTH_TRAVELTIME_ESTIMATION);
             alternative.setTravelTimeError(traveltimeError);
-            if (serverUpdate) {
-                alternative.setDisutility(traveltime);
-            }
+            alternative.setDisutility(traveltime);
         }
         LogitRouteDecisionMaking.calcProbabilities(decisionPoint, uncertainty);
     }
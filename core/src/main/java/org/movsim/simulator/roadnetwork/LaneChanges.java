@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ *
+ * This file is part of
+ *
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ *
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ *
+ * -----------------------------------------------------------------------------------------
+ */
+
+package org.movsim.simulator.roadnetwork;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.movsim.simulator.vehicles.Vehicle;
+import org.movsim.simulator.vehicles.lanechange.LaneChangeModel.LaneChangeDecision;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Two-stage lane changing of the vehicles of a {@link RoadSegment}.
+ * </p>
+ * <p>
+ * In the first stage all vehicles decide on the frozen state of the road segment. The decisions do not modify any state and
+ * can therefore be made concurrently. In the second stage the lane changes are performed in a deterministic order which
+ * does not depend on the order of the lanes: mandatory before discretionary lane changes, then downstream before
+ * upstream vehicles and finally by vehicle id. A lane change into a lane that has already received a vehicle in the same
+ * timestep is only performed if it is still safe, so two vehicles cannot squeeze into the same gap.
+ * </p>
+ */
+final class LaneChanges {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LaneChanges.class);
+
+    /**
+     * minimum number of vehicles for deciding concurrently
+     */
+    static final int PARALLEL_THRESHOLD = 64;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final RoadSegment roadSegment;
+
+    /** lane segments indexed by lane, the overtaking lane has index 0 */
+    private final LaneSegment[] lanes;
+
+    private final LaneNeighbours laneNeighbours;
+
+    private final boolean[] receivedVehicle;
+
+    private Vehicle[] vehicles = new Vehicle[INITIAL_CAPACITY];
+
+    private int[] targetLanes = new int[INITIAL_CAPACITY];
+
+    private boolean[] inProcess = new boolean[INITIAL_CAPACITY];
+
+    private boolean[] mandatory = new boolean[INITIAL_CAPACITY];
+
+    private int[] order = new int[INITIAL_CAPACITY];
+
+    private int count;
+
+    LaneChanges(RoadSegment roadSegment, LaneSegment[] laneSegments, LaneSegment overtakingSegment,
+            LaneNeighbours laneNeighbours) {
+        this.roadSegment = roadSegment;
+        this.laneNeighbours = laneNeighbours;
+        lanes = new LaneSegment[laneSegments.length + 1];
+        lanes[Lanes.OVERTAKING] = overtakingSegment;
+        System.arraycopy(laneSegments, 0, lanes, Lanes.MOST_INNER_LANE, laneSegments.length);
+        receivedVehicle = new boolean[lanes.length];
+    }
+
+    /**
+     * First stage: every vehicle decides on its lane change without modifying the road segment.
+     *
+     * @param parallel if true, the decisions are made concurrently
+     */
+    void decide(boolean parallel) {
+        count = 0;
+        for (final LaneSegment laneSegment : lanes) {
+            ensureCapacity(count + laneSegment.vehicleCount());
+            for (final Vehicle vehicle : laneSegment) {
+                assert vehicle.roadSegmentId() == roadSegment.id();
+                vehicles[count++] = vehicle;
+            }
+        }
+        if (parallel && count >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, count).parallel().forEach(this::decide);
+        } else {
+            for (int i = 0; i < count; i++) {
+                decide(i);
+            }
+        }
+    }
+
+    private void decide(int index) {
+        final Vehicle vehicle = vehicles[index];
+        int targetLane = Lanes.NONE;
+        LaneChangeDecision decision = LaneChangeDecision.NONE;
+        inProcess[index] = vehicle.inProcessOfLaneChange();
+        if (inProcess[index]) {
+            // the lane-change delay is updated in the second stage
+        } else if (vehicle.lane() == Lanes.OVERTAKING) {
+            decision = vehicle.decideFinishOvertaking(lanes[Lanes.MOST_INNER_LANE]);
+            if (decision == LaneChangeDecision.MANDATORY_TO_RIGHT) {
+                targetLane = Lanes.MOST_INNER_LANE;
+            }
+        } else {
+            decision = vehicle.decideLaneChange(roadSegment);
+            if (decision.getDirection() != Lanes.NO_CHANGE) {
+                targetLane = vehicle.lane() + decision.getDirection();
+            } else {
+                decision = vehicle.decideOvertakingViaPeer(roadSegment);
+                if (decision == LaneChangeDecision.OVERTAKE_VIA_PEER) {
+                    targetLane = Lanes.OVERTAKING;
+                }
+            }
+        }
+        targetLanes[index] = targetLane;
+        mandatory[index] = decision.isMandatory();
+    }
+
+    /**
+     * Second stage: performs the lane changes decided in the first stage.
+     *
+     * @param dt delta-t, simulation time interval, seconds
+     */
+    void perform(double dt) {
+        int candidateCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (inProcess[i]) {
+                // !!! assure update in each simulation timestep
+                vehicles[i].updateLaneChangeDelay(dt);
+            } else if (targetLanes[i] != Lanes.NONE) {
+                // insertion sort, there are typically only a few lane changes per timestep
+                int j = candidateCount++;
+                while (j > 0 && precedes(i, order[j - 1])) {
+                    order[j] = order[j - 1];
+                    --j;
+                }
+                order[j] = i;
+            }
+        }
+        Arrays.fill(receivedVehicle, false);
+        for (int k = 0; k < candidateCount; k++) {
+            performLaneChange(order[k], dt);
+        }
+        // release references to the vehicles
+        Arrays.fill(vehicles, 0, count, null);
+        count = 0;
+    }
+
+    private void performLaneChange(int index, double dt) {
+        final Vehicle vehicle = vehicles[index];
+        final int targetLane = targetLanes[index];
+        assert targetLane >= Lanes.OVERTAKING && targetLane < lanes.length;
+        final LaneSegment target = lanes[targetLane];
+        assert target.type() != Lanes.Type.ENTRANCE;
+        if (receivedVehicle[targetLane] && !vehicle.getLaneChangeModel().isSafeLaneChange(target)) {
+            LOG.debug("lane change of vehicle={} into lane={} dropped, gap already taken", vehicle, targetLane);
+            return;
+        }
+        final int lane = vehicle.lane();
+        lanes[lane].removeVehicle(vehicle);
+        vehicle.initiateLaneChange(targetLane, dt);
+        vehicle.setLane(targetLane);
+        target.addVehicle(vehicle);
+        receivedVehicle[targetLane] = true;
+        laneNeighbours.invalidateLane(lane);
+        laneNeighbours.invalidateLane(targetLane);
+    }
+
+    /**
+     * Returns true if the lane change with index a is to be performed before the one with index b.
+     */
+    private boolean precedes(int a, int b) {
+        if (mandatory[a] != mandatory[b]) {
+            return mandatory[a];
+        }
+        final double positionA = vehicles[a].getFrontPosition();
+        final double positionB = vehicles[b].getFrontPosition();
+        if (positionA != positionB) {
+            return positionA > positionB;
+        }
+        return vehicles[a].getId() < vehicles[b].getId();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (vehicles.length < capacity) {
+            final int newCapacity = Math.max(capacity, 2 * vehicles.length);
+            vehicles = Arrays.copyOf(vehicles, newCapacity);
+            targetLanes = new int[newCapacity];
+            inProcess = new boolean[newCapacity];
+            mandatory = new boolean[newCapacity];
+            order = new int[newCapacity];
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ *
+ * This file is part of
+ *
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ *
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ *
+ * -----------------------------------------------------------------------------------------
+ */
+
+package org.movsim.simulator.roadnetwork;
+
+import java.util.Arrays;
+
+import org.movsim.simulator.vehicles.Vehicle;
+
+/**
+ * <p>
+ * Table of the lateral neighbours of all vehicles of a {@link RoadSegment}.
+ * </p>
+ * <p>
+ * Since the vehicles of each lane are sorted in order of decreasing position, the leaders and followers of all vehicles in
+ * the adjacent lanes are found by a single merge-style sweep over each pair of neighbouring lanes. For each vehicle the
+ * table stores the number of vehicles in the left and right lane whose rear position is strictly greater than its own rear
+ * position, so the new leader is the vehicle just before and the new follower the vehicle at this index. This is exactly
+ * what {@link LaneSegment#frontVehicle(double)} and {@link LaneSegment#rearVehicle(double)} find by binary search.
+ * </p>
+ * <p>
+ * The overtaking lane is treated as lane 0 left of the most inner lane. The table is only valid between {@link #update()}
+ * and {@link #invalidate()}; a lane which gains or loses a vehicle in between must be marked by
+ * {@link #invalidateLane(int)}. Lookups into invalid lanes, of vehicles not covered by the sweep or at the segment
+ * boundaries fall back to the binary search.
+ * </p>
+ */
+final class LaneNeighbours {
+
+    private static final int NOT_AVAILABLE = -1;
+
+    private final LaneSegment[] lanes;
+
+    private final Vehicle[][] vehicles;
+
+    private final double[][] rearPositions;
+
+    private final int[][] leftCounts;
+
+    private final int[][] rightCounts;
+
+    private final int[] sizes;
+
+    private final boolean[] validLanes;
+
+    private boolean valid;
+
+    LaneNeighbours(LaneSegment[] laneSegments, LaneSegment overtakingSegment) {
+        final int laneCount = laneSegments.length + 1;
+        lanes = new LaneSegment[laneCount];
+        lanes[Lanes.OVERTAKING] = overtakingSegment;
+        System.arraycopy(laneSegments, 0, lanes, Lanes.MOST_INNER_LANE, laneSegments.length);
+        vehicles = new Vehicle[laneCount][0];
+        rearPositions = new double[laneCount][0];
+        leftCounts = new int[laneCount][0];
+        rightCounts = new int[laneCount][0];
+        sizes = new int[laneCount];
+        validLanes = new boolean[laneCount];
+    }
+
+    /**
+     * Rebuilds the table in one linear pass over all lanes. The lanes must be sorted.
+     */
+    void update() {
+        for (int lane = 0; lane < lanes.length; lane++) {
+            final LaneSegment laneSegment = lanes[lane];
+            final int count = laneSegment.vehicleCount();
+            ensureCapacity(lane, count);
+            for (int i = 0; i < count; i++) {
+                final Vehicle vehicle = laneSegment.getVehicle(i);
+                vehicles[lane][i] = vehicle;
+                rearPositions[lane][i] = vehicle.getRearPosition();
+                vehicle.setNeighbourIndex(i);
+            }
+            if (count < sizes[lane]) {
+                // release references of vehicles that have left the lane
+                Arrays.fill(vehicles[lane], count, sizes[lane], null);
+            }
+            sizes[lane] = count;
+            validLanes[lane] = true;
+        }
+        for (int lane = 0; lane < lanes.length; lane++) {
+            if (lane > 0) {
+                sweep(lane, lane + Lanes.TO_LEFT, leftCounts[lane]);
+            }
+            if (lane < lanes.length - 1) {
+                sweep(lane, lane + Lanes.TO_RIGHT, rightCounts[lane]);
+            }
+        }
+        valid = true;
+    }
+
+    private void sweep(int lane, int neighbourLane, int[] counts) {
+        final double[] positions = rearPositions[lane];
+        final double[] neighbourPositions = rearPositions[neighbourLane];
+        final int neighbourCount = sizes[neighbourLane];
+        int j = 0;
+        for (int i = 0, count = sizes[lane]; i < count; i++) {
+            while (j < neighbourCount && Double.compare(positions[i], neighbourPositions[j]) < 0) {
+                ++j;
+            }
+            counts[i] = j;
+        }
+    }
+
+    private void ensureCapacity(int lane, int count) {
+        if (vehicles[lane].length < count) {
+            final int capacity = Math.max(count, 2 * vehicles[lane].length);
+            vehicles[lane] = Arrays.copyOf(vehicles[lane], capacity);
+            rearPositions[lane] = new double[capacity];
+            leftCounts[lane] = new int[capacity];
+            rightCounts[lane] = new int[capacity];
+        }
+    }
+
+    void invalidate() {
+        valid = false;
+    }
+
+    void invalidateLane(int lane) {
+        if (lane >= 0 && lane < lanes.length) {
+            validLanes[lane] = false;
+        }
+    }
+
+    /**
+     * Returns the number of vehicles in the target lane that are in front of the given vehicle.
+     *
+     * @param vehicle       the subject vehicle in a lane adjacent to the target lane
+     * @param targetLane    the target lane
+     * @param targetCount   the current number of vehicles in the target lane
+     * @return the number of vehicles in front, or -1 if the table cannot answer the query
+     */
+    int frontVehicleCount(Vehicle vehicle, int targetLane, int targetCount) {
+        if (!valid || targetLane < 0 || targetLane >= lanes.length || !validLanes[targetLane]
+                || sizes[targetLane] != targetCount) {
+            return NOT_AVAILABLE;
+        }
+        final int lane = vehicle.lane();
+        final int index = vehicle.getNeighbourIndex();
+        if (lane < 0 || lane >= lanes.length || index < 0 || index >= sizes[lane] || vehicles[lane][index] != vehicle) {
+            // the vehicle has not been swept in this lane
+            return NOT_AVAILABLE;
+        }
+        if (targetLane == lane + Lanes.TO_LEFT) {
+            return leftCounts[lane][index];
+        }
+        if (targetLane == lane + Lanes.TO_RIGHT) {
+            return rightCounts[lane][index];
+        }
+        return NOT_AVAILABLE;
+    }
+}
@@ -34,6 +34,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
@@ -62,6 +63,8 @@ public class LaneSegment implements Iterable<Vehicle> {
 
     private static final boolean DEBUG = false;
     private static final int VEHICLES_PER_LANE_INITIAL_SIZE = 50;
+    private static final Comparator<Vehicle> REAR_POSITION_DESCENDING = Comparator
+            .comparingDouble(Vehicle::getRearPosition).reversed();
     // Lanes linkage
     private final RoadSegment roadSegment;
     private LaneSegment sinkLaneSegment;
@@ -304,6 +307,37 @@ public class LaneSegment implements Iterable<Vehicle> {
         }
     }
 
+    /**
+     * Returns true if the given vehicle is on this lane segment. The vehicle is looked up by its rear position first, if it
+     * is not found there, e.g. since the lane is not sorted during an update, all vehicles are checked.
+     *
+     * @param vehicle
+     */
+    public boolean containsVehicle(Vehicle vehicle) {
+        final double rearPosition = vehicle.getRearPosition();
+        final int index = positionBinarySearch(rearPosition);
+        if (index >= 0) {
+            // vehicles with the same rear position are adjacent
+            for (int i = index; i >= 0 && vehicles.get(i).getRearPosition() == rearPosition; --i) {
+                if (vehicles.get(i) == vehicle) {
+                    return true;
+                }
+            }
+            final int count = vehicles.size();
+            for (int i = index + 1; i < count && vehicles.get(i).getRearPosition() == rearPosition; ++i) {
+                if (vehicles.get(i) == vehicle) {
+                    return true;
+                }
+            }
+        }
+        for (final Vehicle v : vehicles) {
+            if (v == vehicle) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Removes the front vehicle on this lane segment.
      */
@@ -374,6 +408,26 @@ public class LaneSegment implements Iterable<Vehicle> {
         assert assertInvariant();
     }
 
+    /**
+     * Adds the given vehicles to this lane segment in one go. The vehicles are appended and the lane is sorted once, which
+     * avoids the element shifts of adding a large number of vehicles one by one.
+     *
+     * @param newVehicles
+     */
+    void addVehicles(Collection<Vehicle> newVehicles) {
+        assert assertInvariant();
+        for (final Vehicle vehicle : newVehicles) {
+            assert vehicle.getSpeed() >= 0.0 : "vehicleSpeed=" + vehicle.getSpeed();
+            assert vehicle.lane() == lane;
+            assert vehicle.roadSegmentId() == roadSegment.id();
+        }
+        vehicles.addAll(newVehicles);
+        // stable sort, cheap for vehicles already given in downstream-to-upstream order
+        vehicles.sort(REAR_POSITION_DESCENDING);
+        assert laneIsSorted();
+        assert assertInvariant();
+    }
+
     public int addVehicleTemp(Vehicle vehicle) {
         // assert vehicle.getFrontPosition() >= 0.0;
         assert vehicle.getSpeed() >= 0.0;
@@ -411,6 +465,7 @@ public class LaneSegment implements Iterable<Vehicle> {
             }
         }
         vehicles.add(vehicle);
+        roadSegment.registerEnteringVehicle(vehicle);
         assert laneIsSorted();
         assert assertInvariant();
     }
@@ -479,6 +534,11 @@ public class LaneSegment implements Iterable<Vehicle> {
     }
 
     public final Vehicle rearVehicle(Vehicle vehicle) {
+        // vehicles in adjacent lanes are looked up in the road segment's neighbour table if available
+        final int index = roadSegment.laneNeighbours().frontVehicleCount(vehicle, lane, vehicles.size());
+        if (index >= 0 && index < vehicles.size()) {
+            return vehicles.get(index);
+        }
         return rearVehicle(vehicle.getRearPosition());
     }
 
@@ -588,6 +648,11 @@ public class LaneSegment implements Iterable<Vehicle> {
      * @return the next downstream vehicle
      */
     public final Vehicle frontVehicle(Vehicle vehicle) {
+        // vehicles in adjacent lanes are looked up in the road segment's neighbour table if available
+        final int count = roadSegment.laneNeighbours().frontVehicleCount(vehicle, lane, vehicles.size());
+        if (count > 0) {
+            return vehicles.get(count - 1);
+        }
         return frontVehicle(vehicle.getRearPosition());
     }
 
@@ -13,10 +13,14 @@
 package org.movsim.simulator.roadnetwork;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 import javax.annotation.CheckForNull;
 
+import org.movsim.simulator.EventScheduler;
 import org.movsim.simulator.SimulationTimeStep;
 import org.movsim.simulator.roadnetwork.routing.Route;
 import org.movsim.simulator.vehicles.ExternalVehiclesController;
@@ -34,12 +38,24 @@ public class RoadNetwork implements SimulationTimeStep, Iterable<RoadSegment> {
 
     private final ArrayList<RoadSegment> roadSegments = new ArrayList<>();
 
+    /** road segments indexed by id - idOffset */
+    private RoadSegment[] segmentsById = new RoadSegment[0];
+
+    /** the smallest id of the road segments in the network, ids are dense but do not start at the initial id */
+    private int idOffset;
+
+    private final Map<String, RoadSegment> segmentsByUserId = new HashMap<>();
+
     private String name;
 
     private boolean isWithCrashExit;
 
+    private boolean isParallelLaneChangeDecisions;
+
     private ExternalVehiclesController externalVehicleController;
 
+    private final EventScheduler eventScheduler = new EventScheduler();
+
     /**
      * Sets the name of the road network.
      *
@@ -64,13 +80,10 @@ public class RoadNetwork implements SimulationTimeStep, Iterable<RoadSegment> {
      * @param id
      * @return the road segment with the given id
      */
+    @CheckForNull
     public RoadSegment findById(int id) {
-        for (final RoadSegment roadSegment : roadSegments) {
-            if (roadSegment.id() == id) {
-                return roadSegment;
-            }
-        }
-        return null;
+        final int index = id - idOffset;
+        return index >= 0 && index < segmentsById.length ? segmentsById[index] : null;
     }
 
     /**
@@ -81,12 +94,7 @@ public class RoadNetwork implements SimulationTimeStep, Iterable<RoadSegment> {
      */
     @CheckForNull
     public RoadSegment findByUserId(String userId) {
-        for (final RoadSegment roadSegment : roadSegments) {
-            if (roadSegment.userId() != null && roadSegment.userId().equals(userId)) {
-                return roadSegment;
-            }
-        }
-        return null;
+        return segmentsByUserId.get(userId);
     }
 
     /**
@@ -100,6 +108,20 @@ public class RoadNetwork implements SimulationTimeStep, Iterable<RoadSegment> {
         // TrafficFlowBase.resetNextId();
         // Vehicle.resetNextId();
         roadSegments.clear();
+        segmentsById = new RoadSegment[0];
+        idOffset = 0;
+        segmentsByUserId.clear();
+        eventScheduler.clear();
+    }
+
+    /**
+     * Returns the scheduler of the events in the road network, e.g. the routing updates of the vehicles. Due events are
+     * fired at the beginning of each timestep.
+     *
+     * @return the event scheduler
+     */
+    public final EventScheduler getEventScheduler() {
+        return eventScheduler;
     }
 
     /**
@@ -119,7 +141,8 @@ public class RoadNetwork implements SimulationTimeStep, Iterable<RoadSegment> {
     }
 
     /**
-     * Adds a road segment to the road network.
+     * Adds a road segment to the road network. The userId of the road segment must be set before as it is indexed for
+     * the lookup by {@link #findByUserId(String)}.
      *
      * @param roadSegment
      * @return roadSegment for convenience
@@ -128,9 +151,30 @@ public class RoadNetwork implements SimulationTimeStep, Iterable<RoadSegment> {
         assert roadSegment != null;
         assert roadSegment.eachLaneIsSorted();
         roadSegments.add(roadSegment);
+        indexById(roadSegment);
+        // the first road segment with a given userId is found as before with the linear search
+        segmentsByUserId.putIfAbsent(roadSegment.userId(), roadSegment);
         return roadSegment;
     }
 
+    private void indexById(RoadSegment roadSegment) {
+        final int id = roadSegment.id();
+        if (roadSegments.size() == 1) {
+            idOffset = id;
+        } else if (id < idOffset) {
+            final RoadSegment[] shifted = new RoadSegment[segmentsById.length + idOffset - id];
+            System.arraycopy(segmentsById, 0, shifted, idOffset - id, segmentsById.length);
+            segmentsById = shifted;
+            idOffset = id;
+        }
+        final int index = id - idOffset;
+        if (index >= segmentsById.length) {
+            segmentsById = Arrays.copyOf(segmentsById, Math.max(index + 1, 2 * segmentsById.length));
+        }
+        assert segmentsById[index] == null : "road segment with id=" + id + " already added";
+        segmentsById[index] = roadSegment;
+    }
+
     /**
      * Returns an iterator over all the road segments in the road network.
      *
@@ -190,14 +234,16 @@ public class RoadNetwork implements SimulationTimeStep, Iterable<RoadSegment> {
             roadSegment.updateRoadConditions(dt, simulationTime, iterationCount);
         }
 
-        for (RoadSegment roadSegment : roadSegments) {
-            roadSegment.makeDynamicRoutingDecisions(dt, simulationTime, iterationCount);
-        }
+        eventScheduler.fireDueEvents(simulationTime);
 
         // Note: must do lane changes before vehicle positions are updated (or after outFlow) to ensure
         // the vehicle's roadSegmentId is correctly set
+        // all lane-changing decisions are made on the same state of the network before any lane change is performed
         for (final RoadSegment roadSegment : roadSegments) {
-            roadSegment.makeLaneChanges(dt, simulationTime, iterationCount);
+            roadSegment.decideLaneChanges(isParallelLaneChangeDecisions);
+        }
+        for (final RoadSegment roadSegment : roadSegments) {
+            roadSegment.performLaneChanges(dt);
         }
 
         for (final RoadSegment roadSegment : roadSegments) {
@@ -227,6 +273,16 @@ public class RoadNetwork implements SimulationTimeStep, Iterable<RoadSegment> {
         this.isWithCrashExit = isWithCrashExit;
     }
 
+    /**
+     * Lane-changing decisions of the vehicles of a road segment are made concurrently if set. The results are only
+     * reproducible for deterministic models since stochastic models draw from the common random number generator.
+     *
+     * @param isParallelLaneChangeDecisions
+     */
+    public void setParallelLaneChangeDecisions(boolean isParallelLaneChangeDecisions) {
+        this.isParallelLaneChangeDecisions = isParallelLaneChangeDecisions;
+    }
+
     /**
      * Returns the number of vehicles on this road network.
      *
@@ -16,8 +16,6 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
-import com.google.common.collect.Lists;
-import org.jgrapht.graph.DefaultWeightedEdge;
 import org.movsim.roadmappings.RoadMapping;
 import org.movsim.simulator.roadnetwork.boundaries.AbstractTrafficSource;
 import org.movsim.simulator.roadnetwork.boundaries.SimpleRamp;
@@ -28,6 +26,7 @@ import org.movsim.simulator.roadnetwork.predicates.VehicleWithinRange;
 import org.movsim.simulator.vehicles.TrafficCompositionGenerator;
 import org.movsim.simulator.vehicles.Vehicle;
 import org.movsim.simulator.vehicles.Vehicle.Type;
+import org.movsim.utilities.MyRandom;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,9 +67,7 @@ import java.util.*;
  * </p>
  */
 // TODO avoid iterating also over Vehicle.Type.OBSTACLE at lane ends.
-public class RoadSegment extends DefaultWeightedEdge implements Iterable<Vehicle> {
-
-    private static final long serialVersionUID = -2991922063982378462L;
+public class RoadSegment implements Iterable<Vehicle> {
 
     private static final Logger LOG = LoggerFactory.getLogger(RoadSegment.class);
 
@@ -154,6 +151,24 @@ public class RoadSegment extends DefaultWeightedEdge implements Iterable<Vehicle
      */
     private double freeFlowSpeed = RoadTypeSpeeds.INSTANCE.getDefaultFreeFlowSpeed();
 
+    /**
+     * random stream for the stochastic vehicle dynamics on this road segment, will be initialized lazily after the global
+     * seed has been set.
+     */
+    private SplittableRandom random;
+
+    /**
+     * lateral neighbours of the vehicles, valid during the lane-changing and acceleration updates only.
+     */
+    private final LaneNeighbours laneNeighbours;
+
+    private final LaneChanges laneChanges;
+
+    /**
+     * speed grid for the travel time estimation, created with the first query
+     */
+    private SpeedGrid speedGrid;
+
     public static class TestCar {
         public double s = 0.0; // distance
 
@@ -199,6 +214,8 @@ public class RoadSegment extends DefaultWeightedEdge implements Iterable<Vehicle
         this.laneCount = laneCount;
         this.roadObjects = new RoadObjects(this);
         overtakingSegment = new LaneSegment(this, Lanes.OVERTAKING);
+        laneNeighbours = new LaneNeighbours(laneSegments, overtakingSegment);
+        laneChanges = new LaneChanges(this, laneSegments, overtakingSegment, laneNeighbours);
     }
 
     public RoadSegment(double roadLength, int laneCount, RoadMapping roadMapping,
@@ -646,36 +663,37 @@ public class RoadSegment extends DefaultWeightedEdge implements Iterable<Vehicle
     /**
      * Returns the instantaneous travel time estimated on small sections within a {@code RoadSegment} with assuming the allowed freeflow
      * speed in case of no vehicle.
+     * <p>
+     * The speeds are taken from a {@link SpeedGrid} that is maintained with the vehicle updates, so the query only walks the
+     * grid cells. The grid is (re)built when it is queried for the first time with the given grid length.
+     * </p>
      *
+     * @param gridLength length of the grid cells, in meters
      * @return grid-based instantaneous travel time with adhoc assumed travel time if road is empty
      */
     public double instantaneousTravelTimeOnGrid(double gridLength) {
         Preconditions.checkArgument(gridLength > 0, "gridLength must be > 0");
-        double totalTravelTime = 0;
-        double startPos = 0;
-        // TODO hack here, depends on order of vehicles
-        LinkedList<Vehicle> vehicles = Lists.newLinkedList();
-        Iterators.addAll(vehicles, iterator());
-        while (startPos < roadLength) {
-            double endPos = Math.min(startPos + gridLength, roadLength);
-            double maxRoadSpeed = freeFlowSpeed; // FIXME consider speedlimits
-            totalTravelTime += travelTimeInRange(startPos, endPos, maxRoadSpeed, vehicles);
-            startPos += gridLength;
-        }
-        return totalTravelTime;
-    }
-
-    private static double travelTimeInRange(double begin, double end, double maxRoadSpeed,
-            LinkedList<Vehicle> vehicles) {
-        int count = 0;
-        double sumSpeed = 0;
-        while (!vehicles.isEmpty() && vehicles.getLast().getFrontPosition() < end) {
-            Vehicle veh = vehicles.removeLast();
-            sumSpeed += Math.max(veh.getSpeed(), MIN_SPEED_TT);
-            count++;
+        if (speedGrid == null || speedGrid.cellLength() != gridLength) {
+            speedGrid = new SpeedGrid(roadLength, gridLength, MIN_SPEED_TT);
+            for (final LaneSegment laneSegment : laneSegments) {
+                for (final Vehicle vehicle : laneSegment) {
+                    speedGrid.add(vehicle);
+                }
+            }
+        }
+        // FIXME consider speedlimits
+        return speedGrid.travelTime(freeFlowSpeed);
+    }
+
+    /**
+     * Registers a vehicle that has entered this road segment after the vehicles' positions have been updated.
+     *
+     * @param vehicle
+     */
+    void registerEnteringVehicle(Vehicle vehicle) {
+        if (speedGrid != null) {
+            speedGrid.add(vehicle);
         }
-        double avgSpeed = (count == 0) ? maxRoadSpeed : sumSpeed / count;
-        return (end - begin) / avgSpeed;
     }
 
     /**
@@ -764,6 +782,33 @@ public class RoadSegment extends DefaultWeightedEdge implements Iterable<Vehicle
     public void addVehicle(Vehicle vehicle) {
         vehicle.setRoadSegment(this);
         laneSegments[vehicle.lane() - 1].addVehicle(vehicle);
+        registerEnteringVehicle(vehicle);
+    }
+
+    /**
+     * Adds the given vehicles to this road segment. The vehicles are collected per lane and each lane is sorted only once,
+     * which is considerably faster than {@link #addVehicle(Vehicle)} for a large number of vehicles, e.g. from initial
+     * conditions.
+     *
+     * @param vehicles the vehicles with their lane and position already set
+     */
+    public void addVehicles(Collection<Vehicle> vehicles) {
+        final List<List<Vehicle>> vehiclesPerLane = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            vehiclesPerLane.add(new ArrayList<Vehicle>());
+        }
+        for (final Vehicle vehicle : vehicles) {
+            vehicle.setRoadSegment(this);
+            vehiclesPerLane.get(vehicle.lane() - 1).add(vehicle);
+        }
+        for (int i = 0; i < laneCount; i++) {
+            if (!vehiclesPerLane.get(i).isEmpty()) {
+                laneSegments[i].addVehicles(vehiclesPerLane.get(i));
+            }
+        }
+        for (final Vehicle vehicle : vehicles) {
+            registerEnteringVehicle(vehicle);
+        }
     }
 
     /**
@@ -824,7 +869,8 @@ public class RoadSegment extends DefaultWeightedEdge implements Iterable<Vehicle
     /**
      * Lanes change.
      * <p>
-     * For each vehicle check if a lane change is desired and safe and, if so, make the lane change.
+     * For each vehicle check if a lane change is desired and safe and, if so, make the lane change. Decisions and lane
+     * changes are made in two stages, see {@link #decideLaneChanges(boolean)} and {@link #performLaneChanges(double)}.
      * </p>
      * <p>
      * <code>makeLaneChanges</code> preserves the vehicle sort order, since only lateral movements of vehicles are made.
@@ -835,7 +881,16 @@ public class RoadSegment extends DefaultWeightedEdge implements Iterable<Vehicle
      * @param iterationCount the number of iterations that have been executed
      */
     public void makeLaneChanges(double dt, double simulationTime, long iterationCount) {
+        decideLaneChanges(false);
+        performLaneChanges(dt);
+    }
 
+    /**
+     * First stage of the lane changes: all vehicles decide on the unchanged state of the road segment.
+     *
+     * @param parallel if true, the decisions of the vehicles are made concurrently
+     */
+    public void decideLaneChanges(boolean parallel) {
         if (!hasPeer() && laneCount < 2) {
             // need at least 2 lanes or a peerRoad for lane changing
             return;
@@ -845,41 +900,41 @@ public class RoadSegment extends DefaultWeightedEdge implements Iterable<Vehicle
             initOvertakingLane(); // lazy init.
         }
 
-        // TODO assure priority for lane changes from slow to fast lanes
-        for (final LaneSegment laneSegment : laneSegments) {
-            assert laneSegment.assertInvariant();
-            for (Iterator<Vehicle> vehIterator = laneSegment.iterator(); vehIterator.hasNext(); ) {
-                Vehicle vehicle = vehIterator.next();
-                assert vehicle.roadSegmentId() == id;
-                if (vehicle.inProcessOfLaneChange()) {
-                    // !!! assure update in each simulation timestep
-                    vehicle.updateLaneChangeDelay(dt);
-                } else if (vehicle.considerLaneChange(dt, this)) {
-                    final int targetLane = vehicle.getTargetLane();
-                    assert targetLane != Lanes.NONE;
-                    assert laneSegment(targetLane).type() != Lanes.Type.ENTRANCE;
-                    vehIterator.remove();
-                    vehicle.setLane(targetLane);
-                    laneSegment(targetLane).addVehicle(vehicle);
-                } else if (vehicle.considerOvertakingViaPeer(dt, this)) {
-                    LOG.debug("### perform overtaking: vehicle={}", vehicle);
-                    int targetLane = vehicle.getTargetLane();
-                    assert targetLane == Lanes.OVERTAKING;
-                    vehIterator.remove();
-                    vehicle.setLane(targetLane);
-                    overtakingSegment.addVehicle(vehicle);
-                }
-            }
-        }
-        checkFinishingOvertaking(dt);
+        laneNeighbours.update();
+        laneChanges.decide(parallel);
     }
 
-    public void makeDynamicRoutingDecisions(double dt, double simulationTime, long iterationCount) {
-        for (LaneSegment laneSegment : laneSegments) {
-            for (Vehicle vehicle : laneSegment) {
-                vehicle.routingDecisions().considerRouteAlternatives(simulationTime, this);
+    /**
+     * Second stage of the lane changes: performs the lane changes decided by {@link #decideLaneChanges(boolean)} in a
+     * deterministic order and resolves conflicting lane changes into the same gap.
+     *
+     * @param dt delta-t, simulation time interval, seconds
+     */
+    public void performLaneChanges(double dt) {
+        laneChanges.perform(dt);
+        laneNeighbours.invalidate();
+    }
+
+    /**
+     * Returns true if the vehicle is on this road segment. A vehicle that has been removed, e.g. by a sink, still refers to
+     * its last road segment. The vehicle is looked up on its own lane first and then on all lanes, since it may not yet be
+     * on the lane segment of its lane during a lane change.
+     *
+     * @param vehicle
+     * @return true if the vehicle is on one of the lanes of this road segment
+     */
+    public boolean containsVehicle(Vehicle vehicle) {
+        final int lane = vehicle.lane();
+        if (lane == Lanes.OVERTAKING ? overtakingSegment.containsVehicle(vehicle)
+                : lane >= Lanes.LANE1 && lane <= laneCount && laneSegments[lane - 1].containsVehicle(vehicle)) {
+            return true;
+        }
+        for (final LaneSegment laneSegment : laneSegments) {
+            if (laneSegment.lane() != lane && laneSegment.containsVehicle(vehicle)) {
+                return true;
             }
         }
+        return lane != Lanes.OVERTAKING && overtakingSegment.containsVehicle(vehicle);
     }
 
     private void initOvertakingLane() {
@@ -895,23 +950,6 @@ public class RoadSegment extends DefaultWeightedEdge implements Iterable<Vehicle
         overtakingSegmentInitialized = true;
     }
 
-    private void checkFinishingOvertaking(double dt) {
-        for (Iterator<Vehicle> vehIterator = overtakingSegment.iterator(); vehIterator.hasNext(); ) {
-            Vehicle vehicle = vehIterator.next();
-            if (vehicle.inProcessOfLaneChange()) {
-                // assure update in each simulation timestep
-                vehicle.updateLaneChangeDelay(dt);
-            } else if (vehicle.considerFinishOvertaking(dt, laneSegment(Lanes.MOST_INNER_LANE))) {
-                LOG.debug("vehicle turns back into lane after overtaking: vehicle={}", vehicle);
-                int targetLane = vehicle.getTargetLane();
-                assert targetLane == Lanes.MOST_INNER_LANE;
-                vehIterator.remove();
-                vehicle.setLane(targetLane);
-                laneSegment(Lanes.MOST_INNER_LANE).addVehicle(vehicle);
-            }
-        }
-    }
-
     /**
      * Accelerate.
      *
@@ -920,6 +958,12 @@ public class RoadSegment extends DefaultWeightedEdge implements Iterable<Vehicle
      * @param iterationCount the number of iterations that have been executed
      */
     public void updateVehicleAccelerations(double dt, double simulationTime, long iterationCount) {
+        updateAccelerationNoise(dt);
+        final boolean withNeighbours = laneCount > 1;
+        if (withNeighbours) {
+            // the left lane is considered for European rules
+            laneNeighbours.update();
+        }
         for (final LaneSegment laneSegment : laneSegments) {
             assert laneSegment.laneIsSorted();
             assert laneSegment.assertInvariant();
@@ -931,6 +975,32 @@ public class RoadSegment extends DefaultWeightedEdge implements Iterable<Vehicle
         for (final Vehicle vehicle : overtakingSegment) {
             vehicle.updateAcceleration(dt, this, overtakingSegment, null);
         }
+        if (withNeighbours) {
+            laneNeighbours.invalidate();
+        }
+    }
+
+    LaneNeighbours laneNeighbours() {
+        return laneNeighbours;
+    }
+
+    /**
+     * Advances the acceleration noise of all vehicles in one pass per lane, drawing from this road segment's own random stream.
+     *
+     * @param dt delta-t, simulation time interval, seconds
+     */
+    private void updateAccelerationNoise(double dt) {
+        if (random == null) {
+            random = MyRandom.createStream();
+        }
+        for (final LaneSegment laneSegment : laneSegments) {
+            for (final Vehicle vehicle : laneSegment) {
+                vehicle.updateAccelerationNoise(dt, random);
+            }
+        }
+        for (final Vehicle vehicle : overtakingSegment) {
+            vehicle.updateAccelerationNoise(dt, random);
+        }
     }
 
     private LaneSegment getLeftLane(LaneSegment laneSegment) {
@@ -948,10 +1018,16 @@ public class RoadSegment extends DefaultWeightedEdge implements Iterable<Vehicle
      * @param iterationCount the number of iterations that have been executed
      */
     public void updateVehiclePositionsAndSpeeds(double dt, double simulationTime, long iterationCount) {
+        if (speedGrid != null) {
+            speedGrid.clear();
+        }
         for (final LaneSegment laneSegment : laneSegments) {
             assert laneSegment.laneIsSorted();
             for (final Vehicle vehicle : laneSegment) {
                 vehicle.updatePositionAndSpeed(dt);
+                if (speedGrid != null) {
+                    speedGrid.add(vehicle);
+                }
             }
         }
         for (final Vehicle vehicle : overtakingSegment) {
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ *
+ * This file is part of
+ *
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ *
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ *
+ * -----------------------------------------------------------------------------------------
+ */
+
+
+package org.movsim.simulator.roadnetwork;
+
+import java.util.Arrays;
+
+import org.movsim.simulator.vehicles.Vehicle;
+
+/**
+ * <p>
+ * Grid of the vehicle speeds of a {@link RoadSegment} for the estimation of the instantaneous travel time.
+ * </p>
+ * <p>
+ * The road segment is divided into cells of equal length (the last cell may be shorter). For each cell the grid stores the
+ * sum of the speeds and the number of the vehicles whose front position lies within the cell. Vehicles in front of the
+ * road segment's end are not counted, vehicles on the overtaking lane neither. The grid is rebuilt in the same pass as the
+ * vehicles' positions are updated and vehicles entering the road segment afterwards are added, so a travel time query only
+ * walks the cells and does not depend on the order of the lanes.
+ * </p>
+ */
+final class SpeedGrid {
+
+    private final double roadLength;
+
+    private final double cellLength;
+
+    private final double minSpeed;
+
+    private final double[] speedSums;
+
+    private final int[] counts;
+
+    /**
+     * Constructor.
+     *
+     * @param roadLength road length, in meters
+     * @param cellLength length of the grid cells, in meters
+     * @param minSpeed   minimum speed of a vehicle for a robust estimation in case of stand-stills, in m/s
+     */
+    SpeedGrid(double roadLength, double cellLength, double minSpeed) {
+        assert roadLength > 0 && cellLength > 0 && minSpeed > 0;
+        this.roadLength = roadLength;
+        this.cellLength = cellLength;
+        this.minSpeed = minSpeed;
+        final int cellCount = (int) Math.ceil(roadLength / cellLength);
+        speedSums = new double[cellCount];
+        counts = new int[cellCount];
+    }
+
+    double cellLength() {
+        return cellLength;
+    }
+
+    int cellCount() {
+        return counts.length;
+    }
+
+    void clear() {
+        Arrays.fill(speedSums, 0);
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * Adds the vehicle's current speed to the cell of its current front position.
+     *
+     * @param vehicle
+     */
+    void add(Vehicle vehicle) {
+        if (vehicle.lane() == Lanes.OVERTAKING) {
+            return;
+        }
+        final double frontPosition = vehicle.getFrontPosition();
+        if (frontPosition >= roadLength) {
+            return;
+        }
+        final int cell = frontPosition <= 0 ? 0 : Math.min((int) (frontPosition / cellLength), counts.length - 1);
+        speedSums[cell] += Math.max(vehicle.getSpeed(), minSpeed);
+        ++counts[cell];
+    }
+
+    /**
+     * Returns the number of counted vehicles in the given cell.
+     *
+     * @param cell
+     * @return the number of vehicles in the cell
+     */
+    int count(int cell) {
+        return counts[cell];
+    }
+
+    /**
+     * Returns the travel time over the road segment, the mean speed of the counted vehicles is assumed within each cell and
+     * the given free speed within empty cells.
+     *
+     * @param freeSpeed speed assumed within empty cells, in m/s
+     * @return the travel time, in seconds
+     */
+    double travelTime(double freeSpeed) {
+        double travelTime = 0;
+        final int cellCount = counts.length;
+        for (int cell = 0; cell < cellCount; cell++) {
+            final double begin = cell * cellLength;
+            final double end = Math.min(begin + cellLength, roadLength);
+            final double speed = (counts[cell] == 0) ? freeSpeed : speedSums[cell] / counts[cell];
+            travelTime += (end - begin) / speed;
+        }
+        return travelTime;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ *
+ * This file is part of
+ *
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ *
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ *
+ * -----------------------------------------------------------------------------------------
+ */
+
+package org.movsim.simulator.roadnetwork;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.movsim.simulator.SimulationRun;
+import org.movsim.simulator.roadnetwork.routing.Route;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Time-dependent travel times of the road segments of a road network, averaged per time bin.
+ * </p>
+ * <p>
+ * The instantaneous travel times on the grid are sampled with the given interval while the simulation runs. Profiles of
+ * several simulation runs of the same scenario, e.g. replications with different random seeds, can be added up. The road
+ * segments are identified by their user ids, so the profiles of different road network instances match.
+ * </p>
+ */
+public final class TravelTimeProfiles implements SimulationRun.UpdateStatusCallback {
+
+    private final RoadNetwork roadNetwork;
+
+    private final double binLength;
+
+    private final double sampleInterval;
+
+    private final double gridLength;
+
+    private final int binCount;
+
+    private final Map<String, Profile> profiles = new HashMap<>();
+
+    private double nextSampleTime;
+
+    /**
+     * Constructor.
+     *
+     * @param roadNetwork
+     * @param binLength      length of the time bins, in seconds
+     * @param binCount       number of time bins, later samples are added to the last bin
+     * @param sampleInterval time interval between two samples, in seconds
+     * @param gridLength     grid length for the instantaneous travel times, in meters
+     */
+    public TravelTimeProfiles(RoadNetwork roadNetwork, double binLength, int binCount, double sampleInterval,
+            double gridLength) {
+        Preconditions.checkArgument(binLength > 0, "binLength must be > 0");
+        Preconditions.checkArgument(binCount > 0, "binCount must be > 0");
+        Preconditions.checkArgument(sampleInterval > 0, "sampleInterval must be > 0");
+        this.roadNetwork = Preconditions.checkNotNull(roadNetwork);
+        this.binLength = binLength;
+        this.binCount = binCount;
+        this.sampleInterval = sampleInterval;
+        this.gridLength = gridLength;
+        for (RoadSegment roadSegment : roadNetwork) {
+            profiles.put(roadSegment.userId(), new Profile(roadSegment.roadLength() / roadSegment.getFreeFlowSpeed(),
+                    binCount));
+        }
+    }
+
+    @Override
+    public void updateStatus(double simulationTime) {
+        if (simulationTime < nextSampleTime) {
+            return;
+        }
+        nextSampleTime += sampleInterval;
+        final int bin = bin(simulationTime);
+        for (RoadSegment roadSegment : roadNetwork) {
+            final Profile profile = profiles.get(roadSegment.userId());
+            profile.sums[bin] += roadSegment.instantaneousTravelTimeOnGrid(gridLength);
+            ++profile.counts[bin];
+        }
+    }
+
+    /**
+     * Adds the samples of another simulation run of the same road network.
+     *
+     * @param other
+     */
+    public void add(TravelTimeProfiles other) {
+        Preconditions.checkArgument(other.binCount == binCount && other.binLength == binLength,
+                "profiles with different time bins");
+        for (Map.Entry<String, Profile> entry : other.profiles.entrySet()) {
+            final Profile profile = Preconditions.checkNotNull(profiles.get(entry.getKey()),
+                    "unknown roadSegment=" + entry.getKey());
+            for (int bin = 0; bin < binCount; bin++) {
+                profile.sums[bin] += entry.getValue().sums[bin];
+                profile.counts[bin] += entry.getValue().counts[bin];
+            }
+        }
+    }
+
+    /**
+     * Returns the mean travel time of the road segment in the time bin of the given time. The free flow travel time is
+     * returned if there are no samples in this bin.
+     *
+     * @param roadSegmentUserId
+     * @param time              simulation time, seconds
+     * @return the travel time, in seconds
+     */
+    public double travelTime(String roadSegmentUserId, double time) {
+        final Profile profile = Preconditions.checkNotNull(profiles.get(roadSegmentUserId),
+                "unknown roadSegment=" + roadSegmentUserId);
+        final int bin = bin(time);
+        return profile.counts[bin] == 0 ? profile.freeTravelTime : profile.sums[bin] / profile.counts[bin];
+    }
+
+    /**
+     * Returns the travel time along the route when departing at the given time, the travel time of each road segment is
+     * taken from the time bin in which the road segment is entered.
+     *
+     * @param route
+     * @param departureTime simulation time, seconds
+     * @return the travel time, in seconds
+     */
+    public double travelTime(Route route, double departureTime) {
+        double time = departureTime;
+        for (RoadSegment roadSegment : route) {
+            time += travelTime(roadSegment.userId(), time);
+        }
+        return time - departureTime;
+    }
+
+    private int bin(double time) {
+        return Math.max(0, Math.min(binCount - 1, (int) (time / binLength)));
+    }
+
+    private static final class Profile {
+        final double freeTravelTime;
+        final double[] sums;
+        final int[] counts;
+
+        Profile(double freeTravelTime, int binCount) {
+            this.freeTravelTime = freeTravelTime;
+            sums = new double[binCount];
+            counts = new int[binCount];
+        }
+    }
+}
@@ -126,19 +126,26 @@ public abstract class AbstractTrafficSource implements SimulationTimeStep {
      * Adds a the vehicle to the {@link LaneSegment} at initial front position with initial speed.
      */
     protected Vehicle addVehicle(LaneSegment laneSegment, TestVehicle testVehicle, double frontPosition, double speed) {
-        final Vehicle vehicle = vehGenerator.createVehicle(testVehicle);
+        final Vehicle vehicle = createVehicle(testVehicle);
         initVehicle(laneSegment, frontPosition, speed, vehicle);
         return vehicle;
     }
 
+    /**
+     * Creates the vehicle of the given type just before it enters the road segment.
+     */
+    protected Vehicle createVehicle(TestVehicle testVehicle) {
+        return vehGenerator.createVehicle(testVehicle);
+    }
+
     protected void initVehicle(LaneSegment laneSegment, double frontPosition, double speed, final Vehicle vehicle) {
         vehicle.setFrontPosition(frontPosition);
         vehicle.setSpeed(speed);
         if (vehicle.lane() != laneSegment.lane()) {
             vehicle.setLane(laneSegment.lane());
         }
-        vehicle.setRoadSegment(roadSegment);
-        laneSegment.addVehicle(vehicle);
+        assert laneSegment.roadSegment() == roadSegment;
+        roadSegment.addVehicle(vehicle);
         // status variables of entering vehicle for logging
         enteringVehCounter++;
         xEnterLast = frontPosition;
@@ -12,7 +12,7 @@
 package org.movsim.simulator.roadnetwork.boundaries;
 
 import org.movsim.autogen.Inflow;
-import org.movsim.utilities.LinearInterpolatedFunction;
+import org.movsim.utilities.PiecewiseLinearFunction;
 import org.movsim.utilities.Units;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,9 +28,10 @@ public class InflowTimeSeries {
 
     private static final double CONSTANT_INIT_SPEED = 80 / 3.6;
 
-    private LinearInterpolatedFunction flowFunction;
+    /** cursor over the flow per lane, the simulation time only moves forward */
+    private PiecewiseLinearFunction.Cursor flowFunction;
 
-    private LinearInterpolatedFunction speedFunction;
+    private PiecewiseLinearFunction.Cursor speedFunction;
 
     /**
      * Instantiates a new inflow time series.
@@ -56,8 +57,8 @@ public class InflowTimeSeries {
             LOG.debug("add data: flow={}, speed={}", flowValues[i], speedValues[i]);
         }
 
-        flowFunction = new LinearInterpolatedFunction(timeValues, flowValues);
-        speedFunction = new LinearInterpolatedFunction(timeValues, speedValues);
+        flowFunction = new PiecewiseLinearFunction(timeValues, flowValues).cursor();
+        speedFunction = new PiecewiseLinearFunction(timeValues, speedValues).cursor();
     }
 
     public double getFlowPerLane(double time) {
@@ -74,4 +75,38 @@ public class InflowTimeSeries {
         return speedFunction.value(time);
     }
 
+    /**
+     * @return a new cursor over the departure times of the flow per lane, see {@link DepartureCursor}
+     */
+    public DepartureCursor departureCursor() {
+        return new DepartureCursor();
+    }
+
+    /**
+     * Departure times from the integrated flow per lane. Like the cursors of the time series, a departure cursor is
+     * meant for monotone times and must not be shared between lanes or threads.
+     */
+    public final class DepartureCursor {
+
+        private final PiecewiseLinearFunction.Cursor flowCursor = flowFunction == null ?
+                null :
+                flowFunction.function().cursor();
+
+        private DepartureCursor() {
+        }
+
+        /**
+         * @param time     the time from which the flow is integrated
+         * @param vehicles the number of vehicles, not necessarily integer
+         * @return the time at which the flow per lane since the given time amounts to the number of vehicles, or
+         * {@link Double#POSITIVE_INFINITY} if no further vehicles depart
+         */
+        public double nextDepartureTime(double time, double vehicles) {
+            if (flowCursor == null) {
+                return time + vehicles / CONSTANT_FLOW_PER_LANE;
+            }
+            return flowCursor.inverseIntegral(time, vehicles);
+        }
+    }
+
 }
@@ -1,62 +1,106 @@
 package org.movsim.simulator.roadnetwork.boundaries;
 
 import com.google.common.base.Preconditions;
-import org.movsim.scenario.boundary.autogen.BoundaryConditionsType;
-import org.movsim.scenario.boundary.autogen.MovsimMicroscopicBoundaryConditions;
-import org.movsim.scenario.boundary.autogen.RoadMicroscopicBoundaryConditionsType;
+import org.movsim.scenario.boundary.autogen.BoundaryConditionType;
+import org.movsim.scenario.boundary.autogen.ObjectFactory;
+import org.movsim.simulator.roadnetwork.routing.Routing;
 import org.movsim.xml.InputLoader;
+import org.movsim.xml.InputLoader.XmlInput;
+import org.movsim.xml.XmlRecordReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.annotation.CheckForNull;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
 
+/**
+ * Microscopic boundary conditions file. The file is validated and indexed by road when it is opened, the records of the
+ * roads are streamed by the {@link MicroscopicBoundaryInputData} when the simulation reaches their entry times.
+ */
 public class MicroscopicBoundaryConditions {
 
     private static final Logger LOG = LoggerFactory.getLogger(MicroscopicBoundaryConditions.class);
 
-    private final Map<String, RoadMicroscopicBoundaryConditionsType> roadToBoundaryConditions;
+    private static final String ROOT = "MovsimMicroscopicBoundaryConditions";
+    private static final String ROAD = "RoadMicroscopicBoundaryConditions";
+    private static final String RECORD = "BoundaryCondition";
+
+    private final Set<String> roadIds = new HashSet<>();
 
     private final File file;
 
-    private final String timeFormat;
+    private String timeFormat = "";
 
     public MicroscopicBoundaryConditions(File file) {
         this.file = Preconditions.checkNotNull(file);
         Preconditions.checkArgument(file.exists(), "micro boundary conditions file " + file + " not found");
-        roadToBoundaryConditions = new HashMap<>();
-
-        MovsimMicroscopicBoundaryConditions input = InputLoader.unmarshallMicroBoundaryConditions(file);
-        LOG.info("loaded initial conditions from file={}", file);
 
-        this.timeFormat = input.getTimeFormat();
+        InputLoader.validate(file, XmlInput.MICRO_BOUNDARY_CONDITIONS);
+        scan();
+        LOG.info("indexed micro boundary conditions for {} roads from file={}", roadIds.size(), file);
         LOG.debug("for input file={} use time format={}", file, timeFormat);
-        fillMapping(input);
     }
 
     /**
      * @throws IllegalStateException
      */
-    private void fillMapping(MovsimMicroscopicBoundaryConditions input) {
-        for (RoadMicroscopicBoundaryConditionsType roadConditions : input.getRoadMicroscopicBoundaryConditions()) {
-            String roadId = roadConditions.getId();
-            if (roadToBoundaryConditions.containsKey(roadId)) {
-                throw new IllegalStateException("roadId=" + roadId + "already used in input file=" + file);
+    private void scan() {
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(input);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    if (ROOT.equals(reader.getLocalName())) {
+                        String format = reader.getAttributeValue(null, "time_format");
+                        timeFormat = format == null ? "" : format;
+                    } else if (ROAD.equals(reader.getLocalName())) {
+                        String roadId = reader.getAttributeValue(null, "id");
+                        if (!roadIds.add(roadId)) {
+                            throw new IllegalStateException("roadId=" + roadId + "already used in input file=" + file);
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
             }
-            roadToBoundaryConditions.put(roadId, roadConditions);
+        } catch (IOException | XMLStreamException e) {
+            throw new IllegalStateException("cannot read micro boundary conditions from file=" + file, e);
         }
-        LOG.info("unmarshalled initial conditions for {} roads", roadToBoundaryConditions.size());
     }
 
     public String getTimeFormat() {
         return timeFormat;
     }
 
-    @CheckForNull
-    public BoundaryConditionsType getBoundaryConditions(String roadUserId) {
-        return roadToBoundaryConditions.get(roadUserId).getBoundaryConditions();
+    public boolean hasBoundaryConditions(String roadUserId) {
+        return roadIds.contains(roadUserId);
+    }
+
+    /**
+     * Opens the stream of the boundary conditions of the given road.
+     *
+     * @throws IllegalArgumentException
+     *             if the file has no boundary conditions for the road
+     */
+    public MicroscopicBoundaryInputData openBoundaryConditions(String roadUserId, long timeOffsetMillis,
+            Routing routing) {
+        Preconditions.checkArgument(hasBoundaryConditions(roadUserId),
+                "no micro boundary conditions for road=" + roadUserId + " in file=" + file);
+        XmlRecordReader<BoundaryConditionType> records = new XmlRecordReader<>(file, ObjectFactory.class,
+                BoundaryConditionType.class, RECORD);
+        records.moveToSection(ROAD, "id", roadUserId);
+        return new MicroscopicBoundaryInputData(records, timeFormat, timeOffsetMillis, routing);
     }
 
 }
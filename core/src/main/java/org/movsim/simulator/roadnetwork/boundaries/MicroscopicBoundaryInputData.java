@@ -2,51 +2,118 @@ package org.movsim.simulator.roadnetwork.boundaries;
 
 import com.google.common.base.Preconditions;
 import org.movsim.scenario.boundary.autogen.BoundaryConditionType;
-import org.movsim.scenario.boundary.autogen.BoundaryConditionsType;
 import org.movsim.scenario.boundary.autogen.VehicleUserDataType;
 import org.movsim.simulator.roadnetwork.Lanes;
 import org.movsim.simulator.roadnetwork.routing.Route;
 import org.movsim.simulator.roadnetwork.routing.Routing;
 import org.movsim.simulator.vehicles.Vehicle;
 import org.movsim.utilities.TimeUtilities;
+import org.movsim.xml.XmlRecordReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
-
-public class MicroscopicBoundaryInputData {
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.PriorityQueue;
+
+/**
+ * <p>
+ * Time-ordered stream of the microscopic boundary conditions of a road. Only a look-ahead window of records is held in
+ * memory, the vehicle of a record is created when the simulation reaches its entry time, see
+ * {@link #pollVehicle(TrafficSourceMicro)}.
+ * </p>
+ * <p>
+ * The records are expected in order of their entry times. Records which are out of order by less than the look-ahead
+ * window are sorted, otherwise an {@link IllegalStateException} is thrown when the record is reached.
+ * </p>
+ * <p>
+ * The stream holds the input file open until all records have been read or it is closed, see {@link #close()}.
+ * </p>
+ */
+public class MicroscopicBoundaryInputData implements Closeable {
 
     private static final Logger LOG = LoggerFactory.getLogger(MicroscopicBoundaryInputData.class);
 
-    private final BoundaryConditionsType boundaryConditions;
+    /** number of records read ahead for sorting by entry time */
+    static final int LOOK_AHEAD = 256;
+
+    private final XmlRecordReader<BoundaryConditionType> records;
     private final long timeOffsetMillis;
     private final String timeFormat;
     private final Routing routing;
 
-    public MicroscopicBoundaryInputData(BoundaryConditionsType boundaryConditions, String timeFormat,
+    private final PriorityQueue<Entry> window = new PriorityQueue<>(LOOK_AHEAD);
+    private long lastTime = Long.MIN_VALUE;
+    private int recordCount;
+
+    public MicroscopicBoundaryInputData(XmlRecordReader<BoundaryConditionType> records, String timeFormat,
             long timeOffsetMillis, Routing routing) {
-        this.boundaryConditions = Preconditions.checkNotNull(boundaryConditions);
+        this.records = Preconditions.checkNotNull(records);
         this.routing = Preconditions.checkNotNull(routing);
         this.timeFormat = timeFormat;
         this.timeOffsetMillis = timeOffsetMillis;
+        fillWindow();
     }
 
-    public Map<Long, Vehicle> createVehicles(TrafficSourceMicro trafficSource) {
-        Preconditions.checkNotNull(trafficSource);
-        Map<Long, Vehicle> vehicles = new HashMap<>();
-        int size = boundaryConditions.getBoundaryCondition().size();
-        LOG.info("number of vehicleBoundaryCondition entries={}", size);
-        for (BoundaryConditionType boundaryCondition : boundaryConditions.getBoundaryCondition()) {
-            Vehicle vehicle = createVehicle(boundaryCondition, trafficSource);
+    private void fillWindow() {
+        while (window.size() < LOOK_AHEAD && records.hasNext()) {
+            BoundaryConditionType record = records.next();
+            Preconditions.checkArgument(record.getTime() != null && record.getLabel() != null,
+                    "time and label required in micro boundary condition=" + recordCount);
             // round to seconds
-            long time = Math
-                    .round(TimeUtilities.convertToSeconds(boundaryCondition.getTime(), timeFormat, timeOffsetMillis));
-            Preconditions.checkArgument(!vehicles.containsKey(time),
-                    "time=" + time + " already used as micro boundary condition");
-            vehicles.put(time, vehicle);
+            long time = Math.round(TimeUtilities.convertToSeconds(record.getTime(), timeFormat, timeOffsetMillis));
+            window.add(new Entry(time, recordCount++, record));
         }
-        return vehicles;
+    }
+
+    /**
+     * @return true if there are records left
+     */
+    public boolean hasNext() {
+        return !window.isEmpty();
+    }
+
+    /**
+     * @return the entry time of the next record in seconds
+     * @throws IllegalStateException
+     *             if there are no records left
+     */
+    public long nextTime() {
+        Preconditions.checkState(!window.isEmpty(), "no micro boundary conditions left");
+        return window.peek().time;
+    }
+
+    /**
+     * Closes the input file, the records not yet polled are discarded.
+     */
+    @Override
+    public void close() throws IOException {
+        window.clear();
+        records.close();
+    }
+
+    /**
+     * Creates the vehicle of the next record.
+     *
+     * @return the vehicle, its entry time is {@link #nextTime()} before the call
+     * @throws IllegalArgumentException
+     *             if the entry time has already been used
+     * @throws IllegalStateException
+     *             if the records are out of order beyond the look-ahead window
+     */
+    public Vehicle pollVehicle(TrafficSourceMicro trafficSource) {
+        Preconditions.checkNotNull(trafficSource);
+        final Entry entry = window.poll();
+        Preconditions.checkState(entry != null, "no micro boundary conditions left");
+        Preconditions.checkArgument(entry.time != lastTime,
+                "time=" + entry.time + " already used as micro boundary condition");
+        if (entry.time < lastTime) {
+            throw new IllegalStateException("micro boundary condition with time=" + entry.time
+                    + " not sorted within look-ahead window of " + LOOK_AHEAD + " records");
+        }
+        lastTime = entry.time;
+        fillWindow();
+        return createVehicle(entry.record, trafficSource);
     }
 
     private Vehicle createVehicle(BoundaryConditionType record, TrafficSourceMicro trafficSource) {
@@ -113,4 +180,24 @@ public class MicroscopicBoundaryInputData {
         return vehicle;
     }
 
+    private static final class Entry implements Comparable<Entry> {
+        final long time;
+        final int sequence;
+        final BoundaryConditionType record;
+
+        Entry(long time, int sequence, BoundaryConditionType record) {
+            this.time = time;
+            this.sequence = sequence;
+            this.record = record;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (time != other.time) {
+                return Long.compare(time, other.time);
+            }
+            return Integer.compare(sequence, other.sequence);
+        }
+    }
+
 }
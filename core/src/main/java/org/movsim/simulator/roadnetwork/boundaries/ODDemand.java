@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden <movsim.org@gmail.com>
+ * ----------------------------------------------------------------------------------------- This file is part of MovSim - the
+ * multi-model open-source vehicular-traffic simulator. MovSim is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version. MovSim is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public License along with MovSim. If not, see
+ * <http://www.gnu.org/licenses/> or <http://www.movsim.org>.
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.roadnetwork.boundaries;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.annotation.CheckForNull;
+
+import org.movsim.io.CsvReaderUtil;
+import org.movsim.simulator.roadnetwork.routing.Route;
+import org.movsim.simulator.roadnetwork.routing.Routing;
+import org.movsim.utilities.AliasTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * Origin-destination demand given as time slices of an OD matrix. Each line of the csv input holds one matrix entry
+ * </p>
+ * 
+ * <pre>
+ * # start[s], end[s], origin road, destination road, number of vehicles
+ * 0, 900, A1, B3, 120
+ * </pre>
+ * <p>
+ * The vehicles of an entry depart uniformly within the time slice. Per origin the slices are merged into elementary
+ * intervals with constant rates; the destinations of each interval are sampled from an {@link AliasTable} in constant time.
+ * The routes of all OD pairs are computed once before the simulation starts, see {@link #precomputeRoutes(Routing)}.
+ * </p>
+ */
+public class ODDemand {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ODDemand.class);
+
+    private static final char SEPARATOR = ',';
+
+    private static final String COMMENT = "#";
+
+    private final Map<String, OriginDemand> origins;
+
+    public ODDemand(File file) {
+        Preconditions.checkNotNull(file);
+        Preconditions.checkArgument(file.exists(), "od demand file " + file + " not found");
+        this.origins = parse(CsvReaderUtil.readData(file, SEPARATOR), file.toString());
+        LOG.info("loaded od demand for {} origins from file={}", origins.size(), file);
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     */
+    private static Map<String, OriginDemand> parse(List<String[]> rows, String source) {
+        final Map<String, List<Slice>> slicesByOrigin = new LinkedHashMap<>();
+        int lineNumber = 0;
+        for (String[] row : rows) {
+            ++lineNumber;
+            if (row.length == 0 || (row.length == 1 && row[0].trim().isEmpty()) || row[0].trim().startsWith(COMMENT)) {
+                continue;
+            }
+            Preconditions.checkArgument(row.length == 5, "expected 5 columns in line=" + lineNumber + " of " + source);
+            final Slice slice;
+            try {
+                slice = new Slice(Double.parseDouble(row[0].trim()), Double.parseDouble(row[1].trim()),
+                        row[3].trim(), Double.parseDouble(row[4].trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("cannot parse line=" + lineNumber + " of " + source, e);
+            }
+            final String origin = row[2].trim();
+            Preconditions.checkArgument(!origin.isEmpty() && !slice.destination.isEmpty(),
+                    "origin and destination must be given in line=" + lineNumber + " of " + source);
+            Preconditions.checkArgument(slice.end > slice.start && slice.vehicles >= 0
+                    && !Double.isInfinite(slice.vehicles), "invalid time slice or demand in line=" + lineNumber
+                    + " of " + source);
+            List<Slice> slices = slicesByOrigin.get(origin);
+            if (slices == null) {
+                slices = Lists.newArrayList();
+                slicesByOrigin.put(origin, slices);
+            }
+            slices.add(slice);
+        }
+        final Map<String, OriginDemand> origins = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Slice>> entry : slicesByOrigin.entrySet()) {
+            origins.put(entry.getKey(), new OriginDemand(entry.getKey(), entry.getValue()));
+        }
+        return Collections.unmodifiableMap(origins);
+    }
+
+    public Collection<String> getOrigins() {
+        return origins.keySet();
+    }
+
+    @CheckForNull
+    public OriginDemand getOriginDemand(String originRoadId) {
+        return origins.get(originRoadId);
+    }
+
+    /**
+     * Computes the routes of all OD pairs. The origins are processed concurrently.
+     *
+     * @throws IllegalArgumentException
+     *             if a road cannot be found
+     * @throws IllegalStateException
+     *             if a destination cannot be reached from its origin
+     */
+    public void precomputeRoutes(Routing routing) {
+        final long start = System.currentTimeMillis();
+        origins.values().parallelStream().forEach(origin -> origin.precomputeRoutes(routing));
+        LOG.info("precomputed routes for {} origins in {} ms", origins.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Demand of a single origin road as a step function of time.
+     */
+    public static final class OriginDemand {
+
+        private final String origin;
+
+        private final String[] destinations;
+
+        private final Route[] routes;
+
+        /** boundaries of the elementary intervals, size is the number of intervals plus one */
+        private final double[] times;
+
+        /** total rates in 1/s indexed by interval */
+        private final double[] rates;
+
+        /** destination tables indexed by interval, null for intervals without demand */
+        private final AliasTable[] destinationTables;
+
+        OriginDemand(String origin, List<Slice> slices) {
+            this.origin = origin;
+            final Map<String, Integer> destinationIndices = new LinkedHashMap<>();
+            final TreeSet<Double> boundaries = new TreeSet<>();
+            for (Slice slice : slices) {
+                if (!destinationIndices.containsKey(slice.destination)) {
+                    destinationIndices.put(slice.destination, destinationIndices.size());
+                }
+                boundaries.add(slice.start);
+                boundaries.add(slice.end);
+            }
+            destinations = destinationIndices.keySet().toArray(new String[destinationIndices.size()]);
+            routes = new Route[destinations.length];
+            times = new double[boundaries.size()];
+            int k = 0;
+            for (double time : boundaries) {
+                times[k++] = time;
+            }
+
+            final int intervalCount = times.length - 1;
+            final double[][] destinationRates = new double[intervalCount][destinations.length];
+            for (Slice slice : slices) {
+                final double rate = slice.vehicles / (slice.end - slice.start);
+                final int destination = destinationIndices.get(slice.destination);
+                for (int i = Arrays.binarySearch(times, slice.start); times[i] < slice.end; i++) {
+                    destinationRates[i][destination] += rate;
+                }
+            }
+            rates = new double[intervalCount];
+            destinationTables = new AliasTable[intervalCount];
+            for (int i = 0; i < intervalCount; i++) {
+                for (double rate : destinationRates[i]) {
+                    rates[i] += rate;
+                }
+                if (rates[i] > 0) {
+                    destinationTables[i] = new AliasTable(destinationRates[i]);
+                }
+            }
+        }
+
+        void precomputeRoutes(Routing routing) {
+            final Map<String, Route> found = routing.findRoutes(origin, Arrays.asList(destinations));
+            for (int i = 0; i < destinations.length; i++) {
+                routes[i] = found.get(destinations[i]);
+            }
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        public List<String> getDestinations() {
+            return Collections.unmodifiableList(Arrays.asList(destinations));
+        }
+
+        /**
+         * @return the total departure rate in 1/s at the given time
+         */
+        public double getRate(double time) {
+            final int interval = interval(time);
+            return interval < 0 ? 0 : rates[interval];
+        }
+
+        /**
+         * Samples the destination of a vehicle departing at the given time.
+         *
+         * @param time
+         * @param random
+         *            random number within [0,1)
+         * @return the index of the destination
+         * @throws IllegalStateException
+         *             if there is no demand at the given time
+         */
+        public int sampleDestination(double time, double random) {
+            final int interval = interval(time);
+            if (interval < 0 || destinationTables[interval] == null) {
+                throw new IllegalStateException("no demand from origin=" + origin + " at time=" + time);
+            }
+            return destinationTables[interval].sample(random);
+        }
+
+        public String getDestination(int index) {
+            return destinations[index];
+        }
+
+        /**
+         * @return the precomputed route to the destination with the given index
+         * @throws IllegalStateException
+         *             if the routes have not been precomputed
+         */
+        public Route getRoute(int index) {
+            Preconditions.checkState(routes[index] != null, "routes of origin=" + origin + " not precomputed");
+            return routes[index];
+        }
+
+        /**
+         * @return the index of the interval containing the time or -1 if the time is outside of all intervals
+         */
+        private int interval(double time) {
+            if (time < times[0] || time >= times[times.length - 1]) {
+                return -1;
+            }
+            final int index = Arrays.binarySearch(times, time);
+            return index >= 0 ? index : -index - 2;
+        }
+    }
+
+    private static final class Slice {
+        final double start;
+        final double end;
+        final String destination;
+        final double vehicles;
+
+        Slice(double start, double end, String destination, double vehicles) {
+            this.start = start;
+            this.end = end;
+            this.destination = destination;
+            this.vehicles = vehicles;
+        }
+    }
+}
@@ -27,6 +27,7 @@ package org.movsim.simulator.roadnetwork.boundaries;
 
 import org.movsim.simulator.MovsimConstants;
 import org.movsim.simulator.roadnetwork.LaneSegment;
+import org.movsim.simulator.roadnetwork.Lanes;
 import org.movsim.simulator.roadnetwork.RoadSegment;
 import org.movsim.simulator.vehicles.TestVehicle;
 import org.movsim.simulator.vehicles.TrafficCompositionGenerator;
@@ -35,9 +36,6 @@ import org.movsim.utilities.Units;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.SortedSet;
-import java.util.TreeSet;
-
 /**
  * simple onramp model which drops vehicles in the largest gap on the {@link RoadSegment}.
  * <p>
@@ -55,6 +53,15 @@ public class SimpleRamp extends AbstractTrafficSource {
 
     private final InflowTimeSeries inflowTimeSeries;
 
+    // result of the last gap search, kept in fields to avoid allocations in each time step
+    private int bestLane;
+
+    private double bestGapToLeader;
+
+    private double bestEnterPosition;
+
+    private double bestEnterSpeed;
+
     public SimpleRamp(TrafficCompositionGenerator vehGenerator, RoadSegment roadSegment,
             org.movsim.autogen.SimpleRamp simpleRampData, InflowTimeSeries inflowTimeSeries) {
         super(vehGenerator, roadSegment);
@@ -79,11 +86,8 @@ public class SimpleRamp extends AbstractTrafficSource {
         if (nWait >= 1.0) {
             // try to insert vehicle
             final TestVehicle testVehicle = vehGenerator.getTestVehicle();
-            SortedSet<GapCandidate> gapCandidates = findLargestPossibleGap(testVehicle); // only one insert per timestep
-
-            if (!gapCandidates.isEmpty()) {
-                GapCandidate gap = gapCandidates.first();
-                addVehicle(roadSegment.laneSegment(gap.laneIndex), testVehicle, gap.enterPosition, gap.enterSpeed);
+            if (findLargestPossibleGap(testVehicle)) { // only one insert per timestep
+                addVehicle(roadSegment.laneSegment(bestLane), testVehicle, bestEnterPosition, bestEnterSpeed);
                 // TODO testwise adding, check for accidents
                 nWait--;
                 incrementInflowCount(1);
@@ -92,41 +96,39 @@ public class SimpleRamp extends AbstractTrafficSource {
         }
     }
 
-    private SortedSet<GapCandidate> findLargestPossibleGap(TestVehicle testVehicle) {
-        SortedSet<GapCandidate> gapCandidates = new TreeSet<>();
-
-        for (LaneSegment laneSegment : roadSegment.laneSegments()) {
-            for (Vehicle vehicle : laneSegment) {
-                evaluateVehicle(vehicle, laneSegment, testVehicle, gapCandidates);
+    /**
+     * Scans all lanes in a single pass and keeps the largest gap found so far. For identical gaps the lane to the right
+     * (smaller lane) is preferred, within a lane the candidate found first.
+     *
+     * @return true if a gap was found, its entering data is given by {@link #bestLane}, {@link #bestEnterPosition} and
+     *         {@link #bestEnterSpeed}
+     */
+    private boolean findLargestPossibleGap(TestVehicle testVehicle) {
+        bestLane = Vehicle.LANE_NOT_SET;
+        bestGapToLeader = Double.NEGATIVE_INFINITY;
+
+        for (int lane = Lanes.MOST_INNER_LANE; lane <= roadSegment.laneCount(); lane++) {
+            final LaneSegment laneSegment = roadSegment.laneSegment(lane);
+            for (int i = 0, count = laneSegment.vehicleCount(); i < count; i++) {
+                evaluateVehicle(laneSegment.getVehicle(i), laneSegment, testVehicle);
             }
 
             // check also rear vehicles of next downstream segment
             Vehicle rearVehicleNextLaneSegment = laneSegment.sinkLaneSegment().rearVehicle();
             if (rearVehicleNextLaneSegment != null) {
-                evaluateVehicle(rearVehicleNextLaneSegment, laneSegment, testVehicle, gapCandidates);
+                evaluateVehicle(rearVehicleNextLaneSegment, laneSegment, testVehicle);
             }
             if (rearVehicleNextLaneSegment == null && laneSegment.vehicleCountWithoutObstacles() == 0) {
-                gapCandidates.add(new GapCandidate(MovsimConstants.GAP_INFINITY, laneSegment.lane(),
+                considerGap(MovsimConstants.GAP_INFINITY, laneSegment.lane(),
                         0.5 * roadSegment.roadLength() - testVehicle.length(),
-                        testVehicle.getRelativeRandomizationV0()));
+                        testVehicle.getRelativeRandomizationV0());
             }
         }
 
-        // if (false) {
-        // int counter = 0;
-        // System.out.println("gap candidated size=" + gapCandidates.size());
-        // for (GapCandidate gap : gapCandidates) {
-        // ++counter;
-        // System.out.println("candidate " + counter + ":" + gap.toString());
-        // }
-        // }
-
-        return gapCandidates;
-
+        return bestLane != Vehicle.LANE_NOT_SET;
     }
 
-    private void evaluateVehicle(Vehicle vehicle, LaneSegment laneSegment, TestVehicle testVehicle,
-            SortedSet<GapCandidate> gapCandidates) {
+    private void evaluateVehicle(Vehicle vehicle, LaneSegment laneSegment, TestVehicle testVehicle) {
         if (vehicle.getRearPosition() < testVehicle.length() + MINIMUM_GAP_BOUNDARY) {
             // available upstream road segment too small
             LOG.debug("no sufficient upstream gap: rearPosition={}", vehicle.getRearPosition());
@@ -149,7 +151,17 @@ public class SimpleRamp extends AbstractTrafficSource {
                 vehicle.getRearPosition() - relativeGapToLeader * gap + 0.5 * testVehicle.length());
         final double gapToLeader = vehicle.getRearPosition() - enterFrontPosition;
         double speed = relativeSpeedToLeader * vehicle.getSpeed();
-        gapCandidates.add(new GapCandidate(gapToLeader, laneSegment.lane(), enterFrontPosition, speed));
+        considerGap(gapToLeader, laneSegment.lane(), enterFrontPosition, speed);
+    }
+
+    private void considerGap(double gapToLeader, int lane, double enterPosition, double enterSpeed) {
+        // lanes are scanned in increasing order, so a strict comparison keeps the first of identical gaps
+        if (gapToLeader > bestGapToLeader) {
+            bestGapToLeader = gapToLeader;
+            bestLane = lane;
+            bestEnterPosition = enterPosition;
+            bestEnterSpeed = enterSpeed;
+        }
     }
 
     @Override
@@ -157,52 +169,4 @@ public class SimpleRamp extends AbstractTrafficSource {
         return inflowTimeSeries.getFlowPerLane(time) * roadSegment.laneCount();
     }
 
-    final class GapCandidate implements Comparable<GapCandidate> {
-
-        final int laneIndex;
-        final double gapToLeader;
-        final double enterPosition;
-        final double enterSpeed;
-
-        public GapCandidate(double gapToLeader, int laneIndex, double enterPosition, double enterSpeed) {
-            this.gapToLeader = gapToLeader;
-            this.laneIndex = laneIndex;
-            this.enterPosition = enterPosition;
-            this.enterSpeed = enterSpeed;
-        }
-
-        @Override
-        public int compareTo(GapCandidate o) {
-            // BEFORE = -1, EQUAL = 0, AFTER = 1
-
-            // same instance
-            if (this == o) {
-                return 0;
-            }
-
-            // compare gaps
-            if (this.gapToLeader > o.gapToLeader) {
-                return -1;
-            } else if (this.gapToLeader < o.gapToLeader) {
-                return 1;
-            }
-
-            // gaps identical, compare lanes, prefer small laneIndex index (i.e. laneIndex to the right)
-            if (this.laneIndex < o.laneIndex) {
-                return -1;
-            } else if (this.laneIndex > o.laneIndex) {
-                return 1;
-            }
-
-            return 0;
-        }
-
-        @Override
-        public String toString() {
-            return "GapCandidate [laneIndex=" + laneIndex + ", gapToLeader=" + gapToLeader + ", enterPosition="
-                    + enterPosition + ", enterSpeed=" + enterSpeed + "]";
-        }
-
-    }
-
-}
\ No newline at end of file
+}
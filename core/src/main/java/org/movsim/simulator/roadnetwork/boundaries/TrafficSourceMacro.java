@@ -34,6 +34,8 @@ import org.movsim.simulator.vehicles.Vehicle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 public class TrafficSourceMacro extends AbstractTrafficSource {
 
     private static final Logger LOG = LoggerFactory.getLogger(TrafficSourceMacro.class);
@@ -53,6 +55,14 @@ public class TrafficSourceMacro extends AbstractTrafficSource {
         this.inflowTimeSeries = inflowTimeSeries;
     }
 
+    /**
+     * Instantiates an upstream boundary whose inflow is given by the subclass, see {@link #getFlowPerLane(double)} and
+     * {@link #getEntrySpeed(double)}.
+     */
+    protected TrafficSourceMacro(TrafficCompositionGenerator vehGenerator, RoadSegment roadSegment) {
+        this(vehGenerator, roadSegment, null);
+    }
+
     @Override
     public void timeStep(double dt, double simulationTime, long iterationCount) {
         final double totalInflow = getTotalInflow(simulationTime);
@@ -64,6 +74,8 @@ public class TrafficSourceMacro extends AbstractTrafficSource {
             if (testVehicle == null) {
                 testVehicle = vehGenerator.getTestVehicle();
             }
+            // the queue of waiting vehicles approximates the time since the departure
+            final double departureDelay = nWait / Math.max(getFlowPerLane(simulationTime), 0.001);
             // try to insert new vehicle at inflow, iterate periodically over n lanes
             int iLane = laneEnterLast;
             for (int i = 0, N = roadSegment.laneCount(); i < N; i++) {
@@ -71,7 +83,8 @@ public class TrafficSourceMacro extends AbstractTrafficSource {
                 final LaneSegment laneSegment = roadSegment.laneSegment(iLane);
                 // laneIndex index is identical to vehicle's lanenumber
                 // type of new vehicle
-                final boolean isEntered = tryEnteringNewVehicle(testVehicle, laneSegment, simulationTime, totalInflow);
+                final boolean isEntered = tryEnteringNewVehicle(testVehicle, laneSegment, simulationTime, totalInflow,
+                        departureDelay);
                 if (isEntered) {
                     testVehicle = null;
                     nWait--;
@@ -100,17 +113,19 @@ public class TrafficSourceMacro extends AbstractTrafficSource {
      * </p>
      *
      * @param laneSegment
-     * @param time        the time
-     * @param qBC         the q bc
+     * @param time           the time
+     * @param qBC            the q bc
+     * @param departureDelay the time since the departure of the vehicle at the upstream boundary
      * @return true, if successful
      */
-    private boolean tryEnteringNewVehicle(TestVehicle testVehicle, LaneSegment laneSegment, double time, double qBC) {
+    protected boolean tryEnteringNewVehicle(TestVehicle testVehicle, LaneSegment laneSegment, double time, double qBC,
+            double departureDelay) {
 
         final Vehicle leader = laneSegment.rearVehicle();
 
         // (1) empty road
         if (leader == null) {
-            enterVehicleOnEmptyRoad(laneSegment, time, testVehicle);
+            enterVehicleOnEmptyRoad(laneSegment, time, testVehicle, departureDelay);
             return true;
         }
         // (2) check if gap to leader is sufficiently large origin of road section is assumed to be zero
@@ -123,7 +138,7 @@ public class TrafficSourceMacro extends AbstractTrafficSource {
             minRequiredGap = leader.getSpeed();
         }
         if (netGapToLeader > minRequiredGap) {
-            enterVehicle(laneSegment, time, minRequiredGap, testVehicle, leader);
+            enterVehicle(laneSegment, time, minRequiredGap, testVehicle, leader, departureDelay);
             return true;
         }
         // no entering possible
@@ -136,10 +151,13 @@ public class TrafficSourceMacro extends AbstractTrafficSource {
      * @param laneSegment
      * @param time         the time
      * @param vehPrototype the vehicle prototype
+     * @param departureDelay
      */
-    private void enterVehicleOnEmptyRoad(LaneSegment laneSegment, double time, TestVehicle testVehicle) {
-        final double xEnter = 0;
-        final double vEnter = inflowTimeSeries.getSpeed(time);
+    private void enterVehicleOnEmptyRoad(LaneSegment laneSegment, double time, TestVehicle testVehicle,
+            double departureDelay) {
+        final double vEnter = getEntrySpeed(time);
+        final double xEnter = Math.max(0,
+                Math.min(getEntryDistance(vEnter, departureDelay, null), roadSegment.roadLength()));
         addVehicle(laneSegment, testVehicle, xEnter, vEnter);
         LOG.debug("add vehicle from upstream boundary to empty road: xEnter={}, vEnter={}", xEnter, vEnter);
     }
@@ -152,11 +170,12 @@ public class TrafficSourceMacro extends AbstractTrafficSource {
      * @param sFreeMin
      * @param vehPrototype
      * @param leader
+     * @param departureDelay
      */
     private void enterVehicle(LaneSegment laneSegment, double time, double sFreeMin, TestVehicle testVehicle,
-            Vehicle leader) {
+            Vehicle leader, double departureDelay) {
 
-        final double speedDefault = inflowTimeSeries.getSpeed(time);
+        final double speedDefault = getEntrySpeed(time);
 
         final double sFree = leader.getRearPosition();
         final double xLast = leader.getMidPosition();
@@ -166,9 +185,8 @@ public class TrafficSourceMacro extends AbstractTrafficSource {
         final double vEnterTest = Math.min(speedDefault, 1.5 * vLast);
         final double lengthLast = leader.getLength();
 
-        final double qBC = inflowTimeSeries.getFlowPerLane(time);
         final double xEnter = Math
-                .max(0, Math.min(vEnterTest * nWait / Math.max(qBC, 0.001), xLast - sFreeMin - lengthLast));
+                .max(0, Math.min(getEntryDistance(vEnterTest, departureDelay, leader), xLast - sFreeMin - lengthLast));
         final double rhoEnter = 1. / (xLast - xEnter);
         final double vMaxEq = testVehicle.getEquilibriumSpeed(0.5 * rhoEnter);
         final double bMax = 4; // max. kinematic deceleration at boundary
@@ -183,7 +201,37 @@ public class TrafficSourceMacro extends AbstractTrafficSource {
 
     @Override
     public double getTotalInflow(double time) {
-        return inflowTimeSeries.getFlowPerLane(time) * roadSegment.laneCount();
+        return getFlowPerLane(time) * roadSegment.laneCount();
+    }
+
+    /**
+     * @return the inflow per lane in 1/s
+     */
+    protected double getFlowPerLane(double time) {
+        return inflowTimeSeries.getFlowPerLane(time);
+    }
+
+    /**
+     * @return the default speed of entering vehicles in m/s
+     */
+    protected double getEntrySpeed(double time) {
+        return inflowTimeSeries.getSpeed(time);
+    }
+
+    /**
+     * Returns the distance the entering vehicle has already travelled since its departure at the upstream boundary. On an
+     * empty lane vehicles enter at the origin.
+     *
+     * @param speed          the entering speed in m/s
+     * @param departureDelay the time since the departure in s
+     * @param leader         the vehicle in front of the entering vehicle, null on an empty lane
+     * @return the distance in m, limited by the gap to the leader or by the road length by the caller
+     */
+    protected double getEntryDistance(double speed, double departureDelay, @Nullable Vehicle leader) {
+        if (leader == null) {
+            return 0;
+        }
+        return speed * departureDelay;
     }
 
 }
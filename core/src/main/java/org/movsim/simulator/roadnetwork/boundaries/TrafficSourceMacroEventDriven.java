@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ *
+ * This file is part of
+ *
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ *
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ *
+ * -----------------------------------------------------------------------------------------
+ */
+
+package org.movsim.simulator.roadnetwork.boundaries;
+
+import org.movsim.simulator.roadnetwork.LaneSegment;
+import org.movsim.simulator.roadnetwork.Lanes;
+import org.movsim.simulator.roadnetwork.RoadSegment;
+import org.movsim.simulator.vehicles.TestVehicle;
+import org.movsim.simulator.vehicles.TrafficCompositionGenerator;
+import org.movsim.simulator.vehicles.Vehicle;
+
+import javax.annotation.Nullable;
+
+/**
+ * <p>
+ * Macroscopic upstream boundary with exact departure times.
+ * </p>
+ * <p>
+ * Instead of accumulating the demand per time step, the departure time of the next vehicle on each lane is computed from
+ * the integrated inflow per lane, see {@link InflowTimeSeries.DepartureCursor}. The lanes are staggered by a fraction of
+ * a vehicle so that the departures are evenly spread over the lanes. A vehicle enters at the end of the time step in
+ * which its departure falls, with its position extrapolated from the departure time. This avoids the inflow perturbations
+ * from the quantisation to the time step described in {@link TrafficSourceMacro}. Several vehicles can enter within one
+ * time step on different lanes, and nothing is done in time steps without a due departure.
+ * </p>
+ */
+public class TrafficSourceMacroEventDriven extends TrafficSourceMacro {
+
+    private final InflowTimeSeries.DepartureCursor[] departureCursors;
+
+    /** departure time of the next vehicle per lane index, due departures wait while the lane is blocked */
+    private final double[] departureTimes;
+
+    private final TestVehicle[] testVehicles;
+
+    /** earliest departure time of all lanes, NaN before the first time step */
+    private double nextDepartureTime = Double.NaN;
+
+    public TrafficSourceMacroEventDriven(TrafficCompositionGenerator vehGenerator, RoadSegment roadSegment,
+            InflowTimeSeries inflowTimeSeries) {
+        super(vehGenerator, roadSegment, inflowTimeSeries);
+        final int laneCount = roadSegment.laneCount();
+        departureCursors = new InflowTimeSeries.DepartureCursor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            departureCursors[i] = inflowTimeSeries.departureCursor();
+        }
+        departureTimes = new double[laneCount];
+        testVehicles = new TestVehicle[laneCount];
+    }
+
+    @Override
+    public void timeStep(double dt, double simulationTime, long iterationCount) {
+        calcApproximateInflow(dt);
+        if (Double.isNaN(nextDepartureTime)) {
+            scheduleFirstDepartures(simulationTime);
+        }
+        // vehicles enter after the vehicle update, i.e. at the end of the time step
+        final double time = simulationTime + dt;
+        if (time < nextDepartureTime) {
+            return;
+        }
+
+        final double totalInflow = getTotalInflow(simulationTime);
+        nextDepartureTime = Double.POSITIVE_INFINITY;
+        nWait = 0;
+        for (int i = 0; i < departureTimes.length; i++) {
+            final LaneSegment laneSegment = roadSegment.laneSegment(Lanes.MOST_INNER_LANE + i);
+            while (departureTimes[i] <= time) {
+                if (testVehicles[i] == null) {
+                    testVehicles[i] = vehGenerator.getTestVehicle();
+                }
+                final double departureDelay = time - departureTimes[i];
+                if (!tryEnteringNewVehicle(testVehicles[i], laneSegment, simulationTime, totalInflow,
+                        departureDelay)) {
+                    // approximately the blocked vehicle and the vehicles departed behind it
+                    nWait += 1 + departureDelay * getFlowPerLane(simulationTime);
+                    break;
+                }
+                testVehicles[i] = null;
+                departureTimes[i] = departureCursors[i].nextDepartureTime(departureTimes[i], 1);
+                incrementInflowCount(1);
+                recordData(simulationTime, totalInflow);
+            }
+            nextDepartureTime = Math.min(nextDepartureTime, departureTimes[i]);
+        }
+    }
+
+    private void scheduleFirstDepartures(double startTime) {
+        final int laneCount = departureTimes.length;
+        nextDepartureTime = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < laneCount; i++) {
+            departureTimes[i] = departureCursors[i].nextDepartureTime(startTime, (i + 1.0) / laneCount);
+            nextDepartureTime = Math.min(nextDepartureTime, departureTimes[i]);
+        }
+    }
+
+    @Override
+    protected double getEntryDistance(double speed, double departureDelay, @Nullable Vehicle leader) {
+        // also on an empty lane, the departure time is exact
+        return speed * departureDelay;
+    }
+
+}
@@ -34,6 +34,7 @@ import org.movsim.simulator.vehicles.Vehicle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -41,10 +42,23 @@ public class TrafficSourceMicro extends AbstractTrafficSource {
 
     private static final Logger LOG = LoggerFactory.getLogger(TrafficSourceMicro.class);
 
+    /** vehicles whose entry time has been reached */
     private final SortedMap<Long, Vehicle> vehicleQueue = new TreeMap<>();
 
+    @Nullable
+    private final MicroscopicBoundaryInputData inputData;
+
     public TrafficSourceMicro(TrafficCompositionGenerator vehGenerator, RoadSegment roadSegment) {
+        this(vehGenerator, roadSegment, null);
+    }
+
+    /**
+     * Instantiates a traffic source which creates the vehicles of the input data when their entry times are reached.
+     */
+    public TrafficSourceMicro(TrafficCompositionGenerator vehGenerator, RoadSegment roadSegment,
+            @Nullable MicroscopicBoundaryInputData inputData) {
         super(vehGenerator, roadSegment);
+        this.inputData = inputData;
     }
 
     public void addVehicleToQueue(long time, Vehicle vehicle) {
@@ -63,6 +77,12 @@ public class TrafficSourceMicro extends AbstractTrafficSource {
     @Override
     public void timeStep(double dt, double simulationTime, long iterationCount) {
         calcApproximateInflow(dt);
+        if (inputData != null) {
+            while (inputData.hasNext() && simulationTime >= inputData.nextTime()) {
+                long time = inputData.nextTime();
+                addVehicleToQueue(time, inputData.pollVehicle(this));
+            }
+        }
         if (vehicleQueue.isEmpty()) {
             return;
         }
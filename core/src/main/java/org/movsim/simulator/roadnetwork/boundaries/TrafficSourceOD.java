@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden <movsim.org@gmail.com>
+ * ----------------------------------------------------------------------------------------- This file is part of MovSim - the
+ * multi-model open-source vehicular-traffic simulator. MovSim is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version. MovSim is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details. You should have received a copy of the GNU General Public License along with MovSim. If not, see
+ * <http://www.gnu.org/licenses/> or <http://www.movsim.org>.
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.roadnetwork.boundaries;
+
+import org.movsim.simulator.roadnetwork.RoadSegment;
+import org.movsim.simulator.roadnetwork.boundaries.ODDemand.OriginDemand;
+import org.movsim.simulator.vehicles.TestVehicle;
+import org.movsim.simulator.vehicles.TrafficCompositionGenerator;
+import org.movsim.simulator.vehicles.Vehicle;
+import org.movsim.utilities.MyRandom;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Upstream boundary fed by the {@link OriginDemand} of its road segment. The departures are generated like the macroscopic
+ * inflow of {@link TrafficSourceMacro}; the destination of a vehicle is sampled when it actually enters the road segment
+ * and the vehicle follows the precomputed route to its destination.
+ */
+public class TrafficSourceOD extends TrafficSourceMacro {
+
+    private final OriginDemand demand;
+
+    /** latest time with demand, queued vehicles are sampled from its destinations */
+    private double demandTime = Double.NaN;
+
+    public TrafficSourceOD(TrafficCompositionGenerator vehGenerator, RoadSegment roadSegment, OriginDemand demand) {
+        super(vehGenerator, roadSegment);
+        this.demand = Preconditions.checkNotNull(demand);
+        Preconditions.checkArgument(demand.getOrigin().equals(roadSegment.userId()),
+                "demand of origin=" + demand.getOrigin() + " does not match roadSegment=" + roadSegment.userId());
+    }
+
+    @Override
+    public void timeStep(double dt, double simulationTime, long iterationCount) {
+        if (demand.getRate(simulationTime) > 0) {
+            demandTime = simulationTime;
+        }
+        super.timeStep(dt, simulationTime, iterationCount);
+    }
+
+    @Override
+    protected double getFlowPerLane(double time) {
+        return demand.getRate(time) / roadSegment.laneCount();
+    }
+
+    @Override
+    protected double getEntrySpeed(double time) {
+        return roadSegment.getFreeFlowSpeed();
+    }
+
+    @Override
+    protected Vehicle createVehicle(TestVehicle testVehicle) {
+        final int destination = demand.sampleDestination(demandTime, MyRandom.nextDouble());
+        return vehGenerator.createVehicle(testVehicle, demand.getRoute(destination));
+    }
+
+    public OriginDemand getDemand() {
+        return demand;
+    }
+}
@@ -26,6 +26,7 @@
 
 package org.movsim.simulator.roadnetwork.controller;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -56,6 +57,11 @@ public class GradientProfile extends RoadObjectController {
     /** mapping of positions to gradients along track */
     private final SortedMap<Double, Double> gradients = new TreeMap<>();
 
+    /** the gradient mapping as primitive arrays for the lookup in each timestep */
+    private final double[] gradientPositions;
+
+    private final double[] gradientValues;
+
     private final Predicate<Vehicle> vehiclesWithRange;
 
     private final SignalPoint endSignalPoint;
@@ -68,6 +74,14 @@ public class GradientProfile extends RoadObjectController {
                     + gradients.firstKey() + " in elevation profile");
         }
         endPosition = gradients.lastKey();
+        gradientPositions = new double[gradients.size()];
+        gradientValues = new double[gradients.size()];
+        int i = 0;
+        for (Entry<Double, Double> entry : gradients.entrySet()) {
+            gradientPositions[i] = entry.getKey();
+            gradientValues[i] = entry.getValue();
+            ++i;
+        }
         if (endPosition > roadSegment().roadLength()) {
             throw new IllegalArgumentException("elevation profile track position s=" + endPosition
                     + " exceeds roadlength.");
@@ -97,12 +111,23 @@ public class GradientProfile extends RoadObjectController {
     private void apply(Vehicle vehicle) {
         assert vehicle.getFrontPosition() >= position;
         assert vehicle.getFrontPosition() <= endPosition;
-        Double posUpstream = gradients.headMap(vehicle.getFrontPosition()).lastKey();
-        double gradient = gradients.get(posUpstream);
+        double gradient = gradientValues[indexUpstream(vehicle.getFrontPosition())];
         vehicle.setSlope(gradient);
         LOG.debug("pos={} --> slope gradient={}", vehicle.getFrontPosition(), gradient);
     }
 
+    /**
+     * Returns the index of the greatest position strictly below the given position; a vehicle exactly at the start of the
+     * profile gets the first gradient.
+     */
+    private int indexUpstream(double pos) {
+        int index = Arrays.binarySearch(gradientPositions, pos);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return Math.max(0, index - 1);
+    }
+
     private void createGradientProfile(List<Elevation> elevationProfile) {
         SortedMap<Double, Double> elevation = new TreeMap<>();
         for (Elevation basePoint : elevationProfile) {
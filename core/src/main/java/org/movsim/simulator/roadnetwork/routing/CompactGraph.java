@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ * 
+ * This file is part of
+ * 
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ * 
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ * 
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.roadnetwork.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.movsim.simulator.roadnetwork.RoadSegment;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * The network graph in compressed adjacency arrays for the shortest path searches. The road segments are the edges
+ * weighted by their road length, the vertices are the nodes connecting them.
+ * </p>
+ * <p>
+ * Vertices and edges are numbered densely. The outgoing edges of vertex v are the edges [offsets[v], offsets[v+1]), the
+ * incoming edges are listed in the same layout in the reverse arrays which refer to the edge numbers. The arrays are
+ * exposed to the searches of this package and must not be modified. Time-dependent edge weights are kept by the searches
+ * in arrays indexed by the edge numbers, see {@link LinkTravelTimes}.
+ * </p>
+ */
+final class CompactGraph {
+
+    static final int NONE = -1;
+
+    private final Map<Long, Integer> vertexIndices;
+
+    /** vertex index to node id */
+    private final long[] nodeIds;
+
+    /** edge numbers indexed by road segment id - minRoadSegmentId */
+    private final int[] edgeIndices;
+
+    private final int minRoadSegmentId;
+
+    /** outgoing edges of vertex v are at [offsets[v], offsets[v+1]) */
+    final int[] offsets;
+
+    final int[] edgeSources;
+
+    final int[] edgeTargets;
+
+    /** static edge weights, the road lengths */
+    final double[] weights;
+
+    final RoadSegment[] edges;
+
+    /** incoming edges of vertex v are reverseEdges[reverseOffsets[v]], ..., reverseEdges[reverseOffsets[v+1]-1] */
+    final int[] reverseOffsets;
+
+    final int[] reverseEdges;
+
+    /**
+     * Creates the graph of the given road segments whose origin and destination nodes must have been assigned their ids.
+     * Vertices are numbered in the order of their first appearance. Parallel road segments between the same nodes are
+     * kept as separate edges.
+     *
+     * @param roadSegments
+     */
+    CompactGraph(Iterable<RoadSegment> roadSegments) {
+        final List<RoadSegment> edgeList = new ArrayList<>();
+        vertexIndices = new HashMap<>();
+        int minId = Integer.MAX_VALUE;
+        int maxId = Integer.MIN_VALUE;
+        for (RoadSegment roadSegment : roadSegments) {
+            Preconditions.checkArgument(roadSegment.getOriginNode().hasId() && roadSegment.getDestinationNode().hasId(),
+                    "nodes of roadSegment=" + roadSegment.userId() + " without id");
+            Preconditions.checkArgument(roadSegment.roadLength() >= 0,
+                    "negative edge weight of roadSegment=" + roadSegment);
+            addVertex(roadSegment.getOriginNode().getId());
+            addVertex(roadSegment.getDestinationNode().getId());
+            edgeList.add(roadSegment);
+            minId = Math.min(minId, roadSegment.id());
+            maxId = Math.max(maxId, roadSegment.id());
+        }
+        final int vertexCount = vertexIndices.size();
+        final int edgeCount = edgeList.size();
+        nodeIds = new long[vertexCount];
+        for (Map.Entry<Long, Integer> entry : vertexIndices.entrySet()) {
+            nodeIds[entry.getValue()] = entry.getKey();
+        }
+
+        offsets = new int[vertexCount + 1];
+        reverseOffsets = new int[vertexCount + 1];
+        final int[] sourceIndices = new int[edgeCount];
+        final int[] targetIndices = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            sourceIndices[e] = vertexIndices.get(edgeList.get(e).getOriginNode().getId());
+            targetIndices[e] = vertexIndices.get(edgeList.get(e).getDestinationNode().getId());
+            ++offsets[sourceIndices[e] + 1];
+            ++reverseOffsets[targetIndices[e] + 1];
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v + 1] += offsets[v];
+            reverseOffsets[v + 1] += reverseOffsets[v];
+        }
+        edgeSources = new int[edgeCount];
+        edgeTargets = new int[edgeCount];
+        weights = new double[edgeCount];
+        edges = new RoadSegment[edgeCount];
+        reverseEdges = new int[edgeCount];
+        minRoadSegmentId = minId;
+        edgeIndices = new int[edgeCount == 0 ? 0 : maxId - minId + 1];
+        Arrays.fill(edgeIndices, NONE);
+        final int[] next = Arrays.copyOf(offsets, vertexCount);
+        final int[] reverseNext = Arrays.copyOf(reverseOffsets, vertexCount);
+        for (int e = 0; e < edgeCount; e++) {
+            final RoadSegment roadSegment = edgeList.get(e);
+            final int slot = next[sourceIndices[e]]++;
+            edgeSources[slot] = sourceIndices[e];
+            edgeTargets[slot] = targetIndices[e];
+            weights[slot] = roadSegment.roadLength();
+            edges[slot] = roadSegment;
+            Preconditions.checkArgument(edgeIndices[roadSegment.id() - minId] == NONE,
+                    "roadSegment=" + roadSegment.userId() + " added twice");
+            edgeIndices[roadSegment.id() - minId] = slot;
+            reverseEdges[reverseNext[targetIndices[e]]++] = slot;
+        }
+    }
+
+    private void addVertex(long nodeId) {
+        if (!vertexIndices.containsKey(nodeId)) {
+            vertexIndices.put(nodeId, vertexIndices.size());
+        }
+    }
+
+    int vertexCount() {
+        return offsets.length - 1;
+    }
+
+    int edgeCount() {
+        return edges.length;
+    }
+
+    /**
+     * @return the index of the vertex with the given node id or -1 if the vertex is not in the graph
+     */
+    int vertexIndex(long nodeId) {
+        final Integer index = vertexIndices.get(nodeId);
+        return index == null ? NONE : index;
+    }
+
+    /**
+     * @return the index of the edge of the given road segment or -1 if the road segment is not in the graph
+     */
+    int edgeIndex(RoadSegment roadSegment) {
+        final int index = roadSegment.id() - minRoadSegmentId;
+        if (index < 0 || index >= edgeIndices.length) {
+            return NONE;
+        }
+        final int edge = edgeIndices[index];
+        return edge != NONE && edges[edge] == roadSegment ? edge : NONE;
+    }
+
+    /**
+     * @return the node id of the vertex with the given index
+     */
+    long nodeId(int vertex) {
+        return nodeIds[vertex];
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ * 
+ * This file is part of
+ * 
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ * 
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ * 
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.roadnetwork.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.movsim.autogen.DynamicRoutingType;
+import org.movsim.simulator.roadnetwork.RoadSegment;
+import org.movsim.simulator.vehicles.Vehicle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Routing of vehicles to their destinations on the current state of the road network.
+ * </p>
+ * <p>
+ * The link travel times are smoothed with each server update and extrapolated with their trend (see
+ * {@link LinkTravelTimes}). Vehicles request a route to their destination, the requests are collected and processed in a
+ * batch: all requests starting from the same road segment share one time-dependent shortest path search, the searches
+ * of different road segments run concurrently. A vehicle is rerouted if the new route is faster than the remainder of its
+ * current route by more than the vehicle's rerouting threshold.
+ * </p>
+ */
+public final class DynamicRouting {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DynamicRouting.class);
+
+    /** minimum number of searches in a batch for searching concurrently */
+    static final int PARALLEL_THRESHOLD = 4;
+
+    private final Routing routing;
+
+    private final double gridLength;
+
+    private final double smoothing;
+
+    private final double predictionHorizon;
+
+    private CompactGraph graph;
+
+    private LinkTravelTimes travelTimes;
+
+    private final ThreadLocal<Search> searches = new ThreadLocal<>();
+
+    private final List<Request> requests = new ArrayList<>();
+
+    private long reroutingCount;
+
+    /**
+     * Constructor.
+     *
+     * @param configuration
+     * @param routing
+     * @param gridLength    grid length for the instantaneous travel times, in meters
+     */
+    public DynamicRouting(DynamicRoutingType configuration, Routing routing, double gridLength) {
+        Preconditions.checkNotNull(configuration);
+        this.routing = Preconditions.checkNotNull(routing);
+        this.gridLength = gridLength;
+        this.smoothing = configuration.getTravelTimeSmoothing();
+        this.predictionHorizon = configuration.getPredictionHorizon();
+        Preconditions.checkArgument(smoothing > 0 && smoothing <= 1, "travel_time_smoothing must be within (0,1]");
+        Preconditions.checkArgument(predictionHorizon >= 0, "prediction_horizon must be >= 0");
+    }
+
+    /**
+     * Requests a route for the vehicle from its current road segment to the destination. The request is processed with the
+     * next call of {@link #processRequests(double)}.
+     *
+     * @param vehicle
+     * @param destination the last road segment of the route
+     */
+    public synchronized void requestRoute(Vehicle vehicle, RoadSegment destination) {
+        requests.add(new Request(Preconditions.checkNotNull(vehicle), Preconditions.checkNotNull(destination)));
+    }
+
+    /**
+     * Updates the link travel times with the current state of the road network.
+     *
+     * @param simulationTime current simulation time, seconds
+     */
+    public void updateTravelTimes(double simulationTime) {
+        travelTimes().update(simulationTime);
+    }
+
+    /**
+     * Processes all pending route requests and reroutes the vehicles for which a faster route has been found.
+     *
+     * @param simulationTime current simulation time, seconds
+     */
+    public void processRequests(double simulationTime) {
+        final List<Request> batch;
+        synchronized (this) {
+            if (requests.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(requests);
+            requests.clear();
+        }
+        final LinkTravelTimes linkTravelTimes = travelTimes();
+
+        // group the requests by the vertex the searches start from
+        final Map<Integer, List<Request>> groups = new LinkedHashMap<>();
+        for (final Request request : batch) {
+            final RoadSegment origin = request.vehicle.roadSegment();
+            if (origin == null || origin == request.destination) {
+                continue;
+            }
+            request.origin = origin;
+            final int source = graph.vertexIndex(origin.getDestinationNode().getId());
+            final int target = graph.vertexIndex(request.destination.getDestinationNode().getId());
+            if (source == CompactGraph.NONE || target == CompactGraph.NONE || source == target) {
+                continue;
+            }
+            request.target = target;
+            groups.computeIfAbsent(source, k -> new ArrayList<>()).add(request);
+        }
+
+        final int[] sources = new int[groups.size()];
+        final List<List<Request>> groupedRequests = new ArrayList<>(groups.size());
+        int i = 0;
+        for (final Map.Entry<Integer, List<Request>> entry : groups.entrySet()) {
+            sources[i++] = entry.getKey();
+            groupedRequests.add(entry.getValue());
+        }
+        final IntStream searchIndices = IntStream.range(0, sources.length);
+        (sources.length >= PARALLEL_THRESHOLD ? searchIndices.parallel() : searchIndices)
+                .forEach(k -> search(linkTravelTimes, sources[k], groupedRequests.get(k), simulationTime));
+
+        // rerouting in order of the requests
+        for (final Request request : batch) {
+            if (request.route != null) {
+                reroute(request, linkTravelTimes, simulationTime);
+            }
+        }
+    }
+
+    private void search(LinkTravelTimes linkTravelTimes, int source, List<Request> group, double departureTime) {
+        Search search = searches.get();
+        if (search == null || search.arrivalTimes.length != graph.vertexCount()) {
+            search = new Search(graph.vertexCount());
+            searches.set(search);
+        }
+        final int[] targets = new int[group.size()];
+        for (int k = 0; k < targets.length; k++) {
+            targets[k] = group.get(k).target;
+        }
+        search.run(graph, linkTravelTimes, source, targets, departureTime);
+        for (final Request request : group) {
+            final double arrivalTime = search.arrivalTimes[request.target];
+            if (arrivalTime == Double.POSITIVE_INFINITY) {
+                LOG.debug("no route from roadSegment={} to roadSegment={}", request.origin.userId(),
+                        request.destination.userId());
+                continue;
+            }
+            request.route = routing
+                    .intern(search.route(graph, request.origin, request.destination, request.target));
+            request.travelTime = arrivalTime - departureTime;
+        }
+    }
+
+    private void reroute(Request request, LinkTravelTimes linkTravelTimes, double departureTime) {
+        final Vehicle vehicle = request.vehicle;
+        if (vehicle.roadSegment() != request.origin) {
+            return;
+        }
+        final Route currentRoute = vehicle.getRoute();
+        // the found route starts with the current road segment,
+        // the same road segments under another name are no rerouting
+        if (currentRoute != null && currentRoute.hasSameRoadSegments(vehicle.routeIndex() - 1, request.route)) {
+            return;
+        }
+        final double currentTravelTime = remainingTravelTime(vehicle, linkTravelTimes, departureTime);
+        final double reroutingThreshold = vehicle.routingDecisions().getReroutingThreshold();
+        if (request.travelTime + reroutingThreshold < currentTravelTime) {
+            ++reroutingCount;
+            LOG.debug("vehicle={} rerouted to route={}, travel time={} instead of {}, reroutings={}", vehicle.getId(),
+                    request.route.getName(), request.travelTime, currentTravelTime, reroutingCount);
+            vehicle.reroute(request.route);
+        }
+    }
+
+    /**
+     * Returns the predicted travel time on the remainder of the vehicle's route after its current road segment, or infinity
+     * if the vehicle does not follow a route.
+     */
+    private double remainingTravelTime(Vehicle vehicle, LinkTravelTimes linkTravelTimes, double departureTime) {
+        final Route route = vehicle.getRoute();
+        if (route == null || vehicle.routeIndex() > route.size()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double time = departureTime;
+        for (int index = vehicle.routeIndex(); index < route.size(); index++) {
+            final int edge = graph.edgeIndex(route.get(index));
+            if (edge == CompactGraph.NONE) {
+                return Double.POSITIVE_INFINITY;
+            }
+            time += linkTravelTimes.travelTime(edge, time);
+        }
+        return time - departureTime;
+    }
+
+    private synchronized LinkTravelTimes travelTimes() {
+        final CompactGraph current = routing.compactGraph();
+        if (current != graph) {
+            LOG.debug("(re)initialize link travel times");
+            graph = current;
+            travelTimes = new LinkTravelTimes(graph, gridLength, smoothing, predictionHorizon);
+        }
+        return travelTimes;
+    }
+
+    /**
+     * @return the number of reroutings so far
+     */
+    public long getReroutingCount() {
+        return reroutingCount;
+    }
+
+    private static final class Request {
+        final Vehicle vehicle;
+        final RoadSegment destination;
+        RoadSegment origin;
+        int target;
+        Route route;
+        double travelTime;
+
+        Request(Vehicle vehicle, RoadSegment destination) {
+            this.vehicle = vehicle;
+            this.destination = destination;
+        }
+    }
+
+    /**
+     * Time-dependent Dijkstra search with the arrival times as labels. The search stops as soon as all targets are settled.
+     * Since the link travel times have the FIFO property the earliest arrival at a vertex is never improved by a later
+     * departure, so the labels are final when settled.
+     */
+    static final class Search {
+
+        final double[] arrivalTimes;
+
+        final int[] predecessorEdges;
+
+        private final boolean[] settled;
+
+        private final boolean[] isTarget;
+
+        private final IndexHeap heap;
+
+        /** vertices touched by the last search, reset with the next run */
+        private int[] touched;
+
+        private int touchedCount;
+
+        Search(int vertexCount) {
+            arrivalTimes = new double[vertexCount];
+            predecessorEdges = new int[vertexCount];
+            settled = new boolean[vertexCount];
+            isTarget = new boolean[vertexCount];
+            Arrays.fill(arrivalTimes, Double.POSITIVE_INFINITY);
+            Arrays.fill(predecessorEdges, CompactGraph.NONE);
+            heap = new IndexHeap(vertexCount);
+            touched = new int[Math.max(vertexCount, 1)];
+        }
+
+        void run(CompactGraph graph, LinkTravelTimes linkTravelTimes, int source, int[] targets, double departureTime) {
+            reset();
+            int open = 0;
+            for (final int target : targets) {
+                if (!isTarget[target]) {
+                    isTarget[target] = true;
+                    ++open;
+                }
+            }
+
+            arrivalTimes[source] = departureTime;
+            touched[touchedCount++] = source;
+            heap.insertOrDecrease(source, departureTime);
+            while (!heap.isEmpty() && open > 0) {
+                final int v = heap.removeMin();
+                settled[v] = true;
+                if (isTarget[v]) {
+                    --open;
+                }
+                final double time = arrivalTimes[v];
+                for (int e = graph.offsets[v], end = graph.offsets[v + 1]; e < end; e++) {
+                    final int w = graph.edgeTargets[e];
+                    if (settled[w]) {
+                        continue;
+                    }
+                    final double arrival = time + linkTravelTimes.travelTime(e, time);
+                    if (arrival < arrivalTimes[w]) {
+                        if (arrivalTimes[w] == Double.POSITIVE_INFINITY) {
+                            touched[touchedCount++] = w;
+                        }
+                        arrivalTimes[w] = arrival;
+                        predecessorEdges[w] = e;
+                        heap.insertOrDecrease(w, arrival);
+                    }
+                }
+            }
+            for (final int target : targets) {
+                isTarget[target] = false;
+            }
+        }
+
+        private void reset() {
+            for (int k = 0; k < touchedCount; k++) {
+                final int v = touched[k];
+                arrivalTimes[v] = Double.POSITIVE_INFINITY;
+                predecessorEdges[v] = CompactGraph.NONE;
+                settled[v] = false;
+            }
+            touchedCount = 0;
+            heap.clear();
+        }
+
+        /**
+         * Returns the route from the origin road segment to the target vertex of the last search.
+         */
+        Route route(CompactGraph graph, RoadSegment origin, RoadSegment destination, int target) {
+            final Route route = new Route(Routing.createRouteName(origin.userId(), destination.userId()));
+            route.add(origin);
+            int count = 0;
+            for (int v = target; predecessorEdges[v] != CompactGraph.NONE; v = graph.edgeSources[predecessorEdges[v]]) {
+                ++count;
+            }
+            final int[] path = new int[count];
+            for (int v = target; predecessorEdges[v] != CompactGraph.NONE; v = graph.edgeSources[predecessorEdges[v]]) {
+                path[--count] = predecessorEdges[v];
+            }
+            for (final int e : path) {
+                route.add(graph.edges[e]);
+            }
+            return route;
+        }
+    }
+}
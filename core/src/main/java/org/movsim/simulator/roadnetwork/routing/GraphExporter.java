@@ -25,10 +25,10 @@
  */
 package org.movsim.simulator.roadnetwork.routing;
 
-import org.jgrapht.DirectedGraph;
 import org.jgrapht.ext.ComponentAttributeProvider;
 import org.jgrapht.ext.DOTExporter;
 import org.jgrapht.ext.IntegerNameProvider;
+import org.jgrapht.graph.DirectedMultigraph;
 import org.movsim.simulator.roadnetwork.RoadSegment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,9 +46,18 @@ class GraphExporter {
 
     static final String FILE_ENDING_DOT = ".dot";
 
-    static void exportDOT(DirectedGraph<Long, RoadSegment> graph, String fileName) {
+    static void exportDOT(CompactGraph compactGraph, String fileName) {
         StringWriter writer = new StringWriter();
 
+        DirectedMultigraph<Long, RoadSegment> graph = new DirectedMultigraph<>(RoadSegment.class);
+        for (int v = 0; v < compactGraph.vertexCount(); v++) {
+            graph.addVertex(compactGraph.nodeId(v));
+        }
+        for (int e = 0; e < compactGraph.edgeCount(); e++) {
+            graph.addEdge(compactGraph.nodeId(compactGraph.edgeSources[e]),
+                    compactGraph.nodeId(compactGraph.edgeTargets[e]), compactGraph.edges[e]);
+        }
+
         // Vertex attribute provider
         ComponentAttributeProvider<Long> vertexAttributeProvider = new ComponentAttributeProvider<Long>() {
             @Override
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ * 
+ * This file is part of
+ * 
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ * 
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ * 
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.roadnetwork.routing;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+
+import org.movsim.simulator.roadnetwork.RoadSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * Goal-directed shortest path search with landmarks and the triangle inequality (ALT).
+ * </p>
+ * <p>
+ * For a few landmarks, chosen by the farthest-vertex
+ * heuristic, the distances from and to all vertices are precomputed. An A* search then uses the lower bound
+ * {@code max(d(L,t) - d(L,v), d(v,L) - d(t,L))} of the remaining distance from vertex v to the target t and settles only a
+ * small part of the graph. The bound is consistent, so the search returns a shortest path like Dijkstra's algorithm.
+ * </p>
+ * <p>
+ * A router is immutable with respect to the graph; a changed graph requires a new router.
+ * </p>
+ */
+final class LandmarkRouter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LandmarkRouter.class);
+
+    static final int DEFAULT_LANDMARK_COUNT = 8;
+
+    private static final int NONE = CompactGraph.NONE;
+
+    private final CompactGraph graph;
+
+    /** distances from the landmarks, indexed by landmark and vertex */
+    private final double[][] fromLandmark;
+
+    /** distances to the landmarks, indexed by landmark and vertex */
+    private final double[][] toLandmark;
+
+    // search state, reused for all queries
+    private final double[] distances;
+
+    private final int[] predecessorEdges;
+
+    private final int[] visited;
+
+    private final boolean[] settled;
+
+    private final IndexHeap heap;
+
+    private int stamp;
+
+    LandmarkRouter(CompactGraph graph) {
+        this(graph, DEFAULT_LANDMARK_COUNT);
+    }
+
+    LandmarkRouter(CompactGraph graph, int landmarkCount) {
+        Preconditions.checkArgument(landmarkCount >= 0, "landmarkCount must be >= 0");
+        this.graph = graph;
+        final int vertexCount = graph.vertexCount();
+        distances = new double[vertexCount];
+        predecessorEdges = new int[vertexCount];
+        visited = new int[vertexCount];
+        settled = new boolean[vertexCount];
+        heap = new IndexHeap(vertexCount);
+
+        final int count = Math.min(landmarkCount, vertexCount);
+        fromLandmark = new double[count][];
+        toLandmark = new double[count][];
+        selectLandmarks();
+        LOG.info("landmark router with {} vertices, {} edges and {} landmarks", vertexCount, graph.edgeCount(), count);
+    }
+
+    /**
+     * Selects the landmarks one after another as the vertex farthest from the landmarks selected so far and computes their
+     * distances.
+     */
+    private void selectLandmarks() {
+        final int vertexCount = distances.length;
+        final double[] minDistance = new double[vertexCount];
+        Arrays.fill(minDistance, Double.POSITIVE_INFINITY);
+        int landmark = 0;
+        for (int i = 0; i < fromLandmark.length; i++) {
+            fromLandmark[i] = distancesFrom(landmark, false);
+            toLandmark[i] = distancesFrom(landmark, true);
+            int farthest = NONE;
+            double maxDistance = -1;
+            for (int v = 0; v < vertexCount; v++) {
+                final double d = Math.min(finite(fromLandmark[i][v]) + finite(toLandmark[i][v]), minDistance[v]);
+                minDistance[v] = d;
+                if (d > maxDistance) {
+                    maxDistance = d;
+                    farthest = v;
+                }
+            }
+            landmark = farthest;
+        }
+    }
+
+    private static double finite(double distance) {
+        return distance == Double.POSITIVE_INFINITY ? 0 : distance;
+    }
+
+    /**
+     * Dijkstra's algorithm from the origin, against the edge directions if reverse is true.
+     */
+    private double[] distancesFrom(int origin, boolean reverse) {
+        final int[] adjacencyOffsets = reverse ? graph.reverseOffsets : graph.offsets;
+        final double[] result = new double[distances.length];
+        Arrays.fill(result, Double.POSITIVE_INFINITY);
+        result[origin] = 0;
+        heap.clear();
+        heap.insertOrDecrease(origin, 0);
+        while (!heap.isEmpty()) {
+            final int v = heap.removeMin();
+            for (int i = adjacencyOffsets[v], end = adjacencyOffsets[v + 1]; i < end; i++) {
+                final int e = reverse ? graph.reverseEdges[i] : i;
+                final int w = reverse ? graph.edgeSources[e] : graph.edgeTargets[e];
+                final double d = result[v] + graph.weights[e];
+                if (d < result[w]) {
+                    result[w] = d;
+                    heap.insertOrDecrease(w, d);
+                }
+            }
+        }
+        return result;
+    }
+
+    int landmarkCount() {
+        return fromLandmark.length;
+    }
+
+    /**
+     * Returns the edges of a shortest path between the given vertices.
+     *
+     * @param sourceVertex
+     * @param targetVertex
+     * @return the edges of the path, an empty list if source and target coincide, or null if there is no path
+     */
+    @CheckForNull
+    synchronized List<RoadSegment> findPathBetween(Long sourceVertex, Long targetVertex) {
+        final int source = graph.vertexIndex(sourceVertex);
+        final int target = graph.vertexIndex(targetVertex);
+        Preconditions.checkArgument(source != CompactGraph.NONE, "unknown vertex=" + sourceVertex);
+        Preconditions.checkArgument(target != CompactGraph.NONE, "unknown vertex=" + targetVertex);
+        nextStamp();
+        heap.clear();
+        reach(source, 0, NONE);
+        heap.insertOrDecrease(source, potential(source, target));
+        while (!heap.isEmpty()) {
+            final int v = heap.removeMin();
+            if (v == target) {
+                return path(target);
+            }
+            settled[v] = true;
+            for (int e = graph.offsets[v], end = graph.offsets[v + 1]; e < end; e++) {
+                final int w = graph.edgeTargets[e];
+                final double d = distances[v] + graph.weights[e];
+                if (visited[w] != stamp) {
+                    reach(w, d, e);
+                    heap.insertOrDecrease(w, d + potential(w, target));
+                } else if (!settled[w] && d < distances[w]) {
+                    reach(w, d, e);
+                    heap.insertOrDecrease(w, d + potential(w, target));
+                }
+            }
+        }
+        return null;
+    }
+
+    private void reach(int v, double distance, int predecessorEdge) {
+        visited[v] = stamp;
+        settled[v] = false;
+        distances[v] = distance;
+        predecessorEdges[v] = predecessorEdge;
+    }
+
+    private void nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Returns the landmark lower bound of the distance from v to the target.
+     */
+    private double potential(int v, int target) {
+        double bound = 0;
+        for (int i = 0; i < fromLandmark.length; i++) {
+            final double[] from = fromLandmark[i];
+            final double[] to = toLandmark[i];
+            if (from[target] != Double.POSITIVE_INFINITY && from[v] != Double.POSITIVE_INFINITY) {
+                bound = Math.max(bound, from[target] - from[v]);
+            }
+            if (to[v] != Double.POSITIVE_INFINITY && to[target] != Double.POSITIVE_INFINITY) {
+                bound = Math.max(bound, to[v] - to[target]);
+            }
+        }
+        return bound;
+    }
+
+    private List<RoadSegment> path(int target) {
+        final List<RoadSegment> path = Lists.newArrayList();
+        int v = target;
+        while (predecessorEdges[v] != NONE) {
+            final int e = predecessorEdges[v];
+            path.add(graph.edges[e]);
+            v = graph.edgeSources[e];
+        }
+        return Lists.reverse(path);
+    }
+}
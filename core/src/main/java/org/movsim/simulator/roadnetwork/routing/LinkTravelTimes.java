@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ * 
+ * This file is part of
+ * 
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ * 
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ * 
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.roadnetwork.routing;
+
+import org.movsim.simulator.roadnetwork.RoadSegment;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Smoothed travel times of the links (road segments) of a {@link CompactGraph}, indexed by edge.
+ * </p>
+ * <p>
+ * With each update the instantaneous travel time of each road segment is smoothed exponentially and the trend of the
+ * smoothed travel time is tracked. The travel time for entering a link at a later time is extrapolated linearly with the
+ * trend up to the prediction horizon. The trend is bounded from below so that a later entry never leads to an earlier exit
+ * (FIFO property), which is required by the time-dependent shortest path search.
+ * </p>
+ */
+final class LinkTravelTimes {
+
+    /** minimum rate of change of the travel time, must be larger than -1 for the FIFO property */
+    static final double MIN_TREND = -0.9;
+
+    private final CompactGraph graph;
+
+    private final double gridLength;
+
+    private final double smoothing;
+
+    private final double predictionHorizon;
+
+    private final double[] travelTimes;
+
+    private final double[] trends;
+
+    private double updateTime = Double.NaN;
+
+    /**
+     * Constructor.
+     *
+     * @param graph
+     * @param gridLength        grid length for the instantaneous travel times, in meters
+     * @param smoothing         weight of a new instantaneous travel time within [0,1], 1 means no smoothing
+     * @param predictionHorizon maximum time span for the extrapolation, in seconds
+     */
+    LinkTravelTimes(CompactGraph graph, double gridLength, double smoothing, double predictionHorizon) {
+        Preconditions.checkArgument(gridLength > 0, "gridLength must be > 0");
+        Preconditions.checkArgument(smoothing > 0 && smoothing <= 1, "smoothing must be within (0,1]");
+        Preconditions.checkArgument(predictionHorizon >= 0, "predictionHorizon must be >= 0");
+        this.graph = graph;
+        this.gridLength = gridLength;
+        this.smoothing = smoothing;
+        this.predictionHorizon = predictionHorizon;
+        final int edgeCount = graph.edgeCount();
+        travelTimes = new double[edgeCount];
+        trends = new double[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            final RoadSegment roadSegment = graph.edges[e];
+            travelTimes[e] = roadSegment.roadLength() / roadSegment.getFreeFlowSpeed();
+        }
+    }
+
+    /**
+     * Updates the smoothed travel times with the current instantaneous travel times of the road segments.
+     *
+     * @param simulationTime current simulation time, seconds
+     */
+    void update(double simulationTime) {
+        final double elapsed = Double.isNaN(updateTime) ? 0 : simulationTime - updateTime;
+        for (int e = 0, edgeCount = travelTimes.length; e < edgeCount; e++) {
+            final double instantaneous = graph.edges[e].instantaneousTravelTimeOnGrid(gridLength);
+            final double smoothed = smoothing * instantaneous + (1 - smoothing) * travelTimes[e];
+            if (elapsed > 0) {
+                trends[e] = smoothing * (smoothed - travelTimes[e]) / elapsed + (1 - smoothing) * trends[e];
+            }
+            travelTimes[e] = smoothed;
+        }
+        updateTime = simulationTime;
+    }
+
+    /**
+     * @return the smoothed travel time of the edge at the last update, in seconds
+     */
+    double travelTime(int edge) {
+        return travelTimes[edge];
+    }
+
+    /**
+     * Returns the predicted travel time of the edge for a vehicle entering it at the given time.
+     *
+     * @param edge
+     * @param entryTime simulation time of entering the edge, seconds
+     * @return the travel time, in seconds
+     */
+    double travelTime(int edge, double entryTime) {
+        final double travelTime = travelTimes[edge];
+        if (Double.isNaN(updateTime)) {
+            return travelTime;
+        }
+        final double ahead = Math.min(Math.max(entryTime - updateTime, 0), predictionHorizon);
+        final double predicted = travelTime + Math.max(trends[edge], MIN_TREND) * ahead;
+        // bounded from below by a constant, which keeps the FIFO property
+        return Math.max(predicted, (1 + MIN_TREND) * travelTime);
+    }
+}
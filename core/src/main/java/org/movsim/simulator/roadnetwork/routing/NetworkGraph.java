@@ -27,8 +27,6 @@ package org.movsim.simulator.roadnetwork.routing;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
-import org.jgrapht.WeightedGraph;
-import org.jgrapht.graph.DefaultDirectedWeightedGraph;
 import org.movsim.input.ProjectMetaData;
 import org.movsim.simulator.roadnetwork.LaneSegment;
 import org.movsim.simulator.roadnetwork.Node;
@@ -50,8 +48,10 @@ final class NetworkGraph {
         // private constructor
     }
 
-    public static WeightedGraph<Long, RoadSegment> create(RoadNetwork roadNetwork) {
-        DefaultDirectedWeightedGraph<Long, RoadSegment> graph = new DefaultDirectedWeightedGraph<>(RoadSegment.class);
+    /**
+     * Assigns the node ids from the lane connectivity of the road network and builds the graph of the road segments.
+     */
+    public static CompactGraph create(RoadNetwork roadNetwork) {
         HashMap<RoadSegment, Node> connections = Maps.newLinkedHashMap();
         for (final RoadSegment roadSegment : roadNetwork) {
             connections.clear();
@@ -86,15 +86,12 @@ final class NetworkGraph {
             }
             createOrUpdateNode(connections);
         }
-        LOG.info("created graph with {} edges and {} nodes", graph.edgeSet().size(), graph.vertexSet().size());
-        for (RoadSegment roadSegment : roadNetwork) {
-            long fromVertex = roadSegment.getOriginNode().getId();
-            long toVertex = roadSegment.getDestinationNode().getId();
-            graph.addVertex(fromVertex);
-            graph.addVertex(toVertex);
-            graph.addEdge(fromVertex, toVertex, roadSegment);
-            graph.setEdgeWeight(roadSegment, roadSegment.roadLength());
-            LOG.info("weight={}, roadSegment={}", graph.getEdgeWeight(roadSegment), roadSegment);
+        CompactGraph graph = new CompactGraph(roadNetwork);
+        LOG.info("created graph with {} edges and {} nodes", graph.edgeCount(), graph.vertexCount());
+        if (LOG.isDebugEnabled()) {
+            for (int e = 0; e < graph.edgeCount(); e++) {
+                LOG.debug("weight={}, roadSegment={}", graph.weights[e], graph.edges[e]);
+            }
         }
 
         if (ProjectMetaData.getInstance().isWriteDotFile()) {
@@ -138,7 +135,7 @@ final class NetworkGraph {
         return nodeId;
     }
 
-    private static void exportToFile(DefaultDirectedWeightedGraph<Long, RoadSegment> graph) {
+    private static void exportToFile(CompactGraph graph) {
         String fileName = ProjectMetaData.getInstance().getProjectName() + GraphExporter.FILE_ENDING_DOT;
         GraphExporter.exportDOT(graph, fileName);
         LOG.info("export graph to file={}", fileName);
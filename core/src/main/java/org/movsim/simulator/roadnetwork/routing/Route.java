@@ -29,22 +29,61 @@ import com.google.common.base.Preconditions;
 import org.movsim.simulator.roadnetwork.RoadSegment;
 import org.movsim.simulator.roadnetwork.RoadSegmentUtils;
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.NoSuchElementException;
 
 /**
+ * <p>
  * Iterable collection of the road segments that form a route that can be taken through the road network.
+ * </p>
+ * <p>
+ * The road segments are stored in arrays together with their ids and the prefix sums of their lengths, so the segment at a
+ * route index and the position along the route are found in constant time. Routes are interned by their {@link Routing},
+ * see {@link Routing#intern(Route)}: all interned routes with the same road segments share the arrays and the id, while the
+ * name is kept per route. An interned route cannot be extended anymore and two interned routes of the same routing are
+ * equal if and only if they have the same id.
+ * </p>
+ * <p>
+ * Routes are equal if they consist of the same road segments, the name is not taken into account.
+ * </p>
  */
 public class Route implements Iterable<RoadSegment> {
 
-    private final LinkedList<RoadSegment> roadSegments;
-    private String name;
-    private double length;
+    /** id of a route which has not been interned */
+    public static final int NOT_INTERNED = -1;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private RoadSegment[] roadSegments;
+    private int[] roadSegmentIds;
+    /** position of the start of each road segment along the route, the last entry holds the route length */
+    private double[] startPositions;
+    private int size;
+    private final String name;
+
+    private RouteTable table;
+    private int id = NOT_INTERNED;
 
     public Route(String name) {
         Preconditions.checkArgument(!name.isEmpty(), "route without name");
-        roadSegments = new LinkedList<>();
         this.name = name;
+        roadSegments = new RoadSegment[INITIAL_CAPACITY];
+        roadSegmentIds = new int[INITIAL_CAPACITY];
+        startPositions = new double[INITIAL_CAPACITY + 1];
+    }
+
+    /**
+     * Creates an alias of an interned route with another name.
+     */
+    private Route(String name, Route interned) {
+        this.name = name;
+        roadSegments = interned.roadSegments;
+        roadSegmentIds = interned.roadSegmentIds;
+        startPositions = interned.startPositions;
+        size = interned.size;
+        table = interned.table;
+        id = interned.id;
     }
 
     /**
@@ -52,19 +91,29 @@ public class Route implements Iterable<RoadSegment> {
      *
      * @param roadSegment
      * @return roadSegment for convenience
+     * @throws IllegalStateException
+     *             if the route has been interned
      */
     public RoadSegment add(RoadSegment roadSegment) {
         Preconditions.checkNotNull(roadSegment);
-        Preconditions.checkArgument(!roadSegments.contains(roadSegment),
+        Preconditions.checkState(table == null, "interned route=" + name + " cannot be extended.");
+        Preconditions.checkArgument(indexOf(roadSegment) < 0,
                 "roadSegment=" + roadSegment + " already added to route.");
 
-        if (!roadSegments.isEmpty()) {
-            Preconditions.checkState(RoadSegmentUtils.isConnected(roadSegments.getLast(), roadSegment),
-                    "Segments not connected: upstream=" + roadSegments.getLast() + ", downstream=" + roadSegment);
+        if (size > 0) {
+            Preconditions.checkState(RoadSegmentUtils.isConnected(roadSegments[size - 1], roadSegment),
+                    "Segments not connected: upstream=" + roadSegments[size - 1] + ", downstream=" + roadSegment);
         }
 
-        roadSegments.add(roadSegment);
-        length += roadSegment.roadLength();
+        if (size == roadSegments.length) {
+            roadSegments = Arrays.copyOf(roadSegments, 2 * size);
+            roadSegmentIds = Arrays.copyOf(roadSegmentIds, 2 * size);
+            startPositions = Arrays.copyOf(startPositions, 2 * size + 1);
+        }
+        roadSegments[size] = roadSegment;
+        roadSegmentIds[size] = roadSegment.id();
+        startPositions[size + 1] = startPositions[size] + roadSegment.roadLength();
+        ++size;
         return roadSegment;
     }
 
@@ -77,13 +126,22 @@ public class Route implements Iterable<RoadSegment> {
         return name;
     }
 
+    /**
+     * Returns the id of the route which is unique within its {@link Routing}.
+     *
+     * @return the id or {@link #NOT_INTERNED}
+     */
+    public final int getId() {
+        return id;
+    }
+
     /**
      * Returns the length of the route.
      *
      * @return the length of the route
      */
     public final double getLength() {
-        return length;
+        return startPositions[size];
     }
 
     /**
@@ -92,14 +150,72 @@ public class Route implements Iterable<RoadSegment> {
      * @return the number of RoadSegmentUtils in route
      */
     public final int size() {
-        return roadSegments.size();
+        return size;
     }
 
     /**
      * Gets the road segment of the given index
      */
     public RoadSegment get(int index) {
-        return roadSegments.get(index);
+        Preconditions.checkElementIndex(index, size);
+        return roadSegments[index];
+    }
+
+    /**
+     * Returns the id of the road segment of the given index.
+     */
+    public int roadSegmentId(int index) {
+        Preconditions.checkElementIndex(index, size);
+        return roadSegmentIds[index];
+    }
+
+    /**
+     * Returns the position of the start of the road segment of the given index along the route.
+     *
+     * @param index
+     *            index of a road segment or the size of the route for the end of the route
+     */
+    public double getStartPosition(int index) {
+        Preconditions.checkPositionIndex(index, size);
+        return startPositions[index];
+    }
+
+    /**
+     * Returns the index of the road segment on the route.
+     *
+     * @return the index or -1 if the road segment is not part of the route
+     */
+    public int indexOf(RoadSegment roadSegment) {
+        final int roadSegmentId = roadSegment.id();
+        for (int i = 0; i < size; i++) {
+            if (roadSegmentIds[i] == roadSegmentId && roadSegments[i] == roadSegment) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the remainder of this route from the given index on consists of the same road segments as the other
+     * route. As for {@link #equals(Object)} the names of the routes are not taken into account.
+     *
+     * @param index
+     *            index of the first road segment of the remainder of this route
+     * @param other
+     */
+    public boolean hasSameRoadSegments(int index, Route other) {
+        if (index == 0 && table != null && table == other.table) {
+            return id == other.id;
+        }
+        if (index < 0 || size - index != other.size) {
+            return false;
+        }
+        for (int i = 0; i < other.size; i++) {
+            if (roadSegments[index + i] != other.roadSegments[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -108,8 +224,32 @@ public class Route implements Iterable<RoadSegment> {
      * @return first {@code RoadSegment} of the {@code Route}
      */
     public RoadSegment getOrigin() {
-        Preconditions.checkArgument(!roadSegments.isEmpty(), "route without any roadSegments.");
-        return roadSegments.getFirst();
+        Preconditions.checkArgument(size > 0, "route without any roadSegments.");
+        return roadSegments[0];
+    }
+
+    boolean isInterned() {
+        return table != null;
+    }
+
+    void intern(RouteTable table, int id) {
+        this.table = table;
+        this.id = id;
+    }
+
+    /**
+     * Returns the interned route with the given name, sharing the road segments and the id of this interned route.
+     */
+    Route alias(String aliasName) {
+        assert isInterned();
+        return name.equals(aliasName) ? this : new Route(aliasName, this);
+    }
+
+    /**
+     * Returns the ids of the road segments in order.
+     */
+    int[] roadSegmentIds() {
+        return Arrays.copyOf(roadSegmentIds, size);
     }
 
     /**
@@ -119,12 +259,28 @@ public class Route implements Iterable<RoadSegment> {
      */
     @Override
     public Iterator<RoadSegment> iterator() {
-        return roadSegments.iterator();
+        return new Iterator<RoadSegment>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public RoadSegment next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return roadSegments[index++];
+            }
+        };
     }
 
     @Override
     public String toString() {
-        return "Route [name=" + name + ", length=" + length + ", roadSegments=" + roadSegments + "]";
+        return "Route [name=" + name + ", length=" + getLength() + ", roadSegments="
+                + Arrays.toString(Arrays.copyOf(roadSegments, size)) + "]";
     }
 
     @Override
@@ -132,10 +288,11 @@ public class Route implements Iterable<RoadSegment> {
         final int prime = 31;
         int result = 1;
         long temp;
-        temp = Double.doubleToLongBits(length);
+        temp = Double.doubleToLongBits(getLength());
         result = prime * result + (int) (temp ^ (temp >>> 32));
-        result = prime * result + ((name == null) ? 0 : name.hashCode());
-        result = prime * result + ((roadSegments == null) ? 0 : roadSegments.hashCode());
+        for (int i = 0; i < size; i++) {
+            result = prime * result + roadSegmentIds[i];
+        }
         return result;
     }
 
@@ -151,22 +308,17 @@ public class Route implements Iterable<RoadSegment> {
             return false;
         }
         Route other = (Route) obj;
-        if (Double.doubleToLongBits(length) != Double.doubleToLongBits(other.length)) {
-            return false;
+        if (table != null && table == other.table) {
+            // interned routes with the same road segments share the id
+            return id == other.id;
         }
-        if (name == null) {
-            if (other.name != null) {
-                return false;
-            }
-        } else if (!name.equals(other.name)) {
+        if (size != other.size || Double.doubleToLongBits(getLength()) != Double.doubleToLongBits(other.getLength())) {
             return false;
         }
-        if (roadSegments == null) {
-            if (other.roadSegments != null) {
+        for (int i = 0; i < size; i++) {
+            if (roadSegments[i] != other.roadSegments[i]) {
                 return false;
             }
-        } else if (!roadSegments.equals(other.roadSegments)) {
-            return false;
         }
         return true;
     }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ * 
+ * This file is part of
+ * 
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ * 
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ * 
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.roadnetwork.routing;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Table of the interned routes of a {@link Routing}. A route is identified by the sequence of its road segment ids; the
+ * interned routes are numbered consecutively. Routes with the same road segments but another name are returned as an
+ * alias of the interned route. The table is thread-safe.
+ */
+final class RouteTable {
+
+    private final ConcurrentMap<Key, Route> routes = new ConcurrentHashMap<>();
+
+    private int nextId;
+
+    /**
+     * Returns the interned route with the same road segments as the given route, named like the given route. If there is
+     * none yet, the given route is interned and returned.
+     */
+    Route intern(Route route) {
+        if (route.isInterned()) {
+            return route;
+        }
+        final Key key = new Key(route.roadSegmentIds());
+        Route interned = routes.get(key);
+        if (interned == null) {
+            synchronized (this) {
+                interned = routes.get(key);
+                if (interned == null) {
+                    route.intern(this, nextId++);
+                    routes.put(key, route);
+                    return route;
+                }
+            }
+        }
+        return interned.alias(route.getName());
+    }
+
+    int size() {
+        return routes.size();
+    }
+
+    private static final class Key {
+        private final int[] roadSegmentIds;
+        private final int hash;
+
+        Key(int[] roadSegmentIds) {
+            this.roadSegmentIds = roadSegmentIds;
+            this.hash = Arrays.hashCode(roadSegmentIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hash == other.hash && Arrays.equals(roadSegmentIds, other.roadSegmentIds);
+        }
+    }
+}
@@ -26,15 +26,17 @@
 package org.movsim.simulator.roadnetwork.routing;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
-import org.jgrapht.WeightedGraph;
-import org.jgrapht.alg.DijkstraShortestPath;
 import org.movsim.autogen.Routes;
 import org.movsim.simulator.roadnetwork.RoadNetwork;
 import org.movsim.simulator.roadnetwork.RoadSegment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -49,8 +51,20 @@ public class Routing {
 
     private final RoadNetwork roadNetwork;
 
-    // see http://jgrapht.org/ for library documentation
-    private WeightedGraph<Long, RoadSegment> graph;
+    /**
+     * maximum number of cached routes found by {@link #findRoute(String, String)}
+     */
+    static final int ROUTE_CACHE_SIZE = 10000;
+
+    private CompactGraph compactGraph;
+
+    private LandmarkRouter router;
+
+    /** interned routes, kept when the graph changes since vehicles may still follow them */
+    private final RouteTable routeTable = new RouteTable();
+
+    /** routes found for (start, destination) road ids, invalidated with the graph */
+    private final Cache<RouteKey, Route> routeCache = CacheBuilder.newBuilder().maximumSize(ROUTE_CACHE_SIZE).build();
 
     public Routing(Routes routesInput, RoadNetwork roadNetwork) {
         this.roadNetwork = Preconditions.checkNotNull(roadNetwork);
@@ -58,7 +72,7 @@ public class Routing {
         if (routesInput != null) {
             createPredefinedRoutes(routesInput);
         }
-        graph = NetworkGraph.create(roadNetwork); // lazy init. vs. early failure!!
+        compactGraph = NetworkGraph.create(roadNetwork); // lazy init. vs. early failure!!
     }
 
     private void createPredefinedRoutes(Routes routesInput) {
@@ -71,7 +85,7 @@ public class Routing {
                                 + " (consider +/- in case of bidirectional roads)");
                 route.add(roadSegment);
             }
-            Route replaced = predefinedRoutes.put(route.getName(), route);
+            Route replaced = predefinedRoutes.put(route.getName(), intern(route));
             if (replaced != null) {
                 throw new IllegalArgumentException("route with name=" + route.getName() + " already defined.");
             }
@@ -105,14 +119,37 @@ public class Routing {
     }
 
     /**
+     * Rebuilds the network graph after the road network has changed and drops all routes found so far.
+     */
+    public synchronized void updateGraph() {
+        compactGraph = NetworkGraph.create(roadNetwork);
+        router = null;
+        routeCache.invalidateAll();
+    }
+
+    /**
+     * Returns the shortest route from the start road to the destination road. Routes are cached, so the same instance is
+     * returned for repeated queries until the graph changes.
+     *
      * @throws IllegalStateException
      */
-    public Route findRoute(String startRoadId, String destinationRoadId) {
-        if (graph == null) {
-            graph = NetworkGraph.create(roadNetwork);
-        }
+    public synchronized Route findRoute(String startRoadId, String destinationRoadId) {
         Preconditions.checkArgument(startRoadId != null && !startRoadId.isEmpty());
         Preconditions.checkArgument(destinationRoadId != null && !destinationRoadId.isEmpty());
+        final RouteKey key = new RouteKey(startRoadId, destinationRoadId);
+        Route route = routeCache.getIfPresent(key);
+        if (route == null) {
+            route = intern(searchRoute(startRoadId, destinationRoadId));
+            routeCache.put(key, route);
+        }
+        return route;
+    }
+
+    private Route searchRoute(String startRoadId, String destinationRoadId) {
+        if (router == null) {
+            // precomputation of the landmark distances with the first query
+            router = new LandmarkRouter(compactGraph());
+        }
 
         RoadSegment startRoadSegment = roadNetwork.findByUserId(startRoadId);
         if (startRoadSegment == null) {
@@ -130,9 +167,8 @@ public class Routing {
         LOG.debug("From node={} to node={}", startRoadSegment.getDestinationNode().getId(),
                 endRoadSegment.getDestinationNode().getId());
 
-        List<RoadSegment> path = DijkstraShortestPath
-                .findPathBetween(graph, startRoadSegment.getDestinationNode().getId(),
-                        endRoadSegment.getDestinationNode().getId());
+        List<RoadSegment> path = router.findPathBetween(startRoadSegment.getDestinationNode().getId(),
+                endRoadSegment.getDestinationNode().getId());
 
         if (path == null) {
             LOG.error("cannot find route from startRoadId={} to destinationRoadId={}", startRoadId, destinationRoadId);
@@ -147,7 +183,126 @@ public class Routing {
         return route;
     }
 
-    private static String createRouteName(String startRoadId, String destinationRoadId) {
+    /**
+     * Returns the shared instance of the given route. Routes with the same road segments share their arrays and an id
+     * unique within this routing, the name of the given route is kept; the given route must not be extended afterwards.
+     *
+     * @param route
+     * @return the interned route
+     */
+    public Route intern(Route route) {
+        return routeTable.intern(route);
+    }
+
+    /**
+     * Returns the shortest routes from the start road to each of the destination roads, found with a single search. The
+     * search does not block other queries, so the routes of different start roads can be computed concurrently. The
+     * routes are cached like the routes found by {@link #findRoute(String, String)}, unless the graph has been updated
+     * during the search.
+     *
+     * @param startRoadId
+     * @param destinationRoadIds
+     * @return the routes by destination road id
+     * @throws IllegalArgumentException
+     *             if a road cannot be found
+     * @throws IllegalStateException
+     *             if a destination cannot be reached
+     */
+    public Map<String, Route> findRoutes(String startRoadId, Collection<String> destinationRoadIds) {
+        Preconditions.checkArgument(startRoadId != null && !startRoadId.isEmpty());
+        final Map<String, Route> routes = new LinkedHashMap<>();
+        final Map<String, RoadSegment> destinations = new LinkedHashMap<>();
+        for (String destinationRoadId : destinationRoadIds) {
+            Route route = routeCache.getIfPresent(new RouteKey(startRoadId, destinationRoadId));
+            if (route != null) {
+                routes.put(destinationRoadId, route);
+            } else {
+                RoadSegment destination = roadNetwork.findByUserId(destinationRoadId);
+                if (destination == null) {
+                    throw new IllegalArgumentException("cannot find roadSegment=" + destinationRoadId);
+                }
+                destinations.put(destinationRoadId, destination);
+            }
+        }
+        if (destinations.isEmpty()) {
+            return routes;
+        }
+
+        final RoadSegment startRoadSegment = roadNetwork.findByUserId(startRoadId);
+        if (startRoadSegment == null) {
+            throw new IllegalArgumentException("cannot find roadSegment=" + startRoadId);
+        }
+        final CompactGraph graph = compactGraph();
+        final int[] targets = new int[destinations.size()];
+        int i = 0;
+        for (RoadSegment destination : destinations.values()) {
+            targets[i++] = graph.vertexIndex(destination.getDestinationNode().getId());
+        }
+        final ShortestPathTree tree = new ShortestPathTree(graph);
+        tree.grow(graph.vertexIndex(startRoadSegment.getDestinationNode().getId()), targets);
+
+        final Map<String, Route> found = new LinkedHashMap<>();
+        i = 0;
+        for (String destinationRoadId : destinations.keySet()) {
+            List<RoadSegment> path = tree.path(targets[i++]);
+            if (path == null) {
+                throw new IllegalStateException("cannot find route from startRoadId=" + startRoadId
+                        + " to destinationRoadId=" + destinationRoadId);
+            }
+            Route route = new Route(createRouteName(startRoadId, destinationRoadId));
+            route.add(startRoadSegment);
+            for (RoadSegment roadSegment : path) {
+                route.add(roadSegment);
+            }
+            found.put(destinationRoadId, intern(route));
+        }
+        synchronized (this) {
+            // routes found on a graph replaced in the meantime by updateGraph() are not cached
+            if (graph == compactGraph) {
+                for (Map.Entry<String, Route> entry : found.entrySet()) {
+                    routeCache.put(new RouteKey(startRoadId, entry.getKey()), entry.getValue());
+                }
+            }
+        }
+        routes.putAll(found);
+        return routes;
+    }
+
+    /**
+     * Returns the network graph in compact form for the shortest path searches.
+     */
+    synchronized CompactGraph compactGraph() {
+        return compactGraph;
+    }
+
+    private static final class RouteKey {
+        private final String startRoadId;
+        private final String destinationRoadId;
+
+        RouteKey(String startRoadId, String destinationRoadId) {
+            this.startRoadId = startRoadId;
+            this.destinationRoadId = destinationRoadId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * startRoadId.hashCode() + destinationRoadId.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof RouteKey)) {
+                return false;
+            }
+            RouteKey other = (RouteKey) obj;
+            return startRoadId.equals(other.startRoadId) && destinationRoadId.equals(other.destinationRoadId);
+        }
+    }
+
+    static String createRouteName(String startRoadId, String destinationRoadId) {
         StringBuilder sb = new StringBuilder();
         sb.append("from_").append(startRoadId).append("_").append(destinationRoadId);
         return sb.toString();
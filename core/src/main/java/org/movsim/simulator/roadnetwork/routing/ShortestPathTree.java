@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ * 
+ * This file is part of
+ * 
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ * 
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ * 
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.roadnetwork.routing;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+
+import org.movsim.simulator.roadnetwork.RoadSegment;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Dijkstra's algorithm from one source vertex to many target vertices on the static edge weights of a
+ * {@link CompactGraph}. The search stops as soon as all targets are settled. Each tree holds its own search state, so trees
+ * of different sources can be grown concurrently on the same graph.
+ */
+final class ShortestPathTree {
+
+    private static final int NONE = CompactGraph.NONE;
+
+    private final CompactGraph graph;
+
+    private final double[] distances;
+
+    private final int[] predecessorEdges;
+
+    private final boolean[] isTarget;
+
+    private final IndexHeap heap;
+
+    ShortestPathTree(CompactGraph graph) {
+        this.graph = graph;
+        final int vertexCount = graph.vertexCount();
+        distances = new double[vertexCount];
+        predecessorEdges = new int[vertexCount];
+        isTarget = new boolean[vertexCount];
+        heap = new IndexHeap(vertexCount);
+    }
+
+    /**
+     * Grows the tree from the source until all targets are settled or no further vertex can be reached.
+     *
+     * @param source
+     *            index of the source vertex
+     * @param targets
+     *            indices of the target vertices
+     */
+    void grow(int source, int[] targets) {
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(predecessorEdges, NONE);
+        int remaining = 0;
+        for (int target : targets) {
+            if (!isTarget[target]) {
+                isTarget[target] = true;
+                ++remaining;
+            }
+        }
+        distances[source] = 0;
+        heap.clear();
+        heap.insertOrDecrease(source, 0);
+        while (!heap.isEmpty() && remaining > 0) {
+            final int v = heap.removeMin();
+            if (isTarget[v]) {
+                --remaining;
+            }
+            for (int e = graph.offsets[v], end = graph.offsets[v + 1]; e < end; e++) {
+                final int w = graph.edgeTargets[e];
+                final double d = distances[v] + graph.weights[e];
+                if (d < distances[w]) {
+                    distances[w] = d;
+                    predecessorEdges[w] = e;
+                    heap.insertOrDecrease(w, d);
+                }
+            }
+        }
+        for (int target : targets) {
+            isTarget[target] = false;
+        }
+    }
+
+    double distance(int vertex) {
+        return distances[vertex];
+    }
+
+    /**
+     * Returns the edges of the shortest path to the given vertex.
+     *
+     * @param target
+     *            index of a target vertex of the last call of {@link #grow(int, int[])}
+     * @return the edges of the path, an empty list for the source, or null if the vertex cannot be reached
+     */
+    @CheckForNull
+    List<RoadSegment> path(int target) {
+        if (distances[target] == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        final List<RoadSegment> path = Lists.newArrayList();
+        for (int v = target; predecessorEdges[v] != NONE; v = graph.edgeSources[predecessorEdges[v]]) {
+            path.add(graph.edges[predecessorEdges[v]]);
+        }
+        return Lists.reverse(path);
+    }
+}
@@ -3,51 +3,117 @@ package org.movsim.simulator.vehicles;
 import com.google.common.base.Preconditions;
 import org.movsim.scenario.vehicle.autogen.ExternalVehicleType;
 import org.movsim.scenario.vehicle.autogen.MovsimExternalVehicleControl;
+import org.movsim.scenario.vehicle.autogen.ObjectFactory;
 import org.movsim.scenario.vehicle.autogen.SpeedDataType;
 import org.movsim.scenario.vehicle.autogen.VehicleUserDataType;
 import org.movsim.simulator.roadnetwork.LaneSegment;
 import org.movsim.simulator.roadnetwork.RoadNetwork;
 import org.movsim.simulator.roadnetwork.RoadSegment;
-import org.movsim.utilities.LinearInterpolatedFunction;
 import org.movsim.utilities.TimeUtilities;
+import org.movsim.xml.InputLoader;
+import org.movsim.xml.InputLoader.XmlInput;
+import org.movsim.xml.XmlRecordReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.*;
-import java.util.Map.Entry;
-
-public class ExternalVehiclesController {
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <p>
+ * Adds, controls and removes the externally controlled vehicles. The input is ingested as a stream in order of the entry
+ * times of the vehicles; only a look-ahead window of vehicles not yet entered is held in memory. The speed data of a
+ * vehicle are kept as primitive arrays and released when the vehicle is removed.
+ * </p>
+ * <p>
+ * Vehicles which are out of order by less than the look-ahead window are sorted, otherwise an
+ * {@link IllegalStateException} is thrown when the vehicle is reached.
+ * </p>
+ */
+public class ExternalVehiclesController implements Closeable {
 
     private static final Logger LOG = LoggerFactory.getLogger(ExternalVehiclesController.class);
 
+    /** number of vehicles read ahead for sorting by entry time */
+    static final int LOOK_AHEAD = 256;
+
+    private static final String RECORD = "ExternalVehicle";
+
+    private Iterator<ExternalVehicleType> input = Collections.emptyIterator();
+
     /**
-     * time-sorted map of external vehicle input data
+     * time-sorted window of external vehicle input data
      */
-    private final SortedMap<Double, List<ExternalVehicleType>> externalVehicleInputsToAdd = new TreeMap<>();
+    private final PriorityQueue<ControlledVehicle> vehiclesToAdd = new PriorityQueue<>(LOOK_AHEAD,
+            (a, b) -> a.entryTime != b.entryTime ? Double.compare(a.entryTime, b.entryTime) :
+                    Long.compare(a.sequence, b.sequence));
 
     /**
-     * time-sorted map of vehicles to remove
+     * time-sorted queue of vehicles to remove
      */
-    private final SortedMap<Double, List<Vehicle>> externalVehiclesToRemove = new TreeMap<>();
+    private final PriorityQueue<ControlledVehicle> vehiclesToRemove = new PriorityQueue<>(
+            (a, b) -> a.exitTime != b.exitTime ? Double.compare(a.exitTime, b.exitTime) :
+                    Long.compare(a.sequence, b.sequence));
 
-    private final Map<Vehicle, LinearInterpolatedFunction> controlledVehicles = new HashMap<>();
+    private final List<ControlledVehicle> controlledVehicles = new ArrayList<>();
 
     private String timeFormat;
 
+    private long sequence;
+
+    private double lastEntryTime = Double.NEGATIVE_INFINITY;
+
     public void setInput(MovsimExternalVehicleControl input) {
         Preconditions.checkNotNull(input);
-        this.timeFormat = input.getTimeFormat();
-        createExternalVehicleData(input);
+        setInput(input.getExternalVehicle().iterator(), input.getTimeFormat());
+    }
+
+    /**
+     * Streams the external vehicles from the given input file.
+     *
+     * @throws IllegalStateException
+     *             if the file is not valid
+     */
+    public void setInput(File file) {
+        Preconditions.checkArgument(file.exists(), "external vehicle control file " + file + " not found");
+        InputLoader.validate(file, XmlInput.EXTERNAL_VEHICLE_CONTROL);
+        XmlRecordReader<ExternalVehicleType> reader = new XmlRecordReader<>(file, ObjectFactory.class,
+                ExternalVehicleType.class, RECORD);
+        String format = reader.getRootAttribute("time_format");
+        setInput(reader, format == null ? "" : format);
+    }
+
+    /**
+     * Closes the input file, the vehicles not yet entered are discarded.
+     */
+    @Override
+    public void close() throws IOException {
+        vehiclesToAdd.clear();
+        if (input instanceof Closeable) {
+            ((Closeable) input).close();
+        }
+        input = Collections.emptyIterator();
+    }
+
+    private void setInput(Iterator<ExternalVehicleType> input, String timeFormat) {
+        this.input = input;
+        this.timeFormat = timeFormat;
+        fillWindow();
     }
 
     /**
      * sets the speeds of externally controlled vehicles in whole road network
      */
     public void setSpeeds(double simulationTime) {
-        for (Entry<Vehicle, LinearInterpolatedFunction> entry : controlledVehicles.entrySet()) {
-            double currentSpeed = entry.getValue().value(simulationTime);
-            Vehicle vehicle = entry.getKey();
-            vehicle.setSpeed(currentSpeed);
+        for (int i = 0, n = controlledVehicles.size(); i < n; i++) {
+            final ControlledVehicle controlled = controlledVehicles.get(i);
+            controlled.vehicle.setSpeed(controlled.speedProfile.value(simulationTime));
         }
     }
 
@@ -62,78 +128,78 @@ public class ExternalVehiclesController {
         removeVehiclesFromRoadNetwork(simulationTime, roadNetwork);
     }
 
-    private void createExternalVehicleData(MovsimExternalVehicleControl input) {
-        for (ExternalVehicleType externalVehicleData : input.getExternalVehicle()) {
+    /**
+     * @return the number of vehicles currently controlled
+     */
+    public int getControlledVehicleCount() {
+        return controlledVehicles.size();
+    }
+
+    private void fillWindow() {
+        while (vehiclesToAdd.size() < LOOK_AHEAD && input.hasNext()) {
+            ExternalVehicleType externalVehicleData = input.next();
             Preconditions.checkArgument(!externalVehicleData.getSpeedData().isEmpty(),
                     "external vehicle needs at least one (time, speed) data entry");
-            // no check if (time, speed) input data is sorted in time
-            String entryTime = externalVehicleData.getSpeedData().get(0).getTime();
-            double entryTimestamp = TimeUtilities.convertToSeconds(entryTime, timeFormat);
-            addVehicleInput(entryTimestamp, externalVehicleData);
+            SpeedProfile speedProfile = createSpeedProfile(externalVehicleData.getSpeedData());
+            // the speed data are kept in the profile only
+            externalVehicleData.getSpeedData().clear();
+            vehiclesToAdd.add(new ControlledVehicle(externalVehicleData, speedProfile, sequence++));
         }
     }
 
     private void addVehiclesToRoadNetwork(double simulationTime, RoadNetwork roadNetwork) {
-        while (!externalVehicleInputsToAdd.isEmpty() && externalVehicleInputsToAdd.firstKey() <= simulationTime) {
-            Double firstKey = externalVehicleInputsToAdd.firstKey();
-            List<ExternalVehicleType> externalVehicles = externalVehicleInputsToAdd.remove(firstKey);
-            addVehiclesToRoadSegments(externalVehicles, roadNetwork);
-            LOG.debug("added {} external vehicles to roadNetwork, removed entries for time={}", externalVehicles.size(),
-                    firstKey);
+        while (!vehiclesToAdd.isEmpty() && vehiclesToAdd.peek().entryTime <= simulationTime) {
+            ControlledVehicle controlled = vehiclesToAdd.poll();
+            if (controlled.entryTime < lastEntryTime) {
+                throw new IllegalStateException("external vehicle with entry time=" + controlled.entryTime
+                        + " not sorted within look-ahead window of " + LOOK_AHEAD + " vehicles");
+            }
+            lastEntryTime = controlled.entryTime;
+            addVehicleToRoadSegment(controlled, roadNetwork);
+            fillWindow();
         }
     }
 
     private void removeVehiclesFromRoadNetwork(double simulationTime, RoadNetwork roadNetwork) {
-        while (!externalVehiclesToRemove.isEmpty() && simulationTime >= externalVehiclesToRemove.firstKey()) {
-            Double firstKey = externalVehiclesToRemove.firstKey();
-            List<Vehicle> externalVehicles = externalVehiclesToRemove.remove(firstKey);
-            removeVehiclesFromRoadSegments(externalVehicles, roadNetwork);
-        }
-    }
-
-    private void removeVehiclesFromRoadSegments(List<Vehicle> externalVehicles, RoadNetwork roadNetwork) {
-        for (Vehicle vehicle : externalVehicles) {
-            int roadSegmentId = vehicle.roadSegmentId();
-            RoadSegment roadSegment = roadNetwork.findById(roadSegmentId);
-            LaneSegment laneSegment = roadSegment.laneSegment(vehicle.lane());
-            laneSegment.removeVehicle(vehicle);
-            LOG.info("removed externally controlled vehicle={} from roadSegment={}", vehicle, roadSegment);
+        while (!vehiclesToRemove.isEmpty() && simulationTime >= vehiclesToRemove.peek().exitTime) {
+            ControlledVehicle controlled = vehiclesToRemove.poll();
+            removeVehicleFromRoadSegment(controlled.vehicle, roadNetwork);
+            // release the vehicle and its speed data
+            ControlledVehicle moved = controlledVehicles.remove(controlledVehicles.size() - 1);
+            if (moved != controlled) {
+                controlledVehicles.set(controlled.index, moved);
+                moved.index = controlled.index;
+            }
         }
     }
 
-    private boolean addVehicleInput(double timestamp, ExternalVehicleType externalVehicleInput) {
-        List<ExternalVehicleType> externalVehicles = externalVehicleInputsToAdd
-                .computeIfAbsent(timestamp, it -> new ArrayList<>());
-        return externalVehicles.add(externalVehicleInput);
-    }
-
-    private boolean addVehicleToRemoveMap(double timestamp, Vehicle vehicle) {
-        List<Vehicle> vehiclesToRemove = externalVehiclesToRemove.computeIfAbsent(timestamp, it -> new ArrayList<>());
-        return vehiclesToRemove.add(vehicle);
+    private static void removeVehicleFromRoadSegment(Vehicle vehicle, RoadNetwork roadNetwork) {
+        int roadSegmentId = vehicle.roadSegmentId();
+        RoadSegment roadSegment = roadNetwork.findById(roadSegmentId);
+        LaneSegment laneSegment = roadSegment.laneSegment(vehicle.lane());
+        laneSegment.removeVehicle(vehicle);
+        LOG.info("removed externally controlled vehicle={} from roadSegment={}", vehicle, roadSegment);
     }
 
-    private void addVehiclesToRoadSegments(List<ExternalVehicleType> vehicleInputs, RoadNetwork roadNetwork) {
-        for (ExternalVehicleType vehicleInput : vehicleInputs) {
-            Vehicle vehicle = createVehicle(vehicleInput);
-            String roadId = vehicleInput.getRoadId();
-            RoadSegment roadSegment = roadNetwork.findByUserId(roadId);
-            Preconditions
-                    .checkNotNull(roadSegment, "cannot find roadSegment with id=" + roadId + " for external vehicle");
-            roadSegment.addVehicle(vehicle);
-            LinearInterpolatedFunction speedProfile = createSpeedProfile(vehicleInput.getSpeedData());
-            controlledVehicles.put(vehicle, speedProfile);
-            LOG.info("added externally controlled vehicle={} to roadSegment={}", vehicle, roadSegment);
-
-            // and add vehicle to removal container
-            int size = vehicleInput.getSpeedData().size();
-            String exitTime = vehicleInput.getSpeedData().get(size - 1).getTime();
-            double exitTimestamp = TimeUtilities.convertToSeconds(exitTime, timeFormat);
-            addVehicleToRemoveMap(exitTimestamp, vehicle);
-            LOG.info("external vehicle={} will be removed at timestamp={}", vehicle, exitTimestamp);
-        }
+    private void addVehicleToRoadSegment(ControlledVehicle controlled, RoadNetwork roadNetwork) {
+        ExternalVehicleType vehicleInput = controlled.data;
+        Vehicle vehicle = createVehicle(vehicleInput, controlled.speedProfile.initialSpeed());
+        String roadId = vehicleInput.getRoadId();
+        RoadSegment roadSegment = roadNetwork.findByUserId(roadId);
+        Preconditions.checkNotNull(roadSegment, "cannot find roadSegment with id=" + roadId + " for external vehicle");
+        roadSegment.addVehicle(vehicle);
+        controlled.vehicle = vehicle;
+        controlled.data = null;
+        controlled.index = controlledVehicles.size();
+        controlledVehicles.add(controlled);
+        LOG.info("added externally controlled vehicle={} to roadSegment={}", vehicle, roadSegment);
+
+        // and add vehicle to removal queue
+        vehiclesToRemove.add(controlled);
+        LOG.info("external vehicle={} will be removed at timestamp={}", vehicle, controlled.exitTime);
     }
 
-    private LinearInterpolatedFunction createSpeedProfile(List<SpeedDataType> speedData) {
+    private SpeedProfile createSpeedProfile(List<SpeedDataType> speedData) {
         int size = speedData.size();
         double[] times = new double[size];
         double[] speeds = new double[size];
@@ -142,12 +208,10 @@ public class ExternalVehiclesController {
             times[i] = TimeUtilities.convertToSeconds(dataPoint.getTime(), timeFormat);
             speeds[i] = dataPoint.getSpeed();
         }
-
-        return new LinearInterpolatedFunction(times, speeds);
+        return new SpeedProfile(times, speeds);
     }
 
-    private Vehicle createVehicle(ExternalVehicleType data) {
-        double initialSpeed = data.getSpeedData().get(0).getSpeed();
+    private static Vehicle createVehicle(ExternalVehicleType data, double initialSpeed) {
         Vehicle vehicle = new Vehicle(data.getPosition(), initialSpeed, data.getLane(), data.getLength(),
                 data.getWidth());
         vehicle.setType(Vehicle.Type.EXTERNAL_CONTROL);
@@ -157,4 +221,24 @@ public class ExternalVehiclesController {
         return vehicle;
     }
 
+    private static final class ControlledVehicle {
+        final double entryTime;
+        final double exitTime;
+        final long sequence;
+        final SpeedProfile speedProfile;
+        /** input data until the vehicle is created */
+        ExternalVehicleType data;
+        Vehicle vehicle;
+        /** index in the list of controlled vehicles */
+        int index;
+
+        ControlledVehicle(ExternalVehicleType data, SpeedProfile speedProfile, long sequence) {
+            this.data = data;
+            this.speedProfile = speedProfile;
+            this.sequence = sequence;
+            this.entryTime = speedProfile.startTime();
+            this.exitTime = speedProfile.endTime();
+        }
+    }
+
 }
@@ -1,11 +1,11 @@
 package org.movsim.simulator.vehicles;
 
-import java.util.List;
-
-import org.movsim.simulator.observer.RouteAlternative;
+import org.movsim.simulator.EventScheduler;
+import org.movsim.simulator.observer.RouteAlternativesSnapshot;
 import org.movsim.simulator.observer.ServiceProvider;
 import org.movsim.simulator.roadnetwork.Lanes;
 import org.movsim.simulator.roadnetwork.RoadSegment;
+import org.movsim.simulator.roadnetwork.routing.DynamicRouting;
 import org.movsim.simulator.roadnetwork.routing.Route;
 import org.movsim.utilities.MyRandom;
 import org.slf4j.Logger;
@@ -19,8 +19,6 @@ public class RoutingDecisions {
 
     private static final double NOT_INIT = -1.0;
 
-    private static int countReroutings = 0;
-
     private ServiceProvider serviceProvider;
     private double uncertainty;
     private double reroutingThreshold;
@@ -30,80 +28,140 @@ public class RoutingDecisions {
 
     private double lastUpdateTime = NOT_INIT;
 
-    private RouteAlternative routeAlternative;
+    /** true while routing updates of the vehicle are scheduled */
+    private boolean scheduled;
+
+    private final EventScheduler.Event updateEvent = this::update;
+
+    /** route chosen with the last routing decision */
+    private Route route;
+
+    /** route alternatives the last routing decision was based on */
+    private RouteAlternativesSnapshot lastAlternatives;
+
+    /** destination of the dynamic routing, the last road segment of the vehicle's initial route */
+    private RoadSegment destination;
 
     public RoutingDecisions(Vehicle vehicle) {
         this.vehicle = vehicle;
     }
 
-    public void considerRouteAlternatives(double simulationTime, RoadSegment roadSegment) {
-        if (serviceProvider == null) {
+    /**
+     * Starts the routing updates of a vehicle with a service provider when it enters the road network. The updates are
+     * scheduled every vehicle update interval of the service provider and end when the vehicle has left the road network.
+     */
+    public void enterRoadNetwork() {
+        if (serviceProvider == null || scheduled) {
             return;
         }
+        scheduled = true;
+        serviceProvider.getEventScheduler().scheduleNext(this::initializeUpdates);
+    }
 
-        if (lastUpdateTime == NOT_INIT) {
-            // initialize update time with random (negative) offset to avoid synchronization at the inflow boundary
-            lastUpdateTime = simulationTime - MyRandom.nextDouble() * serviceProvider.getVehicleUpdateInterval();
+    private void initializeUpdates(double simulationTime) {
+        // initialize update time with random (negative) offset to avoid synchronization at the inflow boundary
+        lastUpdateTime = simulationTime - MyRandom.nextDouble() * serviceProvider.getVehicleUpdateInterval();
+        final double updateTime = lastUpdateTime + serviceProvider.getVehicleUpdateInterval();
+        if (updateTime <= simulationTime) {
+            // vanishing update interval
+            update(simulationTime);
+        } else {
+            serviceProvider.getEventScheduler().schedule(updateTime, updateEvent);
         }
+    }
 
-        if (readyForNextUpdate(serviceProvider.getVehicleUpdateInterval(), simulationTime)) {
+    private void update(double simulationTime) {
+        final RoadSegment roadSegment = vehicle.roadSegment();
+        if (roadSegment == null || !roadSegment.containsVehicle(vehicle)) {
+            LOG.debug("vehicle={} has left the road network, routing updates end", vehicle.getId());
+            scheduled = false;
+            return;
+        }
+        LOG.debug("vehicle gets update at time={}, last update was at time={}", (int) simulationTime,
+                (int) lastUpdateTime);
+        lastUpdateTime = simulationTime;
+        considerRouteAlternatives(roadSegment);
+        serviceProvider.getEventScheduler().schedule(simulationTime + serviceProvider.getVehicleUpdateInterval(),
+                updateEvent);
+    }
 
-            LOG.debug("vehicle gets update at time={}, last update was at time={}", (int) simulationTime,
-                    (int) lastUpdateTime);
-            lastUpdateTime = simulationTime;
+    private void considerRouteAlternatives(RoadSegment roadSegment) {
+        DynamicRouting dynamicRouting = serviceProvider.getDynamicRouting();
+        if (dynamicRouting != null && requestRoute(dynamicRouting)) {
+            return;
+        }
 
-            // quick hack for finite vehicle update interval: look-ahead one road segment to assign routing decision in advance
-            RoadSegment decisionPointSegment = roadSegment;
-            if (roadSegment.userId().equals("1")) {
-                decisionPointSegment = roadSegment.sinkRoadSegment(Lanes.MOST_INNER_LANE);
+        // quick hack for finite vehicle update interval: look-ahead one road segment to assign routing decision in advance
+        RoadSegment decisionPointSegment = roadSegment;
+        if (roadSegment.userId().equals("1")) {
+            decisionPointSegment = roadSegment.sinkRoadSegment(Lanes.MOST_INNER_LANE);
+        }
+
+        RouteAlternativesSnapshot alternatives = serviceProvider.getRouteAlternatives(decisionPointSegment);
+        if (alternatives != null && alternatives.isPrescribed()) {
+            // shares assigned externally, the vehicle chooses once
+            if (route == null) {
+                route = alternatives.getRoute(alternatives.selectMostProbableAlternative(uncertainty,
+                        randomAlternative));
+                assignRoute(decisionPointSegment, route);
+            }
+        } else if (alternatives != null && alternatives != lastAlternatives) {
+            // the decision depends only on the snapshot and is not repeated until the next server update
+            lastAlternatives = alternatives;
+            int newAlternative = alternatives.selectMostProbableAlternative(uncertainty, randomAlternative);
+
+            // quick-hack: assign exit lane to vehicle since routing capabilities not yet available in movsim
+            boolean doRerouting = (uncertainty > 0) || checkForRerouting(newAlternative, alternatives);
+            if (doRerouting) {
+                route = alternatives.getRoute(newAlternative);
+                assignRoute(decisionPointSegment, route);
             }
+        }
+    }
 
-            List<RouteAlternative> alternatives = serviceProvider.getAlternativesForDecisionPoint(decisionPointSegment);
-            if (alternatives != null) {
-                ServiceProvider.updateRouteAlternatives(alternatives, uncertainty);
-                RouteAlternative newRouteAlternative = ServiceProvider
-                        .selectMostProbableAlternative(alternatives, randomAlternative);
-
-                // quick-hack: assign exit lane to vehicle since routing capabilities not yet available in movsim
-                boolean doRerouting = (uncertainty > 0) || checkForRerouting(newRouteAlternative, alternatives);
-                if (doRerouting) {
-                    routeAlternative = newRouteAlternative;
-                    assignRoute(decisionPointSegment, routeAlternative.getRoute());
-                }
+    /**
+     * Requests a route to the vehicle's destination, the rerouting is done when the service provider processes the
+     * requests.
+     *
+     * @return false if the vehicle has no destination
+     */
+    private boolean requestRoute(DynamicRouting dynamicRouting) {
+        if (destination == null) {
+            Route initialRoute = vehicle.getRoute();
+            if (initialRoute == null || initialRoute.size() == 0) {
+                return false;
             }
+            destination = initialRoute.get(initialRoute.size() - 1);
         }
+        dynamicRouting.requestRoute(vehicle, destination);
+        return true;
     }
 
-    private boolean checkForRerouting(RouteAlternative newRouteAlternative, List<RouteAlternative> alternatives) {
-        if (routeAlternative == null) {
+    private boolean checkForRerouting(int newAlternative, RouteAlternativesSnapshot alternatives) {
+        if (route == null) {
             return true;
         }
 
-        if (newRouteAlternative.getRoute().equals(routeAlternative.getRoute())) {
+        if (alternatives.getRoute(newAlternative).equals(route)) {
             return false; // no new route
         }
 
-        RouteAlternative alternativeFromLastRouting = getAlternativeFromLastUpdate(alternatives);
+        int alternativeFromLastRouting = alternatives.indexOf(route);
+        if (alternativeFromLastRouting < 0) {
+            throw new IllegalStateException("shouldn't come here - alternative not found");
+        }
 
-        boolean doRerouting =
-                newRouteAlternative.getDisutility() + reroutingThreshold < alternativeFromLastRouting.getDisutility();
+        double diffDisutility = alternatives.getDisutility(newAlternative)
+                - alternatives.getDisutility(alternativeFromLastRouting);
+        boolean doRerouting = diffDisutility + reroutingThreshold < 0;
         if (doRerouting) {
-            ++countReroutings;
-            LOG.info("vehicle is re-routed: diff disutility={}, counterReroutings={}",
-                    newRouteAlternative.getDisutility() - alternativeFromLastRouting.getDisutility(), countReroutings);
+            final long countReroutings = serviceProvider.countRerouting();
+            LOG.info("vehicle is re-routed: diff disutility={}, counterReroutings={}", diffDisutility,
+                    countReroutings);
         }
         return doRerouting;
     }
 
-    private RouteAlternative getAlternativeFromLastUpdate(List<RouteAlternative> alternatives) {
-        for (RouteAlternative alternative : alternatives) {
-            if (alternative.getRoute().equals(routeAlternative.getRoute())) {
-                return alternative;
-            }
-        }
-        throw new IllegalStateException("shouldn't come here - alternative not found");
-    }
-
     private void assignRoute(RoadSegment roadSegment, Route route) {
         if (!route.getName().equals("A1") && !route.getName().equals("A2")) {
             throw new IllegalArgumentException("cannot handle other alternatives=" + route + "  then A1 and A2 yet!!!");
@@ -122,10 +180,6 @@ public class RoutingDecisions {
         }
     }
 
-    private boolean readyForNextUpdate(double vehicleUpdateInterval, double simulationTime) {
-        return simulationTime - lastUpdateTime >= vehicleUpdateInterval;
-    }
-
     public ServiceProvider getServiceProvider() {
         return serviceProvider;
     }
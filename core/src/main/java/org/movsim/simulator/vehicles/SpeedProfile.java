@@ -0,0 +1,65 @@
+package org.movsim.simulator.vehicles;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Piecewise linear speed profile of an externally controlled vehicle. The profile is evaluated at increasing times, so the
+ * interval of the last evaluation is kept as cursor and the next one is found by moving the cursor forward instead of a
+ * binary search. Outside of the data range the profile is constant.
+ */
+final class SpeedProfile {
+
+    private final double[] times;
+
+    private final double[] speeds;
+
+    private int cursor;
+
+    /**
+     * @param times
+     *            strictly increasing times in seconds
+     * @param speeds
+     *            speeds in m/s
+     * @throws IllegalArgumentException
+     */
+    SpeedProfile(double[] times, double[] speeds) {
+        Preconditions.checkArgument(times.length == speeds.length, "dimensions mismatch");
+        Preconditions.checkArgument(times.length != 0, "dimension zero");
+        for (int i = 1; i < times.length; i++) {
+            Preconditions.checkArgument(times[i] > times[i - 1],
+                    "times of speed data not strictly increasing at index=" + i);
+        }
+        this.times = times;
+        this.speeds = speeds;
+    }
+
+    double startTime() {
+        return times[0];
+    }
+
+    double endTime() {
+        return times[times.length - 1];
+    }
+
+    double initialSpeed() {
+        return speeds[0];
+    }
+
+    double value(double time) {
+        final int last = times.length - 1;
+        if (time <= times[0]) {
+            return speeds[0];
+        }
+        if (time >= times[last]) {
+            return speeds[last];
+        }
+        while (time < times[cursor]) {
+            --cursor;
+        }
+        while (time >= times[cursor + 1]) {
+            ++cursor;
+        }
+        final double slope = (speeds[cursor + 1] - speeds[cursor]) / (times[cursor + 1] - times[cursor]);
+        return speeds[cursor] + (time - times[cursor]) * slope;
+    }
+}
@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 import org.movsim.autogen.TrafficComposition;
 import org.movsim.simulator.roadnetwork.routing.Route;
@@ -61,8 +62,19 @@ public class TrafficCompositionGenerator {
         return determineVehicleType().getTestVehicle();
     }
 
+    /**
+     * Draws a test vehicle from the given random stream instead of the global generator. The composition itself is not
+     * modified, so this method can be called concurrently with one stream per thread.
+     */
+    public TestVehicle getTestVehicle(SplittableRandom random) {
+        return determineVehicleType(random.nextDouble()).getTestVehicle();
+    }
+
     private VehicleType determineVehicleType() {
-        final double randomNumber = MyRandom.nextDouble();
+        return determineVehicleType(MyRandom.nextDouble());
+    }
+
+    private VehicleType determineVehicleType(double randomNumber) {
         double sumFraction = 0;
         for (final VehicleType vehicleType : vehicleTypes.values()) {
             sumFraction += vehicleType.getFraction();
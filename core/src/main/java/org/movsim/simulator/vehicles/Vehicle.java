@@ -29,8 +29,11 @@ import org.movsim.utilities.MyRandom;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import java.text.DecimalFormat;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>
@@ -64,7 +67,8 @@ public class Vehicle {
 
     protected static final int INITIAL_TEMPLATE_ID = -1;
 
-    private static long nextId = INITIAL_ID;
+    /** atomic since vehicles are created concurrently in simulation runs in parallel threads */
+    private static final AtomicLong nextId = new AtomicLong(INITIAL_ID);
 
     private static long nextTemplateId = INITIAL_TEMPLATE_ID;
 
@@ -160,6 +164,11 @@ public class Vehicle {
 
     private int laneOld;
 
+    /**
+     * index of this vehicle within its lane at the last neighbour sweep of the road segment
+     */
+    private int neighbourIndex = -1;
+
     /**
      * variable for remembering new target lane when assigning to new
      * laneSegment
@@ -233,7 +242,7 @@ public class Vehicle {
      * Resets the next id.
      */
     public static void resetNextId() {
-        nextId = INITIAL_ID;
+        nextId.set(INITIAL_ID);
         nextTemplateId = INITIAL_TEMPLATE_ID;
     }
 
@@ -243,7 +252,7 @@ public class Vehicle {
      * @return the id of the last vehicle created
      */
     public static long lastIdSet() {
-        return nextId - 1;
+        return nextId.get() - 1;
     }
 
     /**
@@ -252,7 +261,7 @@ public class Vehicle {
      * @return the number of vehicles that have been created
      */
     public static long count() {
-        return nextId - INITIAL_ID;
+        return nextId.get() - INITIAL_ID;
     }
 
     public Vehicle(String label, LongitudinalModelBase longitudinalModel, VehiclePrototypeConfiguration vehInput,
@@ -263,7 +272,7 @@ public class Vehicle {
         dimensions = new VehicleDimensions(vehInput.getLength(), vehInput.getWidth());
         this.maxDeceleration = vehInput.getMaximumDeceleration();
 
-        id = nextId++;
+        id = nextId.getAndIncrement();
         randomFix = MyRandom.nextDouble();
 
         initialize();
@@ -292,7 +301,7 @@ public class Vehicle {
     public Vehicle(double rearPosition, double speed, int lane, double length, double width) {
         assert rearPosition >= 0.0;
         assert speed >= 0.0;
-        id = nextId++;
+        id = nextId.getAndIncrement();
         randomFix = MyRandom.nextDouble();
         dimensions = new VehicleDimensions(length, width);
         setRearPosition(rearPosition);
@@ -609,14 +618,26 @@ public class Vehicle {
         return speed - frontVehicle.getSpeed();
     }
 
+    /**
+     * Advances the acceleration noise by one timestep. Called for all vehicles of a lane in one pass before the accelerations
+     * are calculated.
+     *
+     * @param dt     delta-t, simulation time interval, seconds
+     * @param random random stream of the road segment
+     */
+    public final void updateAccelerationNoise(double dt, SplittableRandom random) {
+        if (noise != null) {
+            noise.update(dt, random);
+        }
+    }
+
     public void updateAcceleration(double dt, RoadSegment roadSegment, LaneSegment laneSegment,
                                    LaneSegment leftLaneSegment) {
 
         accOld = acc;
-        // acceleration noise:
+        // acceleration noise, already advanced by updateAccelerationNoise
         double accError = 0;
         if (noise != null) {
-            noise.update(dt);
             accError = noise.getAccError();
             Vehicle frontVehicle = laneSegment.frontVehicle(this);
             if (getNetDistance(frontVehicle) < MovsimConstants.CRITICAL_GAP) {
@@ -746,6 +767,20 @@ public class Vehicle {
         return calcAccModel(laneSegment, leftLaneSegment, 1.0, 1.0, 1.0);
     }
 
+    /**
+     * Calculates the acceleration with the given (prospective) leader, for example a vehicle in a neighbouring lane. The
+     * European rules are not considered.
+     *
+     * @param frontVehicle the leader, may be null
+     * @return the acceleration
+     */
+    public double calcAccModel(Vehicle frontVehicle) {
+        if (longitudinalModel == null) {
+            return 0.0;
+        }
+        return longitudinalModel.calcAcc(this, frontVehicle);
+    }
+
     private double calcAccModel(LaneSegment laneSegment, LaneSegment leftLaneSegment, double alphaTLocal,
                                 double alphaV0Local, double alphaALocal) {
         if (longitudinalModel == null) {
@@ -829,6 +864,19 @@ public class Vehicle {
         targetLane = Lanes.NONE;
     }
 
+    /**
+     * Returns the index of this vehicle within its lane as recorded by the last lateral neighbour sweep of its road segment.
+     *
+     * @return the index, or -1 if not recorded
+     */
+    public final int getNeighbourIndex() {
+        return neighbourIndex;
+    }
+
+    public final void setNeighbourIndex(int neighbourIndex) {
+        this.neighbourIndex = neighbourIndex;
+    }
+
     public LaneChangeModel getLaneChangeModel() {
         return laneChangeModel;
     }
@@ -850,64 +898,97 @@ public class Vehicle {
     // ---------------------------------------------------------------------------------
 
     public boolean considerOvertakingViaPeer(double dt, RoadSegment roadSegment) {
-        LaneChangeDecision lcDecision = LaneChangeDecision.NONE;
+        if (decideOvertakingViaPeer(roadSegment) == LaneChangeDecision.OVERTAKE_VIA_PEER) {
+            initiateLaneChange(Lanes.OVERTAKING, dt);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Decides on overtaking via the peer road segment without changing the state of the vehicle.
+     *
+     * @param roadSegment the road segment of this vehicle
+     * @return {@link LaneChangeDecision#OVERTAKE_VIA_PEER} or {@link LaneChangeDecision#NONE}
+     */
+    public LaneChangeDecision decideOvertakingViaPeer(RoadSegment roadSegment) {
         if (!roadSegment.hasPeer() || roadSegment.laneCount() > 1 || lane() != Lanes.MOST_INNER_LANE
                 || laneChangeModel == null || !laneChangeModel.isInitialized() || inProcessOfLaneChange()) {
-            return false;
+            return LaneChangeDecision.NONE;
         }
-        lcDecision = laneChangeModel.makeDecisionForOvertaking(roadSegment);
-        if (lcDecision == LaneChangeDecision.OVERTAKE_VIA_PEER) {
-            setTargetLane(Lanes.OVERTAKING);
-            resetDelay(dt);
-            LOG.debug("do overtaking lane change to={} into target lane={}", lcDecision, targetLane);
-        }
-        return lcDecision == LaneChangeDecision.OVERTAKE_VIA_PEER;
+        final LaneChangeDecision lcDecision = laneChangeModel.makeDecisionForOvertaking(roadSegment);
+        return lcDecision == LaneChangeDecision.OVERTAKE_VIA_PEER ? lcDecision : LaneChangeDecision.NONE;
     }
 
     public boolean considerFinishOvertaking(double dt, LaneSegment laneSegment) {
+        if (decideFinishOvertaking(laneSegment) == LaneChangeDecision.MANDATORY_TO_RIGHT) {
+            initiateLaneChange(Lanes.MOST_INNER_LANE, dt);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Decides on turning back from the overtaking lane without changing the state of the vehicle.
+     *
+     * @param laneSegment the most inner lane segment
+     * @return {@link LaneChangeDecision#MANDATORY_TO_RIGHT} or {@link LaneChangeDecision#NONE}
+     */
+    public LaneChangeDecision decideFinishOvertaking(LaneSegment laneSegment) {
         assert lane() == Lanes.OVERTAKING;
         assert !inProcessOfLaneChange();
         if (laneChangeModel == null || !laneChangeModel.isInitialized()) {
-            return false;
+            return LaneChangeDecision.NONE;
         }
-        LaneChangeDecision lcDecision = laneChangeModel.finishOvertakingViaPeer(laneSegment);
-        if (lcDecision == LaneChangeDecision.MANDATORY_TO_RIGHT) {
-            setTargetLane(Lanes.MOST_INNER_LANE);
-            resetDelay(dt);
-            LOG.debug("finish overtaking, turn from lane={} into target lane={}", laneOld, targetLane);
+        final LaneChangeDecision lcDecision = laneChangeModel.finishOvertakingViaPeer(laneSegment);
+        return lcDecision == LaneChangeDecision.MANDATORY_TO_RIGHT ? lcDecision : LaneChangeDecision.NONE;
+    }
+
+    public boolean considerLaneChange(double dt, RoadSegment roadSegment) {
+        final LaneChangeDecision lcDecision = decideLaneChange(roadSegment);
+        if (lcDecision.getDirection() != Lanes.NO_CHANGE) {
+            initiateLaneChange(lane + lcDecision.getDirection(), dt);
             return true;
         }
         return false;
     }
 
-    public boolean considerLaneChange(double dt, RoadSegment roadSegment) {
+    /**
+     * Decides on a lane change based on the current traffic situation without changing the state of the vehicle or the road
+     * segment, so that the decisions of all vehicles can be made concurrently.
+     *
+     * @param roadSegment the road segment of this vehicle
+     * @return the lane-change decision, the lane-change direction is {@link Lanes#NO_CHANGE} if the vehicle stays in its lane
+     */
+    public LaneChangeDecision decideLaneChange(RoadSegment roadSegment) {
 
         if (roadSegment.laneCount() <= 1) {
             // no lane-changing decision necessary for one-lane road. already
             // checked before
-            return false;
+            return LaneChangeDecision.NONE;
         }
 
         // no lane changing when not configured in xml.
         if (laneChangeModel == null || !laneChangeModel.isInitialized()) {
-            return false;
+            return LaneChangeDecision.NONE;
         }
         assert !inProcessOfLaneChange();
 
         // if not in lane-changing process do determine if new lane is more
         // attractive and lane change is possible
-        LaneChangeDecision lcDecision = laneChangeModel.makeDecision(roadSegment);
-        final int laneChangeDirection = lcDecision.getDirection();
-
-        // initiates a lane change: set targetLane to new value the lane will be
-        // assigned by the vehicle container !!
-        if (laneChangeDirection != Lanes.NO_CHANGE) {
-            setTargetLane(lane + laneChangeDirection);
-            resetDelay(dt);
-            LOG.debug("do lane change to={} into target lane={}", laneChangeDirection, targetLane);
-            return true;
-        }
-        return false;
+        return laneChangeModel.makeDecision(roadSegment);
+    }
+
+    /**
+     * Initiates the lane change into the target lane. The lane itself will be assigned by the vehicle container.
+     *
+     * @param targetLane the target lane
+     * @param dt         delta-t, simulation time interval, seconds
+     */
+    public void initiateLaneChange(int targetLane, double dt) {
+        setTargetLane(targetLane);
+        resetDelay(dt);
+        LOG.debug("initiate lane change from lane={} into target lane={}", lane, targetLane);
     }
 
     public int getTargetLane() {
@@ -1061,6 +1142,7 @@ public class Vehicle {
      * Sets the road segment properties for this vehicle. Invoked after a vehicle has moved onto a new road segment.
      */
     public final void setRoadSegment(RoadSegment roadSegment) {
+        final boolean entersRoadNetwork = this.roadSegment == null;
         this.roadSegment = Preconditions.checkNotNull(roadSegment);
         if (originRoadSegmentId == ROAD_SEGMENT_ID_NOT_SET) {
             originRoadSegmentId = roadSegment.id();
@@ -1068,6 +1150,9 @@ public class Vehicle {
         this.roadSegmentId = roadSegment.id();
 
         updateRoute();
+        if (entersRoadNetwork) {
+            routingDecisions.enterRoadNetwork();
+        }
     }
 
     private void updateRoute() {
@@ -1125,6 +1210,26 @@ public class Vehicle {
         return roadSegmentId;
     }
 
+    /**
+     * Returns the road segment currently occupied by this vehicle.
+     *
+     * @return road segment currently occupied by this vehicle, null if not yet set
+     */
+    @CheckForNull
+    public final RoadSegment roadSegment() {
+        return roadSegment;
+    }
+
+    /**
+     * Returns the index of the next road segment on the vehicle's route. The index is larger than the route size if the
+     * vehicle has left its route.
+     *
+     * @return index of the next road segment on the route
+     */
+    public final int routeIndex() {
+        return routeIndex;
+    }
+
     /**
      * Returns the id of the road segment in which this vehicle wishes to exit.
      *
@@ -1203,6 +1308,25 @@ public class Vehicle {
         this.route = newRoute;
     }
 
+    @CheckForNull
+    public Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Replaces the route of the vehicle. The new route must start with the road segment currently occupied by the vehicle.
+     *
+     * @param newRoute
+     */
+    public void reroute(Route newRoute) {
+        Preconditions.checkArgument(newRoute.size() > 0 && newRoute.getOrigin().id() == roadSegmentId,
+                "new route must start with the current roadSegment=" + roadSegmentId);
+        setRoute(newRoute);
+        exitRoadSegmentId = ROAD_SEGMENT_ID_NOT_SET;
+        routeIndex = 0;
+        updateRoute();
+    }
+
     public String getRouteName() {
         return route != null ? route.getName() : "noRoute";
     }
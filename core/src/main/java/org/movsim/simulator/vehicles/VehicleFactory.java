@@ -84,6 +84,7 @@ public final class VehicleFactory {
             throw new IllegalArgumentException("service provider \"" + providerName + "\" for vehicle not configured.");
         }
         vehicle.routingDecisions().setServiceProvider(provider);
+        provider.registerUncertainty(personalNavigationDevice.getUncertainty());
         vehicle.routingDecisions().setUncertainty(personalNavigationDevice.getUncertainty());
         vehicle.routingDecisions().setReroutingThreshold(personalNavigationDevice.getReroutingThreshold());
     }
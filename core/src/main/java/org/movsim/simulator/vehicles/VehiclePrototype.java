@@ -58,7 +58,7 @@ class VehiclePrototype {
     LaneChangeModel createLaneChangeModel() {
         return configuration.isSetLaneChangeModelType()
                 && configuration.getLaneChangeModelType().isSetModelParameterMOBIL() ? new LaneChangeModel(
-                configuration.getLaneChangeModelType()) : null;
+                configuration.getLaneChangeModelType(), simulationTimestep) : null;
     }
 
     Noise createAccNoiseModel() {
@@ -30,6 +30,7 @@ import org.movsim.simulator.roadnetwork.LaneSegment;
 import org.movsim.simulator.roadnetwork.Lanes;
 import org.movsim.simulator.roadnetwork.RoadSegment;
 import org.movsim.simulator.vehicles.Vehicle;
+import org.movsim.utilities.MyRandom;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -98,9 +99,21 @@ public class LaneChangeModel {
 
     // Exit Handling
     // distance at which driver should think about changing lanes for exit
-    private static double distanceBeforeExitWantsToChangeLanes = 500.0;
+    private static final double DISTANCE_BEFORE_EXIT_WANTS_TO_CHANGE_LANES = 500.0;
     // distance at which driver must get into exit lane
-    private static double distanceBeforeExitMustChangeLanes = 300.0;
+    private static final double DISTANCE_BEFORE_EXIT_MUST_CHANGE_LANES = 300.0;
+
+    // Staggered evaluation of discretionary lane changes
+    // a vehicle drives freely if its speed is above this fraction of the desired speed
+    private static final double FREE_SPEED_FRACTION = 0.9;
+    // ... and there is no leader within the interaction distance given by this time headway
+    private static final double FREE_INTERACTION_TIME = 6.0;
+    private static final double FREE_INTERACTION_DISTANCE_MIN = 50.0;
+
+    // number of lane-change decisions between two evaluations of discretionary lane changes
+    private int discretionaryEvaluationSteps = 1;
+
+    private int stepsToNextDiscretionaryEvaluation;
 
     /**
      * Instantiates a new lane changing model.
@@ -115,6 +128,21 @@ public class LaneChangeModel {
         // isInitialized = laneChangeModelParameter.isInitializedMobilData();
     }
 
+    /**
+     * Instantiates a new lane changing model that evaluates discretionary lane changes in the interval given by the
+     * parameter.
+     *
+     * @param laneChangeModelParameter the lc input data
+     * @param simulationTimestep       the simulation timestep, seconds
+     */
+    public LaneChangeModel(org.movsim.autogen.LaneChangeModelType laneChangeModelParameter, double simulationTimestep) {
+        this(laneChangeModelParameter);
+        final double interval = laneChangeModelParameter.getDiscretionaryEvaluationInterval();
+        if (interval > 0) {
+            discretionaryEvaluationSteps = Math.max(1, (int) Math.round(interval / simulationTimestep));
+        }
+    }
+
     // used in tests
     public LaneChangeModel(Vehicle vehicle, org.movsim.autogen.LaneChangeModelType laneChangeModelParameter) {
         this.parameter = Preconditions.checkNotNull(laneChangeModelParameter);
@@ -132,6 +160,10 @@ public class LaneChangeModel {
         if (parameter.isSetOvertakingViaPeer()) {
             overtakingViaPeerModel = new OvertakingViaPeer(this, parameter.getOvertakingViaPeer());
         }
+        if (discretionaryEvaluationSteps > 1) {
+            // randomized phase to spread the evaluations of all vehicles over the interval
+            stepsToNextDiscretionaryEvaluation = MyRandom.nextInt(discretionaryEvaluationSteps);
+        }
     }
 
     /**
@@ -185,13 +217,49 @@ public class LaneChangeModel {
         }
 
         // check discretionary lane changes
-        if (considerDiscretionaryLaneChanges) {
+        if (considerDiscretionaryLaneChanges && isDiscretionaryEvaluationDue()) {
             decision = determineDiscretionaryLaneChangeDirection(roadSegment);
         }
 
         return decision;
     }
 
+    private boolean isDiscretionaryEvaluationDue() {
+        if (stepsToNextDiscretionaryEvaluation > 0) {
+            --stepsToNextDiscretionaryEvaluation;
+            return false;
+        }
+        stepsToNextDiscretionaryEvaluation = discretionaryEvaluationSteps - 1;
+        return true;
+    }
+
+    /**
+     * Returns true if the vehicle drives at nearly its desired speed without a leader within interaction distance. Then
+     * there is no incentive to change to the left. The incentive to change to the right (keep-right bias) may remain.
+     */
+    private boolean drivesFreely(RoadSegment roadSegment) {
+        double desiredSpeed = me.getLongitudinalModel().getDesiredSpeed();
+        if (me.getEffectiveSpeedlimit() != 0.0) {
+            desiredSpeed = Math.min(desiredSpeed, me.getEffectiveSpeedlimit());
+        }
+        if (me.getSpeed() < FREE_SPEED_FRACTION * desiredSpeed) {
+            return false;
+        }
+        final Vehicle frontVehicle = roadSegment.laneSegment(me.lane()).frontVehicle(me);
+        return frontVehicle == null || me.getNetDistance(frontVehicle) > Math.max(FREE_INTERACTION_DISTANCE_MIN,
+                FREE_INTERACTION_TIME * me.getSpeed());
+    }
+
+    /**
+     * Checks the safety criterion for a lane change of the vehicle into the given lane segment.
+     *
+     * @param laneSegment the target lane segment
+     * @return true, if the lane change is safe
+     */
+    public boolean isSafeLaneChange(LaneSegment laneSegment) {
+        return isSafeLaneChange(me, laneSegment);
+    }
+
     boolean isSafeLaneChange(Vehicle subjectVehicle, LaneSegment laneSegment) {
         final Vehicle front = laneSegment.frontVehicle(subjectVehicle);
         final Vehicle back = laneSegment.rearVehicle(subjectVehicle);
@@ -250,8 +318,9 @@ public class LaneChangeModel {
             }
         }
 
-        // consider lane-changing to left-hand side lane
-        if (currentLane + Lanes.TO_LEFT >= Lanes.MOST_INNER_LANE) {
+        // consider lane-changing to left-hand side lane, cheap pre-filter only for staggered evaluation
+        if (currentLane + Lanes.TO_LEFT >= Lanes.MOST_INNER_LANE
+                && (discretionaryEvaluationSteps == 1 || !drivesFreely(roadSegment))) {
             final LaneSegment newLaneSegment = roadSegment.laneSegment(currentLane + Lanes.TO_LEFT);
             if (newLaneSegment.type() == Lanes.Type.TRAFFIC) {
                 // only consider lane changes into traffic lanes, other lane changes are handled by mandatory lane
@@ -409,7 +478,7 @@ public class LaneChangeModel {
         if (sinkLaneSegment != null && me.exitRoadSegmentId() == sinkLaneSegment.roadSegment().id()) {
             // next road segment is the exit segment
             final double distanceToExit = roadSegment.roadLength() - me.getFrontPosition();
-            if (distanceToExit < distanceBeforeExitMustChangeLanes) {
+            if (distanceToExit < DISTANCE_BEFORE_EXIT_MUST_CHANGE_LANES) {
                 if (currentLane == roadSegment.laneCount()) {
                     // already in exit lane, so do not move out of it
                     return LaneChangeDecision.MANDATORY_STAY_IN_LANE;
@@ -473,12 +542,8 @@ public class LaneChangeModel {
                         return LaneChangeDecision.NONE;
                     }
                 }
-                me.setLane(newLane);
-                final int index = newLaneSegment.addVehicleTemp(me);
-                final double newBackNewAcc = newBack == null ? 0 : newBack.calcAccModel(newLaneSegment, null);
-                final double meNewAcc = me.calcAccModel(newLaneSegment, null);
-                newLaneSegment.removeVehicle(index);
-                me.setLane(currentLane);
+                final double newBackNewAcc = newBack == null ? 0 : newBack.calcAccModel(me);
+                final double meNewAcc = me.calcAccModel(newFront);
 
                 if (lcModelMOBIL.safetyCheckAcceleration(newBackNewAcc) || lcModelMOBIL
                         .safetyCheckAcceleration(meNewAcc)) {
@@ -119,13 +119,10 @@ public class MOBIL {
         // new situation: newBack with me as leader and following left lane cases
         // TO_LEFT --> just the actual situation
         // TO_RIGHT --> consideration of left-lane (with me's leader) has no effect
-        // temporarily add the current vehicle to the new lane to calculate the new accelerations
-        me.setLane(newLane);
-        final int index = newLaneSegment.addVehicleTemp(me);
-        final double newBackNewAcc = newBack == null ? 0 : newBack.calcAccModel(newLaneSegment, null);
-        final double meNewAcc = me.calcAccModel(newLaneSegment, null);
-        newLaneSegment.removeVehicle(index);
-        me.setLane(currentLane);
+        // calculate the new accelerations with me as prospective leader of newBack and newFront as prospective leader
+        // of me. The lane segments are not modified so that decisions can be made concurrently.
+        final double newBackNewAcc = newBack == null ? 0 : newBack.calcAccModel(me);
+        final double meNewAcc = me.calcAccModel(newFront);
 
         if (safetyCheckAcceleration(newBackNewAcc)) {
             return prospectiveBalance;
@@ -71,6 +71,12 @@ public class Memory {
      */
     private double alphaT;
 
+    /** The timestep for which {@code gamma} has been calculated. */
+    private double cachedDt = Double.NaN;
+
+    /** The relaxation factor exp(-dt/tau). */
+    private double gamma;
+
     /**
      * Instantiates a new memory impl.
      * 
@@ -103,7 +109,10 @@ public class Memory {
      */
     public void update(double dt, double v, double v0) {
         // exponential moving average
-        final double gamma = Math.exp(-dt / tau);
+        if (dt != cachedDt) {
+            gamma = Math.exp(-dt / tau);
+            cachedDt = dt;
+        }
 
         // level of service function
         final double vRel = v / v0;
@@ -113,8 +122,10 @@ public class Memory {
         alphaV0 = gamma * alphaV0 + (1 - gamma) * (resignationMinAlphaV0 + vRel * (1. - resignationMinAlphaV0));
         alphaA = gamma * alphaA + (1 - gamma) * (resignationMinAlphaA + vRel * (1. - resignationMinAlphaA));
 
-        LOG.debug("vRel = {}, v0 = {}", vRel, v0);
-        LOG.debug("alphaT = {}, alphaV0 = {}", alphaT, alphaV0);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("vRel = {}, v0 = {}", vRel, v0);
+            LOG.debug("alphaT = {}, alphaV0 = {}", alphaT, alphaV0);
+        }
 
     }
 
@@ -25,6 +25,8 @@
  */
 package org.movsim.simulator.vehicles.longitudinalmodel;
 
+import java.util.SplittableRandom;
+
 import org.movsim.autogen.NoiseParameter;
 import org.movsim.utilities.MyRandom;
 import org.slf4j.Logger;
@@ -67,6 +69,15 @@ public class Noise {
     /** The xi acc as dynamic state variable (output) */
     private double xiAcc;
 
+    /** The timestep for which the update coefficients have been calculated. */
+    private double cachedDt = Double.NaN;
+
+    /** The relaxation factor exp(-dt/tau) of the Wiener process. */
+    private double betaAcc;
+
+    /** The prefactor of the random realization. */
+    private double amplitude;
+
     public Noise(NoiseParameter parameters) {
         xiAcc = 0;
         fluctStrength = parameters.getFluctStrength();
@@ -84,28 +95,46 @@ public class Noise {
      *            simulation time interval, seconds
      */
     public void update(double dt) {
+        advance(dt, getUniformlyDistributedRealization(MyRandom.nextDouble()));
+    }
 
-        final double randomMu0Sigma1 = getUniformlyDistributedRealization();
+    /**
+     * Update with a random realization drawn from the given stream instead of the global random generator.
+     * 
+     * @param dt
+     *            simulation time interval, seconds
+     * @param random
+     *            random stream owned by the caller
+     */
+    public void update(double dt, SplittableRandom random) {
+        advance(dt, getUniformlyDistributedRealization(random.nextDouble()));
+    }
 
-        if (isWienerProcess) {
-            final double betaAcc = Math.exp(-dt / tauRelaxAcc);
-            xiAcc = betaAcc * xiAcc + fluctStrength * Math.sqrt(2 * dt / tauRelaxAcc) * randomMu0Sigma1;
-            LOG.debug("Wiener process: betaAcc={}, stdDevAcc*Math.sqrt(2*dt/tauRelaxAcc)*randomMu0Sigma1= {}", betaAcc,
-                    (fluctStrength * Math.sqrt(2 * dt / tauRelaxAcc) * randomMu0Sigma1));
-        } else {
-            // delta-correlated acc noise.
-            xiAcc = Math.sqrt(fluctStrength / dt) * randomMu0Sigma1;
+    private void advance(double dt, double randomMu0Sigma1) {
+        if (dt != cachedDt) {
+            // exp and sqrt only need to be evaluated when the timestep changes
+            if (isWienerProcess) {
+                betaAcc = Math.exp(-dt / tauRelaxAcc);
+                amplitude = fluctStrength * Math.sqrt(2 * dt / tauRelaxAcc);
+            } else {
+                betaAcc = 0;
+                amplitude = Math.sqrt(fluctStrength / dt);
+            }
+            cachedDt = dt;
+            LOG.debug("tauRelaxAcc={}, betaAcc={}, amplitude={}", tauRelaxAcc, betaAcc, amplitude);
         }
-
+        // delta-correlated acc noise for betaAcc=0
+        xiAcc = betaAcc * xiAcc + amplitude * randomMu0Sigma1;
     }
 
     /**
      * calculates uniform distribution with mean=0 and variance=1.
      * 
+     * @param randomVar
+     *            uniformly distributed realization in [0,1)
      * @return random variable realization
      */
-    private static double getUniformlyDistributedRealization() {
-        final double randomVar = MyRandom.nextDouble();
+    private static double getUniformlyDistributedRealization(double randomVar) {
         final double randomMu0Sigma1 = SQRT12 * (randomVar - 0.5);
         return randomMu0Sigma1;
     }
@@ -27,7 +27,7 @@ package org.movsim.simulator.vehicles.longitudinalmodel.acceleration;
 
 import org.movsim.autogen.ModelParameterOVMFVDM;
 import org.movsim.simulator.vehicles.longitudinalmodel.acceleration.LongitudinalModelBase.ModelName;
-import org.movsim.utilities.LinearInterpolatedFunction;
+import org.movsim.utilities.PiecewiseLinearFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,7 +65,7 @@ public class EquilibriumPropertiesImpl implements EquilibriumProperties {
      */
     double rhoQMax = 0;
 
-    private final LinearInterpolatedFunction vEqFunction;
+    private final PiecewiseLinearFunction vEqFunction;
 
     public EquilibriumPropertiesImpl(double vehicleLength, LongitudinalModelBase model) {
         this.rhoMax = 1.0 / Math.max(vehicleLength, TINY_VALUE);
@@ -78,7 +78,7 @@ public class EquilibriumPropertiesImpl implements EquilibriumProperties {
             calcRhoQMax();
         } else {
             double[] xDummy = new double[]{0};
-            vEqFunction = new LinearInterpolatedFunction(xDummy, xDummy);
+            vEqFunction = new PiecewiseLinearFunction(xDummy, xDummy);
         }
     }
 
@@ -125,7 +125,7 @@ public class EquilibriumPropertiesImpl implements EquilibriumProperties {
      * Finds equilibrium velocities with simple relaxation method: Model for homogeneous traffic solved for the velocity v_it of one
      * arbitrary vehicle.
      */
-    private LinearInterpolatedFunction calcEquilibriumSpeedFunction(LongitudinalModelBase model) {
+    private PiecewiseLinearFunction calcEquilibriumSpeedFunction(LongitudinalModelBase model) {
         LOG.info("calc equilibrium speed as function of density for model={}", model.modelName());
         if (!model.hasDesiredSpeed()) {
             throw new IllegalArgumentException("longitudinal model " + model.modelName()
@@ -172,7 +172,7 @@ public class EquilibriumPropertiesImpl implements EquilibriumProperties {
             rhoTab[ir] = rho;
         }
 
-        return new LinearInterpolatedFunction(rhoTab, vEqTab);
+        return new PiecewiseLinearFunction(rhoTab, vEqTab);
     }
 
     // calculate Qmax, and abscissa rhoQmax from veqtab
@@ -163,7 +163,9 @@ public class IDM extends LongitudinalModelBase {
 
         final double aWanted = aLocal * (1.0 - Math.pow((v / v0Local), param.getDelta()) - (sstar / s) * (sstar / s));
 
-        LOG.debug("aWanted = {}", aWanted);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("aWanted = {}", aWanted);
+        }
         return aWanted; // limit to -bMax in Vehicle
     }
 
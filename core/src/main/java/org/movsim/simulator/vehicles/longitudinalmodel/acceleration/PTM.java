@@ -5,7 +5,7 @@ import org.movsim.simulator.vehicles.Vehicle;
 import org.movsim.simulator.vehicles.longitudinalmodel.Noise;
 import org.movsim.simulator.vehicles.longitudinalmodel.acceleration.parameter.IModelParameter;
 import org.movsim.simulator.vehicles.longitudinalmodel.acceleration.parameter.IModelParameterPTM;
-import org.movsim.utilities.LinearInterpolatedFunction;
+import org.movsim.utilities.PiecewiseLinearFunction;
 import org.movsim.utilities.ProbabilityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,9 +27,9 @@ class PTM extends LongitudinalModelBase {
 
     private static final int NTABMAX = 100;
     /** tabulated d(U_PT)/da function */
-    private LinearInterpolatedFunction uPTaFunction;
+    private PiecewiseLinearFunction uPTaFunction;
     /** tabulated d^2(U_PT)/da^2 */
-    private LinearInterpolatedFunction uPaaFunction;
+    private PiecewiseLinearFunction uPaaFunction;
 
     // double atab[101][inout.NYMAX];
     // int n=101;
@@ -255,8 +255,8 @@ class PTM extends LongitudinalModelBase {
                     * (prefactor * gxx + dw / cosh2 * (gx - Math.tanh(x) * g));
         }
 
-        this.uPTaFunction = new LinearInterpolatedFunction(acc, uPTatab);
-        this.uPaaFunction = new LinearInterpolatedFunction(acc, uPTaatab);
+        this.uPTaFunction = new PiecewiseLinearFunction(acc, uPTatab);
+        this.uPaaFunction = new PiecewiseLinearFunction(acc, uPTaatab);
     }
 
     // sprintf(testfileName,"%s.acctab_s_v",fname);
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ *
+ * This file is part of
+ *
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ *
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ *
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.vehicles.longitudinalmodel.calibration;
+
+import org.movsim.autogen.AccelerationModelType;
+import org.movsim.autogen.ModelParameterACC;
+import org.movsim.autogen.ModelParameterGipps;
+import org.movsim.autogen.ModelParameterIDM;
+import org.movsim.simulator.vehicles.longitudinalmodel.acceleration.LongitudinalModelBase;
+import org.movsim.simulator.vehicles.longitudinalmodel.acceleration.LongitudinalModelFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The longitudinal models supported by the calibration together with the mapping of a parameter vector onto the model
+ * parameters. Parameters that are not part of the vector keep their default values.
+ */
+public enum CalibrationModel {
+
+    /** parameter vector (v0, T, s0, a, b) */
+    IDM("v0", "T", "s0", "a", "b") {
+        @Override
+        AccelerationModelType createModelType(double[] x) {
+            ModelParameterIDM param = new ModelParameterIDM();
+            param.setV0(x[0]);
+            param.setT(x[1]);
+            param.setS0(x[2]);
+            param.setA(x[3]);
+            param.setB(x[4]);
+            AccelerationModelType modelType = new AccelerationModelType();
+            modelType.setModelParameterIDM(param);
+            return modelType;
+        }
+    },
+
+    /** parameter vector (v0, T, s0, a, b, coolness) */
+    ACC("v0", "T", "s0", "a", "b", "coolness") {
+        @Override
+        AccelerationModelType createModelType(double[] x) {
+            ModelParameterACC param = new ModelParameterACC();
+            param.setV0(x[0]);
+            param.setT(x[1]);
+            param.setS0(x[2]);
+            param.setA(x[3]);
+            param.setB(x[4]);
+            param.setCoolness(x[5]);
+            AccelerationModelType modelType = new AccelerationModelType();
+            modelType.setModelParameterACC(param);
+            return modelType;
+        }
+    },
+
+    /** parameter vector (v0, s0, a, b), the reaction time is given by the sampling timestep */
+    GIPPS("v0", "s0", "a", "b") {
+        @Override
+        AccelerationModelType createModelType(double[] x) {
+            ModelParameterGipps param = new ModelParameterGipps();
+            param.setV0(x[0]);
+            param.setS0(x[1]);
+            param.setA(x[2]);
+            param.setB(x[3]);
+            AccelerationModelType modelType = new AccelerationModelType();
+            modelType.setModelParameterGipps(param);
+            return modelType;
+        }
+    };
+
+    /** vehicle length is only needed by the cellular automata and therefore not calibrated */
+    private static final double VEHICLE_LENGTH = 5;
+
+    private final String[] parameterNames;
+
+    private CalibrationModel(String... parameterNames) {
+        this.parameterNames = parameterNames;
+    }
+
+    abstract AccelerationModelType createModelType(double[] x);
+
+    public int dimension() {
+        return parameterNames.length;
+    }
+
+    public String parameterName(int index) {
+        return parameterNames[index];
+    }
+
+    /**
+     * Creates a longitudinal model for the given parameter vector.
+     *
+     * @param x
+     *            the parameter vector, see {@link #parameterName(int)}
+     * @param dt
+     *            the update timestep, seconds
+     * @return the longitudinal model
+     */
+    public LongitudinalModelBase create(double[] x, double dt) {
+        Preconditions.checkArgument(x.length == dimension(), "expected " + dimension() + " parameters for model "
+                + name() + " but got " + x.length);
+        return LongitudinalModelFactory.create(VEHICLE_LENGTH, createModelType(x), dt);
+    }
+}
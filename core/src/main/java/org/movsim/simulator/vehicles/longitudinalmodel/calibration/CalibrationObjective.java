@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ *
+ * This file is part of
+ *
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ *
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ *
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.vehicles.longitudinalmodel.calibration;
+
+import java.util.stream.IntStream;
+
+import org.movsim.simulator.vehicles.longitudinalmodel.acceleration.LongitudinalModelBase;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Objective function of the calibration.
+ *
+ * <p>
+ * The follower of each recorded pair is replayed with {@link LongitudinalModelBase#calcAccSimple(double, double, double)}
+ * starting from its recorded initial state while the leader follows its recorded speed profile. The replayed gaps and speeds
+ * are compared to the recorded ones. The objective value is the weighted sum of the relative errors
+ * {@code w*rmse(s)/mean(s) + (1-w)*rmse(v)/mean(v)}.
+ * </p>
+ * <p>
+ * The position update mirrors {@code Vehicle.updatePositionAndSpeed}: ballistic update for time-continuous models and the
+ * modified Euler update for iterated maps.
+ * </p>
+ */
+public final class CalibrationObjective {
+
+    /** Default bound of the deceleration, in m/s^2, as applied by the vehicle to the model acceleration. */
+    public static final double DEFAULT_MAX_DECELERATION = 9;
+
+    private final TrajectoryData data;
+
+    private final CalibrationModel calibrationModel;
+
+    private double gapWeight = 0.5;
+
+    private double maxDeceleration = DEFAULT_MAX_DECELERATION;
+
+    /**
+     * Result of the evaluation of a single parameter vector.
+     */
+    public static final class Score {
+        private final double rmseGap;
+        private final double rmseSpeed;
+        private final double value;
+
+        Score(double rmseGap, double rmseSpeed, double value) {
+            this.rmseGap = rmseGap;
+            this.rmseSpeed = rmseSpeed;
+            this.value = value;
+        }
+
+        /** @return root mean square error of the gap, m */
+        public double rmseGap() {
+            return rmseGap;
+        }
+
+        /** @return root mean square error of the speed, m/s */
+        public double rmseSpeed() {
+            return rmseSpeed;
+        }
+
+        /** @return the (dimensionless) objective value */
+        public double value() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return "Score [rmseGap=" + rmseGap + ", rmseSpeed=" + rmseSpeed + ", value=" + value + "]";
+        }
+    }
+
+    public CalibrationObjective(TrajectoryData data, CalibrationModel calibrationModel) {
+        Preconditions.checkArgument(data.pairCount() > 0, "no trajectory pairs for calibration");
+        this.data = data;
+        this.calibrationModel = Preconditions.checkNotNull(calibrationModel);
+    }
+
+    public TrajectoryData data() {
+        return data;
+    }
+
+    public CalibrationModel calibrationModel() {
+        return calibrationModel;
+    }
+
+    /**
+     * Sets the weight of the gap error, the speed error is weighted by {@code 1-gapWeight}.
+     *
+     * @param gapWeight
+     *            weight within [0,1]
+     */
+    public void setGapWeight(double gapWeight) {
+        Preconditions.checkArgument(gapWeight >= 0 && gapWeight <= 1, "gapWeight must be within [0,1]");
+        this.gapWeight = gapWeight;
+    }
+
+    public void setMaxDeceleration(double maxDeceleration) {
+        Preconditions.checkArgument(maxDeceleration > 0, "maxDeceleration must be > 0");
+        this.maxDeceleration = maxDeceleration;
+    }
+
+    /**
+     * Evaluates the objective for the given parameter vector in the calling thread.
+     *
+     * @param x
+     *            the parameter vector
+     * @return the score
+     */
+    public Score score(double[] x) {
+        final LongitudinalModelBase model = calibrationModel.create(x, data.dt());
+        final double[] sums = new double[2];
+        replay(model, 0, data.pairCount(), sums);
+        return toScore(sums[0], sums[1]);
+    }
+
+    /**
+     * Evaluates the objective for the given parameter vector with the trajectory pairs distributed over the common fork-join
+     * pool. Useful when a single candidate is evaluated at a time.
+     *
+     * @param x
+     *            the parameter vector
+     * @param chunks
+     *            number of blocks of trajectory pairs to be replayed concurrently
+     * @return the score
+     */
+    public Score scoreInParallel(double[] x, int chunks) {
+        Preconditions.checkArgument(chunks > 0, "chunks must be > 0");
+        final LongitudinalModelBase model = calibrationModel.create(x, data.dt());
+        final int pairCount = data.pairCount();
+        final int blocks = Math.min(chunks, pairCount);
+        final double[] sums = new double[2 * blocks];
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            final double[] partial = new double[2];
+            replay(model, (int) ((long) block * pairCount / blocks), (int) ((long) (block + 1) * pairCount / blocks),
+                    partial);
+            sums[2 * block] = partial[0];
+            sums[2 * block + 1] = partial[1];
+        });
+        double sumGap = 0;
+        double sumSpeed = 0;
+        for (int block = 0; block < blocks; block++) {
+            sumGap += sums[2 * block];
+            sumSpeed += sums[2 * block + 1];
+        }
+        return toScore(sumGap, sumSpeed);
+    }
+
+    /**
+     * Evaluates a batch of candidate parameter vectors concurrently.
+     *
+     * @param candidates
+     *            the parameter vectors
+     * @return the objective values in the order of the candidates
+     */
+    public double[] evaluate(double[][] candidates) {
+        final double[] values = new double[candidates.length];
+        IntStream.range(0, candidates.length).parallel().forEach(i -> values[i] = score(candidates[i]).value());
+        return values;
+    }
+
+    private Score toScore(double sumSquaredGapError, double sumSquaredSpeedError) {
+        final int n = data.scoredSampleCount();
+        final double rmseGap = Math.sqrt(sumSquaredGapError / n);
+        final double rmseSpeed = Math.sqrt(sumSquaredSpeedError / n);
+        final double relGap = data.meanGap() > 0 ? rmseGap / data.meanGap() : rmseGap;
+        final double relSpeed = data.meanSpeed() > 0 ? rmseSpeed / data.meanSpeed() : rmseSpeed;
+        double value = gapWeight * relGap + (1 - gapWeight) * relSpeed;
+        if (Double.isNaN(value)) {
+            // degenerated parameter combination
+            value = Double.MAX_VALUE;
+        }
+        return new Score(rmseGap, rmseSpeed, value);
+    }
+
+    /**
+     * Replays the trajectory pairs [fromPair, toPair) and adds the squared gap and speed errors to {@code sums}.
+     */
+    private void replay(LongitudinalModelBase model, int fromPair, int toPair, double[] sums) {
+        final double dt = data.dt();
+        final boolean iteratedMap = model.isIteratedMap();
+        double sumGap = 0;
+        double sumSpeed = 0;
+        for (int pair = fromPair; pair < toPair; pair++) {
+            final int begin = data.offset(pair);
+            final int end = data.offset(pair + 1);
+            double s = data.gap(begin);
+            double v = data.speed(begin);
+            for (int i = begin; i < end - 1; i++) {
+                final double vLead = data.leaderSpeed(i);
+                final double acc = Math.max(model.calcAccSimple(s, v, v - vLead), -maxDeceleration);
+                final double advance;
+                if (iteratedMap) {
+                    advance = v * dt + acc * dt * dt;
+                } else {
+                    advance = (acc * dt >= -v) ? v * dt + 0.5 * acc * dt * dt : -0.5 * v * v / acc;
+                }
+                v = Math.max(0, v + acc * dt);
+                s += 0.5 * (vLead + data.leaderSpeed(i + 1)) * dt - advance;
+                final double gapError = s - data.gap(i + 1);
+                final double speedError = v - data.speed(i + 1);
+                sumGap += gapError * gapError;
+                sumSpeed += speedError * speedError;
+            }
+        }
+        sums[0] += sumGap;
+        sums[1] += sumSpeed;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ *
+ * This file is part of
+ *
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ *
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ *
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.vehicles.longitudinalmodel.calibration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.analysis.MultivariateFunction;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.MaxEval;
+import org.apache.commons.math3.optim.MaxIter;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.SimpleBounds;
+import org.apache.commons.math3.optim.SimpleValueChecker;
+import org.apache.commons.math3.optim.nonlinear.scalar.GoalType;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.optim.nonlinear.scalar.noderiv.CMAESOptimizer;
+import org.apache.commons.math3.optim.nonlinear.scalar.noderiv.NelderMeadSimplex;
+import org.apache.commons.math3.optim.nonlinear.scalar.noderiv.SimplexOptimizer;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Calibrates the parameters of a longitudinal model against recorded trajectory pairs.
+ *
+ * <p>
+ * Several optimisation runs are started from different initial guesses within the parameter bounds and executed concurrently
+ * on a fixed thread pool; the best result is returned. With a single start the trajectory pairs of each evaluation are
+ * replayed concurrently instead.
+ * </p>
+ */
+public final class Calibrator {
+
+    /** The Constant LOG. */
+    private static final Logger LOG = LoggerFactory.getLogger(Calibrator.class);
+
+    public enum Method {
+        /** covariance matrix adaptation evolution strategy with bounds */
+        CMAES,
+        /** Nelder-Mead downhill simplex, parameters are projected onto the bounds */
+        NELDER_MEAD
+    }
+
+    private static final double RELATIVE_TOLERANCE = 1e-8;
+
+    private static final double ABSOLUTE_TOLERANCE = 1e-10;
+
+    private final CalibrationObjective objective;
+
+    private final double[] lowerBounds;
+
+    private final double[] upperBounds;
+
+    private Method method = Method.CMAES;
+
+    private int starts = 1;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private int maxEvaluations = 10000;
+
+    private long seed = 42;
+
+    private double[] initialGuess;
+
+    /**
+     * Result of the calibration.
+     */
+    public static final class Result {
+        private final double[] parameters;
+        private final CalibrationObjective.Score score;
+
+        Result(double[] parameters, CalibrationObjective.Score score) {
+            this.parameters = parameters;
+            this.score = score;
+        }
+
+        public double[] parameters() {
+            return parameters.clone();
+        }
+
+        public CalibrationObjective.Score score() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return "Result [parameters=" + Arrays.toString(parameters) + ", score=" + score + "]";
+        }
+    }
+
+    public Calibrator(CalibrationObjective objective, double[] lowerBounds, double[] upperBounds) {
+        final int dimension = objective.calibrationModel().dimension();
+        Preconditions.checkArgument(lowerBounds.length == dimension && upperBounds.length == dimension,
+                "bounds must match the parameter dimension=" + dimension);
+        for (int i = 0; i < dimension; i++) {
+            Preconditions.checkArgument(lowerBounds[i] < upperBounds[i], "invalid bounds for parameter "
+                    + objective.calibrationModel().parameterName(i));
+        }
+        this.objective = objective;
+        this.lowerBounds = lowerBounds.clone();
+        this.upperBounds = upperBounds.clone();
+    }
+
+    public void setMethod(Method method) {
+        this.method = Preconditions.checkNotNull(method);
+    }
+
+    /**
+     * Sets the number of independent optimisation runs. The first run starts from the initial guess (or the center of the
+     * bounds), the others from random points within the bounds.
+     *
+     * @param starts
+     */
+    public void setStarts(int starts) {
+        Preconditions.checkArgument(starts > 0, "starts must be > 0");
+        this.starts = starts;
+    }
+
+    public void setThreads(int threads) {
+        Preconditions.checkArgument(threads > 0, "threads must be > 0");
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the maximum number of objective evaluations per optimisation run.
+     *
+     * @param maxEvaluations
+     */
+    public void setMaxEvaluations(int maxEvaluations) {
+        Preconditions.checkArgument(maxEvaluations > 0, "maxEvaluations must be > 0");
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setInitialGuess(double[] initialGuess) {
+        Preconditions.checkArgument(initialGuess.length == lowerBounds.length, "initial guess has wrong dimension");
+        this.initialGuess = clip(initialGuess);
+    }
+
+    /**
+     * Runs the calibration.
+     *
+     * @return the best parameters found and their score
+     */
+    public Result calibrate() {
+        final Random random = new Random(seed);
+        final List<double[]> startPoints = new ArrayList<>(starts);
+        startPoints.add(initialGuess != null ? initialGuess : center());
+        for (int i = 1; i < starts; i++) {
+            final double[] x = new double[lowerBounds.length];
+            for (int j = 0; j < x.length; j++) {
+                x[j] = lowerBounds[j] + random.nextDouble() * (upperBounds[j] - lowerBounds[j]);
+            }
+            startPoints.add(x);
+        }
+
+        PointValuePair best = null;
+        if (starts == 1) {
+            best = optimize(startPoints.get(0), seed, true);
+        } else {
+            final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, starts));
+            try {
+                final List<Future<PointValuePair>> futures = new ArrayList<>(starts);
+                for (int i = 0; i < starts; i++) {
+                    final double[] startPoint = startPoints.get(i);
+                    final long runSeed = seed + i;
+                    futures.add(executor.submit(() -> optimize(startPoint, runSeed, false)));
+                }
+                for (Future<PointValuePair> future : futures) {
+                    final PointValuePair result = future.get();
+                    if (best == null || result.getValue() < best.getValue()) {
+                        best = result;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("calibration interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("calibration failed", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        final double[] parameters = clip(best.getPoint());
+        final Result result = new Result(parameters, objective.score(parameters));
+        LOG.info("calibration of model={} finished: {}", objective.calibrationModel(), result);
+        return result;
+    }
+
+    private PointValuePair optimize(double[] startPoint, long runSeed, boolean parallelReplay) {
+        final MultivariateFunction function = x -> {
+            final double[] clipped = clip(x);
+            return parallelReplay ? objective.scoreInParallel(clipped, threads).value() : objective.score(clipped)
+                    .value();
+        };
+        final PointValuePair result;
+        if (method == Method.CMAES) {
+            final double[] sigma = new double[lowerBounds.length];
+            for (int i = 0; i < sigma.length; i++) {
+                sigma[i] = 0.3 * (upperBounds[i] - lowerBounds[i]);
+            }
+            final int populationSize = 4 + (int) (3 * Math.log(lowerBounds.length));
+            final CMAESOptimizer optimizer = new CMAESOptimizer(maxEvaluations, 0, true, 0, 0, new MersenneTwister(
+                    runSeed), false, new SimpleValueChecker(RELATIVE_TOLERANCE, ABSOLUTE_TOLERANCE));
+            result = optimizer.optimize(new MaxEval(maxEvaluations), new MaxIter(maxEvaluations),
+                    new ObjectiveFunction(function), GoalType.MINIMIZE, new InitialGuess(startPoint), new SimpleBounds(
+                            lowerBounds, upperBounds), new CMAESOptimizer.Sigma(sigma),
+                    new CMAESOptimizer.PopulationSize(populationSize));
+        } else {
+            final double[] steps = new double[lowerBounds.length];
+            for (int i = 0; i < steps.length; i++) {
+                steps[i] = 0.1 * (upperBounds[i] - lowerBounds[i]);
+            }
+            final SimplexOptimizer optimizer = new SimplexOptimizer(new SimpleValueChecker(RELATIVE_TOLERANCE,
+                    ABSOLUTE_TOLERANCE));
+            result = optimizer.optimize(new MaxEval(maxEvaluations), new MaxIter(maxEvaluations),
+                    new ObjectiveFunction(function), GoalType.MINIMIZE, new InitialGuess(startPoint),
+                    new NelderMeadSimplex(steps));
+        }
+        LOG.debug("optimisation run finished with value={} at {}", result.getValue(),
+                Arrays.toString(result.getPoint()));
+        return result;
+    }
+
+    private double[] center() {
+        final double[] x = new double[lowerBounds.length];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = 0.5 * (lowerBounds[i] + upperBounds[i]);
+        }
+        return x;
+    }
+
+    private double[] clip(double[] x) {
+        final double[] clipped = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            clipped[i] = Math.max(lowerBounds[i], Math.min(upperBounds[i], x[i]));
+        }
+        return clipped;
+    }
+}
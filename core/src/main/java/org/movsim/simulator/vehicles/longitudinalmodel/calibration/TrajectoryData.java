@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ *
+ * This file is part of
+ *
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ *
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ *
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.vehicles.longitudinalmodel.calibration;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Recorded leader-follower trajectory pairs used for the calibration of longitudinal models.
+ *
+ * <p>
+ * Each pair is a time series sampled with the common timestep {@code dt} and given by the net gap s (m), the follower speed v
+ * (m/s) and the approaching rate dv = v - vLeader (m/s). All pairs are stored back-to-back in primitive arrays; the samples of
+ * pair i are found in the index range [offset(i), offset(i+1)).
+ * </p>
+ */
+public final class TrajectoryData {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final double dt;
+
+    private double[] gaps = new double[INITIAL_CAPACITY];
+
+    private double[] speeds = new double[INITIAL_CAPACITY];
+
+    private double[] leaderSpeeds = new double[INITIAL_CAPACITY];
+
+    private int[] offsets = new int[] { 0 };
+
+    private int sampleCount;
+
+    private int pairCount;
+
+    private double sumGap;
+
+    private double sumSpeed;
+
+    /**
+     * Constructor.
+     *
+     * @param dt
+     *            sampling timestep of all trajectory pairs, seconds
+     */
+    public TrajectoryData(double dt) {
+        Preconditions.checkArgument(dt > 0, "dt must be > 0");
+        this.dt = dt;
+    }
+
+    /**
+     * Adds a recorded leader-follower pair.
+     *
+     * @param s
+     *            net gaps (m)
+     * @param v
+     *            follower speeds (m/s)
+     * @param dv
+     *            approaching rates v - vLeader (m/s)
+     */
+    public void add(double[] s, double[] v, double[] dv) {
+        Preconditions.checkArgument(s.length == v.length && s.length == dv.length,
+                "gap, speed and speed difference series must be of equal length");
+        Preconditions.checkArgument(s.length >= 2, "trajectory pair needs at least two samples");
+        ensureCapacity(sampleCount + s.length);
+        for (int i = 0; i < s.length; i++) {
+            final int index = sampleCount + i;
+            gaps[index] = s[i];
+            speeds[index] = v[i];
+            leaderSpeeds[index] = v[i] - dv[i];
+            if (i > 0) {
+                // the initial state is prescribed and not counted as a scored sample
+                sumGap += s[i];
+                sumSpeed += v[i];
+            }
+        }
+        sampleCount += s.length;
+        pairCount++;
+        if (offsets.length <= pairCount) {
+            offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+        }
+        offsets[pairCount] = sampleCount;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > gaps.length) {
+            final int newCapacity = Math.max(capacity, 2 * gaps.length);
+            gaps = Arrays.copyOf(gaps, newCapacity);
+            speeds = Arrays.copyOf(speeds, newCapacity);
+            leaderSpeeds = Arrays.copyOf(leaderSpeeds, newCapacity);
+        }
+    }
+
+    public double dt() {
+        return dt;
+    }
+
+    public int pairCount() {
+        return pairCount;
+    }
+
+    /**
+     * Returns the number of samples that are compared against the replayed trajectories, i.e. all samples but the initial
+     * state of each pair.
+     *
+     * @return the number of scored samples
+     */
+    public int scoredSampleCount() {
+        return sampleCount - pairCount;
+    }
+
+    public double meanGap() {
+        return scoredSampleCount() == 0 ? 0 : sumGap / scoredSampleCount();
+    }
+
+    public double meanSpeed() {
+        return scoredSampleCount() == 0 ? 0 : sumSpeed / scoredSampleCount();
+    }
+
+    int offset(int pair) {
+        return offsets[pair];
+    }
+
+    double gap(int index) {
+        return gaps[index];
+    }
+
+    double speed(int index) {
+        return speeds[index];
+    }
+
+    double leaderSpeed(int index) {
+        return leaderSpeeds[index];
+    }
+
+}
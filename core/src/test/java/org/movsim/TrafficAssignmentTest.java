@@ -0,0 +1,184 @@
+package org.movsim;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.movsim.autogen.Movsim;
+import org.movsim.autogen.TrafficAssignmentMethodEnum;
+import org.movsim.input.ProjectMetaData;
+import org.movsim.network.autogen.opendrive.OpenDRIVE;
+import org.movsim.simulator.observer.RouteShares;
+import org.movsim.xml.InputLoader;
+
+public class TrafficAssignmentTest {
+    private static final double delta = 0.00001;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final double[][] TRAVEL_TIMES = { { 100, 200 }, { 300, 150 } };
+
+    @Test
+    public void testMethodOfSuccessiveAverages() {
+        RouteShares shares = RouteShares.uniform(600, 2, 2);
+        shares = TrafficAssignment.update(shares, TRAVEL_TIMES, TrafficAssignmentMethodEnum.MSA, 1);
+        assertEquals(0.75, shares.getShare(0, 0), delta);
+        assertEquals(0.25, shares.getShare(1, 0), delta);
+        shares = TrafficAssignment.update(shares, TRAVEL_TIMES, TrafficAssignmentMethodEnum.MSA, 2);
+        assertEquals(0.75 + (1 - 0.75) / 3, shares.getShare(0, 0), delta);
+        assertEquals(1, shares.getShare(0, 0) + shares.getShare(0, 1), delta);
+    }
+
+    @Test
+    public void testGapBased() {
+        RouteShares shares = RouteShares.uniform(600, 2, 2);
+        shares = TrafficAssignment.update(shares, TRAVEL_TIMES, TrafficAssignmentMethodEnum.GAP, 1);
+        // half of the share of the slower route is shifted for a relative excess of 1/2
+        assertEquals(0.75, shares.getShare(0, 0), delta);
+        assertEquals(0.5 - 0.5 * 0.5, shares.getShare(1, 0), delta);
+        shares = TrafficAssignment.update(shares, new double[][] { { 100, 100 }, { 150, 150 } },
+                TrafficAssignmentMethodEnum.GAP, 2);
+        // no shift for equal travel times
+        assertEquals(0.75, shares.getShare(0, 0), delta);
+        assertEquals(0.25, shares.getShare(1, 0), delta);
+    }
+
+    @Test
+    public void testTwoRouteAssignmentIndependentOfThreads() throws IOException {
+        ProjectMetaData projectMetaData = ProjectMetaData.getInstance();
+        projectMetaData.setPathToProjectXmlFile(folder.getRoot().getPath() + File.separator);
+        projectMetaData.setOutputPath(folder.getRoot().getPath());
+        projectMetaData.setProjectName("assignment");
+        File networkFile = write("assignment.xodr", NETWORK);
+        OpenDRIVE network = InputLoader.unmarshallOpenDriveNetwork(networkFile);
+
+        TrafficAssignment sequential = new TrafficAssignment(scenario(1), network);
+        sequential.run();
+        // converged before the maximum number of iterations
+        assertTrue(sequential.getRelativeGap() <= 0.05);
+        RouteShares shares = sequential.getRouteShares().get("provider/2");
+        for (int interval = 0; interval < shares.intervalCount(); interval++) {
+            assertEquals(1, shares.getShare(interval, 0) + shares.getShare(interval, 1), delta);
+        }
+
+        // the replications run with their own random streams and simulation state
+        TrafficAssignment concurrent = new TrafficAssignment(scenario(3), network);
+        concurrent.run();
+        assertEquals(sequential.getRelativeGap(), concurrent.getRelativeGap(), 0);
+        assertEquals(sequential.getRouteShares().keySet(), concurrent.getRouteShares().keySet());
+        for (Map.Entry<String, RouteShares> entry : sequential.getRouteShares().entrySet()) {
+            double[][] expected = entry.getValue().toArray();
+            double[][] actual = concurrent.getRouteShares().get(entry.getKey()).toArray();
+            for (int interval = 0; interval < expected.length; interval++) {
+                assertArrayEquals(expected[interval], actual[interval], 0);
+            }
+        }
+    }
+
+    private Movsim scenario(int threads) throws IOException {
+        return InputLoader.unmarshallMovsim(write("assignment" + threads + ".xprj", String.format(SCENARIO, threads)));
+    }
+
+    private File write(String filename, String content) throws IOException {
+        File file = new File(folder.getRoot(), filename);
+        Files.write(file.toPath(), Arrays.asList(content), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static final String SCENARIO = String.join("\n",
+            "<Movsim>",
+            "<VehiclePrototypes>",
+            "<VehiclePrototypeConfiguration label=\"Equipped\" length=\"6\" maximum_deceleration=\"10\">",
+            "<AccelerationModelType>",
+            "<ModelParameterIDM v0=\"30\" T=\"1.2\" s0=\"2\" s1=\"0\" delta=\"4\" a=\"1.5\" b=\"2.0\" />",
+            "</AccelerationModelType>",
+            "<LaneChangeModelType european_rules=\"true\" crit_speed_eur=\"20\">",
+            "<ModelParameterMOBIL safe_deceleration=\"5.0\" minimum_gap=\"2.0\" threshold_acceleration=\"0.1\" "
+                    + "right_bias_acceleration=\"0.\" politeness=\"0.1\" />",
+            "</LaneChangeModelType>",
+            "<PersonalNavigationDevice service_provider=\"provider\" uncertainty=\"0\" rerouting_threshold=\"0\" />",
+            "</VehiclePrototypeConfiguration>",
+            "</VehiclePrototypes>",
+            "<ServiceProviders>",
+            "<ServiceProvider label=\"provider\" tau=\"0\" fluct_strength=\"0\" server_update_interval=\"0\">",
+            "<DecisionPoints uncertainty=\"0\">",
+            "<DecisionPoint roadId=\"2\"><RouteAlternative route=\"A1\" /><RouteAlternative route=\"A2\" />",
+            "</DecisionPoint>",
+            "</DecisionPoints>",
+            "</ServiceProvider>",
+            "</ServiceProviders>",
+            "<Scenario network_filename=\"assignment.xodr\">",
+            "<Simulation timestep=\"0.2\" duration=\"600\" seed=\"42\">",
+            "<TrafficComposition><VehicleType label=\"Equipped\" fraction=\"1\" /></TrafficComposition>",
+            "<Road id=\"1\"><TrafficSource><Inflow t=\"0\" q_per_hour=\"1200\" v=\"25\" /></TrafficSource></Road>",
+            "</Simulation>",
+            "<Routes>",
+            "<Route label=\"A1\"><Road id=\"3\" /></Route>",
+            "<Route label=\"A2\"><Road id=\"10\" /></Route>",
+            "</Routes>",
+            "</Scenario>",
+            "<TrafficAssignment max_iterations=\"5\" replications=\"3\" threads=\"%d\" departure_interval=\"300\" "
+                    + "relative_gap=\"0.05\" />",
+            "</Movsim>");
+
+    /** a road splitting into the routes A1 of 2000m and A2 of 2600m which join again */
+    private static final String NETWORK = String.join("\n",
+            "<OpenDRIVE>",
+            "<header revMajor=\"1\" revMinor=\"2\" />",
+            road("1", "-1", 1000, 0, "<successor elementType=\"road\" elementId=\"2\" contactPoint=\"start\" />",
+                    lane(-1, "driving", "")),
+            road("2", "1009", 500, 1000,
+                    "<predecessor elementType=\"road\" elementId=\"1\" contactPoint=\"end\" />"
+                            + "<successor elementType=\"junction\" elementId=\"1009\" />",
+                    lane(-1, "driving", "<predecessor id=\"-1\" />") + lane(-2, "mwyExit", "")),
+            road("3", "-1", 2000, 1500,
+                    "<predecessor elementType=\"road\" elementId=\"2\" contactPoint=\"end\" />"
+                            + "<successor elementType=\"road\" elementId=\"4\" contactPoint=\"start\" />",
+                    lane(-1, "driving", "<successor id=\"-1\" />")),
+            road("10", "-1", 2600, 1500,
+                    "<predecessor elementType=\"road\" elementId=\"2\" contactPoint=\"end\" />"
+                            + "<successor elementType=\"road\" elementId=\"4\" contactPoint=\"start\" />",
+                    lane(-1, "driving", "<predecessor id=\"-2\" />")),
+            road("4", "-1", 500, 3500,
+                    "<predecessor elementType=\"junction\" elementId=\"1015\" contactPoint=\"end\" />"
+                            + "<successor elementType=\"road\" elementId=\"5\" contactPoint=\"start\" />",
+                    lane(-1, "driving", "<successor id=\"-1\" />") + lane(-2, "driving", "<successor id=\"-1\" />")),
+            road("5", "-1", 500, 4000, "<predecessor elementType=\"road\" elementId=\"4\" contactPoint=\"end\" />",
+                    lane(-1, "driving", "<predecessor id=\"-1\" />") + lane(-2, "driving", "<predecessor id=\"-2\" />")),
+            "<junction id=\"1009\">",
+            "<connection id=\"0\" incomingRoad=\"10\" connectingRoad=\"2\" contactPoint=\"start\">"
+                    + "<laneLink from=\"-2\" to=\"-1\" /></connection>",
+            "<connection id=\"1\" incomingRoad=\"3\" connectingRoad=\"2\" contactPoint=\"start\">"
+                    + "<laneLink from=\"-1\" to=\"-1\" /></connection>",
+            "</junction>",
+            "<junction id=\"1015\">",
+            "<connection id=\"0\" incomingRoad=\"3\" connectingRoad=\"4\" contactPoint=\"start\">"
+                    + "<laneLink from=\"-1\" to=\"-1\" /></connection>",
+            "<connection id=\"1\" incomingRoad=\"10\" connectingRoad=\"4\" contactPoint=\"start\">"
+                    + "<laneLink from=\"-1\" to=\"-2\" /></connection>",
+            "</junction>",
+            "</OpenDRIVE>");
+
+    private static String road(String id, String junction, double length, double x, String links, String lanes) {
+        return "<road length=\"" + length + "\" id=\"" + id + "\" junction=\"" + junction + "\"><link>" + links
+                + "</link><type type=\"motorway\" /><planView><geometry s=\"0\" x=\"" + x + "\" y=\"0\" hdg=\"0\" length=\""
+                + length + "\"><line /></geometry></planView><lanes><laneSection s=\"0\"><right>" + lanes
+                + "</right></laneSection></lanes></road>";
+    }
+
+    private static String lane(int id, String type, String link) {
+        return "<lane id=\"" + id + "\" type=\"" + type + "\" level=\"0\"><link>" + link
+                + "</link><width sOffset=\"0\" a=\"10\" b=\"0\" c=\"0\" d=\"0\" /></lane>";
+    }
+}
@@ -0,0 +1,124 @@
+package org.movsim.input.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.movsim.simulator.roadnetwork.LaneSegment;
+import org.movsim.simulator.roadnetwork.RoadNetwork;
+import org.movsim.simulator.roadnetwork.RoadSegment;
+import org.movsim.xml.InputLoader;
+
+import com.google.common.collect.Iterables;
+
+public class OpenDriveHandlerTest {
+
+    /**
+     * Road 1 with a traffic light leads via the junction 10 and its connecting road 2 to road 3. The junction has its own
+     * controller element which must not be taken for a signal controller.
+     */
+    private static final String NETWORK = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<OpenDRIVE>"
+            + "<header revMajor=\"1\" revMinor=\"2\"/>"
+            + road("1", 1000, "<successor elementType=\"junction\" elementId=\"10\" contactPoint=\"start\"/>", "-1", "",
+                    "<signals><signal s=\"900\" id=\"tl1\"/></signals>")
+            + road("2", 50, "<predecessor elementType=\"junction\" elementId=\"10\" contactPoint=\"end\"/>"
+                    + "<successor elementType=\"road\" elementId=\"3\" contactPoint=\"start\"/>", "10",
+                    "<link><successor id=\"-1\"/></link>", "")
+            + road("3", 500, "<predecessor elementType=\"road\" elementId=\"2\" contactPoint=\"end\"/>", "-1",
+                    "<link><predecessor id=\"-1\"/></link>", "")
+            + "<controller id=\"plan1\"><control signalId=\"tl1\" type=\"1\"/></controller>"
+            + "<junction id=\"10\"><connection id=\"0\" incomingRoad=\"1\" connectingRoad=\"2\" contactPoint=\"start\">"
+            + "<laneLink from=\"-1\" to=\"-1\"/></connection><controller id=\"plan1\" type=\"0\"/></junction>"
+            + "</OpenDRIVE>\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String road(String id, double length, String link, String junction, String laneLink,
+            String signals) {
+        return "<road length=\"" + length + "\" id=\"" + id + "\" junction=\"" + junction + "\"><link>" + link
+                + "</link><planView><geometry s=\"0.0\" x=\"0.0\" y=\"0.0\" hdg=\"0.0\" length=\"" + length
+                + "\"><line/></geometry></planView><lanes><laneSection s=\"0.0\"><right>"
+                + "<lane id=\"-1\" type=\"driving\" level=\"0\">" + laneLink
+                + "<width sOffset=\"0.0\" a=\"10.0\" b=\"0.0\" c=\"0.0\" d=\"0.0\"/></lane></right></laneSection></lanes>"
+                + signals + "</road>";
+    }
+
+    @Test
+    public void testStreamingAsUnmarshalled() throws IOException {
+        File file = folder.newFile("network.xodr");
+        Files.write(file.toPath(), NETWORK.getBytes(StandardCharsets.UTF_8));
+
+        RoadNetwork expected = new RoadNetwork();
+        assertTrue(OpenDriveHandler.loadRoadNetwork(expected, InputLoader.unmarshallOpenDriveNetwork(file)));
+        RoadNetwork roadNetwork = new RoadNetwork();
+        assertTrue(OpenDriveHandler.loadRoadNetwork(roadNetwork, file));
+
+        assertEquals(3, roadNetwork.size());
+        assertEquals(expected.size(), roadNetwork.size());
+        for (RoadSegment expectedSegment : expected) {
+            RoadSegment roadSegment = roadNetwork.findByUserId(expectedSegment.userId());
+            assertNotNull(roadSegment);
+            assertEquals(expectedSegment.roadLength(), roadSegment.roadLength(), 0);
+            assertEquals(expectedSegment.laneCount(), roadSegment.laneCount());
+            assertEquals(Iterables.size(expectedSegment.roadObjects()), Iterables.size(roadSegment.roadObjects()));
+            assertEquals(expectedSegment.hasSink(), roadSegment.hasSink());
+            for (int lane = 1; lane <= roadSegment.laneCount(); lane++) {
+                LaneSegment expectedSink = expectedSegment.laneSegment(lane).sinkLaneSegment();
+                LaneSegment sink = roadSegment.laneSegment(lane).sinkLaneSegment();
+                assertEquals(expectedSink == null, sink == null);
+                if (sink != null) {
+                    assertEquals(expectedSink.roadSegment().userId(), sink.roadSegment().userId());
+                    assertEquals(expectedSink.lane(), sink.lane());
+                }
+            }
+        }
+        assertEquals(1, Iterables.size(roadNetwork.findByUserId("1").roadObjects()));
+        assertEquals("2", roadNetwork.findByUserId("1").laneSegment(1).sinkLaneSegment().roadSegment().userId());
+    }
+
+    @Test
+    public void testParallelConstructionInDocumentOrder() throws IOException {
+        final int count = 2 * OpenDriveHandler.PARALLEL_THRESHOLD;
+        StringBuilder network = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<OpenDRIVE>");
+        network.append("<header revMajor=\"1\" revMinor=\"2\"/>");
+        for (int i = 1; i <= count; i++) {
+            String link = i > 1 ? "<predecessor elementType=\"road\" elementId=\"" + (i - 1) + "\"/>" : "";
+            String laneLink = i > 1 ? "<predecessor id=\"-1\"/>" : "";
+            if (i < count) {
+                link += "<successor elementType=\"road\" elementId=\"" + (i + 1) + "\"/>";
+                laneLink += "<successor id=\"-1\"/>";
+            }
+            network.append(road(Integer.toString(i), 10 * i, link, "-1", "<link>" + laneLink + "</link>", ""));
+        }
+        network.append("</OpenDRIVE>\n");
+        File file = folder.newFile("chain.xodr");
+        Files.write(file.toPath(), network.toString().getBytes(StandardCharsets.UTF_8));
+
+        RoadNetwork roadNetwork = new RoadNetwork();
+        assertTrue(OpenDriveHandler.loadRoadNetwork(roadNetwork, file));
+        assertEquals(count, roadNetwork.size());
+        int previousId = Integer.MIN_VALUE;
+        int i = 1;
+        for (RoadSegment roadSegment : roadNetwork) {
+            assertEquals(Integer.toString(i), roadSegment.userId());
+            assertEquals(10 * i, roadSegment.roadLength(), 0);
+            assertTrue(roadSegment.id() > previousId);
+            previousId = roadSegment.id();
+            if (i < count) {
+                assertEquals(Integer.toString(i + 1), roadSegment.laneSegment(1).sinkLaneSegment().roadSegment().userId());
+            } else {
+                assertTrue(roadSegment.hasSink());
+            }
+            ++i;
+        }
+    }
+}
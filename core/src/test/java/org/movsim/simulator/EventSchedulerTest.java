@@ -0,0 +1,56 @@
+package org.movsim.simulator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class EventSchedulerTest {
+
+    @Test
+    public void testEventsFiredInOrderOfTime() {
+        final EventScheduler scheduler = new EventScheduler();
+        final List<String> fired = new ArrayList<>();
+        scheduler.schedule(2.0, t -> fired.add("b"));
+        scheduler.schedule(1.0, t -> fired.add("a"));
+        scheduler.schedule(2.0, t -> fired.add("c"));
+        scheduler.schedule(5.0, t -> fired.add("d"));
+        scheduler.fireDueEvents(0.5);
+        assertEquals(0, fired.size());
+        // accumulated rounding errors of the simulation time are tolerated
+        scheduler.fireDueEvents(2.0 - 1e-9);
+        assertEquals("[a, b, c]", fired.toString());
+        assertEquals(1, scheduler.size());
+        assertEquals(5.0, scheduler.nextEventTime(), 0);
+    }
+
+    @Test
+    public void testRescheduledEventFiredOncePerTimestep() {
+        final EventScheduler scheduler = new EventScheduler();
+        final int[] count = new int[1];
+        scheduler.schedule(0, new EventScheduler.Event() {
+            @Override
+            public void fire(double simulationTime) {
+                ++count[0];
+                scheduler.schedule(simulationTime, this);
+            }
+        });
+        for (int i = 0; i < 5; i++) {
+            scheduler.fireDueEvents(i * 0.2);
+        }
+        assertEquals(5, count[0]);
+    }
+
+    @Test
+    public void testScheduleNext() {
+        final EventScheduler scheduler = new EventScheduler();
+        final List<Double> times = new ArrayList<>();
+        scheduler.fireDueEvents(10);
+        scheduler.scheduleNext(times::add);
+        scheduler.fireDueEvents(10.2);
+        assertEquals(1, times.size());
+        assertEquals(10.2, times.get(0), 0);
+    }
+}
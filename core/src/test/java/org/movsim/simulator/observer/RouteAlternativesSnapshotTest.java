@@ -0,0 +1,65 @@
+package org.movsim.simulator.observer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.movsim.simulator.roadnetwork.RoadSegment;
+import org.movsim.simulator.roadnetwork.routing.Route;
+
+public class RouteAlternativesSnapshotTest {
+    private static final double delta = 0.00001;
+
+    private static List<RouteAlternative> createAlternatives(double... disutilities) {
+        RouteAlternative[] alternatives = new RouteAlternative[disutilities.length];
+        for (int i = 0; i < disutilities.length; i++) {
+            // routes are compared by their road segments
+            Route route = new Route("A" + (i + 1));
+            route.add(new RoadSegment(1000.0, 1));
+            alternatives[i] = new RouteAlternative(route);
+            alternatives[i].setDisutility(disutilities[i]);
+        }
+        return Arrays.asList(alternatives);
+    }
+
+    @Test
+    public void testPrecomputedProbabilities() {
+        List<RouteAlternative> alternatives = createAlternatives(100, 130);
+        RouteAlternativesSnapshot snapshot = new RouteAlternativesSnapshot(3, alternatives, new double[] { 0, 30 });
+        assertEquals(3, snapshot.getVersion());
+        assertEquals(2, snapshot.size());
+
+        assertEquals(1, snapshot.getProbability(0, 0), delta);
+        assertEquals(0, snapshot.getProbability(1, 0), delta);
+        double expected = 1 / (1 + Math.exp(-1));
+        assertEquals(expected, snapshot.getProbability(0, 30), delta);
+        assertEquals(1 - expected, snapshot.getProbability(1, 30), delta);
+        // uncertainty level not precomputed
+        assertEquals(1 / (1 + Math.exp(-3)), snapshot.getProbability(0, 10), delta);
+
+        assertEquals(0, snapshot.selectMostProbableAlternative(30, 0.5));
+        assertEquals(1, snapshot.selectMostProbableAlternative(30, 0.9));
+        assertEquals(1, snapshot.indexOf(alternatives.get(1).getRoute()));
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByUpdates() {
+        List<RouteAlternative> alternatives = createAlternatives(100, 130);
+        RouteAlternativesSnapshot snapshot = new RouteAlternativesSnapshot(1, alternatives, new double[] { 0 });
+        alternatives.get(0).setDisutility(200);
+        assertEquals(100, snapshot.getDisutility(0), delta);
+        assertEquals(0, snapshot.selectMostProbableAlternative(0, 0.5));
+    }
+
+    @Test
+    public void testProbabilitiesOfRouteAlternatives() {
+        List<RouteAlternative> alternatives = createAlternatives(50, 20, 20);
+        LogitRouteDecisionMaking.calcProbabilities(alternatives, 0);
+        // ties are resolved in favour of the last alternative
+        assertEquals(0, alternatives.get(0).getProbability(), delta);
+        assertEquals(0, alternatives.get(1).getProbability(), delta);
+        assertEquals(1, alternatives.get(2).getProbability(), delta);
+    }
+}
@@ -0,0 +1,38 @@
+package org.movsim.simulator.observer;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RouteSharesTest {
+    private static final double delta = 0.00001;
+
+    @Test
+    public void testIntervals() {
+        RouteShares shares = new RouteShares(300, new double[][] { { 0.5, 0.5 }, { 0.2, 0.8 } });
+        assertEquals(2, shares.intervalCount());
+        assertEquals(2, shares.alternativeCount());
+        assertEquals(0, shares.interval(-1));
+        assertEquals(0, shares.interval(299.9));
+        assertEquals(1, shares.interval(300));
+        // the last interval is continued
+        assertEquals(1, shares.interval(10000));
+        assertEquals(0.8, shares.shares(500)[1], delta);
+    }
+
+    @Test
+    public void testSelect() {
+        double[] shares = { 0.25, 0, 0.75 };
+        assertEquals(0, RouteShares.select(shares, 0));
+        assertEquals(0, RouteShares.select(shares, 0.2499));
+        assertEquals(2, RouteShares.select(shares, 0.25));
+        assertEquals(2, RouteShares.select(shares, 0.9999));
+        // tolerates rounding errors of the cumulated shares
+        assertEquals(1, RouteShares.select(new double[] { 0.3, 0.7 - 1e-9 }, 0.9999999999));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSharesMustSumUpToOne() {
+        new RouteShares(300, new double[][] { { 0.5, 0.4 } });
+    }
+}
@@ -0,0 +1,35 @@
+package org.movsim.simulator.observer;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.movsim.autogen.ServiceProviderType;
+import org.movsim.simulator.EventScheduler;
+import org.movsim.simulator.roadnetwork.RoadNetwork;
+import org.movsim.simulator.roadnetwork.routing.Routing;
+
+public class ServiceProviderTest {
+
+    @Test
+    public void testServerUpdatesScheduledAgainAfterClear() {
+        final RoadNetwork roadNetwork = new RoadNetwork();
+        final ServiceProviderType configuration = new ServiceProviderType();
+        configuration.setLabel("provider");
+        configuration.setServerUpdateInterval(10.0);
+        final ServiceProvider serviceProvider = new ServiceProvider(configuration, new Routing(null, roadNetwork),
+                roadNetwork);
+        final EventScheduler eventScheduler = roadNetwork.getEventScheduler();
+        eventScheduler.fireDueEvents(0);
+        assertEquals(10.0, eventScheduler.nextEventTime(), 0);
+
+        roadNetwork.clear();
+        assertEquals(0, eventScheduler.size());
+        serviceProvider.timeStep(0.5, 3.0, 6);
+        assertEquals(3.0, eventScheduler.nextEventTime(), 0);
+        eventScheduler.fireDueEvents(3.5);
+        // the update interval restarts with the first update after the clear
+        assertEquals(13.0, eventScheduler.nextEventTime(), 0);
+        serviceProvider.timeStep(0.5, 3.5, 7);
+        assertEquals(1, eventScheduler.size());
+    }
+}
@@ -86,4 +86,26 @@ public class InflowTimeSeriesTest {
         assertEquals(12.0, inflowTimeSeries.getSpeed(900.0), delta);
     }
 
+    @Test
+    public final void testNextDepartureTime() {
+        final InflowTimeSeries.DepartureCursor departures = inflowTimeSeries.departureCursor();
+        // 100 vehicles per lane during the increase to 1200/h
+        assertEquals(600.0, departures.nextDepartureTime(0.0, 100), delta);
+        // 125 vehicles per lane during the increase to 1800/h
+        assertEquals(900.0, departures.nextDepartureTime(600.0, 125), delta);
+        assertEquals(902.0, departures.nextDepartureTime(900.0, 1), delta);
+        // departure times are consistent when chained
+        double time = 0;
+        for (int i = 0; i < 225; i++) {
+            time = departures.nextDepartureTime(time, 1);
+        }
+        assertEquals(900.0, time, delta);
+    }
+
+    @Test
+    public final void testNextDepartureTimeConstantFlow() {
+        final InflowTimeSeries constantInflow = new InflowTimeSeries(new ArrayList<Inflow>());
+        assertEquals(13.6, constantInflow.departureCursor().nextDepartureTime(10.0, 1), delta);
+    }
+
 }
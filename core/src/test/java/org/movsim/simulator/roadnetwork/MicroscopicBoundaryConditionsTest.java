@@ -0,0 +1,115 @@
+package org.movsim.simulator.roadnetwork;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.movsim.simulator.roadnetwork.boundaries.MicroscopicBoundaryConditions;
+import org.movsim.simulator.roadnetwork.boundaries.MicroscopicBoundaryInputData;
+import org.movsim.simulator.roadnetwork.routing.Routing;
+
+public class MicroscopicBoundaryConditionsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Routing routing;
+
+    @Before
+    public void setUp() {
+        routing = new Routing(null, new RoadNetwork());
+    }
+
+    private MicroscopicBoundaryConditions create(String... lines) throws IOException {
+        return create(Arrays.asList(lines));
+    }
+
+    private MicroscopicBoundaryConditions create(List<String> lines) throws IOException {
+        File file = folder.newFile("micro_bc.xml");
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        return new MicroscopicBoundaryConditions(file);
+    }
+
+    @Test
+    public void testStreamsRecordsOfRoadInTimeOrder() throws IOException {
+        MicroscopicBoundaryConditions conditions = create(
+                "<MovsimMicroscopicBoundaryConditions time_format=\"HH:mm:ss\">",
+                "<RoadMicroscopicBoundaryConditions id=\"1\"><BoundaryConditions>",
+                "<BoundaryCondition time=\"00:00:10\" label=\"A\" />",
+                "</BoundaryConditions></RoadMicroscopicBoundaryConditions>",
+                "<RoadMicroscopicBoundaryConditions id=\"2\"><BoundaryConditions>",
+                "<BoundaryCondition time=\"00:01:00\" label=\"A\"><VehicleUserData key=\"k\" value=\"v\" />",
+                "</BoundaryCondition><BoundaryCondition time=\"00:00:20\" label=\"A\" />",
+                "<BoundaryCondition time=\"00:00:30\" label=\"A\" />",
+                "</BoundaryConditions></RoadMicroscopicBoundaryConditions>",
+                "<RoadMicroscopicBoundaryConditions id=\"3\"><BoundaryConditions /></RoadMicroscopicBoundaryConditions>",
+                "</MovsimMicroscopicBoundaryConditions>");
+        assertEquals("HH:mm:ss", conditions.getTimeFormat());
+        assertTrue(conditions.hasBoundaryConditions("1"));
+        assertFalse(conditions.hasBoundaryConditions("4"));
+
+        MicroscopicBoundaryInputData road1 = conditions.openBoundaryConditions("1", 0, routing);
+        assertTrue(road1.hasNext());
+        assertEquals(10, road1.nextTime());
+
+        // the out-of-order record is sorted within the look-ahead window
+        MicroscopicBoundaryInputData road2 = conditions.openBoundaryConditions("2", 0, routing);
+        assertEquals(20, road2.nextTime());
+
+        assertFalse(conditions.openBoundaryConditions("3", 0, routing).hasNext());
+        road1.close();
+        road2.close();
+    }
+
+    @Test
+    public void testCloseBeforeEndOfInput() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("<MovsimMicroscopicBoundaryConditions>");
+        lines.add("<RoadMicroscopicBoundaryConditions id=\"1\"><BoundaryConditions>");
+        // more records than the look-ahead window, so the input file is still open
+        for (int i = 1; i <= 1000; i++) {
+            lines.add("<BoundaryCondition time=\"" + i + "\" label=\"A\" />");
+        }
+        lines.add("</BoundaryConditions></RoadMicroscopicBoundaryConditions>");
+        lines.add("</MovsimMicroscopicBoundaryConditions>");
+        MicroscopicBoundaryConditions conditions = create(lines);
+
+        MicroscopicBoundaryInputData inputData = conditions.openBoundaryConditions("1", 0, routing);
+        assertTrue(inputData.hasNext());
+        assertEquals(1, inputData.nextTime());
+        inputData.close();
+        assertFalse(inputData.hasNext());
+        // closing again has no effect
+        inputData.close();
+        assertFalse(inputData.hasNext());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDuplicateRoad() throws IOException {
+        create("<MovsimMicroscopicBoundaryConditions>",
+                "<RoadMicroscopicBoundaryConditions id=\"1\"><BoundaryConditions /></RoadMicroscopicBoundaryConditions>",
+                "<RoadMicroscopicBoundaryConditions id=\"1\"><BoundaryConditions /></RoadMicroscopicBoundaryConditions>",
+                "</MovsimMicroscopicBoundaryConditions>");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidInput() throws IOException {
+        create("<MovsimMicroscopicBoundaryConditions>",
+                "<RoadMicroscopicBoundaryConditions id=\"1\"><BoundaryConditions>",
+                "<BoundaryCondition label=\"A\" />",
+                "</BoundaryConditions></RoadMicroscopicBoundaryConditions>",
+                "</MovsimMicroscopicBoundaryConditions>");
+    }
+}
@@ -0,0 +1,76 @@
+package org.movsim.simulator.roadnetwork;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.movsim.simulator.roadnetwork.boundaries.ODDemand;
+import org.movsim.simulator.roadnetwork.boundaries.ODDemand.OriginDemand;
+
+public class ODDemandTest {
+
+    private static final double delta = 1e-9;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ODDemand createDemand(String... lines) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return new ODDemand(file);
+    }
+
+    @Test
+    public void testOverlappingSlices() throws IOException {
+        ODDemand demand = createDemand("# start, end, origin, destination, vehicles", "0, 100, A, X, 100",
+                "50, 150, A, Y, 200", "", "0, 10, B, X, 5");
+        assertEquals(Arrays.asList("A", "B"), Arrays.asList(demand.getOrigins().toArray()));
+        assertNull(demand.getOriginDemand("X"));
+
+        OriginDemand origin = demand.getOriginDemand("A");
+        assertNotNull(origin);
+        assertEquals(Arrays.asList("X", "Y"), origin.getDestinations());
+        assertEquals(0, origin.getRate(-1), delta);
+        assertEquals(1, origin.getRate(0), delta);
+        assertEquals(1, origin.getRate(49.9), delta);
+        assertEquals(3, origin.getRate(50), delta);
+        assertEquals(2, origin.getRate(100), delta);
+        assertEquals(0, origin.getRate(150), delta);
+
+        assertEquals(0, origin.sampleDestination(10, 0.99));
+        assertEquals(1, origin.sampleDestination(120, 0.01));
+        // within [50,100) destination X has one third of the rate
+        int countX = 0;
+        final int n = 3000;
+        for (int i = 0; i < n; i++) {
+            if (origin.sampleDestination(75, (i + 0.5) / n) == 0) {
+                ++countX;
+            }
+        }
+        assertEquals(n / 3, countX, 2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSampleWithoutDemand() throws IOException {
+        createDemand("0, 100, A, X, 10").getOriginDemand("A").sampleDestination(100, 0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSlice() throws IOException {
+        createDemand("100, 0, A, X, 10");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRoutesNotPrecomputed() throws IOException {
+        createDemand("0, 100, A, X, 10").getOriginDemand("A").getRoute(0);
+    }
+}
@@ -0,0 +1,47 @@
+package org.movsim.simulator.roadnetwork;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class RoadNetworkTest {
+
+    @Test
+    public void testFindById() {
+        final RoadNetwork roadNetwork = new RoadNetwork();
+        final RoadSegment first = new RoadSegment(100, 1);
+        final RoadSegment second = new RoadSegment(100, 1);
+        final RoadSegment third = new RoadSegment(100, 1);
+        // ids need not start at the initial id nor be added in order
+        roadNetwork.add(second);
+        roadNetwork.add(third);
+        roadNetwork.add(first);
+        assertEquals(3, roadNetwork.size());
+        assertSame(first, roadNetwork.findById(first.id()));
+        assertSame(second, roadNetwork.findById(second.id()));
+        assertSame(third, roadNetwork.findById(third.id()));
+        assertNull(roadNetwork.findById(first.id() - 1));
+        assertNull(roadNetwork.findById(third.id() + 1));
+    }
+
+    @Test
+    public void testFindByUserId() {
+        final RoadNetwork roadNetwork = new RoadNetwork();
+        final RoadSegment roadSegment = new RoadSegment(100, 1);
+        roadSegment.setUserId("1");
+        final RoadSegment duplicate = new RoadSegment(100, 1);
+        duplicate.setUserId("1");
+        final RoadSegment anonymous = new RoadSegment(100, 1);
+        roadNetwork.add(roadSegment);
+        roadNetwork.add(duplicate);
+        roadNetwork.add(anonymous);
+        assertSame(roadSegment, roadNetwork.findByUserId("1"));
+        // without userId the road segment is found by its id as string
+        assertSame(anonymous, roadNetwork.findByUserId(Integer.toString(anonymous.id())));
+        assertNull(roadNetwork.findByUserId("2"));
+        roadNetwork.clear();
+        assertNull(roadNetwork.findByUserId("1"));
+    }
+}
@@ -27,7 +27,10 @@
 package org.movsim.simulator.roadnetwork;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import org.junit.Test;
@@ -136,6 +139,27 @@ public class RoadSegmentTest {
         assertEquals(null, r.sink());
     }
 
+    @Test
+    public final void testContainsVehicle() {
+        final RoadSegment r = new RoadSegment(1000.0, 2);
+        // vehicles with the same rear position
+        final Vehicle v0 = newObstacle(100.0, Lanes.LANE1);
+        final Vehicle v1 = newObstacle(100.0, Lanes.LANE1);
+        final Vehicle v2 = newObstacle(50.0, Lanes.LANE1);
+        r.addVehicle(v0);
+        r.addVehicle(v1);
+        r.addVehicle(v2);
+        assertTrue(r.containsVehicle(v0));
+        assertTrue(r.containsVehicle(v1));
+        assertTrue(r.containsVehicle(v2));
+        // lane already changed, but still on the lane segment of the old lane
+        v1.setLane(Lanes.LANE2);
+        assertTrue(r.containsVehicle(v1));
+        r.laneSegment(Lanes.LANE1).removeVehicle(v0);
+        assertFalse(r.containsVehicle(v0));
+        assertFalse(new RoadSegment(1000.0, 1).containsVehicle(v2));
+    }
+
     @Test
     public final void testRoadLength() {
         final int laneCount = 1;
@@ -234,6 +258,35 @@ public class RoadSegmentTest {
         assertEquals(v2, v);
     }
 
+    @Test
+    public final void testAddVehicles() {
+        RoadSegment.resetNextId();
+        Vehicle.resetNextId();
+
+        final int laneCount = 2;
+        final RoadSegment r0 = new RoadSegment(5000.0, laneCount);
+        final Vehicle v0 = newVehicle(3900.0, 1.0, Lanes.LANE1);
+        r0.addVehicle(v0);
+
+        final Vehicle v1 = newVehicle(3100.0, 2.0, Lanes.LANE1);
+        final Vehicle v2 = newVehicle(4500.0, 3.0, Lanes.LANE2);
+        final Vehicle v3 = newVehicle(3500.0, 4.0, Lanes.LANE1);
+        final Vehicle v4 = newVehicle(4700.0, 5.0, Lanes.LANE1);
+        final Vehicle v5 = newVehicle(200.0, 6.0, Lanes.LANE2);
+        r0.addVehicles(Arrays.asList(v1, v2, v3, v4, v5));
+
+        assertEquals(6, r0.getVehicleCount());
+        assertEquals(4, r0.laneSegment(Lanes.LANE1).vehicleCount());
+        assertEquals(v4, r0.getVehicle(Lanes.LANE1, 0));
+        assertEquals(v0, r0.getVehicle(Lanes.LANE1, 1));
+        assertEquals(v3, r0.getVehicle(Lanes.LANE1, 2));
+        assertEquals(v1, r0.getVehicle(Lanes.LANE1, 3));
+        assertEquals(v2, r0.getVehicle(Lanes.LANE2, 0));
+        assertEquals(v5, r0.getVehicle(Lanes.LANE2, 1));
+        assertEquals(r0.id(), v5.roadSegmentId());
+        assertTrue(r0.eachLaneIsSorted());
+    }
+
     @Test
     public final void testRearVehicleOnLane() {
         RoadSegment.resetNextId();
@@ -710,6 +763,36 @@ public class RoadSegmentTest {
         assertEquals(1, r0.laneSegment(Lanes.LANE2).vehicleCount());
     }
 
+    @Test
+    public final void testLaneChangesIntoSameGap() {
+        RoadSegment.resetNextId();
+        Vehicle.resetNextId();
+
+        final int laneCount = 3;
+        final RoadSegment r0 = new RoadSegment(1000.0, laneCount);
+
+        // two vehicles side by side behind obstacles both want to change into the free middle lane
+        r0.addVehicle(newObstacle(600.0, Lanes.LANE1));
+        r0.addVehicle(newObstacle(600.0, Lanes.LANE3));
+        final Vehicle v0 = newVehicle(593.0, 5.0, Lanes.LANE3);
+        v0.setLaneChangeModel(newLaneChangeModel(v0));
+        r0.addVehicle(v0);
+        final Vehicle v1 = newVehicle(593.0, 5.0, Lanes.LANE1);
+        v1.setLaneChangeModel(newLaneChangeModel(v1));
+        r0.addVehicle(v1);
+
+        r0.decideLaneChanges(true);
+        // decisions do not change the road segment
+        assertEquals(Lanes.LANE3, v0.lane());
+        assertEquals(Lanes.LANE1, v1.lane());
+        r0.performLaneChanges(0.25);
+        // the vehicle with the lower id wins the gap, the lane change of the other one is no longer safe
+        assertEquals(Lanes.LANE2, v0.lane());
+        assertEquals(Lanes.LANE1, v1.lane());
+        assertEquals(1, r0.laneSegment(Lanes.LANE2).vehicleCount());
+        assertEquals(false, v1.inProcessOfLaneChange());
+    }
+
     /**
      * Test method for {@link org.movsim.simulator.roadnetwork.RoadSegment#updateVehiclePositionsAndSpeeds(double, double, long)}
      */
@@ -1128,4 +1211,84 @@ public class RoadSegmentTest {
         next = iterator.next();
         assertEquals(laneSegment.lane(), next.lane());
     }
+
+    @Test
+    public final void testLaneNeighbours() {
+        RoadSegment.resetNextId();
+        Vehicle.resetNextId();
+
+        final int laneCount = 3;
+        final RoadSegment r0 = new RoadSegment(1000.0, laneCount);
+        final double[][] positions = { { 900.0, 700.0, 500.0, 100.0 }, { 950.0, 700.0, 650.0, 300.0, 10.0 },
+                { 800.0, 500.0 } };
+        for (int lane = Lanes.LANE1; lane <= laneCount; lane++) {
+            for (final double position : positions[lane - 1]) {
+                r0.addVehicle(newVehicle(position, 1.0, lane));
+            }
+        }
+        r0.laneNeighbours().update();
+        assertLaneNeighbours(r0);
+
+        // a lane change is only visible in the table once the affected lanes are invalidated
+        final Vehicle vehicle = r0.laneSegment(Lanes.LANE2).getVehicle(2);
+        r0.laneSegment(Lanes.LANE2).removeVehicle(vehicle);
+        vehicle.setLane(Lanes.LANE3);
+        r0.laneSegment(Lanes.LANE3).addVehicle(vehicle);
+        r0.laneNeighbours().invalidateLane(Lanes.LANE2);
+        r0.laneNeighbours().invalidateLane(Lanes.LANE3);
+        assertLaneNeighbours(r0);
+        assertEquals(vehicle, r0.laneSegment(Lanes.LANE3).rearVehicle(r0.laneSegment(Lanes.LANE2).getVehicle(1)));
+
+        r0.laneNeighbours().update();
+        assertLaneNeighbours(r0);
+        assertEquals(-1, r0.laneNeighbours().frontVehicleCount(vehicle, Lanes.LANE1, 4));
+        assertEquals(2, r0.laneNeighbours().frontVehicleCount(vehicle, Lanes.LANE2, 4));
+        r0.laneNeighbours().invalidate();
+        assertEquals(-1, r0.laneNeighbours().frontVehicleCount(vehicle, Lanes.LANE2, 4));
+    }
+
+    @Test
+    public final void testInstantaneousTravelTimeOnGrid() {
+        RoadSegment.resetNextId();
+        Vehicle.resetNextId();
+
+        final RoadSegment r0 = new RoadSegment(1000.0, 2);
+        r0.setFreeFlowSpeed(25.0);
+        assertEquals(1000.0 / 25.0, r0.instantaneousTravelTimeOnGrid(200.0), delta);
+
+        // front positions are 5m ahead of the rear positions, the grid does not depend on the order of the lanes
+        r0.addVehicle(newVehicle(895.0, 10.0, Lanes.LANE1));
+        r0.addVehicle(newVehicle(95.0, 20.0, Lanes.LANE1));
+        r0.addVehicle(newVehicle(395.0, 0.0, Lanes.LANE2));
+        r0.addVehicle(newVehicle(90.0, 10.0, Lanes.LANE2));
+        final double expected = 200.0 / 15.0 + 200.0 / 25.0 + 200.0 / 1.0 + 200.0 / 25.0 + 200.0 / 10.0;
+        assertEquals(expected, r0.instantaneousTravelTimeOnGrid(200.0), delta);
+
+        // entering vehicles are added to the maintained grid
+        r0.appendVehicle(newVehicle(0.0, 30.0, Lanes.LANE2));
+        final double expectedWithEntering = expected - 200.0 / 15.0 + 200.0 / 20.0;
+        assertEquals(expectedWithEntering, r0.instantaneousTravelTimeOnGrid(200.0), delta);
+
+        // the grid maintained with the position update equals a grid built from scratch
+        r0.updateVehiclePositionsAndSpeeds(10.0, 0.0, 0);
+        final double maintained = r0.instantaneousTravelTimeOnGrid(200.0);
+        r0.instantaneousTravelTimeOnGrid(100.0);
+        assertEquals(r0.instantaneousTravelTimeOnGrid(200.0), maintained, delta);
+    }
+
+    private void assertLaneNeighbours(RoadSegment roadSegment) {
+        for (final LaneSegment laneSegment : roadSegment.laneSegments()) {
+            for (final Vehicle vehicle : laneSegment) {
+                for (final int direction : new int[] { Lanes.TO_LEFT, Lanes.TO_RIGHT }) {
+                    final int targetLane = vehicle.lane() + direction;
+                    if (targetLane < Lanes.MOST_INNER_LANE || targetLane > roadSegment.laneCount()) {
+                        continue;
+                    }
+                    final LaneSegment target = roadSegment.laneSegment(targetLane);
+                    assertEquals(target.frontVehicle(vehicle.getRearPosition()), target.frontVehicle(vehicle));
+                    assertEquals(target.rearVehicle(vehicle.getRearPosition()), target.rearVehicle(vehicle));
+                }
+            }
+        }
+    }
 }
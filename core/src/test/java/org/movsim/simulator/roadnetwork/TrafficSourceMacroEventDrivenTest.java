@@ -0,0 +1,212 @@
+package org.movsim.simulator.roadnetwork;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.movsim.autogen.AccelerationModelType;
+import org.movsim.autogen.Inflow;
+import org.movsim.autogen.LaneChangeModelType;
+import org.movsim.autogen.ModelParameterIDM;
+import org.movsim.autogen.TrafficComposition;
+import org.movsim.autogen.VehiclePrototypeConfiguration;
+import org.movsim.autogen.VehiclePrototypes;
+import org.movsim.autogen.VehicleType;
+import org.movsim.simulator.roadnetwork.boundaries.InflowTimeSeries;
+import org.movsim.simulator.roadnetwork.boundaries.TrafficSourceMacroEventDriven;
+import org.movsim.simulator.roadnetwork.routing.Routing;
+import org.movsim.simulator.vehicles.TestVehicle;
+import org.movsim.simulator.vehicles.TrafficCompositionGenerator;
+import org.movsim.simulator.vehicles.Vehicle;
+import org.movsim.simulator.vehicles.VehicleFactory;
+
+public class TrafficSourceMacroEventDrivenTest {
+
+    private static final double delta = 1e-9;
+
+    private static final double dt = 0.2;
+
+    /** 1800 vehicles per hour and lane, i.e. one vehicle every 2s */
+    private static final double FLOW_PER_HOUR = 1800;
+
+    private static final double FLOW_PER_LANE = 0.5;
+
+    private static final double SPEED = 20;
+
+    private RoadSegment roadSegment;
+
+    private TrafficSourceMacroEventDriven trafficSource;
+
+    private int testVehicleCount;
+
+    @Before
+    public void setUp() {
+        createTrafficSource(new RoadSegment(5000.0, 3));
+    }
+
+    private void createTrafficSource(RoadSegment roadSegment) {
+        this.roadSegment = roadSegment;
+        final TrafficCompositionGenerator vehGenerator = new TrafficCompositionGenerator(createComposition(),
+                createVehicleFactory()) {
+            @Override
+            public TestVehicle getTestVehicle() {
+                ++testVehicleCount;
+                return super.getTestVehicle();
+            }
+        };
+        final Inflow inflow = new Inflow();
+        inflow.setT(0);
+        inflow.setQPerHour(FLOW_PER_HOUR);
+        inflow.setV(SPEED);
+        trafficSource = new TrafficSourceMacroEventDriven(vehGenerator, roadSegment,
+                new InflowTimeSeries(Collections.singletonList(inflow)));
+    }
+
+    private static VehicleFactory createVehicleFactory() {
+        final ModelParameterIDM idm = new ModelParameterIDM();
+        idm.setV0(30);
+        idm.setT(1.2);
+        idm.setS0(2);
+        idm.setS1(0);
+        idm.setDelta(4);
+        idm.setA(1);
+        idm.setB(1.5);
+        final AccelerationModelType accelerationModel = new AccelerationModelType();
+        accelerationModel.setModelParameterIDM(idm);
+        final VehiclePrototypeConfiguration configuration = new VehiclePrototypeConfiguration();
+        configuration.setLabel("IDM");
+        configuration.setLength(5);
+        configuration.setMaximumDeceleration(9);
+        configuration.setAccelerationModelType(accelerationModel);
+        configuration.setLaneChangeModelType(new LaneChangeModelType());
+        final VehiclePrototypes prototypes = new VehiclePrototypes();
+        prototypes.getVehiclePrototypeConfiguration().add(configuration);
+        return new VehicleFactory(dt, prototypes, null, new Routing(null, new RoadNetwork()), null);
+    }
+
+    private static TrafficComposition createComposition() {
+        final VehicleType vehicleType = new VehicleType();
+        vehicleType.setLabel("IDM");
+        vehicleType.setFraction(1);
+        final TrafficComposition composition = new TrafficComposition();
+        composition.getVehicleType().add(vehicleType);
+        return composition;
+    }
+
+    private void timeSteps(int fromStep, int toStep, boolean moveVehicles) {
+        for (int step = fromStep; step < toStep; step++) {
+            if (moveVehicles) {
+                // the vehicles are updated before the inflow
+                for (final Vehicle vehicle : roadSegment) {
+                    vehicle.setFrontPosition(vehicle.getFrontPosition() + vehicle.getSpeed() * dt);
+                }
+            }
+            trafficSource.timeStep(dt, step * dt, step);
+        }
+    }
+
+    private static void assertEntered(Vehicle vehicle, int lane, double departureTime, double time) {
+        assertEquals(lane, vehicle.lane());
+        assertEquals(SPEED, vehicle.getSpeed(), delta);
+        // entry position extrapolated from the departure time
+        assertEquals(SPEED * (time - departureTime), vehicle.getFrontPosition(), delta);
+    }
+
+    @Test
+    public void testStaggeredDepartures() {
+        // the lanes are staggered by a third of the time headway of 2s: departures at 2/3s, 4/3s and 2s
+        timeSteps(0, 3, false);
+        assertEquals(0, testVehicleCount);
+        assertEquals(0, roadSegment.getVehicleCount());
+
+        timeSteps(3, 4, false);
+        assertEquals(1, testVehicleCount);
+        assertEquals(1, roadSegment.getVehicleCount());
+        assertEntered(roadSegment.laneSegment(Lanes.LANE1).rearVehicle(), Lanes.LANE1, 2.0 / 3, 0.8);
+
+        // no departure due until 4/3s
+        timeSteps(4, 6, false);
+        assertEquals(1, testVehicleCount);
+        assertEquals(1, roadSegment.getVehicleCount());
+
+        timeSteps(6, 7, false);
+        assertEquals(2, roadSegment.getVehicleCount());
+        assertEntered(roadSegment.laneSegment(Lanes.LANE2).rearVehicle(), Lanes.LANE2, 4.0 / 3, 1.4);
+
+        timeSteps(7, 10, false);
+        assertEquals(3, roadSegment.getVehicleCount());
+        assertEntered(roadSegment.laneSegment(Lanes.LANE3).rearVehicle(), Lanes.LANE3, 2.0, 2.0);
+        assertEquals(0, trafficSource.getQueueLength());
+    }
+
+    @Test
+    public void testSeveralVehiclesPerTimeStep() {
+        trafficSource.timeStep(2.0, 0, 0);
+        assertEquals(3, testVehicleCount);
+        assertEquals(3, roadSegment.getVehicleCount());
+        assertEntered(roadSegment.laneSegment(Lanes.LANE1).rearVehicle(), Lanes.LANE1, 2.0 / 3, 2.0);
+        assertEntered(roadSegment.laneSegment(Lanes.LANE2).rearVehicle(), Lanes.LANE2, 4.0 / 3, 2.0);
+        assertEntered(roadSegment.laneSegment(Lanes.LANE3).rearVehicle(), Lanes.LANE3, 2.0, 2.0);
+    }
+
+    @Test
+    public void testBlockedLane() {
+        final Vehicle obstacle = new Vehicle(1.0, 0.0, Lanes.LANE2, 5.0, 2.5);
+        roadSegment.addVehicle(obstacle);
+        // until 9.8s: departures at 2/3s+2k on lane 1, 4/3s+2k on lane 2 and 2s+2k on lane 3
+        timeSteps(0, 49, true);
+        assertEquals(5, roadSegment.laneSegment(Lanes.LANE1).vehicleCount());
+        assertEquals(1, roadSegment.laneSegment(Lanes.LANE2).vehicleCount());
+        assertSame(obstacle, roadSegment.laneSegment(Lanes.LANE2).rearVehicle());
+        assertEquals(4, roadSegment.laneSegment(Lanes.LANE3).vehicleCount());
+        // the five vehicles departed on lane 2 are waiting
+        assertEquals(5, trafficSource.getQueueLength());
+
+        // the backlog enters within one time step once the lane is free, spaced by the extrapolated positions
+        roadSegment.laneSegment(Lanes.LANE2).removeVehicle(obstacle);
+        timeSteps(49, 50, true);
+        final LaneSegment laneSegment = roadSegment.laneSegment(Lanes.LANE2);
+        assertEquals(5, laneSegment.vehicleCount());
+        for (int i = 0; i < 5; i++) {
+            assertEntered(laneSegment.getVehicle(i), Lanes.LANE2, 4.0 / 3 + 2 * i, 10.0);
+        }
+        assertEquals(0, trafficSource.getQueueLength());
+    }
+
+    @Test
+    public void testBlockedThenEmptyLane() {
+        createTrafficSource(new RoadSegment(100.0, 1));
+        final Vehicle obstacle = new Vehicle(1.0, 0.0, Lanes.LANE1, 5.0, 2.5);
+        roadSegment.addVehicle(obstacle);
+        // until 9.8s: departures at 2s+2k
+        timeSteps(0, 49, false);
+        assertEquals(1, roadSegment.getVehicleCount());
+        assertEquals(4, trafficSource.getQueueLength());
+
+        // the first vehicle would be extrapolated to 160m, it enters at the end of the road
+        roadSegment.laneSegment(Lanes.LANE1).removeVehicle(obstacle);
+        timeSteps(49, 50, false);
+        final LaneSegment laneSegment = roadSegment.laneSegment(Lanes.LANE1);
+        assertEquals(roadSegment.roadLength(), laneSegment.getVehicle(0).getFrontPosition(), delta);
+        for (final Vehicle vehicle : laneSegment) {
+            assertTrue(vehicle.getFrontPosition() <= roadSegment.roadLength());
+        }
+        // the vehicles behind it are limited by the gap to their leader
+        for (int i = 1; i < laneSegment.vehicleCount(); i++) {
+            assertTrue(laneSegment.getVehicle(i).getFrontPosition() < laneSegment.getVehicle(i - 1).getRearPosition());
+        }
+    }
+
+    @Test
+    public void testInflowMatchesIntegratedFlow() {
+        final int steps = 495;
+        timeSteps(0, steps, true);
+        assertEquals(3 * FLOW_PER_LANE * steps * dt, roadSegment.getVehicleCount(), 1);
+        assertEquals(roadSegment.getVehicleCount(), testVehicleCount);
+        assertEquals(0, trafficSource.getQueueLength());
+    }
+}
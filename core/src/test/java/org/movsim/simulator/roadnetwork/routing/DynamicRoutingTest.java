@@ -0,0 +1,89 @@
+package org.movsim.simulator.roadnetwork.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.movsim.simulator.roadnetwork.RoadSegment;
+
+public class DynamicRoutingTest {
+    private static final double delta = 0.00001;
+
+    private static final double GRID_LENGTH = 100;
+
+    @Test
+    public void testFreeFlowTravelTimes() {
+        List<RoadSegment> grid = LandmarkRouterTest.createGrid(new Random(3));
+        CompactGraph compactGraph = new CompactGraph(grid);
+        LinkTravelTimes travelTimes = new LinkTravelTimes(compactGraph, GRID_LENGTH, 0.5, 600);
+        travelTimes.update(0);
+        travelTimes.update(60);
+        for (int e = 0; e < compactGraph.edgeCount(); e++) {
+            RoadSegment roadSegment = compactGraph.edges[e];
+            double freeTravelTime = roadSegment.roadLength() / roadSegment.getFreeFlowSpeed();
+            assertEquals(freeTravelTime, travelTimes.travelTime(e), delta);
+            // no trend on empty roads
+            assertEquals(freeTravelTime, travelTimes.travelTime(e, 500), delta);
+        }
+    }
+
+    @Test
+    public void testTimeDependentSearchOnStaticTravelTimes() {
+        Random random = new Random(7);
+        List<RoadSegment> grid = LandmarkRouterTest.createGrid(random);
+        CompactGraph compactGraph = new CompactGraph(grid);
+        LinkTravelTimes travelTimes = new LinkTravelTimes(compactGraph, GRID_LENGTH, 1, 600);
+        DynamicRouting.Search search = new DynamicRouting.Search(compactGraph.vertexCount());
+        final int gridSize = LandmarkRouterTest.GRID * LandmarkRouterTest.GRID;
+        final double departureTime = 100;
+        for (int i = 0; i < 50; i++) {
+            long source = random.nextInt(gridSize);
+            long[] targets = { random.nextInt(gridSize), random.nextInt(gridSize) };
+            int[] targetIndices = { compactGraph.vertexIndex(targets[0]), compactGraph.vertexIndex(targets[1]) };
+            search.run(compactGraph, travelTimes, compactGraph.vertexIndex(source), targetIndices, departureTime);
+            for (int k = 0; k < targets.length; k++) {
+                List<RoadSegment> expected = LandmarkRouterTest.dijkstra(grid, source, targets[k]);
+                double arrivalTime = search.arrivalTimes[targetIndices[k]];
+                if (expected == null) {
+                    assertTrue(Double.isInfinite(arrivalTime));
+                    continue;
+                }
+                // all roads have the same free flow speed
+                double speed = compactGraph.edges[0].getFreeFlowSpeed();
+                assertEquals(length(expected) / speed, arrivalTime - departureTime, delta);
+            }
+        }
+    }
+
+    @Test
+    public void testPredecessorEdges() {
+        List<RoadSegment> grid = LandmarkRouterTest.createGrid(new Random(11));
+        CompactGraph compactGraph = new CompactGraph(grid);
+        LinkTravelTimes travelTimes = new LinkTravelTimes(compactGraph, GRID_LENGTH, 1, 600);
+        DynamicRouting.Search search = new DynamicRouting.Search(compactGraph.vertexCount());
+        int source = compactGraph.vertexIndex(0L);
+        int target = compactGraph.vertexIndex(LandmarkRouterTest.GRID * LandmarkRouterTest.GRID - 1);
+        search.run(compactGraph, travelTimes, source, new int[] { target }, 0);
+        double travelTime = 0;
+        int vertex = target;
+        while (search.predecessorEdges[vertex] != CompactGraph.NONE) {
+            int edge = search.predecessorEdges[vertex];
+            assertEquals(vertex, compactGraph.edgeTargets[edge]);
+            travelTime += travelTimes.travelTime(edge);
+            vertex = compactGraph.edgeSources[edge];
+        }
+        assertEquals(source, vertex);
+        assertEquals(search.arrivalTimes[target], travelTime, delta);
+    }
+
+    private static double length(List<RoadSegment> path) {
+        double length = 0;
+        for (RoadSegment roadSegment : path) {
+            length += roadSegment.roadLength();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,174 @@
+package org.movsim.simulator.roadnetwork.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.jgrapht.graph.DefaultDirectedWeightedGraph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.junit.Test;
+import org.movsim.simulator.roadnetwork.RoadSegment;
+
+public class LandmarkRouterTest {
+    private static final double delta = 0.00001;
+
+    static final int GRID = 12;
+
+    /**
+     * Creates a grid network with random road lengths, two-way roads in horizontal direction and one-way roads in vertical
+     * direction. The node ids are the vertex numbers of the grid.
+     */
+    static List<RoadSegment> createGrid(Random random) {
+        List<RoadSegment> roadSegments = new ArrayList<>();
+        for (int row = 0; row < GRID; row++) {
+            for (int column = 0; column < GRID; column++) {
+                long v = row * GRID + column;
+                if (column + 1 < GRID) {
+                    roadSegments.add(createRoadSegment(v, v + 1, random));
+                    roadSegments.add(createRoadSegment(v + 1, v, random));
+                }
+                if (row + 1 < GRID) {
+                    roadSegments.add(createRoadSegment(v, v + GRID, random));
+                }
+            }
+        }
+        return roadSegments;
+    }
+
+    private static RoadSegment createRoadSegment(long from, long to, Random random) {
+        RoadSegment roadSegment = new RoadSegment(100 + 900 * random.nextDouble(), 1);
+        roadSegment.getOriginNode().setId(from);
+        roadSegment.getDestinationNode().setId(to);
+        return roadSegment;
+    }
+
+    /**
+     * Reference shortest path with the Dijkstra implementation of jgrapht.
+     */
+    static List<RoadSegment> dijkstra(List<RoadSegment> roadSegments, long source, long target) {
+        DefaultDirectedWeightedGraph<Long, DefaultWeightedEdge> graph = new DefaultDirectedWeightedGraph<>(
+                DefaultWeightedEdge.class);
+        Map<DefaultWeightedEdge, RoadSegment> edges = new HashMap<>();
+        for (long v = 0; v < GRID * GRID; v++) {
+            graph.addVertex(v);
+        }
+        for (RoadSegment roadSegment : roadSegments) {
+            DefaultWeightedEdge edge = graph.addEdge(roadSegment.getOriginNode().getId(),
+                    roadSegment.getDestinationNode().getId());
+            graph.setEdgeWeight(edge, roadSegment.roadLength());
+            edges.put(edge, roadSegment);
+        }
+        List<DefaultWeightedEdge> path = DijkstraShortestPath.findPathBetween(graph, source, target);
+        if (path == null) {
+            return null;
+        }
+        List<RoadSegment> result = new ArrayList<>();
+        for (DefaultWeightedEdge edge : path) {
+            result.add(edges.get(edge));
+        }
+        return result;
+    }
+
+    private static double length(List<RoadSegment> path) {
+        double length = 0;
+        for (RoadSegment roadSegment : path) {
+            length += roadSegment.roadLength();
+        }
+        return length;
+    }
+
+    @Test
+    public void testShortestPathsAsDijkstra() {
+        Random random = new Random(42);
+        List<RoadSegment> grid = createGrid(random);
+        LandmarkRouter router = new LandmarkRouter(new CompactGraph(grid), 4);
+        assertEquals(4, router.landmarkCount());
+        for (int i = 0; i < 200; i++) {
+            long source = random.nextInt(GRID * GRID);
+            long target = random.nextInt(GRID * GRID);
+            List<RoadSegment> expected = dijkstra(grid, source, target);
+            List<RoadSegment> path = router.findPathBetween(source, target);
+            if (expected == null) {
+                assertNull(path);
+                continue;
+            }
+            assertEquals(length(expected), length(path), delta);
+            long vertex = source;
+            for (RoadSegment roadSegment : path) {
+                assertEquals(vertex, roadSegment.getOriginNode().getId());
+                vertex = roadSegment.getDestinationNode().getId();
+            }
+            assertEquals(target, vertex);
+        }
+    }
+
+    @Test
+    public void testShortestPathTreeAsDijkstra() {
+        Random random = new Random(7);
+        List<RoadSegment> grid = createGrid(random);
+        CompactGraph graph = new CompactGraph(grid);
+        ShortestPathTree tree = new ShortestPathTree(graph);
+        for (int i = 0; i < 20; i++) {
+            long source = random.nextInt(GRID * GRID);
+            int[] targets = new int[5];
+            for (int j = 0; j < targets.length; j++) {
+                targets[j] = graph.vertexIndex(random.nextInt(GRID * GRID));
+            }
+            tree.grow(graph.vertexIndex(source), targets);
+            for (int target : targets) {
+                List<RoadSegment> expected = dijkstra(grid, source, graph.nodeId(target));
+                List<RoadSegment> path = tree.path(target);
+                if (expected == null) {
+                    assertNull(path);
+                    continue;
+                }
+                assertEquals(length(expected), length(path), delta);
+                assertEquals(length(expected), tree.distance(target), delta);
+                long vertex = source;
+                for (RoadSegment roadSegment : path) {
+                    assertEquals(vertex, roadSegment.getOriginNode().getId());
+                    vertex = roadSegment.getDestinationNode().getId();
+                }
+                assertEquals(graph.nodeId(target), vertex);
+            }
+        }
+    }
+
+    @Test
+    public void testWithoutLandmarks() {
+        List<RoadSegment> grid = createGrid(new Random(1));
+        LandmarkRouter router = new LandmarkRouter(new CompactGraph(grid), 0);
+        assertTrue(router.findPathBetween(5L, 5L).isEmpty());
+        // vertical roads are one-way
+        assertNull(router.findPathBetween((long) GRID, 0L));
+        assertEquals(length(dijkstra(grid, 0L, GRID * GRID - 1)),
+                length(router.findPathBetween(0L, (long) (GRID * GRID - 1))), delta);
+    }
+
+    @Test
+    public void testParallelRoadSegments() {
+        Random random = new Random(5);
+        List<RoadSegment> roadSegments = new ArrayList<>();
+        roadSegments.add(createRoadSegment(0, 1, random));
+        roadSegments.add(createRoadSegment(0, 1, random));
+        CompactGraph graph = new CompactGraph(roadSegments);
+        assertEquals(2, graph.vertexCount());
+        assertEquals(2, graph.edgeCount());
+        for (RoadSegment roadSegment : roadSegments) {
+            assertEquals(roadSegment, graph.edges[graph.edgeIndex(roadSegment)]);
+        }
+        assertEquals(CompactGraph.NONE, graph.edgeIndex(new RoadSegment(100, 1)));
+        RoadSegment shorter = roadSegments.get(0).roadLength() < roadSegments.get(1).roadLength() ? roadSegments.get(0)
+                : roadSegments.get(1);
+        List<RoadSegment> path = new LandmarkRouter(graph, 1).findPathBetween(0L, 1L);
+        assertEquals(1, path.size());
+        assertEquals(shorter, path.get(0));
+    }
+}
@@ -0,0 +1,99 @@
+package org.movsim.simulator.roadnetwork.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.movsim.simulator.roadnetwork.Link;
+import org.movsim.simulator.roadnetwork.RoadSegment;
+
+public class RouteTest {
+    private static final double delta = 0.00001;
+
+    private RoadSegment r1;
+    private RoadSegment r2;
+    private RoadSegment r3;
+
+    @Before
+    public void setUp() {
+        r1 = new RoadSegment(1000.0, 1);
+        r2 = new RoadSegment(500.0, 1);
+        r3 = new RoadSegment(250.0, 1);
+        Link.addJoin(r1, r2);
+        Link.addJoin(r2, r3);
+    }
+
+    private Route createRoute(String name, RoadSegment... roadSegments) {
+        Route route = new Route(name);
+        for (RoadSegment roadSegment : roadSegments) {
+            route.add(roadSegment);
+        }
+        return route;
+    }
+
+    @Test
+    public void testStartPositions() {
+        Route route = createRoute("R", r1, r2, r3);
+        assertEquals(3, route.size());
+        assertEquals(1750, route.getLength(), delta);
+        assertEquals(0, route.getStartPosition(0), delta);
+        assertEquals(1000, route.getStartPosition(1), delta);
+        assertEquals(1500, route.getStartPosition(2), delta);
+        assertEquals(1750, route.getStartPosition(3), delta);
+        assertSame(r2, route.get(1));
+        assertEquals(r3.id(), route.roadSegmentId(2));
+        assertEquals(2, route.indexOf(r3));
+        assertEquals(-1, createRoute("S", r2).indexOf(r1));
+    }
+
+    @Test
+    public void testIntern() {
+        RouteTable table = new RouteTable();
+        Route route = table.intern(createRoute("R", r1, r2));
+        assertEquals(0, route.getId());
+        assertSame(route, table.intern(createRoute("R", r1, r2)));
+        Route other = table.intern(createRoute("R", r1, r2, r3));
+        assertEquals(1, other.getId());
+        assertNotEquals(route, other);
+        assertEquals(2, table.size());
+        // equal to a route which has not been interned
+        Route copy = createRoute("R", r1, r2);
+        assertEquals(Route.NOT_INTERNED, copy.getId());
+        assertEquals(route, copy);
+        assertEquals(route.hashCode(), copy.hashCode());
+        // another name shares the road segments and the id, routes are compared by their road segments
+        Route alias = table.intern(createRoute("S", r1, r2));
+        assertEquals("S", alias.getName());
+        assertEquals(route.getId(), alias.getId());
+        assertEquals(route, alias);
+        assertEquals(route.hashCode(), alias.hashCode());
+        assertEquals(createRoute("S", r1, r2), route);
+        assertEquals(1500, alias.getLength(), delta);
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void testHasSameRoadSegments() {
+        RouteTable table = new RouteTable();
+        Route route = table.intern(createRoute("R", r1, r2, r3));
+        Route found = table.intern(createRoute("S", r2, r3));
+        assertTrue(route.hasSameRoadSegments(1, found));
+        assertTrue(route.hasSameRoadSegments(1, createRoute("T", r2, r3)));
+        assertTrue(route.hasSameRoadSegments(0, table.intern(createRoute("T", r1, r2, r3))));
+        assertFalse(route.hasSameRoadSegments(0, found));
+        assertFalse(route.hasSameRoadSegments(2, found));
+        assertFalse(route.hasSameRoadSegments(1, createRoute("T", r2)));
+        // the vehicle has left its route
+        assertFalse(route.hasSameRoadSegments(Integer.MAX_VALUE - 1, found));
+        assertFalse(route.hasSameRoadSegments(-1, found));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInternedRouteCannotBeExtended() {
+        new RouteTable().intern(createRoute("R", r1, r2)).add(r3);
+    }
+}
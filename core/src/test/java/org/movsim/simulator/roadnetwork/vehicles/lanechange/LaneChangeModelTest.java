@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ * 
+ * This file is part of
+ * 
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ * 
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ * 
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.roadnetwork.vehicles.lanechange;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.movsim.autogen.LaneChangeModelType;
+import org.movsim.autogen.ModelParameterMOBIL;
+import org.movsim.simulator.roadnetwork.Lanes;
+import org.movsim.simulator.roadnetwork.RoadSegment;
+import org.movsim.simulator.vehicles.Vehicle;
+import org.movsim.simulator.vehicles.lanechange.LaneChangeModel;
+import org.movsim.simulator.vehicles.lanechange.LaneChangeModel.LaneChangeDecision;
+import org.movsim.simulator.vehicles.longitudinalmodel.acceleration.IDM;
+import org.movsim.utilities.MyRandom;
+
+/**
+ * Test module for the LaneChangeModel class.
+ */
+@SuppressWarnings("static-method")
+public class LaneChangeModelTest {
+
+    private static final double DT = 0.25;
+
+    private Vehicle newVehicle(double rearPosition, double speed, int lane, double evaluationInterval) {
+        final IDM idm = new IDM(33.0, 0.5, 3.0, 1.5, 2.0, 5.0);
+        final Vehicle vehicle = new Vehicle(rearPosition, speed, lane, 5.0, 2.5);
+        vehicle.setLongitudinalModel(idm);
+        vehicle.setSpeedlimit(80.0 / 3.6); // 80 km/h
+        final LaneChangeModelType lcType = new LaneChangeModelType();
+        final ModelParameterMOBIL param = new ModelParameterMOBIL();
+        param.setSafeDeceleration(5.0);
+        lcType.setModelParameterMOBIL(param);
+        lcType.setDiscretionaryEvaluationInterval(evaluationInterval);
+        final LaneChangeModel lcm = new LaneChangeModel(lcType, DT);
+        lcm.initialize(vehicle);
+        vehicle.setLaneChangeModel(lcm);
+        return vehicle;
+    }
+
+    private static int countDecisions(Vehicle vehicle, RoadSegment roadSegment, LaneChangeDecision expected, int steps) {
+        int count = 0;
+        for (int i = 0; i < steps; i++) {
+            if (vehicle.decideLaneChange(roadSegment) == expected) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public final void testStaggeredDiscretionaryEvaluation() {
+        RoadSegment.resetNextId();
+        Vehicle.resetNextId();
+        MyRandom.initializeWithSeed(42);
+        final RoadSegment roadSegment = new RoadSegment(1000.0, 2);
+        roadSegment.addVehicle(newVehicle(600.0, 0.0, Lanes.LANE1, 0.0));
+        // vehicles directly behind an obstacle want to change to the right
+        final Vehicle everyStep = newVehicle(590.0, 5.0, Lanes.LANE1, 0.0);
+        roadSegment.addVehicle(everyStep);
+        assertEquals(8, countDecisions(everyStep, roadSegment, LaneChangeDecision.DISCRETIONARY_TO_RIGHT, 8));
+
+        final Vehicle staggered = newVehicle(590.0, 5.0, Lanes.LANE1, 1.0);
+        assertEquals(2, countDecisions(staggered, roadSegment, LaneChangeDecision.DISCRETIONARY_TO_RIGHT, 8));
+    }
+
+    @Test
+    public final void testMandatoryEvaluationInEveryStep() {
+        RoadSegment.resetNextId();
+        Vehicle.resetNextId();
+        MyRandom.initializeWithSeed(42);
+        final RoadSegment roadSegment = new RoadSegment(1000.0, 2);
+        roadSegment.setLaneType(Lanes.LANE2, Lanes.Type.ENTRANCE);
+        final Vehicle vehicle = newVehicle(500.0, 10.0, Lanes.LANE2, 2.0);
+        roadSegment.addVehicle(vehicle);
+        assertEquals(8, countDecisions(vehicle, roadSegment, LaneChangeDecision.MANDATORY_TO_LEFT, 8));
+    }
+}
@@ -0,0 +1,39 @@
+package org.movsim.simulator.vehicles;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.movsim.utilities.LinearInterpolatedFunction;
+
+public class SpeedProfileTest {
+    private static final double delta = 1e-12;
+
+    @Test
+    public void testAsLinearInterpolatedFunction() {
+        double[] times = { 10, 12.5, 20, 21, 40 };
+        double[] speeds = { 0, 5, 15, 14.5, 3 };
+        SpeedProfile profile = new SpeedProfile(times, speeds);
+        LinearInterpolatedFunction function = new LinearInterpolatedFunction(times, speeds);
+        for (double t = 0; t < 50; t += 0.2) {
+            assertEquals("t=" + t, function.value(t), profile.value(t), delta);
+        }
+        // the cursor also moves backwards
+        assertEquals(function.value(11), profile.value(11), delta);
+        assertEquals(function.value(20), profile.value(20), delta);
+    }
+
+    @Test
+    public void testSingleDataPoint() {
+        SpeedProfile profile = new SpeedProfile(new double[] { 5 }, new double[] { 7 });
+        assertEquals(7, profile.value(0), delta);
+        assertEquals(7, profile.value(5), delta);
+        assertEquals(7, profile.value(10), delta);
+        assertEquals(5, profile.startTime(), delta);
+        assertEquals(5, profile.endTime(), delta);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotIncreasing() {
+        new SpeedProfile(new double[] { 0, 1, 1 }, new double[] { 0, 1, 2 });
+    }
+}
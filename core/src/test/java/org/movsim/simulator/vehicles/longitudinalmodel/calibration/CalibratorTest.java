@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2010, 2011, 2012 by Arne Kesting, Martin Treiber, Ralph Germ, Martin Budden
+ * <movsim.org@gmail.com>
+ * -----------------------------------------------------------------------------------------
+ *
+ * This file is part of
+ *
+ * MovSim - the multi-model open-source vehicular-traffic simulator.
+ *
+ * MovSim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MovSim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MovSim. If not, see <http://www.gnu.org/licenses/>
+ * or <http://www.movsim.org>.
+ *
+ * -----------------------------------------------------------------------------------------
+ */
+package org.movsim.simulator.vehicles.longitudinalmodel.calibration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.movsim.simulator.vehicles.longitudinalmodel.acceleration.LongitudinalModelBase;
+
+public class CalibratorTest {
+    private static final double delta = 0.00001;
+
+    private static final double DT = 0.2;
+
+    private static final double[] IDM_TRUE = { 30, 1.2, 2.5, 1.1, 1.6 };
+
+    private static final double[] IDM_LOWER = { 20, 0.5, 1, 0.3, 0.5 };
+
+    private static final double[] IDM_UPPER = { 40, 2.5, 5, 3, 4 };
+
+    private TrajectoryData data;
+
+    @Before
+    public void setUp() throws Exception {
+        data = new TrajectoryData(DT);
+        final LongitudinalModelBase idm = CalibrationModel.IDM.create(IDM_TRUE, DT);
+        for (int pair = 0; pair < 4; pair++) {
+            addSyntheticPair(idm, 12 + 4 * pair, 20 + 5 * pair, 600);
+        }
+    }
+
+    /**
+     * Generates a follower trajectory behind a leader with a stop-and-go speed profile with the same update scheme as used by
+     * the replay.
+     */
+    private void addSyntheticPair(LongitudinalModelBase model, double vLeadMean, double s0, int n) {
+        final double[] s = new double[n];
+        final double[] v = new double[n];
+        final double[] dv = new double[n];
+        final double[] vLead = new double[n];
+        for (int i = 0; i < n; i++) {
+            vLead[i] = Math.max(0, vLeadMean * (1 + 0.8 * Math.sin(2 * Math.PI * i * DT / 60)));
+        }
+        s[0] = s0;
+        v[0] = vLead[0];
+        for (int i = 0; i < n - 1; i++) {
+            dv[i] = v[i] - vLead[i];
+            final double acc = Math.max(model.calcAccSimple(s[i], v[i], dv[i]),
+                    -CalibrationObjective.DEFAULT_MAX_DECELERATION);
+            final double advance = (acc * DT >= -v[i]) ? v[i] * DT + 0.5 * acc * DT * DT : -0.5 * v[i] * v[i] / acc;
+            v[i + 1] = Math.max(0, v[i] + acc * DT);
+            s[i + 1] = s[i] + 0.5 * (vLead[i] + vLead[i + 1]) * DT - advance;
+        }
+        dv[n - 1] = v[n - 1] - vLead[n - 1];
+        data.add(s, v, dv);
+    }
+
+    @Test
+    public void testTrajectoryData() {
+        assertEquals(4, data.pairCount());
+        assertEquals(4 * 599, data.scoredSampleCount());
+        assertTrue(data.meanGap() > 0);
+        assertTrue(data.meanSpeed() > 0);
+    }
+
+    @Test
+    public void testScoreVanishesForTrueParameters() {
+        final CalibrationObjective objective = new CalibrationObjective(data, CalibrationModel.IDM);
+        final CalibrationObjective.Score score = objective.score(IDM_TRUE);
+        assertEquals(0, score.rmseGap(), delta);
+        assertEquals(0, score.rmseSpeed(), delta);
+        assertEquals(score.value(), objective.scoreInParallel(IDM_TRUE, 3).value(), delta);
+
+        final double[][] candidates = { IDM_TRUE, { 33, 1.5, 2, 1, 1.5 } };
+        final double[] values = objective.evaluate(candidates);
+        assertEquals(0, values[0], delta);
+        assertTrue(values[1] > 0.01);
+    }
+
+    @Test
+    public void testCalibrationImprovesInitialGuess() {
+        final CalibrationObjective objective = new CalibrationObjective(data, CalibrationModel.IDM);
+        final double[] initialGuess = { 33, 1.8, 2, 1.5, 1 };
+        final double initialValue = objective.score(initialGuess).value();
+
+        final Calibrator calibrator = new Calibrator(objective, IDM_LOWER, IDM_UPPER);
+        calibrator.setInitialGuess(initialGuess);
+        calibrator.setStarts(3);
+        calibrator.setThreads(2);
+        calibrator.setMaxEvaluations(3000);
+        final Calibrator.Result result = calibrator.calibrate();
+        assertTrue(result.score().value() < 0.1 * initialValue);
+        assertEquals(IDM_TRUE[1], result.parameters()[1], 0.1);
+    }
+}